@@ -0,0 +1,132 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javafx.scene.chart.XYChart.Data;
+import model.CSVModel;
+import model.CSVModelV1;
+import model.SpectrumData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import util.GraphUtil;
+import util.TitrationGenerator;
+import util.TitrationGenerator.Layout;
+
+/**
+ * Measures the model's load, edit, lookup and save paths and the chart point building of
+ * GraphUtil against spectra from TitrationGenerator. Each shape is wavelengths x runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CSVModelBenchmark {
+
+  @Param({"100x10", "1000x50", "10000x100", "100000x10", "1000x500"})
+  public String shape;
+
+  private Path directory;
+  private String rawFile;
+  private String editedFile;
+  private CSVModel loaded;
+  private SpectrumData data;
+  private String[] wavelengthCells;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void writeSpectra() throws IOException {
+    String[] size = this.shape.split("x");
+    int wavelengths = Integer.parseInt(size[0]);
+    int runs = Integer.parseInt(size[1]);
+    this.directory = Files.createTempDirectory("csv-bench");
+    this.rawFile = this.directory.resolve("raw.csv").toString();
+    this.editedFile = this.directory.resolve("edited.csv").toString();
+    new TitrationGenerator().wavelengths(wavelengths).runs(runs)
+        .write(this.rawFile, Layout.RAW);
+
+    // The edited file is what loadCSV and the lookups work on
+    CSVModel editor = new CSVModelV1();
+    editor.loadAndEditCSV(this.rawFile);
+    editor.saveCSV(this.directory.toString() + File.separator, "edited");
+    this.loaded = new CSVModelV1();
+    this.loaded.loadCSV(this.editedFile);
+    this.data = this.loaded.getCSV(this.loaded.loadedCSV());
+    List<String> column = this.loaded.getColumn(0);
+    this.wavelengthCells = column.subList(1, column.size()).toArray(new String[0]);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteSpectra() throws IOException {
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public SpectrumData loadCSV() {
+    CSVModel model = new CSVModelV1();
+    model.loadCSV(this.editedFile);
+    return model.getCSV(model.loadedCSV());
+  }
+
+  @Benchmark
+  public SpectrumData loadCSVWithoutSidecar() {
+    CSVModel model = new CSVModelV1(Runtime.getRuntime().maxMemory() / 4, false);
+    model.loadCSV(this.editedFile);
+    return model.getCSV(model.loadedCSV());
+  }
+
+  @Benchmark
+  public SpectrumData loadAndEditCSV() {
+    CSVModel model = new CSVModelV1();
+    model.loadAndEditCSV(this.rawFile);
+    return model.getCSV(model.loadedCSV());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public String[] getRow() {
+    this.next = (this.next + 7919) % this.wavelengthCells.length;
+    return this.loaded.getRow(this.wavelengthCells[this.next]);
+  }
+
+  @Benchmark
+  public List<String> getColumn() {
+    return this.loaded.getColumn(0);
+  }
+
+  @Benchmark
+  public void saveCSV() {
+    this.loaded.saveCSV(this.directory.toString() + File.separator, "saved");
+  }
+
+  @Benchmark
+  public void loadingBarPoints(Blackhole hole) {
+    // The full resolution point building that loadingBar runs on its worker for each run
+    for (int run = 0; run < this.data.getRunCount(); run++) {
+      List<Data<Number, Number>> points = GraphUtil.seriesPoints(this.data, run, 0,
+          this.data.getRowCount(), Integer.MAX_VALUE);
+      hole.consume(points);
+    }
+  }
+}
@@ -1,6 +1,18 @@
 public class App {
 
   public static void main(String[] args) {
-    CSVToGraph.main(args);
+    if (args.length > 0 && args[0].equals("--batch")) {
+      // Headless conversion, the rest of the arguments go to the batch tool
+      String[] batchArgs = new String[args.length - 1];
+      System.arraycopy(args, 1, batchArgs, 0, batchArgs.length);
+      BatchCSVToGraph.main(batchArgs);
+    } else if (args.length > 0 && args[0].equals("--generate")) {
+      // Writes a synthetic titration csv, the rest of the arguments go to the generator
+      String[] generateArgs = new String[args.length - 1];
+      System.arraycopy(args, 1, generateArgs, 0, generateArgs.length);
+      GenerateTitration.main(generateArgs);
+    } else {
+      CSVToGraph.main(args);
+    }
   }
 }
@@ -0,0 +1,230 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import model.CSVModel;
+import model.CSVModelV1;
+import util.ChartImage;
+
+/**
+ * Converts many titration csv files without a GUI. Every csv in a directory, or every file that
+ * matches a glob, is edited (or only loaded with --no-edit) and gets a line chart png, using a
+ * fixed number of worker threads. It is safe to run without a display, such as in CI or cron, and
+ * exits with 1 if any file failed. With --out the folders a glob matched below its fixed part are
+ * kept, and files that would still be written over each other fail instead.
+ *
+ * <p>Usage: BatchCSVToGraph [--out dir] [--threads n] [--no-edit] [--no-image]
+ * [--size widthxheight] directory-or-glob...
+ */
+public class BatchCSVToGraph {
+
+  /**
+   * Runs the batch conversion over the given directories or globs.
+   */
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    String outDir = "";
+    int threads = Runtime.getRuntime().availableProcessors();
+    boolean edit = true;
+    boolean image = true;
+    int width = 1600;
+    int height = 900;
+    List<String> sources = new ArrayList<>();
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--out" -> outDir = args[++i];
+          case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+          case "--no-edit" -> edit = false;
+          case "--no-image" -> image = false;
+          case "--size" -> {
+            String[] size = args[++i].split("x");
+            width = Integer.parseInt(size[0]);
+            height = Integer.parseInt(size[1]);
+          }
+          default -> sources.add(args[i]);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      usage("Bad option: " + e.getMessage());
+      return;
+    }
+    if (sources.isEmpty()) {
+      usage("No directory or glob given");
+      return;
+    }
+
+    List<Source> files = new ArrayList<>();
+    for (String source : sources) {
+      try {
+        files.addAll(findCSVs(source));
+      } catch (IOException e) {
+        System.err.println("Cannot read " + source + ": " + e.getMessage());
+      }
+    }
+    if (!outDir.equals("")) {
+      new File(outDir).mkdirs();
+      if (!outDir.endsWith(File.separator)) {
+        outDir += File.separator;
+      }
+    }
+
+    int failures = run(files, outDir, threads, edit, image, width, height);
+    if (failures > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * A csv to convert and the folder below the output directory its files go in.
+   */
+  private record Source(Path file, Path folder) {
+  }
+
+  // Converts every file on the worker pool, returns how many failed
+  private static int run(List<Source> files, String outDir, int threads, boolean edit,
+      boolean image, int width, int height) {
+    long start = System.nanoTime();
+    ExecutorService workers = Executors.newFixedThreadPool(Math.min(threads,
+        Math.max(files.size(), 1)));
+    ExecutorCompletionService<String> done = new ExecutorCompletionService<>(workers);
+    // Two csvs with the same name in the same output folder would write over each other
+    Map<String, Path> outputs = new HashMap<>();
+    int failures = 0;
+    int submitted = 0;
+    for (Source source : files) {
+      Path file = source.file();
+      String dir = outDir.equals("") ? "" : outDir + folderPrefix(source.folder());
+      String output = (outDir.equals("") ? file.toAbsolutePath().getParent() + File.separator
+          : dir) + file.getFileName().toString().split("\\.")[0].toLowerCase(Locale.ROOT);
+      Path clash = outputs.putIfAbsent(output, file);
+      if (clash != null) {
+        failures++;
+        System.err.println("Failed " + file + ": same output name as " + clash);
+        continue;
+      }
+      done.submit(() -> convert(file, dir, edit, image, width, height));
+      submitted++;
+    }
+    for (int i = 0; i < submitted; i++) {
+      try {
+        System.out.println("Converted " + done.take().get());
+      } catch (ExecutionException e) {
+        failures++;
+        System.err.println("Failed " + e.getCause().getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    workers.shutdownNow();
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%d files in %.2f s (%.1f files/sec), %d failed%n", files.size(), seconds,
+        seconds == 0 ? 0 : files.size() / seconds, failures);
+    return failures;
+  }
+
+  // Each file gets its own model as models keep the loaded csv. With an output directory nothing
+  // is written next to the csv, it is edited in memory and only saved to that directory
+  private static String convert(Path file, String outDir, boolean edit, boolean image, int width,
+      int height) throws IOException {
+    String path = file.toString();
+    boolean nextToCSV = outDir.equals("");
+    try {
+      if (!nextToCSV) {
+        Files.createDirectories(Paths.get(outDir));
+      }
+      CSVModel model = new CSVModelV1(Runtime.getRuntime().maxMemory() / 4, nextToCSV, nextToCSV);
+      if (edit) {
+        model.loadAndEditCSV(path);
+      } else {
+        model.loadCSV(path);
+      }
+      if (!nextToCSV) {
+        model.saveCSV(outDir, "");
+      }
+      if (image) {
+        String dir = nextToCSV ? model.defaultPath() : outDir;
+        File png = new File(dir + model.loadedCSV() + " Left Graph.png");
+        ImageIO.write(ChartImage.lineChart(model.getCSV(model.loadedCSV()), model.loadedCSV(),
+            width, height), "png", png);
+      }
+    } catch (IOException | RuntimeException e) {
+      // Every failure names its file, also the ones without a message
+      String message = e.getMessage() == null ? e.toString() : e.getMessage();
+      throw new IOException(path + ": " + message, e);
+    }
+    return path;
+  }
+
+  // The folder below the output directory as the start of a path
+  private static String folderPrefix(Path folder) {
+    return folder == null ? "" : folder + File.separator;
+  }
+
+  // A directory gives its csv files, otherwise the source is a file or a glob like data/*.csv.
+  // Glob matches keep the folders below the part of the glob without wildcards
+  private static List<Source> findCSVs(String source) throws IOException {
+    Path path = Paths.get(source);
+    if (Files.isDirectory(path)) {
+      try (Stream<Path> listed = Files.list(path)) {
+        return listed.filter(BatchCSVToGraph::isSourceCSV).sorted()
+            .map((p) -> new Source(p, null)).toList();
+      }
+    }
+    if (Files.isRegularFile(path)) {
+      return List.of(new Source(path, null));
+    }
+    // Walks from the part of the glob that has no wildcards
+    int wildcard = indexOfWildcard(source);
+    int split = Math.max(source.lastIndexOf('/', wildcard), source.lastIndexOf('\\', wildcard));
+    Path root = Paths.get(split == -1 ? "." : source.substring(0, split + 1));
+    String pattern = split == -1 ? source : source.substring(split + 1);
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    try (Stream<Path> walked = Files.walk(root)) {
+      return walked.filter(Files::isRegularFile)
+          .filter((p) -> matcher.matches(root.relativize(p)))
+          .filter(BatchCSVToGraph::isSourceCSV)
+          .sorted()
+          .map((p) -> new Source(p, root.relativize(p).getParent()))
+          .toList();
+    }
+  }
+
+  // Skips the files this tool makes so a second run does not edit them again
+  private static boolean isSourceCSV(Path path) {
+    String name = path.getFileName().toString();
+    return name.endsWith(".csv") && !name.contains(" (Edited)");
+  }
+
+  private static int indexOfWildcard(String glob) {
+    for (int i = 0; i < glob.length(); i++) {
+      if ("*?[{".indexOf(glob.charAt(i)) != -1) {
+        return i;
+      }
+    }
+    return glob.length();
+  }
+
+  private static void usage(String problem) {
+    System.err.println(problem);
+    System.err.println("Usage: BatchCSVToGraph [--out dir] [--threads n] [--no-edit] [--no-image]"
+        + " [--size widthxheight] directory-or-glob...");
+    System.exit(2);
+  }
+}
@@ -0,0 +1,70 @@
+import java.io.IOException;
+import util.TitrationGenerator;
+import util.TitrationGenerator.Layout;
+import util.TitrationGenerator.Shape;
+
+/**
+ * Writes a synthetic titration csv, to try the app on datasets far larger than the samples.
+ *
+ * <p>Usage: GenerateTitration [--wavelengths n] [--runs n] [--start nm] [--step nm]
+ * [--noise sd] [--baseline a] [--shape gaussian|lorentzian] [--binding equivalents kd]
+ * [--peak center width free bound]... [--seed n] [--edited] output.csv
+ */
+public class GenerateTitration {
+
+  /**
+   * Writes the csv described by the arguments.
+   */
+  public static void main(String[] args) {
+    TitrationGenerator generator = new TitrationGenerator();
+    Layout layout = Layout.RAW;
+    double start = 380.6;
+    double step = 0.7;
+    String output = null;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--wavelengths" -> generator.wavelengths(Integer.parseInt(args[++i]));
+          case "--runs" -> generator.runs(Integer.parseInt(args[++i]));
+          case "--start" -> start = Double.parseDouble(args[++i]);
+          case "--step" -> step = Double.parseDouble(args[++i]);
+          case "--noise" -> generator.noise(Double.parseDouble(args[++i]));
+          case "--baseline" -> generator.baseline(Double.parseDouble(args[++i]));
+          case "--shape" -> generator.shape(Shape.valueOf(args[++i].toUpperCase()));
+          case "--binding" -> generator.binding(Double.parseDouble(args[++i]),
+              Double.parseDouble(args[++i]));
+          case "--peak" -> generator.peak(Double.parseDouble(args[++i]),
+              Double.parseDouble(args[++i]), Double.parseDouble(args[++i]),
+              Double.parseDouble(args[++i]));
+          case "--seed" -> generator.seed(Long.parseLong(args[++i]));
+          case "--edited" -> layout = Layout.EDITED;
+          default -> output = args[i];
+        }
+      }
+      generator.axis(start, step);
+    } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+      usage("Bad option: " + e.getMessage());
+      return;
+    }
+    if (output == null) {
+      usage("No output file given");
+      return;
+    }
+
+    try {
+      generator.write(output, layout);
+    } catch (IOException e) {
+      System.err.println("Cannot write " + output + ": " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private static void usage(String problem) {
+    System.err.println(problem);
+    System.err.println("Usage: GenerateTitration [--wavelengths n] [--runs n] [--start nm]"
+        + " [--step nm] [--noise sd] [--baseline a] [--shape gaussian|lorentzian]"
+        + " [--binding equivalents kd] [--peak center width free bound]... [--seed n]"
+        + " [--edited] output.csv");
+    System.exit(2);
+  }
+}
@@ -1,36 +1,150 @@
 package controller;
 
-import java.awt.image.BufferedImage;
+import controller.commands.CSVCommand;
+import controller.commands.FileControl;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import javax.imageio.ImageIO;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.DoubleConsumer;
+import javafx.application.Platform;
+import model.BindingFitter;
+import model.BindingFitter.Fit;
+import model.BindingFitter.Isotherm;
 import model.CSVModel;
+import model.CSVTail;
+import model.PeakFinder;
+import model.SpectrumData;
+import model.SpectrumDecomposition;
+import model.SpectrumEdits;
+import model.SpectrumPipeline;
+import model.SpectrumTransforms;
+import util.ChartSettings;
+import util.EditHistory;
+import util.ImageExport;
+import util.ImageExport.Capture;
+import util.VectorChart;
+import util.VectorChart.Chart;
 import view.CSVGUIView;
 
 public class CSVControllerV1 implements Features {
 
+  // How far, in nm, a selected wavelength may be from a loaded one
+  private static final double WAVELENGTH_TOLERANCE = 0.5;
+  // How many edits, graph changes and corrections can be undone
+  private static final int MAX_UNDO_STEPS = 500;
+  // Quadratic smoothing keeps the height and width of the absorbance peaks
+  private static final int SMOOTHING_ORDER = 2;
+
+  // Most files parsed at the same time, even when there is a thread per file
+  private static final int MAX_PARALLEL_LOADS = Runtime.getRuntime().availableProcessors();
+
   private final CSVModel model;
   private CSVGUIView currView;
   private final List<CSVGUIView> views;
+  private final ExecutorService loader;
+  private final Semaphore loadPermits;
+  private volatile WatchService watcher;
+  private boolean watchShown;
+  private double selectedWavelength;
+  private FileControl commands;
+  private EditHistory<Snapshot> history;
+  private double[] overlay;
+
+  // Everything one undo step sets back, each part shares what did not change with the last step
+  private record Snapshot(SpectrumEdits edits, SpectrumPipeline pipeline,
+                          List<ChartSettings> charts) {
+
+  }
+
+  // Writes one image to a file, telling how far along it is from 0 to 1
+  private interface ImageJob {
+
+    void write(File file, DoubleConsumer progress) throws IOException;
+  }
 
   public CSVControllerV1(CSVModel model) {
     this.model = model;
+    this.overlay = new double[0];
     this.views = new ArrayList<>();
+    this.loader = loadingExecutor();
+    this.loadPermits = new Semaphore(MAX_PARALLEL_LOADS);
+    this.selectedWavelength = Double.NaN;
+    this.commands = new FileControl();
   }
 
   @Override
   public void process() {
-    // Does nothing as there is no new commands to run on csv file
+    // The queued commands are only taken once they can run, so a missing csv does not drop them
+    String fileName = this.model.loadedCSV();
+    if (fileName == null) {
+      this.currView.renderError("No Loaded CSV to process");
+      return;
+    }
+    if (this.commands.isEmpty()) {
+      this.currView.renderWarning("There are no queued commands to process");
+      return;
+    }
+    SpectrumData data;
+    try {
+      data = this.model.getUncorrectedCSV(fileName);
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+      return;
+    }
+    FileControl batch = this.commands;
+    this.commands = new FileControl();
+    CompletableFuture.supplyAsync(() -> batch.apply(data), this.loader)
+        .whenComplete((processed, error) -> Platform.runLater(() -> {
+          if (error != null) {
+            Throwable cause = error.getCause() == null ? error : error.getCause();
+            this.currView.renderError("Failed to process: " + cause.getMessage());
+            return;
+          }
+          String name = fileName + " (Processed)";
+          this.model.putInStorage(name, processed);
+          for (CSVGUIView view : this.views) {
+            view.addCSVName(name);
+          }
+          this.model.useCSV(name);
+          this.showLoadedCSV();
+        }));
+  }
+
+  @Override
+  public void queueCommand(CSVCommand command) {
+    this.commands.add(command);
+  }
+
+  @Override
+  public void clearCommands() {
+    this.commands = new FileControl();
   }
 
   @Override
   public void loadCSV(String filePath) {
     try {
       this.model.loadCSV(filePath);
-      this.graphCSV(this.model.loadedCSV());
-      this.currView.setXValueLabel(this.model.getColumn(0));
+      this.showLoadedCSV();
     } catch (IllegalArgumentException e) {
       this.currView.renderError(e.getMessage());
     }
@@ -40,16 +154,102 @@ public class CSVControllerV1 implements Features {
   public void loadAndEditCSV(String filePath) {
     try {
       this.model.loadAndEditCSV(filePath);
-      this.graphCSV(this.model.loadedCSV());
-      this.currView.setXValueLabel(this.model.getColumn(0));
+      this.showLoadedCSV();
     } catch (IllegalArgumentException e) {
       this.currView.renderError(e.getMessage());
     }
   }
 
+  @Override
+  public void loadCSVs(List<String> filePaths, boolean edit) {
+    List<CompletableFuture<String>> loads = new ArrayList<>();
+    Map<String, String> failures = new ConcurrentHashMap<>();
+    for (String filePath : filePaths) {
+      this.renderFileProgress(filePath, 0, "Waiting");
+      loads.add(CompletableFuture.supplyAsync(() -> this.storeCSV(filePath, edit), this.loader)
+          .whenComplete((name, error) -> {
+            if (error == null) {
+              this.renderFileProgress(filePath, 1, "Loaded");
+            } else {
+              Throwable cause = error.getCause() == null ? error : error.getCause();
+              failures.put(filePath, String.valueOf(cause.getMessage()));
+              this.renderFileProgress(filePath, 1, "Failed");
+            }
+          }));
+    }
+    CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+        .whenComplete((done, error) -> Platform.runLater(() -> {
+          String last = null;
+          for (CompletableFuture<String> load : loads) {
+            if (!load.isCompletedExceptionally()) {
+              last = load.join();
+              for (CSVGUIView view : this.views) {
+                view.addCSVName(last);
+              }
+            }
+          }
+          if (last != null) {
+            try {
+              this.model.useCSV(last);
+              this.showLoadedCSV();
+            } catch (IllegalArgumentException e) {
+              this.currView.renderError(e.getMessage());
+            }
+          }
+          if (!failures.isEmpty()) {
+            StringBuilder message = new StringBuilder("Failed to load:");
+            for (Entry<String, String> failure : failures.entrySet()) {
+              message.append(System.lineSeparator()).append(failure.getKey()).append(": ")
+                  .append(failure.getValue());
+            }
+            this.currView.renderError(message.toString());
+          }
+        }));
+  }
+
+  @Override
+  public void watchCSV(String filePath, boolean edit) {
+    this.stopWatching();
+    Path file = Path.of(filePath).toAbsolutePath();
+    WatchService newWatcher;
+    try {
+      newWatcher = file.getFileSystem().newWatchService();
+      file.getParent().register(newWatcher, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException e) {
+      this.currView.renderError("Cannot watch " + filePath);
+      return;
+    }
+    this.watcher = newWatcher;
+    this.watchShown = false;
+    CSVTail tail = new CSVTail(filePath, edit);
+    Thread watching = new Thread(() -> this.follow(tail, newWatcher, file.getFileName()),
+        "csv-watch");
+    watching.setDaemon(true);
+    watching.start();
+  }
+
+  @Override
+  public void stopWatching() {
+    WatchService oldWatcher = this.watcher;
+    this.watcher = null;
+    if (oldWatcher != null) {
+      try {
+        oldWatcher.close();
+      } catch (IOException e) {
+        // The watch thread stops either way
+      }
+    }
+  }
+
   @Override
   public void graphCSV(String fileName) {
     try {
+      if (!fileName.equals(this.model.loadedCSV())) { // Switches to a stored csv
+        this.model.useCSV(fileName);
+        this.showLoadedCSV();
+        return;
+      }
       for (CSVGUIView view : this.views) {
         view.renderCSV(this.model.getCSV(fileName), fileName);
       }
@@ -61,14 +261,211 @@ public class CSVControllerV1 implements Features {
   @Override
   public void selectColumn(String wavelength) {
     try {
+      double value = SpectrumData.parseCell(wavelength);
+      if (Double.isNaN(value)) {
+        throw new IllegalArgumentException("No such wavelength as " + wavelength);
+      }
+      // Snaps typed or rounded values to the loaded wavelength before the indexed lookup
+      value = this.model.nearestWavelength(value, WAVELENGTH_TOLERANCE);
+      double[] values = this.model.getRowAt(value);
+      this.selectedWavelength = value;
       for (CSVGUIView view : this.views) {
-        view.highlightColumn(this.model.getRow(wavelength));
+        view.highlightColumn(value, values);
       }
     } catch (IllegalArgumentException e) {
       this.currView.renderError(e.getMessage());
     }
   }
 
+  @Override
+  public void overlayColumns(List<String> wavelengths) {
+    try {
+      double[] chosen = new double[wavelengths.size()];
+      for (int at = 0; at < chosen.length; at++) {
+        double value = SpectrumData.parseCell(wavelengths.get(at));
+        if (Double.isNaN(value)) {
+          throw new IllegalArgumentException("No such wavelength as " + wavelengths.get(at));
+        }
+        chosen[at] = this.model.nearestWavelength(value, WAVELENGTH_TOLERANCE);
+      }
+      this.overlay = chosen;
+      this.showOverlay();
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+    }
+  }
+
+  @Override
+  public void fitBinding(String isotherm, String wavelength, double peptide,
+      double metalPerRun) {
+    BindingFitter fitter;
+    SpectrumData data;
+    double selected = Double.NaN;
+    try {
+      data = this.model.getCSV(this.model.loadedCSV());
+      Isotherm chosen = switch (isotherm) {
+        case "1:1" -> Isotherm.ONE_TO_ONE;
+        case "1:2" -> Isotherm.ONE_TO_TWO;
+        default -> throw new IllegalArgumentException("No such isotherm as " + isotherm);
+      };
+      fitter = new BindingFitter(chosen, peptide,
+          BindingFitter.evenAdditions(data.getRunCount(), metalPerRun));
+      if (wavelength != null) {
+        selected = this.model.nearestWavelength(SpectrumData.parseCell(wavelength),
+            WAVELENGTH_TOLERANCE);
+      }
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+      return;
+    }
+    final double fitWavelength = selected;
+    CompletableFuture.supplyAsync(() -> {
+      if (!Double.isNaN(fitWavelength)) {
+        Fit fit = fitter.fit(fitWavelength, data.getRowAt(fitWavelength));
+        return "At " + SpectrumData.formatCell(fitWavelength) + System.lineSeparator()
+            + describeFit(fit);
+      }
+      Fit global = fitter.fitGlobal(data);
+      Fit[] each = fitter.fitEach(data);
+      return "Every wavelength, shared constants" + System.lineSeparator() + describeFit(global)
+          + System.lineSeparator() + System.lineSeparator() + describeFits(each);
+    }, this.loader).whenComplete((message, error) -> Platform.runLater(() -> {
+      if (error != null) {
+        Throwable cause = error.getCause() == null ? error : error.getCause();
+        this.currView.renderError("Failed to fit: " + cause.getMessage());
+      } else {
+        this.currView.renderMessage(isotherm + " Binding Fit", null, message);
+      }
+    }));
+  }
+
+  @Override
+  public void decompose(int components, boolean centered) {
+    SpectrumDecomposition decomposition;
+    SpectrumData data;
+    try {
+      data = this.model.getCSV(this.model.loadedCSV());
+      decomposition = new SpectrumDecomposition(components, centered);
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+      return;
+    }
+    CompletableFuture.supplyAsync(() -> decomposition.decompose(data), this.loader)
+        .whenComplete((result, error) -> Platform.runLater(() -> {
+          if (error != null) {
+            Throwable cause = error.getCause() == null ? error : error.getCause();
+            this.currView.renderError("Failed to decompose: " + cause.getMessage());
+          } else {
+            this.currView.renderDecomposition(result);
+          }
+        }));
+  }
+
+  @Override
+  public void findPeaks(double prominence, double tolerance) {
+    PeakFinder finder;
+    SpectrumData data;
+    try {
+      data = this.model.getCSV(this.model.loadedCSV());
+      finder = new PeakFinder(prominence, tolerance);
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+      return;
+    }
+    CompletableFuture.supplyAsync(() -> finder.find(data), this.loader)
+        .whenComplete((result, error) -> Platform.runLater(() -> {
+          if (error != null) {
+            Throwable cause = error.getCause() == null ? error : error.getCause();
+            this.currView.renderError("Failed to find peaks: " + cause.getMessage());
+          } else {
+            this.currView.renderPeaks(result);
+          }
+        }));
+  }
+
+  @Override
+  public void correctSpectra(String blank, int smoothing, String baseline, double dilution) {
+    try {
+      SpectrumPipeline pipeline = SpectrumPipeline.NONE;
+      if (blank != null) {
+        SpectrumData blankData = this.model.getUncorrectedCSV(blank);
+        pipeline = pipeline.then(SpectrumTransforms.blank(blank, blankData.getWavelengths(),
+            blankData.getRun(0), WAVELENGTH_TOLERANCE));
+      }
+      if (smoothing > 0) {
+        pipeline = pipeline.then(SpectrumTransforms.savitzkyGolay(smoothing, SMOOTHING_ORDER));
+      }
+      if (baseline != null) {
+        double wavelength = SpectrumData.parseCell(baseline);
+        if (Double.isNaN(wavelength)) {
+          throw new IllegalArgumentException("No such wavelength as " + baseline);
+        }
+        pipeline = pipeline.then(SpectrumTransforms.baseline(wavelength));
+      }
+      if (dilution != 0) {
+        pipeline = pipeline.then(SpectrumTransforms.dilution(dilution));
+      }
+      this.model.setPipeline(pipeline);
+      if (this.model.loadedCSV() == null) {
+        return;
+      }
+      List<ChartSettings> charts = this.currView.getChartSettings();
+      this.showCorrected(charts);
+      this.record();
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+    }
+  }
+
+  @Override
+  public void graphChanged(int[] runs, double[] values) {
+    try {
+      if (runs.length > 0) {
+        if (Double.isNaN(this.selectedWavelength)) {
+          throw new IllegalArgumentException("No wavelength is selected to change");
+        }
+        List<ChartSettings> charts = this.currView.getChartSettings();
+        this.model.editValues(this.selectedWavelength, runs, values);
+        String fileName = this.model.loadedCSV();
+        SpectrumData data = this.model.getCSV(fileName);
+        for (CSVGUIView view : this.views) {
+          view.updateCSV(data, fileName, data.getRowCount(), runs);
+        }
+        this.highlightSelected();
+        this.currView.setChartSettings(charts);
+      }
+      this.record();
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+    }
+  }
+
+  @Override
+  public void undo() {
+    if (this.history == null) {
+      return;
+    }
+    Snapshot snapshot = this.history.undo();
+    if (snapshot == null) {
+      this.currView.renderWarning("There is nothing to undo");
+    } else {
+      this.restore(snapshot);
+    }
+  }
+
+  @Override
+  public void redo() {
+    if (this.history == null) {
+      return;
+    }
+    Snapshot snapshot = this.history.redo();
+    if (snapshot == null) {
+      this.currView.renderWarning("There is nothing to redo");
+    } else {
+      this.restore(snapshot);
+    }
+  }
+
   @Override
   public void setView(CSVGUIView view) {
     this.views.add(view);
@@ -93,20 +490,59 @@ public class CSVControllerV1 implements Features {
   }
 
   @Override
-  public void saveImage(String filePath, String imageName, BufferedImage image) {
-    if (filePath.equals("")) {
-      filePath = this.model.defaultPath();
+  public void saveImages(String filePath, String imageName, String fileType,
+      List<Capture> captures) {
+    String format = fileType.startsWith(".") ? fileType.substring(1) : fileType;
+    Map<String, ImageJob> jobs = new LinkedHashMap<>();
+    for (Capture capture : captures) {
+      jobs.put(capture.name(), (file, progress) ->
+          ImageExport.write(capture, format, file, progress));
     }
-    // Image name should be LineChart.png or something if no specified name is given.
-    String fileType = imageName.split("\\.")[1];
-    String fullPath = filePath + this.model.loadedCSV() + " " + imageName;
+    this.saveInBackground(filePath, imageName, fileType, jobs);
+  }
+
+  @Override
+  public void saveVectorImages(String filePath, String imageName, String fileType,
+      List<String> graphs, double width, double height) {
+    Map<String, ImageJob> jobs = new LinkedHashMap<>();
     try {
-      ImageIO.write(image, fileType, new File(fullPath));
-      this.currView.renderMessage("Image Saved!", null,
-          "The image " + imageName + " has been saved to: " + fullPath);
-    } catch (IOException e) {
-      this.currView.renderError("Failed to save image");
+      String loaded = this.model.loadedCSV();
+      List<ChartSettings> settings = this.currView.getChartSettings();
+      Chart lines = VectorChart.lines(this.model.getCSV(loaded), loaded, settings.get(0));
+      Chart points = null;
+      if (!Double.isNaN(this.selectedWavelength)) {
+        double[] values = this.model.getRowAt(this.selectedWavelength);
+        ChartSettings scatter = settings.get(1);
+        double[] x = scatter == null ? null : scatter.pointX();
+        if (x == null || x.length != values.length) {
+          // The points are at the selected wavelength until their x values are changed
+          x = new double[values.length];
+          Arrays.fill(x, this.selectedWavelength);
+        }
+        points = VectorChart.points(x, values, Double.toString(this.selectedWavelength), scatter);
+      }
+      for (String graph : graphs) {
+        List<Chart> charts = switch (graph.split(" ")[0]) {
+          case "Left" -> List.of(lines);
+          case "Right" -> points == null ? List.of() : List.of(points);
+          case "Both" -> points == null ? List.of() : List.of(lines, points);
+          default -> List.of();
+        };
+        if (charts.isEmpty()) {
+          continue;
+        }
+        jobs.put(graph, (file, progress) -> {
+          try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            VectorChart.write(charts, width, height, fileType, out);
+          }
+          progress.accept(1);
+        });
+      }
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+      return;
     }
+    this.saveInBackground(filePath, imageName, fileType, jobs);
   }
 
   @Override
@@ -119,4 +555,270 @@ public class CSVControllerV1 implements Features {
       this.currView.renderError(e.getMessage());
     }
   }
+
+  // Graphs the loaded csv in every view, which also lists its wavelengths
+  private void showLoadedCSV() {
+    String fileName = this.model.loadedCSV();
+    this.selectedWavelength = Double.NaN;
+    this.overlay = new double[0];
+    for (CSVGUIView view : this.views) {
+      view.renderCSV(this.model.getCSV(fileName), fileName);
+    }
+    this.history = new EditHistory<>(this.snapshot(), MAX_UNDO_STEPS);
+  }
+
+  // Graphs the loaded csv again after its values changed, keeping the selection and chart settings
+  private void showCorrected(List<ChartSettings> charts) {
+    String fileName = this.model.loadedCSV();
+    for (CSVGUIView view : this.views) {
+      view.renderCSV(this.model.getCSV(fileName), fileName);
+    }
+    this.highlightSelected();
+    this.currView.setChartSettings(charts);
+  }
+
+  // Shows the selected and overlaid wavelengths again after the csv was graphed again
+  private void highlightSelected() {
+    if (!Double.isNaN(this.selectedWavelength)) {
+      double[] values = this.model.getRowAt(this.selectedWavelength);
+      for (CSVGUIView view : this.views) {
+        view.highlightColumn(this.selectedWavelength, values);
+      }
+    }
+    if (this.overlay.length > 0) {
+      this.showOverlay();
+    }
+  }
+
+  private void showOverlay() {
+    double[][] values = new double[this.overlay.length][];
+    for (int at = 0; at < values.length; at++) {
+      values[at] = this.model.getRowAt(this.overlay[at]);
+    }
+    for (CSVGUIView view : this.views) {
+      view.overlayColumns(this.overlay, values);
+    }
+  }
+
+  private Snapshot snapshot() {
+    return new Snapshot(this.model.getEdits(), this.model.getPipeline(),
+        this.currView.getChartSettings());
+  }
+
+  // Adds the loaded csv as it is now to the history
+  private void record() {
+    if (this.history != null) {
+      this.history.record(this.snapshot());
+    }
+  }
+
+  private void restore(Snapshot snapshot) {
+    try {
+      this.model.setEdits(snapshot.edits());
+      this.model.setPipeline(snapshot.pipeline());
+      this.showCorrected(snapshot.charts());
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+    }
+  }
+
+  // Parses a file into the model's storage once a permit is free
+  private String storeCSV(String filePath, boolean edit) {
+    try {
+      this.loadPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Loading was interrupted");
+    }
+    try {
+      this.renderFileProgress(filePath, -1, "Loading");
+      return this.model.storeCSV(filePath, edit);
+    } finally {
+      this.loadPermits.release();
+    }
+  }
+
+  // Each dissociation constant with its confidence interval
+  private static String describeFit(Fit fit) {
+    StringBuilder text = new StringBuilder();
+    for (int c = 0; c < fit.kd().length; c++) {
+      text.append("Kd").append(c + 1).append(" = ").append(String.format("%.4g", fit.kd()[c]));
+      if (Double.isNaN(fit.kdLower()[c])) {
+        text.append(" (not set by the data)");
+      } else {
+        text.append(String.format(" (95%% CI %.4g to %.4g)", fit.kdLower()[c], fit.kdUpper()[c]));
+      }
+      text.append(System.lineSeparator());
+    }
+    text.append(String.format("Sum of squares %.4g over %d points", fit.sse(), fit.points()));
+    if (!fit.converged()) {
+      text.append(", did not converge");
+    }
+    return text.toString();
+  }
+
+  // The median of each constant over the wavelengths whose fits converged
+  private static String describeFits(Fit[] fits) {
+    int constants = fits.length == 0 ? 0 : fits[0].kd().length;
+    StringBuilder text = new StringBuilder("Each wavelength on its own");
+    for (int c = 0; c < constants; c++) {
+      final int constant = c;
+      double[] kds = Arrays.stream(fits).filter(Fit::converged)
+          .mapToDouble((fit) -> fit.kd()[constant]).filter(Double::isFinite).sorted().toArray();
+      if (c == 0) {
+        text.append(" (").append(kds.length).append(" of ").append(fits.length)
+            .append(" converged)");
+      }
+      text.append(System.lineSeparator()).append("Median Kd").append(c + 1).append(" = ")
+          .append(kds.length == 0 ? "none" : String.format("%.4g", kds[kds.length / 2]));
+    }
+    return text.toString();
+  }
+
+  // Reads the file once, then again each time it changes until the watch service is closed
+  private void follow(CSVTail tail, WatchService watching, Path fileName) {
+    try {
+      this.readTail(tail, watching);
+      while (true) {
+        WatchKey key = watching.take();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+              || fileName.equals(event.context());
+        }
+        key.reset();
+        if (changed) {
+          this.readTail(tail, watching);
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      // Watching was stopped
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Reads what was appended off the FX thread and hands it to the FX thread in order
+  private void readTail(CSVTail tail, WatchService watching) {
+    CSVTail.Update update;
+    try {
+      update = tail.poll();
+    } catch (IllegalArgumentException e) {
+      Platform.runLater(() -> {
+        if (this.watcher == watching) {
+          this.stopWatching();
+          this.currView.renderError(e.getMessage());
+        }
+      });
+      return;
+    }
+    if (update != null) {
+      Platform.runLater(() -> this.showTail(tail, update));
+    }
+  }
+
+  // Stores the new data, then redraws only what changed if the watched csv is graphed
+  private void showTail(CSVTail tail, CSVTail.Update update) {
+    try {
+      SpectrumData data = update.data();
+      String name = this.model.storeCSV(tail.getFilePath(), tail.isEdited(), data);
+      if (data.getRowCount() == 0) { // Only the header is written so far
+        return;
+      }
+      boolean shown = name.equals(this.model.loadedCSV());
+      if (!this.watchShown || (shown && update.changedRuns().length == data.getRunCount())) {
+        this.watchShown = true;
+        for (CSVGUIView view : this.views) {
+          view.addCSVName(name);
+        }
+        this.model.useCSV(name);
+        this.showLoadedCSV();
+      } else if (shown) {
+        this.model.useCSV(name);
+        for (CSVGUIView view : this.views) {
+          view.updateCSV(data, name, update.fromRow(), update.changedRuns());
+        }
+        this.highlightSelected();
+        // Edits of the old rows cannot be undone on the new ones
+        this.history = new EditHistory<>(this.snapshot(), MAX_UNDO_STEPS);
+      }
+    } catch (IllegalArgumentException e) {
+      this.currView.renderError(e.getMessage());
+    }
+  }
+
+  private void renderFileProgress(String filePath, double progress, String status) {
+    for (CSVGUIView view : this.views) {
+      view.renderFileProgress(filePath, progress, status);
+    }
+  }
+
+  /*
+   * Writes each image on the loader with its progress shown, then tells the user once all of them
+   * are done. Without a name each image is named after its graph, with one the graph tells them
+   * apart.
+   */
+  private void saveInBackground(String filePath, String imageName, String fileType,
+      Map<String, ImageJob> jobs) {
+    if (jobs.isEmpty()) {
+      this.currView.renderError("No Graph Selected");
+      return;
+    }
+    String directory = filePath.equals("") ? this.model.defaultPath() : filePath;
+    String prefix = directory + this.model.loadedCSV() + " ";
+    Map<String, String> failures = new ConcurrentHashMap<>();
+    List<CompletableFuture<Void>> writes = new ArrayList<>();
+    for (Entry<String, ImageJob> job : jobs.entrySet()) {
+      String name = imageName == null || imageName.isEmpty() ? job.getKey()
+          : jobs.size() == 1 ? imageName : imageName + " " + job.getKey();
+      String fullPath = prefix + name + fileType;
+      this.renderFileProgress(fullPath, 0, "Waiting");
+      writes.add(CompletableFuture.runAsync(() -> {
+        try {
+          // Held under 1 so the progress window stays open until the file is closed
+          job.getValue().write(new File(fullPath),
+              (progress) -> this.renderFileProgress(fullPath, Math.min(progress, 0.99),
+                  "Encoding"));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, this.loader).whenComplete((done, error) -> {
+        if (error == null) {
+          this.renderFileProgress(fullPath, 1, "Saved");
+        } else {
+          Throwable cause = error.getCause() == null ? error : error.getCause();
+          failures.put(fullPath, String.valueOf(cause.getMessage()));
+          this.renderFileProgress(fullPath, 1, "Failed");
+        }
+      }));
+    }
+    CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+        .whenComplete((done, error) -> Platform.runLater(() -> {
+          if (failures.isEmpty()) {
+            this.currView.renderMessage(jobs.size() == 1 ? "Image Saved!" : "Images Saved!",
+                null, "The images have been saved to: " + directory);
+            return;
+          }
+          StringBuilder message = new StringBuilder("Failed to save:");
+          for (Entry<String, String> failure : failures.entrySet()) {
+            message.append(System.lineSeparator()).append(failure.getKey()).append(": ")
+                .append(failure.getValue());
+          }
+          this.currView.renderError(message.toString());
+        }));
+  }
+
+  // A virtual thread per file when the JDK has them, otherwise a fixed pool of daemon threads
+  private static ExecutorService loadingExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return Executors.newFixedThreadPool(MAX_PARALLEL_LOADS, (task) -> {
+        Thread thread = new Thread(task, "csv-loader");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
 }
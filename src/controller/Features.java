@@ -1,15 +1,31 @@
 package controller;
 
-import java.awt.image.BufferedImage;
+import controller.commands.CSVCommand;
+import java.util.List;
+import util.ImageExport.Capture;
 import view.CSVGUIView;
 
 public interface Features {
 
   /**
-   * processes the files.
+   * Runs every queued command on the loaded CSV, as it was read, in the background. The commands
+   * are applied together in one pass and the result is loaded and graphed as a new CSV named after
+   * the loaded one. The queue is empty afterwards.
    */
   void process();
 
+  /**
+   * Queues a command for the loaded CSV, nothing changes until the queue is processed.
+   *
+   * @param command is the command to queue
+   */
+  void queueCommand(CSVCommand command);
+
+  /**
+   * Empties the queue without running the commands.
+   */
+  void clearCommands();
+
   /**
    * Loads/adds in a new csv file and auto edits it.
    *
@@ -24,6 +40,29 @@ public interface Features {
    */
   void loadCSV(String filePath);
 
+  /**
+   * Loads many CSV files at once on background threads, reporting each file's progress to the
+   * views. Once all are loaded the last one that loaded is graphed.
+   *
+   * @param filePaths is the file path of every csv
+   * @param edit      is if the files should be edited like loadAndEditCSV
+   */
+  void loadCSVs(List<String> filePaths, boolean edit);
+
+  /**
+   * Loads a CSV the spectrometer is still writing and keeps its graphs up to date as rows or runs
+   * are added to it. Only one CSV is watched at a time.
+   *
+   * @param filePath is the file path to the csv
+   * @param edit     is if the file should be edited like loadAndEditCSV
+   */
+  void watchCSV(String filePath, boolean edit);
+
+  /**
+   * Stops watching the CSV given to watchCSV, what was read so far stays loaded.
+   */
+  void stopWatching();
+
   /**
    * Graphs the given CSV if it exists
    *
@@ -38,6 +77,76 @@ public interface Features {
    */
   void selectColumn(String wavelength);
 
+  /**
+   * Shows several wavelengths together on one scatter plot, kept through corrections and edits
+   * until another csv is graphed.
+   *
+   * @param wavelengths is each wavelength/Y-axis value to show, empty to stop showing them
+   */
+  void overlayColumns(List<String> wavelengths);
+
+  /**
+   * Fits a metal binding isotherm to the loaded CSV in the background and shows the dissociation
+   * constants with their 95% confidence intervals. Every run is taken as the same metal addition
+   * and the first run has no metal.
+   *
+   * @param isotherm    is "1:1" or "1:2", metals bound per peptide
+   * @param wavelength  is the wavelength to fit, or null to fit every wavelength
+   * @param peptide     is the peptide concentration
+   * @param metalPerRun is the metal concentration added each run, in the same units
+   */
+  void fitBinding(String isotherm, String wavelength, double peptide, double metalPerRun);
+
+  /**
+   * Decomposes the loaded CSV in the background by singular value decomposition, or by principal
+   * component analysis when centered, and shows the singular values with the first components and
+   * how much of each every run has.
+   *
+   * @param components is how many components to show
+   * @param centered   is if the mean spectrum is taken away first
+   */
+  void decompose(int components, boolean centered);
+
+  /**
+   * Finds the peaks of every run of the loaded CSV and the wavelengths where every run crosses, in
+   * the background, and shows them so the wavelength can be jumped to.
+   *
+   * @param prominence is the smallest peak kept, as a fraction of each run's absorbance range
+   * @param tolerance  is the most the runs can be apart where they cross, in absorbance
+   */
+  void findPeaks(double prominence, double tolerance);
+
+  /**
+   * Corrects every CSV before it is graphed or fit and graphs the loaded one again. The files are
+   * not parsed again, so a correction can be turned on and off freely. The corrections are applied
+   * in the order of the parameters.
+   *
+   * @param blank     is the name of a loaded CSV whose first run is subtracted, null for none
+   * @param smoothing is the Savitzky-Golay window in points, 0 for no smoothing
+   * @param baseline  is the wavelength each run is zeroed at, null for no baseline
+   * @param dilution  is the volume each run adds over the starting volume, 0 for no correction
+   */
+  void correctSpectra(String blank, int smoothing, String baseline, double dilution);
+
+  /**
+   * Records a change made in the graph info window as one step that can be undone. The new values
+   * are absorbances of runs at the selected wavelength and change the loaded CSV.
+   *
+   * @param runs   is each run whose value was changed, starting with 0
+   * @param values is the new absorbance of each run
+   */
+  void graphChanged(int[] runs, double[] values);
+
+  /**
+   * Undoes the last edit, graph change or correction of the loaded CSV.
+   */
+  void undo();
+
+  /**
+   * Redoes the last step that was undone.
+   */
+  void redo();
+
   /**
    * Sets the view to this view.
    *
@@ -53,15 +162,31 @@ public interface Features {
   void saveCSV(String filePath, String imgName);
 
   /**
-   * Saves the given image to the given file path, if empty it will be set to where the loaded csv
-   * was.
+   * Saves the given snapshots to the given file path in the background, if empty it will be set to
+   * where the loaded csv was. The progress of each image is shown while it is encoded.
    *
    * @param filePath  is the desired file path
-   * @param imageName is the image name you want to save it as, if empty or null set to the chart
-   *                  name
-   * @param image     is the image that wants to be saved
+   * @param imageName is the image name you want to save it as, if empty or null each image is
+   *                  named after its graph
+   * @param fileType  is the image type, like ".png"
+   * @param captures  is the snapshot of each graph to save
+   */
+  void saveImages(String filePath, String imageName, String fileType, List<Capture> captures);
+
+  /**
+   * Saves the graphs as svg or pdf in the background, drawn from the loaded CSV's values and the
+   * graphs' titles and axes rather than from a snapshot, so they stay sharp at any size.
+   *
+   * @param filePath  is the desired file path, if empty it will be where the loaded csv was
+   * @param imageName is the image name you want to save it as, if empty or null each image is
+   *                  named after its graph
+   * @param fileType  is ".svg" or ".pdf"
+   * @param graphs    is each graph to save, "Left Graph", "Right Graph" or "Both Graphs"
+   * @param width     is the width of one graph
+   * @param height    is the height of the graphs
    */
-  void saveImage(String filePath, String imageName, BufferedImage image);
+  void saveVectorImages(String filePath, String imageName, String fileType, List<String> graphs,
+      double width, double height);
 
   /**
    * Gets the column values for the given value.
@@ -0,0 +1,46 @@
+package controller.commands;
+
+/**
+ * Averages runs that were measured more than once. Each group of consecutive runs becomes one run,
+ * the last group may have fewer runs.
+ */
+public class AverageReplicates implements CSVCommand {
+
+  private final int replicates;
+
+  /**
+   * Averages every group of the given number of runs.
+   *
+   * @param replicates is how many times each run was measured
+   * @throws IllegalArgumentException if there is less than one replicate
+   */
+  public AverageReplicates(int replicates) throws IllegalArgumentException {
+    if (replicates < 1) {
+      throw new IllegalArgumentException("There must be at least one replicate");
+    }
+    this.replicates = replicates;
+  }
+
+  @Override
+  public void process(CommandBatch batch) {
+    int runs = batch.getRunCount();
+    int groups = (runs + this.replicates - 1) / this.replicates;
+    double[][] average = new double[groups][runs];
+    String[] labels = new String[groups];
+    for (int group = 0; group < groups; group++) {
+      int start = group * this.replicates;
+      int end = Math.min(start + this.replicates, runs);
+      for (int run = start; run < end; run++) {
+        average[group][run] = 1.0 / (end - start);
+      }
+      labels[group] = end - start == 1 ? batch.getLabel(start)
+          : batch.getLabel(start) + " (Average of " + (end - start) + ")";
+    }
+    batch.combine(average, labels);
+  }
+
+  @Override
+  public String describe() {
+    return "Average every " + this.replicates + " runs";
+  }
+}
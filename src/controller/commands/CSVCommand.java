@@ -1,9 +1,25 @@
 package controller.commands;
 
+/**
+ * A change to the loaded CSV that can be queued with others. Commands do not touch the data
+ * themselves, they add their change to a {@link CommandBatch} and the batch makes the new data in a
+ * single pass once every queued command has been added. Only commands that depend on the values,
+ * like normalizing, read the data before then.
+ */
 public interface CSVCommand {
 
   /**
-   * Processes the CSV that is provided.
+   * Adds this command's change to the batch.
+   *
+   * @param batch is the batch of queued commands
+   * @throws IllegalArgumentException if the command does not fit the data, such as a missing run
    */
-  void process();
+  void process(CommandBatch batch) throws IllegalArgumentException;
+
+  /**
+   * Describes the command for the views.
+   *
+   * @return a short description
+   */
+  String describe();
 }
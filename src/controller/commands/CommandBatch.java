@@ -0,0 +1,217 @@
+package controller.commands;
+
+import java.util.Arrays;
+import model.SpectrumData;
+
+/**
+ * The queued commands of a batch, folded together before any data is copied. Every command so far
+ * either keeps some of the rows or makes each run a weighted sum of the original runs, so a batch
+ * is just the rows it keeps and a weight for each original run in each new run. Building the batch
+ * then reads each original column once per new run that uses it, however many commands were
+ * queued. A command that needs the values so far, like normalizing, reads them once more with
+ * {@link #maxAbs()} when it is added.
+ */
+public final class CommandBatch {
+
+  private final SpectrumData source;
+  private int[] rows;
+  // weights[run][original] is how much of the original run is in the new run
+  private double[][] weights;
+  private String[] labels;
+
+  /**
+   * Starts a batch that changes nothing.
+   *
+   * @param source is the data the commands are for, it is never changed
+   */
+  public CommandBatch(SpectrumData source) {
+    this.source = source;
+    int runs = source.getRunCount();
+    this.rows = new int[source.getRowCount()];
+    for (int row = 0; row < this.rows.length; row++) {
+      this.rows[row] = row;
+    }
+    this.weights = new double[runs][runs];
+    for (int run = 0; run < runs; run++) {
+      this.weights[run][run] = 1;
+    }
+    this.labels = Arrays.copyOfRange(source.getLabels(), 1, runs + 1);
+  }
+
+  /**
+   * Number of runs the batch makes so far.
+   */
+  public int getRunCount() {
+    return this.weights.length;
+  }
+
+  /**
+   * Number of rows the batch keeps so far.
+   */
+  public int getRowCount() {
+    return this.rows.length;
+  }
+
+  /**
+   * Gets the label of a run the batch makes so far. Starts with 0.
+   *
+   * @param run is the run number
+   * @return the label, never null
+   */
+  public String getLabel(int run) {
+    String label = this.labels[run];
+    return label == null ? "Run " + (run + 1) : label;
+  }
+
+  /**
+   * Keeps only the rows whose wavelength is within the range, in the order they were.
+   *
+   * @param from is the lowest wavelength kept
+   * @param to   is the highest wavelength kept
+   * @throws IllegalArgumentException if no row would be kept
+   */
+  public void keepWavelengths(double from, double to) throws IllegalArgumentException {
+    double[] wavelengths = this.source.getWavelengths();
+    int kept = 0;
+    int[] keep = new int[this.rows.length];
+    for (int row : this.rows) {
+      if (wavelengths[row] >= from && wavelengths[row] <= to) {
+        keep[kept++] = row;
+      }
+    }
+    if (kept == 0) {
+      throw new IllegalArgumentException("No wavelengths between " + from + " and " + to);
+    }
+    this.rows = Arrays.copyOf(keep, kept);
+  }
+
+  /**
+   * Makes each new run a weighted sum of the runs the batch makes so far.
+   *
+   * @param matrix is the weight of each current run, matrix[newRun][run]
+   * @param labels is the label of each new run
+   * @throws IllegalArgumentException if the matrix and labels do not match the runs
+   */
+  public void combine(double[][] matrix, String[] labels) throws IllegalArgumentException {
+    if (matrix.length != labels.length) {
+      throw new IllegalArgumentException("Every new run needs a label");
+    }
+    int originals = this.source.getRunCount();
+    double[][] combined = new double[matrix.length][originals];
+    for (int run = 0; run < matrix.length; run++) {
+      if (matrix[run].length != this.weights.length) {
+        throw new IllegalArgumentException("Expected a weight for each of the "
+            + this.weights.length + " runs");
+      }
+      for (int current = 0; current < this.weights.length; current++) {
+        double weight = matrix[run][current];
+        if (weight != 0) {
+          for (int original = 0; original < originals; original++) {
+            combined[run][original] += weight * this.weights[current][original];
+          }
+        }
+      }
+    }
+    this.weights = combined;
+    this.labels = labels.clone();
+  }
+
+  /**
+   * Finds the largest absolute value of each run the batch makes so far, over the kept rows. This
+   * is a pass over the data of its own, before the batch is built. One scratch column is reused
+   * for every run, the data is not copied. Empty cells are skipped.
+   *
+   * @return the largest absolute value of each run, 0 if a run has no values
+   */
+  public double[] maxAbs() {
+    double[] max = new double[this.weights.length];
+    double[] scratch = new double[this.rows.length];
+    for (int run = 0; run < max.length; run++) {
+      Arrays.fill(scratch, 0);
+      this.sum(run, scratch);
+      double largest = 0;
+      for (double value : scratch) {
+        if (Math.abs(value) > largest) {
+          largest = Math.abs(value);
+        }
+      }
+      max[run] = largest;
+    }
+    return max;
+  }
+
+  /**
+   * Makes the data of every queued command, each original run is read once per new run that
+   * uses it. A new run that is an original run as it was is shared, not copied.
+   *
+   * @return the new data
+   */
+  public SpectrumData build() {
+    double[] wavelengths = this.source.getWavelengths();
+    boolean allRows = this.rows.length == wavelengths.length;
+    double[][] runs = new double[this.weights.length][];
+    for (int run = 0; run < runs.length; run++) {
+      int only = this.onlyOriginal(run);
+      if (only != -1 && allRows) {
+        runs[run] = this.source.getRun(only);
+      } else {
+        runs[run] = new double[this.rows.length];
+        this.sum(run, runs[run]);
+      }
+    }
+    String[] newLabels = new String[this.labels.length + 1];
+    newLabels[0] = this.source.getLabels()[0];
+    System.arraycopy(this.labels, 0, newLabels, 1, this.labels.length);
+    return new SpectrumData(newLabels, allRows ? wavelengths : this.gather(wavelengths), runs);
+  }
+
+  // Adds the weighted original runs of a run at the kept rows into the values
+  private void sum(int run, double[] values) {
+    if (values.length == 0) {
+      return;
+    }
+    // The kept rows are usually a single block, which is read without the row lookup
+    int first = this.rows[0];
+    boolean block = this.rows[this.rows.length - 1] - first == this.rows.length - 1;
+    for (int original = 0; original < this.weights[run].length; original++) {
+      double weight = this.weights[run][original];
+      if (weight == 0) {
+        continue;
+      }
+      double[] column = this.source.getRun(original);
+      if (block) {
+        for (int row = 0; row < values.length; row++) {
+          values[row] += weight * column[first + row];
+        }
+      } else {
+        for (int row = 0; row < values.length; row++) {
+          values[row] += weight * column[this.rows[row]];
+        }
+      }
+    }
+  }
+
+  // The original run if the new run is exactly it, else -1
+  private int onlyOriginal(int run) {
+    int only = -1;
+    for (int original = 0; original < this.weights[run].length; original++) {
+      double weight = this.weights[run][original];
+      if (weight == 0) {
+        continue;
+      }
+      if (weight != 1 || only != -1) {
+        return -1;
+      }
+      only = original;
+    }
+    return only;
+  }
+
+  private double[] gather(double[] column) {
+    double[] gathered = new double[this.rows.length];
+    for (int row = 0; row < gathered.length; row++) {
+      gathered[row] = column[this.rows[row]];
+    }
+    return gathered;
+  }
+}
@@ -0,0 +1,31 @@
+package controller.commands;
+
+/**
+ * Keeps only the wavelengths within a range.
+ */
+public class CropWavelengths implements CSVCommand {
+
+  private final double from;
+  private final double to;
+
+  /**
+   * Crops to the wavelengths between the two given, in either order.
+   *
+   * @param from is one end of the range
+   * @param to   is the other end of the range
+   */
+  public CropWavelengths(double from, double to) {
+    this.from = Math.min(from, to);
+    this.to = Math.max(from, to);
+  }
+
+  @Override
+  public void process(CommandBatch batch) throws IllegalArgumentException {
+    batch.keepWavelengths(this.from, this.to);
+  }
+
+  @Override
+  public String describe() {
+    return "Crop to " + this.from + " - " + this.to;
+  }
+}
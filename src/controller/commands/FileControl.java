@@ -1,9 +1,81 @@
 package controller.commands;
 
+import java.util.ArrayList;
+import java.util.List;
+import model.SpectrumData;
+
+/**
+ * The queue of commands for the loaded CSV. It is a command itself, processing it processes each
+ * queued command in order, so the whole queue is applied with one pass over the data, plus one for
+ * each queued command that has to look at the values, such as normalizing.
+ */
 public class FileControl implements CSVCommand {
 
+  private final List<CSVCommand> queued;
+
+  /**
+   * Makes an empty queue.
+   */
+  public FileControl() {
+    this.queued = new ArrayList<>();
+  }
+
+  /**
+   * Queues a command after the others.
+   *
+   * @param command is the command to queue
+   */
+  public void add(CSVCommand command) {
+    this.queued.add(command);
+  }
+
+  /**
+   * Gets the queued commands in order.
+   *
+   * @return a copy of the queue
+   */
+  public List<CSVCommand> getQueued() {
+    return new ArrayList<>(this.queued);
+  }
+
+  /**
+   * Checks if nothing is queued.
+   *
+   * @return true if the queue is empty
+   */
+  public boolean isEmpty() {
+    return this.queued.isEmpty();
+  }
+
+  /**
+   * Applies every queued command to the data.
+   *
+   * @param data is the data, it is not changed
+   * @return the new data
+   * @throws IllegalArgumentException if a command does not fit the data
+   */
+  public SpectrumData apply(SpectrumData data) throws IllegalArgumentException {
+    CommandBatch batch = new CommandBatch(data);
+    this.process(batch);
+    return batch.build();
+  }
+
   @Override
-  public void process() {
+  public void process(CommandBatch batch) throws IllegalArgumentException {
+    for (CSVCommand command : this.queued) {
+      command.process(batch);
+    }
+  }
 
+  @Override
+  public String describe() {
+    StringBuilder description = new StringBuilder();
+    for (CSVCommand command : this.queued) {
+      if (description.length() > 0) {
+        description.append(", then ");
+      }
+      description.append(command.describe());
+    }
+    return description.toString();
   }
 }
@@ -0,0 +1,26 @@
+package controller.commands;
+
+/**
+ * Scales each run so its largest absolute value is 1, runs that are all 0 are left as they are.
+ * The scale depends on the values, so the runs so far are read once when it is added to a batch.
+ */
+public class Normalize implements CSVCommand {
+
+  @Override
+  public void process(CommandBatch batch) {
+    double[] max = batch.maxAbs();
+    int runs = batch.getRunCount();
+    double[][] scale = new double[runs][runs];
+    String[] labels = new String[runs];
+    for (int run = 0; run < runs; run++) {
+      scale[run][run] = max[run] == 0 ? 1 : 1 / max[run];
+      labels[run] = batch.getLabel(run);
+    }
+    batch.combine(scale, labels);
+  }
+
+  @Override
+  public String describe() {
+    return "Normalize each run";
+  }
+}
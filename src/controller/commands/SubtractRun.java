@@ -0,0 +1,40 @@
+package controller.commands;
+
+/**
+ * Subtracts one run, such as the run before any metal was added, from every run so only the
+ * changes are left. The subtracted run becomes all 0.
+ */
+public class SubtractRun implements CSVCommand {
+
+  private final int run;
+
+  /**
+   * Subtracts the given run. Starts with 0.
+   *
+   * @param run is the run to subtract
+   */
+  public SubtractRun(int run) {
+    this.run = run;
+  }
+
+  @Override
+  public void process(CommandBatch batch) throws IllegalArgumentException {
+    int runs = batch.getRunCount();
+    if (this.run < 0 || this.run >= runs) {
+      throw new IllegalArgumentException("No run at " + this.run);
+    }
+    double[][] difference = new double[runs][runs];
+    String[] labels = new String[runs];
+    for (int each = 0; each < runs; each++) {
+      difference[each][each] += 1;
+      difference[each][this.run] -= 1;
+      labels[each] = batch.getLabel(each) + " - " + batch.getLabel(this.run);
+    }
+    batch.combine(difference, labels);
+  }
+
+  @Override
+  public String describe() {
+    return "Subtract run " + (this.run + 1);
+  }
+}
@@ -0,0 +1,697 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fits metal binding isotherms to the absorbance of a titration by nonlinear least squares
+ * (Levenberg-Marquardt). The absorbance at a wavelength is a sum of one absorbance per species
+ * weighted by how much of the peptide is in that species, so only the dissociation constants are
+ * nonlinear and the species absorbances are solved exactly for each guess of them. The constants
+ * are fit as logarithms so they stay positive, and their confidence intervals come from the
+ * covariance of the fit. Fitting every wavelength runs on a ForkJoinPool, and a global fit
+ * shares the constants between every wavelength while each wavelength keeps its own absorbances.
+ */
+public class BindingFitter {
+
+  // Stops once the sum of squares improves by less than this fraction
+  private static final double TOLERANCE = 1e-8;
+  private static final int MAX_ITERATIONS = 200;
+  // Constants are kept from 1e-10 to 1e6 times the peptide, past that the data cannot tell them
+  private static final double LOWEST_LOG_KD = -10 * Math.log(10);
+  private static final double HIGHEST_LOG_KD = 6 * Math.log(10);
+  // How close, in log units, a constant can come to the edge of the range before it is at it
+  private static final double BOUND_EPSILON = 1e-6;
+  // Rows fit by one task before the work is split no further
+  private static final int ROWS_PER_TASK = 8;
+  // Two-sided 95% Student t values for 1 to 30 degrees of freedom
+  private static final double[] T_95 = new double[]{12.706, 4.303, 3.182, 2.776, 2.571, 2.447,
+      2.365, 2.306, 2.262, 2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093,
+      2.086, 2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+  /**
+   * How many metals bind to the peptide.
+   */
+  public enum Isotherm {
+    /**
+     * P + M = PM with one dissociation constant.
+     */
+    ONE_TO_ONE(1),
+    /**
+     * P + M = PM and PM + M = PM2 with a dissociation constant for each step.
+     */
+    ONE_TO_TWO(2);
+
+    private final int constants;
+
+    Isotherm(int constants) {
+      this.constants = constants;
+    }
+
+    /**
+     * Number of dissociation constants.
+     */
+    public int constants() {
+      return this.constants;
+    }
+
+    /**
+     * Number of species the peptide can be in, each has its own absorbance.
+     */
+    public int species() {
+      return this.constants + 1;
+    }
+  }
+
+  /**
+   * A fitted isotherm.
+   *
+   * @param isotherm    is the isotherm that was fit
+   * @param wavelength  is the wavelength that was fit, NaN for a global fit
+   * @param kd          is each dissociation constant, in the units of the concentrations
+   * @param kdLower     is the lower end of the 95% confidence interval of each constant, NaN if
+   *                    the data cannot set the constant
+   * @param kdUpper     is the upper end of the 95% confidence interval of each constant, NaN if
+   *                    the data cannot set the constant
+   * @param absorbances is the absorbance of each species, null for a global fit as every
+   *                    wavelength has its own or if the fit failed
+   * @param sse         is the sum of squared residuals
+   * @param points      is how many absorbances were fit
+   * @param iterations  is how many Levenberg-Marquardt steps were taken
+   * @param converged   is if the fit stopped improving before running out of steps with every
+   *                    constant inside its range
+   */
+  public record Fit(Isotherm isotherm, double wavelength, double[] kd, double[] kdLower,
+                    double[] kdUpper, double[] absorbances, double sse, int points,
+                    int iterations, boolean converged) {
+
+  }
+
+  private final Isotherm isotherm;
+  private final double peptide;
+  private final double[] metal;
+  private final ForkJoinPool pool;
+
+  /**
+   * Makes a fitter for a titration, fitting every wavelength uses the common ForkJoinPool.
+   *
+   * @param isotherm is the isotherm to fit
+   * @param peptide  is the total peptide concentration
+   * @param metal    is the total metal concentration at each run, in the same units
+   * @throws IllegalArgumentException if the concentrations cannot be fit
+   */
+  public BindingFitter(Isotherm isotherm, double peptide, double[] metal)
+      throws IllegalArgumentException {
+    this(isotherm, peptide, metal, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Makes a fitter for a titration.
+   *
+   * @param isotherm is the isotherm to fit
+   * @param peptide  is the total peptide concentration
+   * @param metal    is the total metal concentration at each run, in the same units
+   * @param pool     is where every wavelength is fit
+   * @throws IllegalArgumentException if the concentrations cannot be fit
+   */
+  public BindingFitter(Isotherm isotherm, double peptide, double[] metal, ForkJoinPool pool)
+      throws IllegalArgumentException {
+    if (!(peptide > 0)) {
+      throw new IllegalArgumentException("The peptide concentration must be positive");
+    }
+    if (metal.length < isotherm.species() + isotherm.constants() + 1) {
+      throw new IllegalArgumentException(
+          "A " + name(isotherm) + " fit needs more than " + metal.length + " runs");
+    }
+    this.isotherm = isotherm;
+    this.peptide = peptide;
+    this.metal = metal.clone();
+    this.pool = pool;
+  }
+
+  /**
+   * Gives the metal concentration of each run when the same amount is added every run and the
+   * first run has none.
+   *
+   * @param runs        is the number of runs
+   * @param metalPerRun is the metal concentration added each run
+   * @return the total metal concentration at each run
+   */
+  public static double[] evenAdditions(int runs, double metalPerRun) {
+    double[] metal = new double[runs];
+    for (int run = 0; run < runs; run++) {
+      metal[run] = run * metalPerRun;
+    }
+    return metal;
+  }
+
+  /**
+   * Names an isotherm the way it is written, like "1:2".
+   *
+   * @param isotherm is the isotherm
+   * @return its name
+   */
+  public static String name(Isotherm isotherm) {
+    return "1:" + isotherm.constants();
+  }
+
+  /**
+   * Fits the absorbance of every run at one wavelength, runs that are NaN are left out.
+   *
+   * @param wavelength  is the wavelength the absorbances are from
+   * @param absorbances is the absorbance of each run
+   * @return the fit
+   * @throws IllegalArgumentException if there is not one absorbance per run
+   */
+  public Fit fit(double wavelength, double[] absorbances) throws IllegalArgumentException {
+    if (absorbances.length != this.metal.length) {
+      throw new IllegalArgumentException(
+          "Expected " + this.metal.length + " runs but got " + absorbances.length);
+    }
+    return this.profiledFit(wavelength, new double[][]{absorbances}, false);
+  }
+
+  /**
+   * Fits every wavelength on its own, in parallel.
+   *
+   * @param data is the titration, with a run for each metal concentration
+   * @return the fit of each row
+   * @throws IllegalArgumentException if the data does not have a run per metal concentration
+   */
+  public Fit[] fitEach(SpectrumData data) throws IllegalArgumentException {
+    this.checkRuns(data);
+    Fit[] fits = new Fit[data.getRowCount()];
+    this.pool.invoke(new RangeTask(0, fits.length, ROWS_PER_TASK, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        fits[row] = this.fit(data.getWavelengths()[row], data.getRow(row));
+      }
+    }));
+    return fits;
+  }
+
+  /**
+   * Fits the same dissociation constants to every wavelength at once, each wavelength keeps its
+   * own species absorbances. The wavelengths are solved in parallel.
+   *
+   * @param data is the titration, with a run for each metal concentration
+   * @return the global fit
+   * @throws IllegalArgumentException if the data does not have a run per metal concentration
+   */
+  public Fit fitGlobal(SpectrumData data) throws IllegalArgumentException {
+    this.checkRuns(data);
+    double[][] absorbances = new double[data.getRowCount()][];
+    for (int row = 0; row < absorbances.length; row++) {
+      absorbances[row] = data.getRow(row);
+    }
+    return this.profiledFit(Double.NaN, absorbances, true);
+  }
+
+  // Searches only the log constants, for each try every row's species absorbances are solved
+  // exactly by linear least squares (variable projection)
+  private Fit profiledFit(double wavelength, double[][] absorbances, boolean parallel) {
+    int rows = absorbances.length;
+    int species = this.isotherm.species();
+    int constants = this.isotherm.constants();
+    boolean[][] used = new boolean[rows][];
+    int[] offsets = new int[rows + 1];
+    int fitted = 0;
+    for (int row = 0; row < rows; row++) {
+      used[row] = usable(absorbances[row]);
+      int points = count(used[row]);
+      // Rows with too few points add nothing but their own absorbances
+      if (points <= species) {
+        Arrays.fill(used[row], false);
+        points = 0;
+      } else {
+        fitted += species;
+      }
+      offsets[row + 1] = offsets[row] + points;
+    }
+    int points = offsets[rows];
+    // Absorbances that never change fit every constant equally well
+    boolean changes = false;
+    for (int row = 0; row < rows && !changes; row++) {
+      changes = offsets[row + 1] > offsets[row] && !flat(absorbances[row], used[row]);
+    }
+    if (points <= fitted + constants || !changes) {
+      return this.failed(wavelength, points);
+    }
+
+    double[] start = this.gridStart(absorbances, used);
+    Solution solution = levenbergMarquardt((logKd, residuals) -> {
+      double[][] fractions = this.speciesAt(logKd);
+      RangeTask.RangeWork residualsOf = (from, to) -> {
+        for (int row = from; row < to; row++) {
+          if (offsets[row + 1] == offsets[row]) {
+            continue;
+          }
+          double[] amounts = this.linearFit(fractions, absorbances[row], used[row]);
+          int point = offsets[row];
+          for (int run = 0; run < this.metal.length; run++) {
+            if (used[row][run]) {
+              double model = 0;
+              for (int s = 0; s < species; s++) {
+                model += amounts[s] * fractions[run][s];
+              }
+              residuals[point++] = model - absorbances[row][run];
+            }
+          }
+        }
+      };
+      if (parallel) {
+        this.pool.invoke(new RangeTask(0, rows, ROWS_PER_TASK, residualsOf));
+      } else {
+        residualsOf.run(0, rows);
+      }
+    }, start, points);
+    // The solved absorbances count against the degrees of freedom too
+    solution.dof = points - fitted - constants;
+    double[] amounts = rows == 1
+        ? this.linearFit(this.speciesAt(solution.params), absorbances[0], used[0]) : null;
+    return this.toFit(wavelength, solution, points, amounts);
+  }
+
+  /**
+   * Gives the fraction of the peptide in each species at each run.
+   *
+   * @param kd is each dissociation constant
+   * @return the fractions, [run][species] with the free peptide first
+   */
+  public double[][] speciesFractions(double[] kd) {
+    double[] logKd = new double[kd.length];
+    for (int i = 0; i < kd.length; i++) {
+      logKd[i] = Math.log(kd[i]);
+    }
+    return this.speciesAt(logKd);
+  }
+
+  private double[][] speciesAt(double[] unclamped) {
+    double[] logKd = new double[unclamped.length];
+    for (int c = 0; c < logKd.length; c++) {
+      logKd[c] = this.clampLog(unclamped[c]);
+    }
+    double[][] fractions = new double[this.metal.length][this.isotherm.species()];
+    for (int run = 0; run < this.metal.length; run++) {
+      if (this.isotherm == Isotherm.ONE_TO_ONE) {
+        // Bound fraction from the quadratic, written so it does not lose precision
+        double kd = Math.exp(logKd[0]);
+        double total = this.metal[run];
+        double b = this.peptide + total + kd;
+        double bound = 2 * total / (b + Math.sqrt(Math.max(b * b - 4 * this.peptide * total, 0)));
+        fractions[run][0] = 1 - bound;
+        fractions[run][1] = bound;
+      } else {
+        double k1 = Math.exp(logKd[0]);
+        double k12 = k1 * Math.exp(logKd[1]);
+        double free = this.freeMetal(this.metal[run], k1, k12);
+        double denominator = 1 + free / k1 + free * free / k12;
+        fractions[run][0] = 1 / denominator;
+        fractions[run][1] = free / k1 / denominator;
+        fractions[run][2] = free * free / k12 / denominator;
+      }
+    }
+    return fractions;
+  }
+
+  // Free metal of the 1:2 isotherm, the metal balance rises with it so Newton steps are kept
+  // inside a shrinking bracket
+  private double freeMetal(double total, double k1, double k12) {
+    if (total <= 0) {
+      return 0;
+    }
+    double low = 0;
+    double high = total;
+    double free = total / 2;
+    for (int i = 0; i < 100; i++) {
+      double u = free / k1;
+      double v = free * free / k12;
+      double denominator = 1 + u + v;
+      double balance = free + this.peptide * (u + 2 * v) / denominator - total;
+      if (balance > 0) {
+        high = free;
+      } else {
+        low = free;
+      }
+      double du = 1 / k1;
+      double dv = 2 * free / k12;
+      double slope = 1 + this.peptide * ((du + 2 * dv) * denominator - (u + 2 * v) * (du + dv))
+          / (denominator * denominator);
+      double next = free - balance / slope;
+      if (!(next > low && next < high)) {
+        next = (low + high) / 2;
+      }
+      if (Math.abs(next - free) <= 1e-14 * total) {
+        return next;
+      }
+      free = next;
+    }
+    return free;
+  }
+
+  // Searches log constants from 1e-7 to 1e3 times the peptide for the smallest sum of squares
+  private double[] gridStart(double[][] absorbances, boolean[][] used) {
+    int constants = this.isotherm.constants();
+    double center = Math.log(this.peptide);
+    int steps = 11;
+    double[] best = new double[constants];
+    double bestSse = Double.POSITIVE_INFINITY;
+    int[] at = new int[constants];
+    double[] logKd = new double[constants];
+    for (int tried = 0; tried < Math.pow(steps, constants); tried++) {
+      int rest = tried;
+      for (int c = 0; c < constants; c++) {
+        at[c] = rest % steps;
+        rest /= steps;
+        logKd[c] = center + (at[c] - 7) * Math.log(10);
+      }
+      double[][] fractions = this.speciesAt(logKd);
+      double sse = 0;
+      for (int row = 0; row < absorbances.length; row++) {
+        if (count(used[row]) > this.isotherm.species()) {
+          sse += this.linearSse(fractions, absorbances[row], used[row]);
+        }
+      }
+      if (sse < bestSse) {
+        bestSse = sse;
+        best = logKd.clone();
+      }
+    }
+    return best;
+  }
+
+  // Best species absorbances for fixed fractions, by the normal equations
+  private double[] linearFit(double[][] fractions, double[] absorbances, boolean[] used) {
+    int species = this.isotherm.species();
+    double[][] normal = new double[species][species];
+    double[] right = new double[species];
+    for (int run = 0; run < absorbances.length; run++) {
+      if (used[run]) {
+        for (int i = 0; i < species; i++) {
+          right[i] += fractions[run][i] * absorbances[run];
+          for (int j = 0; j < species; j++) {
+            normal[i][j] += fractions[run][i] * fractions[run][j];
+          }
+        }
+      }
+    }
+    // A tiny ridge keeps species that are never present from making the system singular
+    for (int i = 0; i < species; i++) {
+      normal[i][i] += 1e-12 * (1 + normal[i][i]);
+    }
+    double[] amounts = solve(normal, right);
+    return amounts == null ? new double[species] : amounts;
+  }
+
+  private double linearSse(double[][] fractions, double[] absorbances, boolean[] used) {
+    double[] amounts = this.linearFit(fractions, absorbances, used);
+    double sse = 0;
+    for (int run = 0; run < absorbances.length; run++) {
+      if (used[run]) {
+        double residual = -absorbances[run];
+        for (int s = 0; s < amounts.length; s++) {
+          residual += amounts[s] * fractions[run][s];
+        }
+        sse += residual * residual;
+      }
+    }
+    return sse;
+  }
+
+  // Turns the log constants of a solution into constants with confidence intervals
+  private Fit toFit(double wavelength, Solution solution, int points, double[] absorbances) {
+    int constants = this.isotherm.constants();
+    double[] kd = new double[constants];
+    double[] lower = new double[constants];
+    double[] upper = new double[constants];
+    double t = solution.dof <= 0 ? Double.NaN
+        : solution.dof <= T_95.length ? T_95[solution.dof - 1] : 1.96;
+    double variance = solution.dof <= 0 ? Double.NaN : solution.sse / solution.dof;
+    boolean atBound = false;
+    for (int c = 0; c < constants; c++) {
+      int param = c;
+      double logKd = this.clampLog(solution.params[param]);
+      kd[c] = Math.exp(logKd);
+      // A constant at or next to the edge of the range is not set by the data, so it has no
+      // interval and the fit did not settle
+      boolean bounded = this.nearBound(solution.params[param]);
+      atBound |= bounded;
+      double error = solution.inverse == null || bounded ? Double.NaN
+          : Math.sqrt(Math.max(variance * solution.inverse[param][param], 0));
+      lower[c] = Math.exp(logKd - t * error);
+      upper[c] = Math.exp(logKd + t * error);
+    }
+    return new Fit(this.isotherm, wavelength, kd, lower, upper, absorbances, solution.sse,
+        points, solution.iterations, solution.converged && !atBound);
+  }
+
+  private boolean nearBound(double logKd) {
+    double center = Math.log(this.peptide);
+    return logKd <= center + LOWEST_LOG_KD + BOUND_EPSILON
+        || logKd >= center + HIGHEST_LOG_KD - BOUND_EPSILON;
+  }
+
+  private double clampLog(double logKd) {
+    double center = Math.log(this.peptide);
+    return Math.min(Math.max(logKd, center + LOWEST_LOG_KD), center + HIGHEST_LOG_KD);
+  }
+
+  private Fit failed(double wavelength, int points) {
+    double[] none = new double[this.isotherm.constants()];
+    Arrays.fill(none, Double.NaN);
+    return new Fit(this.isotherm, wavelength, none, none.clone(), none.clone(), null, Double.NaN,
+        points, 0, false);
+  }
+
+  private void checkRuns(SpectrumData data) throws IllegalArgumentException {
+    if (data.getRunCount() != this.metal.length) {
+      throw new IllegalArgumentException("The CSV has " + data.getRunCount()
+          + " runs but there are " + this.metal.length + " metal concentrations");
+    }
+  }
+
+  private static boolean[] usable(double[] absorbances) {
+    boolean[] used = new boolean[absorbances.length];
+    for (int run = 0; run < absorbances.length; run++) {
+      used[run] = Double.isFinite(absorbances[run]);
+    }
+    return used;
+  }
+
+  private static boolean flat(double[] absorbances, boolean[] used) {
+    double first = Double.NaN;
+    for (int run = 0; run < absorbances.length; run++) {
+      if (used[run]) {
+        if (Double.isNaN(first)) {
+          first = absorbances[run];
+        } else if (absorbances[run] != first) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static int count(boolean[] used) {
+    int count = 0;
+    for (boolean use : used) {
+      count += use ? 1 : 0;
+    }
+    return count;
+  }
+
+  /**
+   * Fills in the residual of every point for the given parameters.
+   */
+  private interface Residuals {
+
+    void evaluate(double[] params, double[] residuals);
+  }
+
+  // The end of a least squares fit, inverse is of the final J^T J
+  private static final class Solution {
+
+    double[] params;
+    double sse;
+    double[][] inverse;
+    int iterations;
+    int dof;
+    boolean converged;
+  }
+
+  // Levenberg-Marquardt with a forward difference Jacobian and Marquardt's diagonal scaling
+  private static Solution levenbergMarquardt(Residuals function, double[] start, int points) {
+    int count = start.length;
+    double[] params = start.clone();
+    double[] residuals = new double[points];
+    double[] trial = new double[points];
+    double[][] jacobian = new double[points][count];
+    function.evaluate(params, residuals);
+    double sse = sumOfSquares(residuals);
+    double lambda = 1e-3;
+    int iteration = 0;
+    boolean converged = false;
+    double[][] normal = new double[count][count];
+    while (iteration < MAX_ITERATIONS && !converged) {
+      iteration++;
+      jacobian(function, params, residuals, jacobian, trial);
+      double[] gradient = new double[count];
+      for (int i = 0; i < count; i++) {
+        Arrays.fill(normal[i], 0);
+      }
+      for (int point = 0; point < points; point++) {
+        double[] row = jacobian[point];
+        for (int i = 0; i < count; i++) {
+          gradient[i] += row[i] * residuals[point];
+          for (int j = 0; j <= i; j++) {
+            normal[i][j] += row[i] * row[j];
+          }
+        }
+      }
+      for (int i = 0; i < count; i++) {
+        for (int j = 0; j < i; j++) {
+          normal[j][i] = normal[i][j];
+        }
+      }
+      // Raises the damping until a step lowers the sum of squares
+      boolean improved = false;
+      while (!improved && lambda < 1e16) {
+        double[][] damped = new double[count][];
+        double[] negative = new double[count];
+        for (int i = 0; i < count; i++) {
+          damped[i] = normal[i].clone();
+          damped[i][i] += lambda * Math.max(normal[i][i], 1e-12);
+          negative[i] = -gradient[i];
+        }
+        double[] step = solve(damped, negative);
+        if (step == null) {
+          lambda *= 10;
+          continue;
+        }
+        double[] next = params.clone();
+        for (int i = 0; i < count; i++) {
+          next[i] += step[i];
+        }
+        function.evaluate(next, trial);
+        double nextSse = sumOfSquares(trial);
+        if (nextSse < sse) {
+          improved = true;
+          double largest = 0;
+          for (int i = 0; i < count; i++) {
+            largest = Math.max(largest, Math.abs(step[i]) / (Math.abs(params[i]) + 1e-10));
+          }
+          converged = (sse - nextSse) <= TOLERANCE * Math.max(sse, Double.MIN_NORMAL)
+              || largest <= TOLERANCE;
+          params = next;
+          sse = nextSse;
+          System.arraycopy(trial, 0, residuals, 0, points);
+          lambda = Math.max(lambda / 10, 1e-12);
+        } else {
+          lambda *= 10;
+        }
+      }
+      if (!improved) { // No step helps, so this is the minimum
+        converged = true;
+      }
+    }
+
+    Solution solution = new Solution();
+    jacobian(function, params, residuals, jacobian, trial);
+    double[][] finalNormal = new double[count][count];
+    for (double[] row : jacobian) {
+      for (int i = 0; i < count; i++) {
+        for (int j = 0; j < count; j++) {
+          finalNormal[i][j] += row[i] * row[j];
+        }
+      }
+    }
+    solution.params = params;
+    solution.sse = sse;
+    solution.inverse = invert(finalNormal);
+    solution.iterations = iteration;
+    solution.dof = points - count;
+    solution.converged = converged;
+    return solution;
+  }
+
+  private static void jacobian(Residuals function, double[] params, double[] residuals,
+      double[][] jacobian, double[] shifted) {
+    double[] moved = params.clone();
+    for (int i = 0; i < params.length; i++) {
+      double step = 1e-7 * Math.max(Math.abs(params[i]), 1);
+      moved[i] = params[i] + step;
+      function.evaluate(moved, shifted);
+      for (int point = 0; point < residuals.length; point++) {
+        jacobian[point][i] = (shifted[point] - residuals[point]) / step;
+      }
+      moved[i] = params[i];
+    }
+  }
+
+  private static double sumOfSquares(double[] values) {
+    double sum = 0;
+    for (double value : values) {
+      sum += value * value;
+    }
+    return Double.isNaN(sum) ? Double.POSITIVE_INFINITY : sum;
+  }
+
+  // Gaussian elimination with partial pivoting, null if the matrix is singular
+  private static double[] solve(double[][] matrix, double[] right) {
+    int size = right.length;
+    double[][] a = new double[size][];
+    double[] b = right.clone();
+    for (int i = 0; i < size; i++) {
+      a[i] = matrix[i].clone();
+    }
+    for (int col = 0; col < size; col++) {
+      int pivot = col;
+      for (int row = col + 1; row < size; row++) {
+        if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+          pivot = row;
+        }
+      }
+      if (!(Math.abs(a[pivot][col]) > 0)) {
+        return null;
+      }
+      double[] swap = a[col];
+      a[col] = a[pivot];
+      a[pivot] = swap;
+      double swapB = b[col];
+      b[col] = b[pivot];
+      b[pivot] = swapB;
+      for (int row = col + 1; row < size; row++) {
+        double factor = a[row][col] / a[col][col];
+        for (int k = col; k < size; k++) {
+          a[row][k] -= factor * a[col][k];
+        }
+        b[row] -= factor * b[col];
+      }
+    }
+    double[] x = new double[size];
+    for (int row = size - 1; row >= 0; row--) {
+      double sum = b[row];
+      for (int k = row + 1; k < size; k++) {
+        sum -= a[row][k] * x[k];
+      }
+      x[row] = sum / a[row][row];
+    }
+    return x;
+  }
+
+  private static double[][] invert(double[][] matrix) {
+    int size = matrix.length;
+    double[][] inverse = new double[size][size];
+    for (int col = 0; col < size; col++) {
+      double[] unit = new double[size];
+      unit[col] = 1;
+      double[] column = solve(matrix, unit);
+      if (column == null) {
+        return null;
+      }
+      for (int row = 0; row < size; row++) {
+        inverse[row][col] = column[row];
+      }
+    }
+    return inverse;
+  }
+}
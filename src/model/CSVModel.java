@@ -1,7 +1,7 @@
 package model;
 
-import com.opencsv.CSVReader;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Model that handles CSV files
@@ -23,6 +23,38 @@ public interface CSVModel {
    */
   void loadCSV(String filePath);
 
+  /**
+   * Loads, and edits if asked, a CSV file into the model's storage without changing the loaded
+   * CSV. This is safe to call from many threads at once.
+   *
+   * @param filePath is the given CSV file.
+   * @param edit     is if the file should be edited like loadAndEditCSV
+   * @return the name the file is stored by
+   * @throws IllegalArgumentException if the file cannot be read
+   */
+  String storeCSV(String filePath, boolean edit) throws IllegalArgumentException;
+
+  /**
+   * Stores data already read from a CSV file, such as one that is still being written, under the
+   * file's name. The loaded CSV is not changed, use useCSV to show the new data.
+   *
+   * @param filePath is the CSV file the data was read from
+   * @param edit     is if the data was edited like loadAndEditCSV
+   * @param data     is the data read from the file
+   * @return the name the file is stored by
+   * @throws IllegalArgumentException if the file is not a csv
+   */
+  String storeCSV(String filePath, boolean edit, SpectrumData data)
+      throws IllegalArgumentException;
+
+  /**
+   * Makes a stored CSV the loaded one.
+   *
+   * @param fileName is the name the file is stored by
+   * @throws IllegalArgumentException if the file name does not match any stored files
+   */
+  void useCSV(String fileName) throws IllegalArgumentException;
+
   /**
    * Saves a CSV file in the given filePath, if it is null it will save where the image was loaded.
    *
@@ -41,21 +73,123 @@ public interface CSVModel {
   int getCols();
 
   /**
-   * Returns the given CSV if it exits.
+   * Changes the values of some runs at a wavelength of the loaded CSV. The edits are kept apart
+   * from the parsed file and last until another CSV is used, save the CSV to keep them.
+   *
+   * @param wavelength is the exact wavelength of the values
+   * @param runs       is each run that is changed, starting with 0
+   * @param values     is the new value of each run
+   * @throws IllegalArgumentException if there is no loaded CSV or no such wavelength or run
+   */
+  void editValues(double wavelength, int[] runs, double[] values) throws IllegalArgumentException;
+
+  /**
+   * Gets the edits of the loaded CSV, which can be kept to set them back later.
+   *
+   * @return the edits, never changed once made
+   */
+  SpectrumEdits getEdits();
+
+  /**
+   * Sets the edits of the loaded CSV back to edits it had before.
+   *
+   * @param edits is edits from getEdits
+   * @throws IllegalArgumentException if the edits were made for another CSV
+   */
+  void setEdits(SpectrumEdits edits) throws IllegalArgumentException;
+
+  /**
+   * Sets the corrections applied to every CSV the model gives back, the loaded CSV included. The
+   * parsed files are kept as they were read, so changing the corrections never parses a file
+   * again and the corrected data is cached for each set of corrections.
+   *
+   * @param pipeline is the corrections in the order they are applied
+   */
+  void setPipeline(SpectrumPipeline pipeline);
+
+  /**
+   * Gets the corrections applied to every CSV the model gives back.
+   *
+   * @return the corrections, empty if there are none
+   */
+  SpectrumPipeline getPipeline();
+
+  /**
+   * Returns the given CSV if it exits, with the corrections of the pipeline applied.
+   *
+   * @param fileName is the name of the desired csv
+   * @return the parsed csv
+   * @throws IllegalArgumentException if the file name does not match any stored files
+   */
+  SpectrumData getCSV(String fileName) throws IllegalArgumentException;
+
+  /**
+   * Returns the given CSV as it was read, with its edits but without the corrections of the
+   * pipeline.
    *
    * @param fileName is the name of the desired csv
-   * @return the given csv as a bufferedReader
+   * @return the parsed csv
    * @throws IllegalArgumentException if the file name does not match any stored files
    */
-  CSVReader getCSV(String fileName) throws IllegalArgumentException;
+  SpectrumData getUncorrectedCSV(String fileName) throws IllegalArgumentException;
 
   /**
    * Puts a file inside the model's storage.
    *
    * @param fileName is the alias the file will go by
-   * @param file     is the file itself
+   * @param file     is the parsed file itself
+   */
+  void putInStorage(String fileName, SpectrumData file);
+
+  /**
+   * Gets the names of every stored CSV.
+   *
+   * @return the stored names in order
+   */
+  List<String> storedCSVs();
+
+  /**
+   * Gets how the storage of parsed files is doing, such as its hits, misses and evictions.
+   *
+   * @return each statistic by name
+   */
+  Map<String, Long> storageStats();
+
+  /**
+   * Gets the wavelengths of the loaded CSV.
+   *
+   * @return the wavelength of every row, without the header
+   * @throws IllegalArgumentException if there is no loaded CSV
+   */
+  double[] getWavelengths() throws IllegalArgumentException;
+
+  /**
+   * Gets the absorbance of a single run of the loaded CSV. Starts with 0.
+   *
+   * @param run is the run number
+   * @return the absorbance at every wavelength
+   * @throws IllegalArgumentException if there is no loaded CSV or no such run
+   */
+  double[] getRun(int run) throws IllegalArgumentException;
+
+  /**
+   * Gets the absorbance of every run at a wavelength of the loaded CSV.
+   *
+   * @param wavelength is the wavelength/row value
+   * @return the absorbance of each run
+   * @throws IllegalArgumentException if there is no loaded CSV or no such wavelength
+   */
+  double[] getRowAt(double wavelength) throws IllegalArgumentException;
+
+  /**
+   * Gets the closest wavelength of the loaded CSV that is within the tolerance.
+   *
+   * @param wavelength is the wavelength/row value
+   * @param tolerance  is how far away the closest wavelength may be
+   * @return the closest loaded wavelength
+   * @throws IllegalArgumentException if there is no loaded CSV or nothing is close enough
    */
-  void putInStorage(String fileName, CSVReader file);
+  double nearestWavelength(double wavelength, double tolerance) throws IllegalArgumentException;
 
   /**
    * Gets the row for a specific wavelength/row value.
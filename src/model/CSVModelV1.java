@@ -3,89 +3,152 @@ package model;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.opencsv.exceptions.CsvException;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class that works to load and/or edit a csv file.
  */
 public class CSVModelV1 implements CSVModel {
 
-  private final Map<String, CSVReader> storedFiles;
+  private final SpectrumCache storedFiles;
+  private final Map<String, SpectrumCache.Key> storedKeys;
+  private final Map<String, String> storedPaths;
+  private final boolean sidecars;
+  private final boolean editedCopies;
+  // Versions data that has no file of its own, so corrections of older data are never served
+  private final AtomicLong versions;
+  private volatile SpectrumPipeline pipeline;
   private String defaultPath;
-  private CSVReader file;
-  private List<String[]> data;
-  private List<String> waveLengths;
+  private SpectrumData raw;
+  private SpectrumEdits edits;
+  private SpectrumData edited;
+  private SpectrumData data;
   private String fileName;
 
   /**
-   * Main constructor that creates an empty model.
+   * Main constructor that creates an empty model, parsed files may use a quarter of the heap.
    */
   public CSVModelV1() {
-    this.storedFiles = new HashMap<>();
+    this(Runtime.getRuntime().maxMemory() / 4);
+  }
+
+  /**
+   * Creates an empty model whose parsed files may use about the given memory.
+   *
+   * @param maxStoredBytes is about how many bytes the stored files may use
+   */
+  public CSVModelV1(long maxStoredBytes) {
+    this(maxStoredBytes, true);
+  }
+
+  /**
+   * Creates an empty model whose parsed files may use about the given memory.
+   *
+   * @param maxStoredBytes is about how many bytes the stored files may use
+   * @param sidecars       is if a binary copy is kept next to each csv so it is only parsed once
+   */
+  public CSVModelV1(long maxStoredBytes, boolean sidecars) {
+    this(maxStoredBytes, sidecars, true);
+  }
+
+  /**
+   * Creates an empty model whose parsed files may use about the given memory.
+   *
+   * @param maxStoredBytes is about how many bytes the stored files may use
+   * @param sidecars       is if a binary copy is kept next to each csv so it is only parsed once
+   * @param editedCopies   is if an edited csv is written next to the csv it was edited from,
+   *                       otherwise it is only edited in memory until it is saved
+   */
+  public CSVModelV1(long maxStoredBytes, boolean sidecars, boolean editedCopies) {
+    this.storedFiles = new SpectrumCache(maxStoredBytes);
+    this.storedKeys = new ConcurrentHashMap<>();
+    this.storedPaths = new ConcurrentHashMap<>();
+    this.sidecars = sidecars;
+    this.editedCopies = editedCopies;
+    this.versions = new AtomicLong();
+    this.pipeline = SpectrumPipeline.NONE;
+    this.edits = SpectrumEdits.NONE;
   }
 
   @Override
   public void loadAndEditCSV(String filePath) {
-    this.waveLengths = new ArrayList<>();
-    this.setDefaultPathInfo(filePath);
-    CSVReader csv;
-    String newFile = this.defaultPath + this.fileName + " (Edited).csv";
+    this.useCSV(this.storeCSV(filePath, true));
+  }
+
+  @Override
+  public void loadCSV(String filePath) {
+    this.useCSV(this.storeCSV(filePath, false));
+  }
+
+  @Override
+  public String storeCSV(String filePath, boolean edit) throws IllegalArgumentException {
+    String[] pathInfo = pathInfo(filePath);
+    String directory = pathInfo[0];
+    String name = pathInfo[1];
     try {
-      CSVWriter writer = new CSVWriter(new FileWriter(newFile));
-      csv = new CSVReader(new FileReader(filePath));
-      ArrayList<String[]> oldData = new ArrayList<>(csv.readAll());
-      ArrayList<String[]> newData = new ArrayList<>();
-      int maxCol = oldData.get(0).length;
-      for (String[] arr : oldData) {
-        String[] newArr = new String[arr.length - ((arr.length / 2) - 1)];
-        int newArrCol = 0;
-        for (int col = 0; col < maxCol; col++) {
-          if (newArrCol == 0) { // First column is wavelengths
-            newArr[0] = arr[col];
-            newArrCol++;
-          } else if (col == 1) { // latest run is second so move to end
-            newArr[newArr.length - 1] = arr[col];
-          } else if (col % 2 == 1) { // value from the wavelength
-            newArr[newArrCol] = arr[col];
-            newArrCol++;
+      SpectrumCache.Key key = SpectrumCache.Key.of(filePath, edit);
+      if (this.storedFiles.get(key) == null) { // Unchanged files are never parsed twice
+        SpectrumData parsed;
+        if (edit && this.editedCopies) {
+          String newFile = directory + name + " (Edited).csv";
+          parsed = readAndEditCSV(filePath, newFile);
+          this.writeSidecar(newFile, parsed);
+        } else if (edit) {
+          parsed = readAndEditCSV(filePath, null);
+        } else {
+          parsed = this.sidecars ? SpectrumSidecar.read(filePath) : null;
+          if (parsed == null) {
+            parsed = readCSV(filePath);
+            this.writeSidecar(filePath, parsed);
           }
         }
-        newData.add(newArr);
+        this.storedFiles.put(key, parsed);
       }
-      this.data = newData;
-      writer.writeAll(this.data);
-      writer.close();
-      this.file = new CSVReader(new FileReader(newFile));
+      this.storedKeys.put(name, key);
     } catch (IOException e) {
-      throw new IllegalArgumentException("No such file as: " + fileName + " At: " + filePath);
+      throw new IllegalArgumentException("No such file as: " + name + " At: " + filePath);
     } catch (CsvException e) {
       throw new RuntimeException(e);
     }
-    this.storedFiles.put(this.fileName, this.file);
+    this.storedPaths.put(name, directory);
+    return name;
   }
 
   @Override
-  public void loadCSV(String filePath) {
-    this.waveLengths = new ArrayList<>();
-    this.setDefaultPathInfo(filePath);
-    CSVReader csv;
+  public String storeCSV(String filePath, boolean edit, SpectrumData data)
+      throws IllegalArgumentException {
+    String[] pathInfo = pathInfo(filePath);
+    String name = pathInfo[1];
     try {
-      csv = new CSVReader(new FileReader(filePath));
-      this.data = csv.readAll();
-      this.file = new CSVReader(new FileReader(filePath));
+      // Never matches a key from storeCSV, but an evicted entry is read again from the file
+      SpectrumCache.Key key = new SpectrumCache.Key(new File(filePath).getCanonicalPath(),
+          -this.versions.incrementAndGet(), edit);
+      this.storedFiles.put(key, data);
+      this.replaced(this.storedKeys.put(name, key));
     } catch (IOException e) {
-      throw new IllegalArgumentException("No such file as: " + fileName + " At: " + filePath);
-    } catch (CsvException e) {
-      throw new RuntimeException(e);
+      throw new IllegalArgumentException("No such file as: " + name + " At: " + filePath);
     }
-    this.storedFiles.put(this.fileName, this.file);
+    this.storedPaths.put(name, pathInfo[0]);
+    return name;
+  }
+
+  @Override
+  public void useCSV(String fileName) throws IllegalArgumentException {
+    this.raw = this.stored(fileName);
+    this.edits = SpectrumEdits.NONE;
+    this.edited = this.raw;
+    this.fileName = fileName;
+    this.data = this.corrected(this.storedKeys.get(fileName), this.edited, this.edits);
+    this.defaultPath = this.storedPaths.getOrDefault(fileName, "");
   }
 
   @Override
@@ -108,50 +171,144 @@ public class CSVModelV1 implements CSVModel {
     String newFile = filePath + name + ".csv";
     try {
       CSVWriter writer = new CSVWriter(new FileWriter(newFile));
-      writer.writeAll(this.data);
+      for (int row = -1; row < this.data.getRowCount(); row++) {
+        writer.writeNext(this.data.toCells(row));
+      }
       writer.close();
     } catch (IOException e) {
       throw new IllegalArgumentException("New File failed to save at path " + filePath);
     }
+    this.writeSidecar(newFile, this.data);
+  }
+
+  @Override
+  public void editValues(double wavelength, int[] runs, double[] values)
+      throws IllegalArgumentException {
+    if (this.raw == null) {
+      throw new IllegalArgumentException("No Loaded CSV");
+    }
+    int row = this.raw.getIndex().indexOf(wavelength);
+    if (row == -1) {
+      throw new IllegalArgumentException("No such wavelength as " + wavelength);
+    }
+    this.setEdits(this.edits.with(this.raw, row, runs, values));
+  }
+
+  @Override
+  public SpectrumEdits getEdits() {
+    return this.edits;
+  }
+
+  @Override
+  public void setEdits(SpectrumEdits edits) throws IllegalArgumentException {
+    if (this.raw == null) {
+      throw new IllegalArgumentException("No Loaded CSV");
+    }
+    this.edited = edits.applyTo(this.raw);
+    this.edits = edits;
+    this.data = this.corrected(this.storedKeys.get(this.fileName), this.edited, edits);
+  }
+
+  @Override
+  public void setPipeline(SpectrumPipeline pipeline) {
+    this.pipeline = pipeline;
+    if (this.raw != null) {
+      this.data = this.corrected(this.storedKeys.get(this.fileName), this.edited, this.edits);
+    }
+  }
+
+  @Override
+  public SpectrumPipeline getPipeline() {
+    return this.pipeline;
   }
 
   @Override
   public int getRows() {
-    return this.data.size();
+    return this.loaded().getRowCount() + 1;
   }
 
   @Override
   public int getCols() {
-    return this.data.get(0).length;
+    return this.loaded().getLabels().length;
   }
 
   @Override
-  public CSVReader getCSV(String fileName) throws IllegalArgumentException {
+  public SpectrumData getCSV(String fileName) throws IllegalArgumentException {
     if (fileName.equals(this.fileName)) {
-      return this.file;
+      return this.data;
     } else {
-      for (Entry<String, CSVReader> entry : this.storedFiles.entrySet()) {
-        if (entry.getKey().equals(fileName)) {
-          return entry.getValue();
-        }
-      }
-      throw new IllegalArgumentException("There is no file name by: " + fileName);
+      SpectrumData stored = this.stored(fileName);
+      return this.corrected(this.storedKeys.get(fileName), stored, SpectrumEdits.NONE);
     }
   }
 
   @Override
-  public void putInStorage(String fileName, CSVReader file) {
-    this.storedFiles.put(fileName, file);
+  public SpectrumData getUncorrectedCSV(String fileName) throws IllegalArgumentException {
+    if (fileName.equals(this.fileName)) {
+      return this.edited;
+    }
+    return this.stored(fileName);
+  }
+
+  @Override
+  public void putInStorage(String fileName, SpectrumData file) {
+    SpectrumCache.Key key = new SpectrumCache.Key(fileName, -this.versions.incrementAndGet(),
+        false);
+    this.storedFiles.put(key, file);
+    this.replaced(this.storedKeys.put(fileName, key));
+  }
+
+  @Override
+  public List<String> storedCSVs() {
+    List<String> names = new ArrayList<>(this.storedKeys.keySet());
+    names.sort(null);
+    return names;
+  }
+
+  @Override
+  public Map<String, Long> storageStats() {
+    return this.storedFiles.stats();
+  }
+
+  @Override
+  public double[] getWavelengths() throws IllegalArgumentException {
+    return this.loaded().getWavelengths();
+  }
+
+  @Override
+  public double[] getRun(int run) throws IllegalArgumentException {
+    return this.loaded().getRun(run);
+  }
+
+  @Override
+  public double[] getRowAt(double wavelength) throws IllegalArgumentException {
+    return this.loaded().getRowAt(wavelength);
+  }
+
+  @Override
+  public double nearestWavelength(double wavelength, double tolerance)
+      throws IllegalArgumentException {
+    WavelengthIndex index = this.loaded().getIndex();
+    double nearest = index.nearestWavelength(wavelength);
+    if (Math.abs(nearest - wavelength) > tolerance) {
+      throw new IllegalArgumentException("No wavelength within " + tolerance + " of " + wavelength);
+    }
+    return nearest;
   }
 
   @Override
   public String[] getRow(String row) {
-    for (int rowVal = 0; rowVal < this.waveLengths.size(); rowVal++) {
-      if (this.waveLengths.get(rowVal).equals(row)) {
-        return this.data.get(rowVal);
-      }
+    double wavelength = SpectrumData.parseCell(row);
+    if (Double.isNaN(wavelength)) {
+      throw new IllegalArgumentException("No such wavelength as " + row);
     }
-    throw new IllegalArgumentException("No such wavelength as " + row);
+    double[] values = this.getRowAt(wavelength);
+    String[] cells = new String[values.length + 1];
+    cells[0] = row;
+    for (int run = 0; run < values.length; run++) {
+      cells[run + 1] = SpectrumData.formatCell(values[run]);
+    }
+    return cells;
   }
 
   @Override
@@ -166,13 +323,10 @@ public class CSVModelV1 implements CSVModel {
 
   @Override
   public List<String> getColumn(String col) {
-    String[] firstRow = this.data.get(0);
-    for (int colVal = 0; colVal < firstRow.length; colVal++) {
-      if (firstRow[colVal].equals(col)) {
-        for (String[] arr : this.data) {
-          this.waveLengths.add(arr[colVal]);
-        }
-        return this.waveLengths;
+    String[] labels = this.loaded().getLabels();
+    for (int colVal = 0; colVal < labels.length; colVal++) {
+      if (labels[colVal].equals(col)) {
+        return this.getColumn(colVal);
       }
     }
     throw new IllegalArgumentException("No Column with " + col);
@@ -180,28 +334,185 @@ public class CSVModelV1 implements CSVModel {
 
   @Override
   public List<String> getColumn(int colVal) {
-    if (this.data.get(0).length < colVal) {
+    SpectrumData loaded = this.loaded();
+    if (colVal < 0 || colVal >= loaded.getLabels().length) {
       throw new IllegalArgumentException("No Column value at " + colVal);
     }
-    for (String[] arr : this.data) {
-      this.waveLengths.add(arr[colVal]);
+    double[] values = colVal == 0 ? loaded.getWavelengths() : loaded.getRun(colVal - 1);
+    List<String> column = new ArrayList<>(values.length + 1);
+    column.add(loaded.getLabels()[colVal]);
+    for (double value : values) {
+      column.add(SpectrumData.formatCell(value));
     }
-    return this.waveLengths;
+    return column;
   }
 
+  // Each row is read, edited, written and parsed before the next one is read, nothing is written
+  // if there is no new file
+  private static SpectrumData readAndEditCSV(String filePath, String newFile)
+      throws IOException, CsvException {
+    try {
+      return StreamingCSVReader.readAndEdit(filePath, newFile);
+    } catch (StreamingCSVReader.IrregularException e) {
+      // Falls back to OpenCSV, which also handles quoting the instrument does not use
+    }
+    try (CSVReader csv = new CSVReader(new FileReader(filePath));
+        CSVWriter writer = newFile == null ? null : new CSVWriter(new FileWriter(newFile))) {
+      String[] header = csv.readNext();
+      if (header == null) {
+        throw new IllegalArgumentException("The CSV is empty: " + filePath);
+      }
+      int maxCol = header.length;
+      String[] newHeader = editRow(header, maxCol);
+      if (writer != null) {
+        writer.writeNext(newHeader);
+      }
+      SpectrumData.Builder builder = new SpectrumData.Builder(newHeader, 0);
+      String[] row;
+      while ((row = csv.readNext()) != null) {
+        String[] newRow = editRow(row, maxCol);
+        if (writer != null) {
+          writer.writeNext(newRow);
+        }
+        builder.addRow(newRow);
+      }
+      return builder.build();
+    }
+  }
+
+  // Parses the csv one row at a time
+  private static SpectrumData readCSV(String filePath) throws IOException, CsvException {
+    try {
+      return StreamingCSVReader.read(filePath);
+    } catch (StreamingCSVReader.IrregularException e) {
+      // Falls back to OpenCSV, which also handles quoting the instrument does not use
+    }
+    try (CSVReader csv = new CSVReader(new FileReader(filePath))) {
+      String[] header = csv.readNext();
+      if (header == null) {
+        throw new IllegalArgumentException("The CSV is empty: " + filePath);
+      }
+      SpectrumData.Builder builder = new SpectrumData.Builder(header, 0);
+      String[] row;
+      while ((row = csv.readNext()) != null) {
+        builder.addRow(row);
+      }
+      return builder.build();
+    }
+  }
+
+  // Keeps every other column, the latest run is second so it is moved to the end.
+  private static String[] editRow(String[] arr, int maxCol) {
+    int[] columns = editedColumns(arr.length, maxCol);
+    String[] newArr = new String[columns.length];
+    for (int newCol = 0; newCol < columns.length; newCol++) {
+      newArr[newCol] = columns[newCol] == -1 ? null : arr[columns[newCol]];
+    }
+    return newArr;
+  }
+
+  /**
+   * Gives which column of a row of the given length ends up in each column of the edited row.
+   *
+   * @param length is the number of cells in the row
+   * @param maxCol is the number of cells in the header
+   * @return the source column for each edited column, -1 where the edited cell is empty
+   */
+  static int[] editedColumns(int length, int maxCol) {
+    int[] columns = new int[length - ((length / 2) - 1)];
+    Arrays.fill(columns, -1);
+    int newArrCol = 0;
+    for (int col = 0; col < Math.min(maxCol, length); col++) {
+      if (newArrCol == 0) { // First column is wavelengths
+        columns[0] = col;
+        newArrCol++;
+      } else if (col == 1) { // latest run is second so move to end
+        columns[columns.length - 1] = col;
+      } else if (col % 2 == 1) { // value from the wavelength
+        columns[newArrCol] = col;
+        newArrCol++;
+      }
+    }
+    return columns;
+  }
+
+  // Keeps a binary copy next to the csv so the next load does not parse it
+  private void writeSidecar(String csvPath, SpectrumData parsed) {
+    if (this.sidecars) {
+      SpectrumSidecar.write(csvPath, parsed);
+    }
+  }
+
+  // Applies the pipeline to a stored csv, each set of corrections is cached next to the csv
+  private SpectrumData corrected(SpectrumCache.Key key, SpectrumData stored,
+      SpectrumEdits storedEdits) {
+    SpectrumPipeline current = this.pipeline;
+    if (current.isEmpty() || key == null) {
+      return stored;
+    }
+    SpectrumCache.Key correctedKey = correctedKey(key, current, storedEdits);
+    SpectrumData corrected = this.storedFiles.get(correctedKey);
+    if (corrected == null) {
+      corrected = current.apply(stored);
+      this.storedFiles.put(correctedKey, corrected);
+    }
+    return corrected;
+  }
+
+  private static SpectrumCache.Key correctedKey(SpectrumCache.Key key, SpectrumPipeline pipeline,
+      SpectrumEdits edits) {
+    String version = edits.isEmpty() ? "" : "|" + edits.getVersion();
+    return new SpectrumCache.Key(key.path() + version + "|" + pipeline.key(), key.modified(),
+        key.edited());
+  }
+
+  // Data without a file is only stored by one name, so older versions of it are dropped
+  private void replaced(SpectrumCache.Key old) {
+    if (old != null && old.modified() < 0) {
+      this.storedFiles.remove(old);
+      this.storedFiles.remove(correctedKey(old, this.pipeline, SpectrumEdits.NONE));
+    }
+  }
+
+  // Gets a stored csv, parsing its file again if it was evicted
+  private SpectrumData stored(String fileName) throws IllegalArgumentException {
+    SpectrumCache.Key key = this.storedKeys.get(fileName);
+    if (key == null) {
+      throw new IllegalArgumentException("There is no file name by: " + fileName);
+    }
+    SpectrumData stored = this.storedFiles.get(key);
+    if (stored == null) {
+      if (!new File(key.path()).isFile()) {
+        throw new IllegalArgumentException("There is no file name by: " + fileName);
+      }
+      this.storeCSV(key.path(), key.edited());
+      stored = this.storedFiles.get(this.storedKeys.get(fileName));
+    }
+    return stored;
+  }
+
+  // Gets the loaded csv, throws an error if there is none
+  private SpectrumData loaded() throws IllegalArgumentException {
+    if (this.data == null) {
+      throw new IllegalArgumentException("No Loaded CSV");
+    }
+    return this.data;
+  }
 
-  // Sets the default path, file name and fileType, if fileType is not csv throws an error.
-  private void setDefaultPathInfo(String filePath) throws IllegalArgumentException {
-    String[] fileDir = filePath.split("\\\\"); // image\res\yes\ppm.yes -> image res yes ppm.yes
-    String[] file = fileDir[fileDir.length - 1].split("\\."); // -> ppm yes
-    this.fileName = file[0]; // ppm
-    if (!file[1].equals("csv")) {
-      throw new IllegalArgumentException("File is not a csv: " + this.fileName + " At:" + filePath);
+  // Gets the directory and file name, if fileType is not csv throws an error.
+  private static String[] pathInfo(String filePath) throws IllegalArgumentException {
+    // image\res\yes\ppm.yes or image/res/yes/ppm.yes -> image res yes ppm.yes
+    String[] fileDir = filePath.split("[\\\\/]");
+    String file = fileDir[fileDir.length - 1];
+    int extension = file.lastIndexOf('.'); // ppm.yes -> ppm yes
+    String name = extension == -1 ? file : file.substring(0, extension); // ppm
+    if (extension == -1 || !file.substring(extension + 1).equals("csv")) {
+      throw new IllegalArgumentException("File is not a csv: " + name + " At:" + filePath);
     }
     StringBuilder newPath = new StringBuilder();
     for (int i = 0; i < fileDir.length - 1; i++) {
-      newPath.append(fileDir[i]).append("\\");
+      newPath.append(fileDir[i]).append(File.separator);
     }
-    this.defaultPath = newPath.toString();
+    return new String[]{newPath.toString(), name};
   }
 }
@@ -0,0 +1,182 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Follows a csv that the spectrometer is still writing. The byte offset after the last complete
+ * line is remembered, so rows appended to the file are the only rows parsed. When a new run is
+ * added the instrument rewrites the file with more columns, then only the runs that are new, or
+ * the latest run which moves, are parsed and every other run is kept as it was. The columns keep
+ * room for more rows, doubled when they are full, so appended rows are written after the rows
+ * before them and each update only costs as much as the rows that were added.
+ */
+public final class CSVTail {
+
+  /**
+   * What changed in the followed csv.
+   *
+   * @param data        is all the data of the csv as it is now
+   * @param fromRow     is the first row that was appended, every run has new values from here on
+   * @param changedRuns is every run, starting with 0, that is new or whose values all changed
+   */
+  public record Update(SpectrumData data, int fromRow, int[] changedRuns) {
+
+  }
+
+  private final String filePath;
+  private final boolean edit;
+  private String[] header;
+  private long offset;
+  private SpectrumData data;
+  // The columns of the data with room past its rows
+  private double[] wavelengths;
+  private double[][] runs;
+
+  /**
+   * Starts following a csv, nothing is read until it is polled.
+   *
+   * @param filePath is the csv file
+   * @param edit     is if the csv is in the instrument's layout and should be edited as it is read
+   */
+  public CSVTail(String filePath, boolean edit) {
+    this.filePath = filePath;
+    this.edit = edit;
+  }
+
+  /**
+   * Gets the file being followed.
+   *
+   * @return the csv file path
+   */
+  public String getFilePath() {
+    return this.filePath;
+  }
+
+  /**
+   * Gets if the csv is edited as it is read.
+   *
+   * @return true if the csv is edited
+   */
+  public boolean isEdited() {
+    return this.edit;
+  }
+
+  /**
+   * Reads whatever was written since the last poll, the first poll reads the whole file.
+   *
+   * @return what changed, or null if no complete line was written
+   * @throws IllegalArgumentException if the file cannot be read or cannot be followed
+   */
+  public synchronized Update poll() throws IllegalArgumentException {
+    try {
+      StreamingCSVReader.Chunk head = StreamingCSVReader.readHeader(this.filePath);
+      if (head == null) {
+        return null;
+      }
+      if (this.data == null || !Arrays.equals(head.header, this.header)
+          || new File(this.filePath).length() < this.offset) {
+        return this.reread(head);
+      }
+      return this.append();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot read " + this.filePath);
+    } catch (StreamingCSVReader.IrregularException e) {
+      throw new IllegalArgumentException("Cannot follow " + this.filePath + ": " + e.getMessage());
+    }
+  }
+
+  // Only the rows after the offset are read, every run gets the new rows
+  private Update append() throws IOException, StreamingCSVReader.IrregularException {
+    int runCount = this.data.getRunCount();
+    boolean[] parse = new boolean[runCount];
+    Arrays.fill(parse, true);
+    StreamingCSVReader.Chunk rows = StreamingCSVReader.readRows(this.filePath, this.offset,
+        this.edit, this.header.length, parse);
+    this.offset = rows.end;
+    int added = rows.wavelengths.length;
+    if (added == 0) {
+      return null;
+    }
+    int fromRow = this.data.getRowCount();
+    int rowCount = fromRow + added;
+    if (rowCount > this.wavelengths.length) {
+      // Doubling keeps the copies to about one per row over the whole titration
+      int grown = Math.max(rowCount, this.wavelengths.length * 2);
+      this.wavelengths = Arrays.copyOf(this.wavelengths, grown);
+      for (int run = 0; run < runCount; run++) {
+        this.runs[run] = Arrays.copyOf(this.runs[run], grown);
+      }
+    }
+    // Past the rows of the last data, so the data from before still reads what it had
+    System.arraycopy(rows.wavelengths, 0, this.wavelengths, fromRow, added);
+    for (int run = 0; run < runCount; run++) {
+      System.arraycopy(rows.runs[run], 0, this.runs[run], fromRow, added);
+    }
+    WavelengthIndex index = this.data.getIndex().append(this.wavelengths, rowCount);
+    this.data = new SpectrumData(this.data.getLabels(), this.wavelengths, this.runs.clone(),
+        rowCount, index);
+    return new Update(this.data, fromRow, new int[0]);
+  }
+
+  // The file was rewritten, runs with the same label are kept unless they are the latest run
+  private Update reread(StreamingCSVReader.Chunk head)
+      throws IOException, StreamingCSVReader.IrregularException {
+    String[] labels = this.edit ? editedHeader(head.header) : head.header;
+    SpectrumData old = this.data;
+    int runCount = Math.max(labels.length - 1, 0);
+    boolean[] parse = new boolean[runCount];
+    boolean reused = false;
+    for (int run = 0; run < runCount; run++) {
+      parse[run] = old == null || run >= old.getRunCount() || isLatest(labels[run + 1])
+          || !Objects.equals(labels[run + 1], old.getLabels()[run + 1]);
+      reused |= !parse[run];
+    }
+    StreamingCSVReader.Chunk rows = StreamingCSVReader.readRows(this.filePath, head.end, this.edit,
+        head.header.length, parse);
+    int rowCount = rows.wavelengths.length;
+    if (reused && (rowCount != old.getRowCount()
+        || !Arrays.equals(rows.wavelengths, 0, rowCount, this.wavelengths, 0, rowCount))) {
+      // The wavelengths changed as well so none of the old runs can be kept
+      Arrays.fill(parse, true);
+      rows = StreamingCSVReader.readRows(this.filePath, head.end, this.edit, head.header.length,
+          parse);
+    }
+    double[][] runs = new double[runCount][];
+    List<Integer> changed = new ArrayList<>();
+    for (int run = 0; run < runCount; run++) {
+      if (parse[run]) {
+        runs[run] = rows.runs[run];
+        changed.add(run);
+      } else {
+        // The kept run's own column, room and all, so it is not copied
+        runs[run] = this.runs[run];
+      }
+    }
+    this.header = head.header;
+    this.offset = rows.end;
+    this.wavelengths = rows.wavelengths;
+    this.runs = runs;
+    this.data = new SpectrumData(labels, this.wavelengths, runs.clone(), rowCount, null);
+    return new Update(this.data, this.data.getRowCount(),
+        changed.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  private String[] editedHeader(String[] raw) {
+    int[] columns = CSVModelV1.editedColumns(raw.length, raw.length);
+    String[] labels = new String[columns.length];
+    for (int col = 0; col < columns.length; col++) {
+      labels[col] = columns[col] == -1 ? null : raw[columns[col]];
+    }
+    return labels;
+  }
+
+  // The latest run's values change every time a run is added
+  private static boolean isLatest(String label) {
+    return label == null || label.startsWith("Latest");
+  }
+}
@@ -0,0 +1,72 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A persistent column of values over a parsed run. The column is split into chunks and only the
+ * chunks that were edited are stored, every other chunk is read from the parsed run. Changing a
+ * value copies its chunk and the small list of chunks, the old column stays as it was, so many
+ * versions of a long run cost little more than the chunks that differ.
+ */
+final class ChunkedColumn {
+
+  // 1024 values, 8 KiB, per chunk
+  private static final int CHUNK_BITS = 10;
+  private static final int CHUNK = 1 << CHUNK_BITS;
+
+  private final double[] base;
+  // Edited chunks, null where the chunk is still the parsed run's
+  private final double[][] chunks;
+
+  /**
+   * Makes a column that is the same as the parsed run.
+   *
+   * @param base is the parsed run, it is never changed
+   */
+  ChunkedColumn(double[] base) {
+    this(base, new double[(base.length + CHUNK - 1) >> CHUNK_BITS][]);
+  }
+
+  private ChunkedColumn(double[] base, double[][] chunks) {
+    this.base = base;
+    this.chunks = chunks;
+  }
+
+  /**
+   * Makes a new version with one value changed, this version is not changed.
+   *
+   * @param row   is the row of the value
+   * @param value is the new value
+   * @return the new version
+   */
+  ChunkedColumn with(int row, double value) {
+    int index = row >> CHUNK_BITS;
+    double[][] newChunks = this.chunks.clone();
+    double[] chunk = this.chunks[index];
+    if (chunk == null) {
+      int start = index << CHUNK_BITS;
+      chunk = Arrays.copyOfRange(this.base, start, Math.min(start + CHUNK, this.base.length));
+    } else {
+      chunk = chunk.clone();
+    }
+    chunk[row & (CHUNK - 1)] = value;
+    newChunks[index] = chunk;
+    return new ChunkedColumn(this.base, newChunks);
+  }
+
+  /**
+   * Copies the column into a plain array.
+   *
+   * @return every value of the column
+   */
+  double[] toArray() {
+    double[] values = this.base.clone();
+    for (int index = 0; index < this.chunks.length; index++) {
+      if (this.chunks[index] != null) {
+        System.arraycopy(this.chunks[index], 0, values, index << CHUNK_BITS,
+            this.chunks[index].length);
+      }
+    }
+    return values;
+  }
+}
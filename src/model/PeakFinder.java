@@ -0,0 +1,240 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Finds the peaks of every run and the isosbestic points of a titration. A peak is where the
+ * slope turns from rising to falling, kept if it stands far enough above the lowest point between
+ * it and the nearest higher peak on each side, its prominence. Both sides of every peak are found
+ * in one sweep of the run with a stack of the peaks still waiting for a higher one, and every run
+ * is swept on a ForkJoinPool. An isosbestic point is where every run crosses within a tolerance.
+ */
+public class PeakFinder {
+
+  // Runs swept, and rows compared, by one task before the work is split no further
+  private static final int RUNS_PER_TASK = 4;
+  private static final int ROWS_PER_TASK = 1024;
+
+  /**
+   * A peak of one run.
+   *
+   * @param run        is the run, starting with 0
+   * @param wavelength is the wavelength at the top of the peak, the middle of a flat top
+   * @param absorbance is the absorbance at the top
+   * @param prominence is how far the top is above the higher of the lowest points on each side
+   */
+  public record Peak(int run, double wavelength, double absorbance, double prominence) {
+
+  }
+
+  /**
+   * The peaks and isosbestic points of a titration.
+   *
+   * @param peaks      is the peaks of each run, in wavelength order
+   * @param isosbestic is each wavelength where every run crosses, in wavelength order
+   * @param spread     is how far apart the runs are at each isosbestic point
+   */
+  public record Result(Peak[][] peaks, double[] isosbestic, double[] spread) {
+
+    /**
+     * Gives the highest peak of a run, its lambda max.
+     *
+     * @param run is the run, starting with 0
+     * @return the highest peak, or null if the run has none
+     */
+    public Peak highest(int run) {
+      Peak highest = null;
+      for (Peak peak : this.peaks[run]) {
+        if (highest == null || peak.absorbance() > highest.absorbance()) {
+          highest = peak;
+        }
+      }
+      return highest;
+    }
+  }
+
+  private final double prominence;
+  private final double tolerance;
+  private final ForkJoinPool pool;
+
+  /**
+   * Makes a finder that runs on the common ForkJoinPool.
+   *
+   * @param prominence is the smallest prominence kept, as a fraction of each run's range
+   * @param tolerance  is the most the runs can be apart at an isosbestic point, in absorbance
+   * @throws IllegalArgumentException if the prominence is not from 0 to 1 or the tolerance is
+   *                                  negative
+   */
+  public PeakFinder(double prominence, double tolerance) throws IllegalArgumentException {
+    this(prominence, tolerance, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Makes a finder.
+   *
+   * @param prominence is the smallest prominence kept, as a fraction of each run's range
+   * @param tolerance  is the most the runs can be apart at an isosbestic point, in absorbance
+   * @param pool       is where every run is swept
+   * @throws IllegalArgumentException if the prominence is not from 0 to 1 or the tolerance is
+   *                                  negative
+   */
+  public PeakFinder(double prominence, double tolerance, ForkJoinPool pool)
+      throws IllegalArgumentException {
+    if (!(prominence >= 0 && prominence <= 1)) {
+      throw new IllegalArgumentException("The prominence must be from 0 to 1");
+    }
+    if (!(tolerance >= 0)) {
+      throw new IllegalArgumentException("The tolerance cannot be negative");
+    }
+    this.prominence = prominence;
+    this.tolerance = tolerance;
+    this.pool = pool;
+  }
+
+  /**
+   * Finds the peaks of every run and where every run crosses.
+   *
+   * @param data is the titration
+   * @return the peaks and isosbestic points
+   */
+  public Result find(SpectrumData data) {
+    int runs = data.getRunCount();
+    Peak[][] peaks = new Peak[runs][];
+    this.pool.invoke(new RangeTask(0, runs, RUNS_PER_TASK, (from, to) -> {
+      for (int run = from; run < to; run++) {
+        peaks[run] = this.peaks(data.getWavelengths(), data.getRun(run), run);
+      }
+    }));
+    return this.isosbestic(data, peaks);
+  }
+
+  // One sweep of a run, each peak is settled once a higher one or the end is reached
+  private Peak[] peaks(double[] wavelengths, double[] values, int run) {
+    int size = values.length;
+    // The waiting peaks, lowest on top, each with the lowest point back to the peak below it
+    int[] stack = new int[size];
+    double[] leftBase = new double[size];
+    double[] rightBase = new double[size];
+    int[] tops = new int[size];
+    int found = 0;
+    int depth = 0;
+    double lowest = Double.POSITIVE_INFINITY;
+    double highest = Double.NEGATIVE_INFINITY;
+    // The lowest point since the top of the stack and where the rise to the current top began
+    double since = Double.POSITIVE_INFINITY;
+    int rise = -1;
+    for (int row = 0; row < size; row++) {
+      double value = values[row];
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      lowest = Math.min(lowest, value);
+      highest = Math.max(highest, value);
+      if (row > 0 && !Double.isNaN(values[row - 1])) {
+        double slope = value - values[row - 1];
+        if (slope > 0) {
+          rise = row;
+        } else if (slope < 0 && rise != -1) {
+          // The top is the middle of a flat top that started at rise
+          int top = (rise + row - 1) >>> 1;
+          double height = values[rise];
+          double low = since;
+          while (depth > 0 && values[tops[stack[depth - 1]]] <= height) {
+            int settled = stack[--depth];
+            rightBase[settled] = low;
+            low = Math.min(low, leftBase[settled]);
+          }
+          tops[found] = top;
+          leftBase[found] = low;
+          stack[depth++] = found++;
+          since = Double.POSITIVE_INFINITY;
+          rise = -1;
+        }
+      }
+      since = Math.min(since, value);
+    }
+    // Peaks never passed by a higher one go down to the lowest point after them
+    double low = since;
+    while (depth > 0) {
+      int settled = stack[--depth];
+      rightBase[settled] = low;
+      low = Math.min(low, leftBase[settled]);
+    }
+
+    double smallest = this.prominence * (highest - lowest);
+    List<Peak> peaks = new ArrayList<>();
+    for (int peak = 0; peak < found; peak++) {
+      double height = values[tops[peak]];
+      double prominence = height - Math.max(leftBase[peak], rightBase[peak]);
+      if (prominence > 0 && prominence >= smallest) {
+        peaks.add(new Peak(run, wavelengths[tops[peak]], height, prominence));
+      }
+    }
+    return peaks.toArray(new Peak[0]);
+  }
+
+  // The lowest spread of each stretch of rows where the runs are within the tolerance and the
+  // last run crosses the first
+  private Result isosbestic(SpectrumData data, Peak[][] peaks) {
+    int rows = data.getRowCount();
+    int runs = data.getRunCount();
+    double[] spread = new double[rows];
+    double[] change = new double[rows];
+    if (runs > 1) {
+      this.pool.invoke(new RangeTask(0, rows, ROWS_PER_TASK, (from, to) -> {
+        double[] low = new double[to - from];
+        double[] high = new double[to - from];
+        Arrays.fill(low, Double.POSITIVE_INFINITY);
+        Arrays.fill(high, Double.NEGATIVE_INFINITY);
+        for (int run = 0; run < runs; run++) {
+          double[] values = data.getRun(run);
+          for (int row = from; row < to; row++) {
+            low[row - from] = Math.min(low[row - from], values[row]);
+            high[row - from] = Math.max(high[row - from], values[row]);
+          }
+        }
+        double[] first = data.getRun(0);
+        double[] last = data.getRun(runs - 1);
+        for (int row = from; row < to; row++) {
+          spread[row] = high[row - from] - low[row - from];
+          change[row] = last[row] - first[row];
+        }
+      }));
+    }
+
+    double[] wavelengths = data.getWavelengths();
+    List<Integer> points = new ArrayList<>();
+    int start = -1;
+    for (int row = 0; row <= rows; row++) {
+      boolean within = row < rows && runs > 1 && spread[row] <= this.tolerance;
+      if (within && start == -1) {
+        start = row;
+      } else if (!within && start != -1) {
+        // A flat baseline is within the tolerance too, but the runs never cross there, so the
+        // runs must be apart on both sides and the last run on the other side of the first
+        int end = row - 1;
+        if (start > 0 && end < rows - 1
+            && Math.signum(change[start - 1]) != Math.signum(change[end + 1])) {
+          int best = start;
+          for (int at = start + 1; at <= end; at++) {
+            if (spread[at] < spread[best]) {
+              best = at;
+            }
+          }
+          points.add(best);
+        }
+        start = -1;
+      }
+    }
+    double[] isosbestic = new double[points.size()];
+    double[] apart = new double[points.size()];
+    for (int at = 0; at < isosbestic.length; at++) {
+      isosbestic[at] = wavelengths[points.get(at)];
+      apart[at] = spread[points.get(at)];
+    }
+    return new Result(peaks, isosbestic, apart);
+  }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a range in half until it is small enough to run, the fork/join task shared by the
+ * analyses that work over every run or every row.
+ */
+final class RangeTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int from;
+  private final int to;
+  private final int grain;
+  private final RangeWork work;
+
+  /**
+   * Makes a task for a range.
+   *
+   * @param from  is the first index, inclusive
+   * @param to    is the last index, exclusive
+   * @param grain is the most indices run by one task before the range is split no further
+   * @param work  is what is done for each piece of the range
+   */
+  RangeTask(int from, int to, int grain, RangeWork work) {
+    this.from = from;
+    this.to = to;
+    this.grain = grain;
+    this.work = work;
+  }
+
+  @Override
+  protected void compute() {
+    if (this.to - this.from <= this.grain) {
+      this.work.run(this.from, this.to);
+      return;
+    }
+    int middle = (this.from + this.to) >>> 1;
+    invokeAll(new RangeTask(this.from, middle, this.grain, this.work),
+        new RangeTask(middle, this.to, this.grain, this.work));
+  }
+
+  /**
+   * Work done for a range.
+   */
+  interface RangeWork {
+
+    /**
+     * Does the work for part of the range.
+     *
+     * @param from is the first index, inclusive
+     * @param to   is the last index, exclusive
+     */
+    void run(int from, int to);
+  }
+}
@@ -0,0 +1,134 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A bounded cache of parsed csv files. Files are keyed by their canonical path, modification time
+ * and if they were edited, so a changed file is never served stale. The least recently used files
+ * are evicted once the cached data takes more than the allowed number of bytes. All methods are
+ * safe to call from many threads.
+ */
+public class SpectrumCache {
+
+  private final LinkedHashMap<Key, SpectrumData> entries;
+  private final long maxBytes;
+  private long bytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * A cached file, the source path and if it was edited are kept so it can be loaded again.
+   *
+   * @param path     is the canonical path of the source csv, or a name for data that has no file
+   * @param modified is when the source csv was last modified
+   * @param edited   is if the data is the edited version of the csv
+   */
+  public record Key(String path, long modified, boolean edited) {
+
+    /**
+     * Makes the key for a csv on disk as it is right now.
+     *
+     * @param filePath is the csv file
+     * @param edited   is if the data is the edited version of the csv
+     * @return the key
+     * @throws IOException if the canonical path cannot be found
+     */
+    public static Key of(String filePath, boolean edited) throws IOException {
+      File file = new File(filePath);
+      return new Key(file.getCanonicalPath(), file.lastModified(), edited);
+    }
+
+    /**
+     * Checks if the source csv has not changed since this key was made.
+     *
+     * @return true if the file is still the same
+     */
+    public boolean isCurrent() {
+      return new File(this.path).lastModified() == this.modified;
+    }
+  }
+
+  /**
+   * Makes an empty cache.
+   *
+   * @param maxBytes is about how much memory the cached data may use
+   */
+  public SpectrumCache(long maxBytes) {
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Gets a cached file and marks it as recently used.
+   *
+   * @param key is the file's key
+   * @return the data or null if it is not cached
+   */
+  public synchronized SpectrumData get(Key key) {
+    SpectrumData data = this.entries.get(key);
+    if (data == null) {
+      this.misses++;
+    } else {
+      this.hits++;
+    }
+    return data;
+  }
+
+  /**
+   * Caches a file, evicting the least recently used files if there is not enough room. The new
+   * file itself is always kept even if it is larger than the cache.
+   *
+   * @param key  is the file's key
+   * @param data is the parsed file
+   */
+  public synchronized void put(Key key, SpectrumData data) {
+    SpectrumData old = this.entries.put(key, data);
+    if (old != null) {
+      this.bytes -= old.sizeInBytes();
+    }
+    this.bytes += data.sizeInBytes();
+    Iterator<Entry<Key, SpectrumData>> eldest = this.entries.entrySet().iterator();
+    while (this.bytes > this.maxBytes && this.entries.size() > 1) {
+      Entry<Key, SpectrumData> entry = eldest.next();
+      if (entry.getKey().equals(key)) {
+        continue;
+      }
+      this.bytes -= entry.getValue().sizeInBytes();
+      eldest.remove();
+      this.evictions++;
+    }
+  }
+
+  /**
+   * Removes a file from the cache if it is there.
+   *
+   * @param key is the file's key
+   */
+  public synchronized void remove(Key key) {
+    SpectrumData old = this.entries.remove(key);
+    if (old != null) {
+      this.bytes -= old.sizeInBytes();
+    }
+  }
+
+  /**
+   * Gets how the cache is doing.
+   *
+   * @return the hits, misses, evictions, files and bytes cached
+   */
+  public synchronized Map<String, Long> stats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("hits", this.hits);
+    stats.put("misses", this.misses);
+    stats.put("evictions", this.evictions);
+    stats.put("files", (long) this.entries.size());
+    stats.put("bytes", this.bytes);
+    return stats;
+  }
+}
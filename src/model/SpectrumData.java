@@ -0,0 +1,415 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable, parsed titration held as primitive columns. There is a single wavelength axis and
+ * one absorbance array per run, so every cell is parsed from text exactly once. Empty or missing
+ * cells are stored as {@link Double#NaN}.
+ */
+public final class SpectrumData {
+
+  private final String[] labels;
+  private final double[] wavelengths;
+  private final double[][] runs;
+  private final int rowCount;
+  private final WavelengthIndex index;
+  // Columns cut to the row count, made the first time a column with room past its rows is asked
+  // for, guarded by this
+  private double[] exactWavelengths;
+  private double[][] exactRuns;
+
+  /**
+   * Creates the data set from already parsed columns. The arrays are not copied.
+   *
+   * @param labels      is the header row, the first label is the wavelength column
+   * @param wavelengths is the wavelength of every row
+   * @param runs        is one absorbance array per run, each as long as the wavelengths
+   * @throws IllegalArgumentException if the columns do not line up with the labels
+   */
+  public SpectrumData(String[] labels, double[] wavelengths, double[][] runs)
+      throws IllegalArgumentException {
+    this(labels, wavelengths, runs, null);
+  }
+
+  // Corrected runs keep the wavelengths, so the index of the original is shared
+  SpectrumData(String[] labels, double[] wavelengths, double[][] runs, WavelengthIndex index)
+      throws IllegalArgumentException {
+    this(labels, wavelengths, runs, wavelengths.length, index);
+    for (double[] run : runs) {
+      if (run.length != wavelengths.length) {
+        throw new IllegalArgumentException("Every run must have a value for each wavelength");
+      }
+    }
+  }
+
+  // A csv that is still being written keeps room past its rows in every column, so appended rows
+  // are written after them and the columns are shared with the data from before they were added.
+  // The room is never handed out, the getters give columns cut to the row count.
+  SpectrumData(String[] labels, double[] wavelengths, double[][] runs, int rowCount,
+      WavelengthIndex index) throws IllegalArgumentException {
+    if (labels.length != runs.length + 1) {
+      throw new IllegalArgumentException(
+          "Expected " + (runs.length + 1) + " labels but got " + labels.length);
+    }
+    if (rowCount < 0 || rowCount > wavelengths.length) {
+      throw new IllegalArgumentException("There are not " + rowCount + " wavelengths");
+    }
+    for (double[] run : runs) {
+      if (run.length < rowCount) {
+        throw new IllegalArgumentException("Every run must have a value for each wavelength");
+      }
+    }
+    this.labels = labels;
+    this.wavelengths = wavelengths;
+    this.runs = runs;
+    this.rowCount = rowCount;
+    this.index = index == null ? new WavelengthIndex(wavelengths, rowCount) : index;
+  }
+
+  /**
+   * Parses the rows of a csv, where the first row is the header and the first column is the
+   * wavelength.
+   *
+   * @param rows is the whole csv, header included
+   * @return the parsed data
+   * @throws IllegalArgumentException if there is no header or a wavelength is not a number
+   */
+  public static SpectrumData fromRows(List<String[]> rows) throws IllegalArgumentException {
+    if (rows.isEmpty()) {
+      throw new IllegalArgumentException("The CSV is empty");
+    }
+    Builder builder = new Builder(rows.get(0), rows.size() - 1);
+    for (int row = 1; row < rows.size(); row++) {
+      builder.addRow(rows.get(row));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Parses a single csv cell, blank cells become NaN.
+   *
+   * @param cell is the text of the cell
+   * @return the value or NaN if there is none
+   */
+  public static double parseCell(String cell) {
+    if (cell == null || cell.isBlank()) {
+      return Double.NaN;
+    }
+    try {
+      return Double.parseDouble(cell.trim());
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Parses the wavelength, first cell, of a csv row.
+   *
+   * @param cells is the csv row
+   * @return the wavelength
+   * @throws IllegalArgumentException if the first cell is not a number
+   */
+  public static double parseWavelength(String[] cells) throws IllegalArgumentException {
+    double wavelength = cells.length == 0 ? Double.NaN : parseCell(cells[0]);
+    if (Double.isNaN(wavelength)) {
+      throw new IllegalArgumentException(
+          "Not a wavelength: " + (cells.length == 0 ? "" : cells[0]));
+    }
+    return wavelength;
+  }
+
+  /**
+   * Gets the header row, the first label is for the wavelengths and the rest for each run.
+   *
+   * @return the labels, shared so do not modify them
+   */
+  public String[] getLabels() {
+    return this.labels;
+  }
+
+  /**
+   * Number of wavelengths (rows without the header).
+   */
+  public int getRowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * Number of runs (columns without the wavelengths).
+   */
+  public int getRunCount() {
+    return this.runs.length;
+  }
+
+  /**
+   * About how much memory the parsed columns and their index use.
+   *
+   * @return the size in bytes
+   */
+  public long sizeInBytes() {
+    // The room kept for rows that are still to be written is counted too
+    long rows = this.wavelengths.length;
+    // Wavelengths, runs, the sorted index and its row numbers
+    return rows * Double.BYTES * (this.runs.length + 2) + rows * Integer.BYTES
+        + (long) this.runs.length * 16 + 64;
+  }
+
+  /**
+   * Gets the wavelength axis.
+   *
+   * @return the wavelengths, one per row, shared so do not modify them
+   */
+  public double[] getWavelengths() {
+    if (this.wavelengths.length == this.rowCount) {
+      return this.wavelengths;
+    }
+    synchronized (this) {
+      if (this.exactWavelengths == null) {
+        this.exactWavelengths = Arrays.copyOf(this.wavelengths, this.rowCount);
+      }
+      return this.exactWavelengths;
+    }
+  }
+
+  /**
+   * Gets the absorbance of one run across every wavelength. Starts with 0.
+   *
+   * @param run is the run number
+   * @return the absorbances, one per row, shared so do not modify them
+   * @throws IllegalArgumentException if there is no such run
+   */
+  public double[] getRun(int run) throws IllegalArgumentException {
+    if (run < 0 || run >= this.runs.length) {
+      throw new IllegalArgumentException("No run at " + run);
+    }
+    if (this.runs[run].length == this.rowCount) {
+      return this.runs[run];
+    }
+    synchronized (this) {
+      if (this.exactRuns == null) {
+        this.exactRuns = new double[this.runs.length][];
+      }
+      if (this.exactRuns[run] == null) {
+        this.exactRuns[run] = Arrays.copyOf(this.runs[run], this.rowCount);
+      }
+      return this.exactRuns[run];
+    }
+  }
+
+  /**
+   * Gets the wavelength of one row, without the whole axis, for code that only looks at a few
+   * rows such as the ones just appended.
+   *
+   * @param row is the row, starting with 0 for the first wavelength
+   * @return the wavelength
+   * @throws IllegalArgumentException if there is no such row
+   */
+  public double getWavelength(int row) throws IllegalArgumentException {
+    if (row < 0 || row >= this.rowCount) {
+      throw new IllegalArgumentException("No row at " + row);
+    }
+    return this.wavelengths[row];
+  }
+
+  /**
+   * Gets the absorbance of one run at one row, without the whole run, for code that only looks at
+   * a few rows such as the ones just appended.
+   *
+   * @param run is the run number
+   * @param row is the row, starting with 0 for the first wavelength
+   * @return the absorbance
+   * @throws IllegalArgumentException if there is no such run or row
+   */
+  public double getValue(int run, int row) throws IllegalArgumentException {
+    if (run < 0 || run >= this.runs.length) {
+      throw new IllegalArgumentException("No run at " + run);
+    }
+    if (row < 0 || row >= this.rowCount) {
+      throw new IllegalArgumentException("No row at " + row);
+    }
+    return this.runs[run][row];
+  }
+
+  /**
+   * Gets every run's absorbance at the given row.
+   *
+   * @param row is the row, starting with 0 for the first wavelength
+   * @return a new array with a value per run
+   */
+  public double[] getRow(int row) {
+    if (row < 0 || row >= this.rowCount) {
+      throw new IllegalArgumentException("No row at " + row);
+    }
+    double[] values = new double[this.runs.length];
+    for (int run = 0; run < this.runs.length; run++) {
+      values[run] = this.runs[run][row];
+    }
+    return values;
+  }
+
+  /**
+   * Gets every run's absorbance at the given wavelength.
+   *
+   * @param wavelength is the exact wavelength
+   * @return a new array with a value per run
+   * @throws IllegalArgumentException if there is no such wavelength
+   */
+  public double[] getRowAt(double wavelength) throws IllegalArgumentException {
+    int row = this.index.indexOf(wavelength);
+    if (row == -1) {
+      throw new IllegalArgumentException("No such wavelength as " + wavelength);
+    }
+    return this.getRow(row);
+  }
+
+  /**
+   * Gets every run's absorbance at the closest wavelength within the tolerance.
+   *
+   * @param wavelength is the wavelength
+   * @param tolerance  is how far away the closest wavelength may be
+   * @return a new array with a value per run
+   * @throws IllegalArgumentException if no wavelength is close enough
+   */
+  public double[] getRowNear(double wavelength, double tolerance)
+      throws IllegalArgumentException {
+    int row = this.index.nearest(wavelength, tolerance);
+    if (row == -1) {
+      throw new IllegalArgumentException("No wavelength within " + tolerance + " of " + wavelength);
+    }
+    return this.getRow(row);
+  }
+
+  /**
+   * Gets the wavelength to row lookup built when this was loaded.
+   *
+   * @return the index of the wavelengths
+   */
+  public WavelengthIndex getIndex() {
+    return this.index;
+  }
+
+  /**
+   * Formats a row back into csv cells, NaN becomes an empty cell.
+   *
+   * @param row is the row, -1 for the header
+   * @return the csv cells of that row
+   */
+  public String[] toCells(int row) {
+    if (row == -1) {
+      return this.labels.clone();
+    }
+    String[] cells = new String[this.runs.length + 1];
+    cells[0] = formatCell(this.wavelengths[row]);
+    for (int run = 0; run < this.runs.length; run++) {
+      cells[run + 1] = formatCell(this.runs[run][row]);
+    }
+    return cells;
+  }
+
+  /**
+   * Formats a value as a csv cell, written out in full so a spreadsheet never gets an exponent.
+   *
+   * @param value is the value
+   * @return the text, empty if the value is NaN
+   */
+  public static String formatCell(double value) {
+    if (Double.isNaN(value)) {
+      return "";
+    }
+    if (Double.isInfinite(value)) {
+      return Double.toString(value);
+    }
+    // The shortest digits that read back as the same double, without scientific notation, and
+    // with a decimal place like Double.toString gives, so 1.0E-7 is 0.0000001 and not 0.00000010
+    BigDecimal plain = BigDecimal.valueOf(value).stripTrailingZeros();
+    return (plain.scale() < 1 ? plain.setScale(1) : plain).toPlainString();
+  }
+
+  /**
+   * Builds a data set one csv row at a time so a file can be parsed while it is streamed. Only the
+   * parsed columns grow, the rows themselves are not kept.
+   */
+  public static final class Builder {
+
+    private final String[] labels;
+    private double[] wavelengths;
+    private final double[][] runs;
+    private int size;
+
+    /**
+     * Starts a data set with the given header.
+     *
+     * @param labels   is the header row, the first label is the wavelength column
+     * @param capacity is the expected number of rows, it will grow past this if needed
+     */
+    public Builder(String[] labels, int capacity) {
+      int initial = Math.max(capacity, 16);
+      this.labels = labels;
+      this.wavelengths = new double[initial];
+      this.runs = new double[Math.max(labels.length - 1, 0)][initial];
+    }
+
+    /**
+     * Parses and adds a csv row, missing cells become NaN.
+     *
+     * @param cells is the csv row
+     * @return this builder
+     * @throws IllegalArgumentException if the wavelength is not a number
+     */
+    public Builder addRow(String[] cells) throws IllegalArgumentException {
+      this.ensureCapacity();
+      this.wavelengths[this.size] = parseWavelength(cells);
+      for (int run = 0; run < this.runs.length; run++) {
+        this.runs[run][this.size] =
+            run + 1 < cells.length ? parseCell(cells[run + 1]) : Double.NaN;
+      }
+      this.size++;
+      return this;
+    }
+
+    /**
+     * Adds a row that is already parsed, the values are copied.
+     *
+     * @param wavelength is the wavelength of the row
+     * @param values     is the absorbance of each run, missing runs become NaN
+     * @return this builder
+     */
+    public Builder addRow(double wavelength, double[] values) {
+      this.ensureCapacity();
+      this.wavelengths[this.size] = wavelength;
+      for (int run = 0; run < this.runs.length; run++) {
+        this.runs[run][this.size] = run < values.length ? values[run] : Double.NaN;
+      }
+      this.size++;
+      return this;
+    }
+
+    /**
+     * Finishes the data set, trimming the columns to the rows added.
+     *
+     * @return the parsed data
+     */
+    public SpectrumData build() {
+      double[][] trimmed = new double[this.runs.length][];
+      for (int run = 0; run < this.runs.length; run++) {
+        trimmed[run] = Arrays.copyOf(this.runs[run], this.size);
+      }
+      return new SpectrumData(this.labels, Arrays.copyOf(this.wavelengths, this.size), trimmed);
+    }
+
+    // Doubles every column when the next row would not fit
+    private void ensureCapacity() {
+      if (this.size < this.wavelengths.length) {
+        return;
+      }
+      int grown = this.wavelengths.length * 2;
+      this.wavelengths = Arrays.copyOf(this.wavelengths, grown);
+      for (int run = 0; run < this.runs.length; run++) {
+        this.runs[run] = Arrays.copyOf(this.runs[run], grown);
+      }
+    }
+  }
+}
@@ -0,0 +1,608 @@
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Singular value decomposition of the wavelength by run matrix of a titration, which counts the
+ * species that absorb: each species adds one singular value above the noise, its spectrum to the
+ * components and how much of it each run has to the profiles. Centering first takes the mean
+ * spectrum away, which is principal component analysis.
+ *
+ * <p>The matrix is multiplied by itself along its shorter side, in cache sized tiles, and the
+ * eigenvalues of that product are the squared singular values. The product is brought to
+ * tridiagonal form with Householder reflections, its eigenvalues come from implicit QL steps and
+ * only the wanted eigenvectors are found, by inverse iteration, so a 1000 by 1000 matrix does not
+ * pay for the other 990. The product, the reflections and the longer side of each component are
+ * split over a ForkJoinPool.
+ */
+public class SpectrumDecomposition {
+
+  // Vectors in one tile of the product and the length of them read at once, which keeps a tile
+  // of 2 * 32 slices of 512 values in the cache while it is used by every pair
+  private static final int TILE = 32;
+  private static final int SLICE = 512;
+  // Rows of the product one task works on before the work is split no further
+  private static final int ROWS_PER_TASK = 64;
+  private static final int INVERSE_ITERATIONS = 3;
+  private static final double EPSILON = Math.ulp(1.0);
+
+  /**
+   * A decomposed titration.
+   *
+   * @param singularValues is every singular value, largest first
+   * @param wavelengths    is the wavelength of every row of the components, shared so do not
+   *                       modify them
+   * @param components     is the spectrum of each of the first components, one value per
+   *                       wavelength and each of unit length
+   * @param profiles       is how much of each of the first components every run has, one value
+   *                       per run and each of unit length
+   * @param centered       is if the mean spectrum was taken away first
+   */
+  public record Result(double[] singularValues, double[] wavelengths, double[][] components,
+                       double[][] profiles, boolean centered) {
+
+    /**
+     * Gives the fraction of the total sum of squares of each singular value.
+     *
+     * @return the fraction of each singular value, in the same order
+     */
+    public double[] explained() {
+      double total = 0;
+      for (double value : this.singularValues) {
+        total += value * value;
+      }
+      double[] explained = new double[this.singularValues.length];
+      for (int at = 0; at < explained.length && total > 0; at++) {
+        explained[at] = this.singularValues[at] * this.singularValues[at] / total;
+      }
+      return explained;
+    }
+  }
+
+  private final int components;
+  private final boolean centered;
+  private final ForkJoinPool pool;
+
+  /**
+   * Makes a decomposition that runs on the common ForkJoinPool.
+   *
+   * @param components is how many components and profiles are kept
+   * @param centered   is if the mean spectrum is taken away first
+   * @throws IllegalArgumentException if no components are wanted
+   */
+  public SpectrumDecomposition(int components, boolean centered)
+      throws IllegalArgumentException {
+    this(components, centered, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Makes a decomposition.
+   *
+   * @param components is how many components and profiles are kept
+   * @param centered   is if the mean spectrum is taken away first
+   * @param pool       is where the work is split
+   * @throws IllegalArgumentException if no components are wanted
+   */
+  public SpectrumDecomposition(int components, boolean centered, ForkJoinPool pool)
+      throws IllegalArgumentException {
+    if (components < 1) {
+      throw new IllegalArgumentException("At least one component must be kept");
+    }
+    this.components = components;
+    this.centered = centered;
+    this.pool = pool;
+  }
+
+  /**
+   * Decomposes every run at every wavelength where each run has a value. A wavelength that is
+   * empty in any run would make every singular value NaN, so it is left out and the result's
+   * wavelengths are only the ones that were used.
+   *
+   * @param data is the titration
+   * @return the singular values and the first components, fewer if there are fewer runs or
+   *     wavelengths than were asked for
+   * @throws IllegalArgumentException if there is nothing to decompose or no wavelength has a
+   *                                  value in every run
+   */
+  public Result decompose(SpectrumData data) throws IllegalArgumentException {
+    int runs = data.getRunCount();
+    if (data.getRowCount() == 0 || runs == 0) {
+      throw new IllegalArgumentException("There are no values to decompose");
+    }
+    int[] used = complete(data);
+    int rows = used.length;
+    if (rows == 0) {
+      throw new IllegalArgumentException("No wavelength has a value in every run");
+    }
+    // The shorter side is multiplied, its vectors run along the longer side
+    boolean byRun = runs <= rows;
+    double[][] vectors = this.vectors(data, used, byRun);
+    int size = vectors.length;
+    int length = vectors[0].length;
+
+    double[][] product = this.product(vectors);
+    double[] betas = new double[size];
+    double[] diagonal = new double[size];
+    double[] offDiagonal = new double[size];
+    this.tridiagonalize(product, betas, diagonal, offDiagonal);
+    double[] eigenvalues = eigenvalues(diagonal, offDiagonal);
+
+    double[] singularValues = new double[size];
+    for (int at = 0; at < size; at++) {
+      singularValues[at] = Math.sqrt(Math.max(eigenvalues[at], 0));
+    }
+    int kept = Math.min(this.components, size);
+    double[][] tridiagonal = new double[kept][];
+    double[][] shortSide = new double[kept][];
+    double[][] longSide = new double[kept][];
+    double scale = 0;
+    for (double value : diagonal) {
+      scale = Math.max(scale, Math.abs(value));
+    }
+    for (double value : offDiagonal) {
+      scale = Math.max(scale, Math.abs(value));
+    }
+    for (int at = 0; at < kept; at++) {
+      double[] vector = eigenvector(diagonal, offDiagonal, eigenvalues[at], scale,
+          Arrays.copyOf(tridiagonal, at), at);
+      tridiagonal[at] = vector.clone();
+      backTransform(product, betas, vector);
+      longSide[at] = this.project(vectors, vector, length, singularValues[at]);
+      // Keeps a sign, the largest value of the spectrum is positive
+      double[] spectrum = byRun ? longSide[at] : vector;
+      if (spectrum[largest(spectrum)] < 0) {
+        negate(vector);
+        negate(longSide[at]);
+      }
+      shortSide[at] = vector;
+    }
+    double[] wavelengths = gather(data.getWavelengths(), used);
+    return new Result(singularValues, wavelengths, byRun ? longSide : shortSide,
+        byRun ? shortSide : longSide, this.centered);
+  }
+
+  // The rows where every run has a value
+  private static int[] complete(SpectrumData data) {
+    int rows = data.getRowCount();
+    boolean[] empty = new boolean[rows];
+    int count = rows;
+    for (int run = 0; run < data.getRunCount(); run++) {
+      double[] values = data.getRun(run);
+      for (int row = 0; row < rows; row++) {
+        if (!empty[row] && !Double.isFinite(values[row])) {
+          empty[row] = true;
+          count--;
+        }
+      }
+    }
+    int[] kept = new int[count];
+    int at = 0;
+    for (int row = 0; row < rows; row++) {
+      if (!empty[row]) {
+        kept[at++] = row;
+      }
+    }
+    return kept;
+  }
+
+  // The kept rows of a column, the column itself when every row of it is kept
+  private static double[] gather(double[] column, int[] kept) {
+    if (column.length == kept.length) {
+      return column;
+    }
+    double[] values = new double[kept.length];
+    for (int at = 0; at < kept.length; at++) {
+      values[at] = column[kept[at]];
+    }
+    return values;
+  }
+
+  // The runs, or the rows when there are more runs, at the kept rows with the mean spectrum taken
+  // away if centered
+  private double[][] vectors(SpectrumData data, int[] kept, boolean byRun) {
+    int rows = kept.length;
+    int runs = data.getRunCount();
+    double[] mean = new double[rows];
+    if (this.centered) {
+      for (int run = 0; run < runs; run++) {
+        double[] values = data.getRun(run);
+        for (int row = 0; row < rows; row++) {
+          mean[row] += values[kept[row]];
+        }
+      }
+      for (int row = 0; row < rows; row++) {
+        mean[row] /= runs;
+      }
+    }
+    if (byRun) {
+      double[][] vectors = new double[runs][];
+      for (int run = 0; run < runs; run++) {
+        vectors[run] = gather(data.getRun(run), kept);
+        if (this.centered) {
+          vectors[run] = vectors[run] == data.getRun(run) ? vectors[run].clone() : vectors[run];
+          for (int row = 0; row < rows; row++) {
+            vectors[run][row] -= mean[row];
+          }
+        }
+      }
+      return vectors;
+    }
+    double[][] vectors = new double[rows][runs];
+    for (int run = 0; run < runs; run++) {
+      double[] values = data.getRun(run);
+      for (int row = 0; row < rows; row++) {
+        vectors[row][run] = values[kept[row]] - mean[row];
+      }
+    }
+    return vectors;
+  }
+
+  // Every dot product of the vectors, worked out one pair of tiles at a time. A tile on the
+  // diagonal is worked out whole and its lower half is then copied over like the rest
+  private double[][] product(double[][] vectors) {
+    int size = vectors.length;
+    int length = vectors[0].length;
+    int tiles = (size + TILE - 1) / TILE;
+    int[] pairs = new int[tiles * (tiles + 1)];
+    int count = 0;
+    for (int first = 0; first < tiles; first++) {
+      for (int second = first; second < tiles; second++) {
+        pairs[count++] = first;
+        pairs[count++] = second;
+      }
+    }
+    double[][] product = new double[size][size];
+    this.pool.invoke(new RangeTask(0, count / 2, 1, (from, to) -> {
+      for (int pair = from; pair < to; pair++) {
+        int firstStart = pairs[2 * pair] * TILE;
+        int secondStart = pairs[2 * pair + 1] * TILE;
+        int firstEnd = Math.min(firstStart + TILE, size);
+        int secondEnd = Math.min(secondStart + TILE, size);
+        for (int start = 0; start < length; start += SLICE) {
+          int end = Math.min(start + SLICE, length);
+          // Two by two at a time, so each value read is used twice
+          for (int i = firstStart; i < firstEnd; i += 2) {
+            boolean pairI = i + 1 < firstEnd;
+            double[] i0 = vectors[i];
+            double[] i1 = pairI ? vectors[i + 1] : i0;
+            for (int j = secondStart; j < secondEnd; j += 2) {
+              boolean pairJ = j + 1 < secondEnd;
+              double[] j0 = vectors[j];
+              double[] j1 = pairJ ? vectors[j + 1] : j0;
+              double s00 = 0;
+              double s01 = 0;
+              double s10 = 0;
+              double s11 = 0;
+              for (int at = start; at < end; at++) {
+                double a = i0[at];
+                double b = i1[at];
+                double c = j0[at];
+                double d = j1[at];
+                s00 += a * c;
+                s01 += a * d;
+                s10 += b * c;
+                s11 += b * d;
+              }
+              product[i][j] += s00;
+              if (pairJ) {
+                product[i][j + 1] += s01;
+              }
+              if (pairI) {
+                product[i + 1][j] += s10;
+                if (pairJ) {
+                  product[i + 1][j + 1] += s11;
+                }
+              }
+            }
+          }
+        }
+      }
+    }));
+    for (int i = 0; i < size; i++) {
+      for (int j = i + 1; j < size; j++) {
+        product[j][i] = product[i][j];
+      }
+    }
+    return product;
+  }
+
+  // Four sums at once so the additions do not wait on each other
+  private static double dot(double[] first, double[] second, int from, int to) {
+    double sum0 = 0;
+    double sum1 = 0;
+    double sum2 = 0;
+    double sum3 = 0;
+    int at = from;
+    for (; at + 3 < to; at += 4) {
+      sum0 += first[at] * second[at];
+      sum1 += first[at + 1] * second[at + 1];
+      sum2 += first[at + 2] * second[at + 2];
+      sum3 += first[at + 3] * second[at + 3];
+    }
+    for (; at < to; at++) {
+      sum0 += first[at] * second[at];
+    }
+    return (sum0 + sum1) + (sum2 + sum3);
+  }
+
+  /**
+   * Reduces the symmetric matrix to tridiagonal form in place, column by column. The reflection
+   * of each column is kept in its row past the diagonal with its beta, so eigenvectors can be
+   * turned back into eigenvectors of the matrix. Each row takes the last column's update in the
+   * same pass that multiplies it by the next reflection, so the matrix is read once per column.
+   */
+  private void tridiagonalize(double[][] matrix, double[] betas, double[] diagonal,
+      double[] offDiagonal) {
+    int size = matrix.length;
+    double[] p = new double[size];
+    double[] w = new double[size];
+    double[] last = null;
+    for (int k = 0; k < size - 2; k++) {
+      double[] v = matrix[k];
+      if (last != null) {
+        update(v, last, w, last[k], w[k], k);
+      }
+      double norm = 0;
+      for (int i = k + 1; i < size; i++) {
+        norm += v[i] * v[i];
+      }
+      norm = Math.sqrt(norm);
+      double alpha = v[k + 1] > 0 ? -norm : norm;
+      // Taking alpha from the first value makes v.v twice norm * norm - first * alpha
+      double beta = norm == 0 ? 0 : 1 / (norm * norm - v[k + 1] * alpha);
+      v[k + 1] -= alpha;
+      diagonal[k] = v[k];
+      offDiagonal[k + 1] = alpha;
+      betas[k] = beta;
+      final int from = k + 1;
+      final double[] pending = last;
+      this.pool.invoke(new RangeTask(from, size, ROWS_PER_TASK, (first, end) -> {
+        for (int i = first; i < end; i++) {
+          if (pending != null) {
+            update(matrix[i], pending, w, pending[i], w[i], from - 1);
+          }
+          p[i] = beta * dot(matrix[i], v, from, size);
+        }
+      }));
+      double half = 0;
+      for (int i = from; i < size; i++) {
+        half += v[i] * p[i];
+      }
+      half *= beta / 2;
+      for (int i = from; i < size; i++) {
+        w[i] = p[i] - half * v[i];
+      }
+      last = v;
+    }
+    for (int i = Math.max(size - 2, 0); i < size && last != null; i++) {
+      update(matrix[i], last, w, last[i], w[i], size - 2);
+    }
+    if (size > 1) {
+      diagonal[size - 2] = matrix[size - 2][size - 2];
+      offDiagonal[size - 1] = matrix[size - 1][size - 2];
+    }
+    diagonal[size - 1] = matrix[size - 1][size - 1];
+  }
+
+  // Takes v w' + w v' away from a row, from a column on
+  private static void update(double[] row, double[] v, double[] w, double vi, double wi,
+      int from) {
+    for (int j = from; j < row.length; j++) {
+      row[j] -= vi * w[j] + wi * v[j];
+    }
+  }
+
+  /**
+   * Eigenvalues of the tridiagonal matrix by implicit QL steps with Wilkinson shifts, largest
+   * first. The off diagonal is from row 1 on, with row 0's unused.
+   */
+  private static double[] eigenvalues(double[] diagonal, double[] offDiagonal) {
+    int size = diagonal.length;
+    double[] d = diagonal.clone();
+    double[] e = new double[size];
+    System.arraycopy(offDiagonal, 1, e, 0, size - 1);
+    double shift = 0;
+    double largest = 0;
+    for (int l = 0; l < size; l++) {
+      largest = Math.max(largest, Math.abs(d[l]) + Math.abs(e[l]));
+      int m = l;
+      while (m < size - 1 && Math.abs(e[m]) > EPSILON * largest) {
+        m++;
+      }
+      if (m > l) {
+        do {
+          double g = d[l];
+          double p = (d[l + 1] - g) / (2 * e[l]);
+          double r = Math.hypot(p, 1);
+          if (p < 0) {
+            r = -r;
+          }
+          d[l] = e[l] / (p + r);
+          d[l + 1] = e[l] * (p + r);
+          double next = d[l + 1];
+          double h = g - d[l];
+          for (int i = l + 2; i < size; i++) {
+            d[i] -= h;
+          }
+          shift += h;
+          p = d[m];
+          double c = 1;
+          double c2 = 1;
+          double c3 = 1;
+          double nextOff = e[l + 1];
+          double s = 0;
+          double s2 = 0;
+          for (int i = m - 1; i >= l; i--) {
+            c3 = c2;
+            c2 = c;
+            s2 = s;
+            g = c * e[i];
+            h = c * p;
+            r = Math.hypot(p, e[i]);
+            e[i + 1] = s * r;
+            s = e[i] / r;
+            c = p / r;
+            p = c * d[i] - s * g;
+            d[i + 1] = h + s * (c * g + s * d[i]);
+          }
+          p = -s * s2 * c3 * nextOff * e[l] / next;
+          e[l] = s * p;
+          d[l] = c * p;
+        } while (Math.abs(e[l]) > EPSILON * largest);
+      }
+      d[l] += shift;
+      e[l] = 0;
+    }
+    Arrays.sort(d);
+    for (int i = 0, j = size - 1; i < j; i++, j--) {
+      double swap = d[i];
+      d[i] = d[j];
+      d[j] = swap;
+    }
+    return d;
+  }
+
+  /**
+   * Eigenvector of the tridiagonal matrix for an eigenvalue, by solving against the matrix less
+   * the eigenvalue a few times. Each solve is made orthogonal to the vectors found before, which
+   * keeps eigenvalues that are nearly the same from giving the same vector.
+   */
+  private static double[] eigenvector(double[] diagonal, double[] offDiagonal, double eigenvalue,
+      double scale, double[][] found, long seed) {
+    int size = diagonal.length;
+    double tiny = Math.max(scale, Double.MIN_NORMAL) * EPSILON;
+    // LU with partial pivoting, each row of U has its diagonal and two values past it
+    double[] u0 = new double[size];
+    double[] u1 = new double[size];
+    double[] u2 = new double[size];
+    double[] multipliers = new double[size];
+    boolean[] swapped = new boolean[size];
+    double pivot = diagonal[0] - eigenvalue;
+    double past = size > 1 ? offDiagonal[1] : 0;
+    for (int i = 0; i < size - 1; i++) {
+      double below = offDiagonal[i + 1];
+      double nextDiagonal = diagonal[i + 1] - eigenvalue;
+      double nextPast = i + 2 < size ? offDiagonal[i + 2] : 0;
+      if (Math.abs(pivot) >= Math.abs(below)) {
+        if (pivot == 0) {
+          pivot = tiny;
+        }
+        double multiplier = below / pivot;
+        u0[i] = pivot;
+        u1[i] = past;
+        multipliers[i] = multiplier;
+        pivot = nextDiagonal - multiplier * past;
+        past = nextPast;
+      } else {
+        double multiplier = pivot / below;
+        u0[i] = below;
+        u1[i] = nextDiagonal;
+        u2[i] = nextPast;
+        multipliers[i] = multiplier;
+        swapped[i] = true;
+        pivot = past - multiplier * nextDiagonal;
+        past = -multiplier * nextPast;
+      }
+    }
+    u0[size - 1] = Math.abs(pivot) < tiny ? tiny : pivot;
+    for (int i = 0; i < size - 1; i++) {
+      if (Math.abs(u0[i]) < tiny) {
+        u0[i] = Math.copySign(tiny, u0[i]);
+      }
+    }
+
+    SplittableRandom random = new SplittableRandom(seed);
+    double[] x = new double[size];
+    for (int i = 0; i < size; i++) {
+      x[i] = random.nextDouble() - 0.5;
+    }
+    for (int iteration = 0; iteration < INVERSE_ITERATIONS; iteration++) {
+      for (int i = 0; i < size - 1; i++) {
+        if (swapped[i]) {
+          double swap = x[i];
+          x[i] = x[i + 1];
+          x[i + 1] = swap;
+        }
+        x[i + 1] -= multipliers[i] * x[i];
+      }
+      for (int i = size - 1; i >= 0; i--) {
+        double sum = x[i];
+        if (i + 1 < size) {
+          sum -= u1[i] * x[i + 1];
+        }
+        if (i + 2 < size) {
+          sum -= u2[i] * x[i + 2];
+        }
+        x[i] = sum / u0[i];
+      }
+      for (double[] other : found) {
+        double along = dot(x, other, 0, size);
+        for (int i = 0; i < size; i++) {
+          x[i] -= along * other[i];
+        }
+      }
+      double norm = Math.sqrt(dot(x, x, 0, size));
+      if (norm == 0) {
+        x[(int) (seed % size)] = 1;
+        norm = 1;
+      }
+      for (int i = 0; i < size; i++) {
+        x[i] /= norm;
+      }
+    }
+    return x;
+  }
+
+  // Applies the reflections from last to first, turning a tridiagonal eigenvector into one of
+  // the product
+  private static void backTransform(double[][] reflections, double[] betas, double[] vector) {
+    int size = vector.length;
+    for (int k = size - 3; k >= 0; k--) {
+      if (betas[k] == 0) {
+        continue;
+      }
+      double[] v = reflections[k];
+      double along = betas[k] * dot(v, vector, k + 1, size);
+      for (int i = k + 1; i < size; i++) {
+        vector[i] -= along * v[i];
+      }
+    }
+  }
+
+  // The other side of a singular pair, the vectors weighted by the eigenvector over the value
+  private double[] project(double[][] vectors, double[] weights, int length,
+      double singularValue) {
+    double[] projected = new double[length];
+    if (singularValue == 0) {
+      return projected;
+    }
+    this.pool.invoke(new RangeTask(0, length, SLICE, (from, to) -> {
+      for (int at = 0; at < vectors.length; at++) {
+        double weight = weights[at] / singularValue;
+        double[] vector = vectors[at];
+        for (int i = from; i < to; i++) {
+          projected[i] += weight * vector[i];
+        }
+      }
+    }));
+    return projected;
+  }
+
+  private static int largest(double[] values) {
+    int largest = 0;
+    for (int at = 1; at < values.length; at++) {
+      if (Math.abs(values[at]) > Math.abs(values[largest])) {
+        largest = at;
+      }
+    }
+    return largest;
+  }
+
+  private static void negate(double[] values) {
+    for (int at = 0; at < values.length; at++) {
+      values[at] = -values[at];
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Values changed by hand in a parsed csv, kept apart from the csv itself. Edits are persistent:
+ * changing a value gives new edits and leaves these as they were, sharing every run and chunk of
+ * a run that did not change. Keeping each version for undo only costs what changed.
+ */
+public final class SpectrumEdits {
+
+  private static final AtomicLong VERSIONS = new AtomicLong();
+
+  /**
+   * No edits at all.
+   */
+  public static final SpectrumEdits NONE = new SpectrumEdits(null, new ChunkedColumn[0]);
+
+  private final long version;
+  private final SpectrumData base;
+  // Edited runs, null where a run has not been edited
+  private final ChunkedColumn[] runs;
+
+  private SpectrumEdits(SpectrumData base, ChunkedColumn[] runs) {
+    this.version = VERSIONS.incrementAndGet();
+    this.base = base;
+    this.runs = runs;
+  }
+
+  /**
+   * Checks if nothing was edited.
+   *
+   * @return true if there are no edits
+   */
+  public boolean isEmpty() {
+    return this.base == null;
+  }
+
+  /**
+   * Gets a number that is different for every version of the edits.
+   *
+   * @return the version
+   */
+  public long getVersion() {
+    return this.version;
+  }
+
+  /**
+   * Makes new edits with values of some runs at one row changed. Edits of other data are dropped.
+   *
+   * @param base   is the parsed csv being edited
+   * @param row    is the row of the values
+   * @param runs   is each run that is changed, starting with 0
+   * @param values is the new value of each run
+   * @return the new edits
+   * @throws IllegalArgumentException if there is no such row or run
+   */
+  public SpectrumEdits with(SpectrumData base, int row, int[] runs, double[] values)
+      throws IllegalArgumentException {
+    if (row < 0 || row >= base.getRowCount()) {
+      throw new IllegalArgumentException("No row at " + row);
+    }
+    if (runs.length != values.length) {
+      throw new IllegalArgumentException("Every edited run needs a value");
+    }
+    ChunkedColumn[] newRuns =
+        base == this.base ? this.runs.clone() : new ChunkedColumn[base.getRunCount()];
+    for (int i = 0; i < runs.length; i++) {
+      int run = runs[i];
+      if (run < 0 || run >= newRuns.length) {
+        throw new IllegalArgumentException("No run at " + run);
+      }
+      ChunkedColumn column =
+          newRuns[run] == null ? new ChunkedColumn(base.getRun(run)) : newRuns[run];
+      newRuns[run] = column.with(row, values[i]);
+    }
+    return new SpectrumEdits(base, newRuns);
+  }
+
+  /**
+   * Applies the edits to the csv they were made for, runs that were not edited are shared.
+   *
+   * @param data is the parsed csv
+   * @return the edited csv, the same data if there are no edits
+   * @throws IllegalArgumentException if the edits were made for other data
+   */
+  public SpectrumData applyTo(SpectrumData data) throws IllegalArgumentException {
+    if (this.isEmpty()) {
+      return data;
+    }
+    if (data != this.base) {
+      throw new IllegalArgumentException("The edits were made for another CSV");
+    }
+    double[][] edited = new double[data.getRunCount()][];
+    for (int run = 0; run < edited.length; run++) {
+      edited[run] = this.runs[run] == null ? data.getRun(run) : this.runs[run].toArray();
+    }
+    return new SpectrumData(data.getLabels(), data.getWavelengths(), edited, data.getIndex());
+  }
+}
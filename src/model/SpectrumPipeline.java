@@ -0,0 +1,83 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered list of corrections applied to every loaded csv. Pipelines are immutable, adding a
+ * transform gives a new pipeline, and two pipelines with the same key give the same result so
+ * the corrected data is cached by it.
+ */
+public final class SpectrumPipeline {
+
+  /**
+   * The pipeline that changes nothing.
+   */
+  public static final SpectrumPipeline NONE = new SpectrumPipeline(List.of());
+
+  private final List<SpectrumTransform> transforms;
+  private final String key;
+
+  private SpectrumPipeline(List<SpectrumTransform> transforms) {
+    this.transforms = transforms;
+    StringBuilder key = new StringBuilder();
+    for (SpectrumTransform transform : transforms) {
+      key.append(transform.key()).append(';');
+    }
+    this.key = key.toString();
+  }
+
+  /**
+   * Makes a pipeline that also applies the given transform after the others.
+   *
+   * @param transform is the transform to add
+   * @return the new pipeline
+   */
+  public SpectrumPipeline then(SpectrumTransform transform) {
+    List<SpectrumTransform> added = new ArrayList<>(this.transforms);
+    added.add(transform);
+    return new SpectrumPipeline(Collections.unmodifiableList(added));
+  }
+
+  /**
+   * Gets the transforms in the order they are applied.
+   *
+   * @return the transforms
+   */
+  public List<SpectrumTransform> getTransforms() {
+    return this.transforms;
+  }
+
+  /**
+   * Checks if the pipeline changes nothing.
+   *
+   * @return true if there are no transforms
+   */
+  public boolean isEmpty() {
+    return this.transforms.isEmpty();
+  }
+
+  /**
+   * Describes every transform in order, pipelines with the same key give the same result.
+   *
+   * @return the key of this pipeline
+   */
+  public String key() {
+    return this.key;
+  }
+
+  /**
+   * Applies each transform in order.
+   *
+   * @param data is the data to correct, it is not changed
+   * @return the corrected data
+   */
+  public SpectrumData apply(SpectrumData data) {
+    SpectrumData corrected = data;
+    for (SpectrumTransform transform : this.transforms) {
+      corrected = transform.apply(corrected);
+    }
+    return corrected;
+  }
+}
@@ -0,0 +1,248 @@
+package model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * A binary copy of a parsed csv that is kept next to it as "name.csv.spectrum", so the csv is only
+ * parsed once. The file is a small header, the labels and then every column as little-endian
+ * doubles, read back a chunk at a time straight into the columns. It is read, not mapped, as a
+ * mapping keeps the file locked on Windows until it is garbage collected and a new sidecar could
+ * not replace it. It records the size, modification time and a hash of the csv it was made from and
+ * is ignored once the csv changes. The csv stays the file to share, a missing or stale sidecar is
+ * simply made again.
+ */
+final class SpectrumSidecar {
+
+  private static final String SUFFIX = ".spectrum";
+  private static final int MAGIC = 0x43455053; // "SPEC"
+  private static final int VERSION = 1;
+  // Bytes hashed from each end of the csv, enough to notice an edit without reading all of it
+  private static final int HASHED_BYTES = 1 << 16;
+  private static final int COLUMN_CHUNK = 1 << 16;
+
+  private SpectrumSidecar() {
+  }
+
+  /**
+   * Gets the sidecar file of a csv.
+   *
+   * @param csvPath is the csv file
+   * @return the path of its sidecar
+   */
+  static String pathOf(String csvPath) {
+    return csvPath + SUFFIX;
+  }
+
+  /**
+   * Reads the sidecar of a csv if it was made from the csv as it is now.
+   *
+   * @param csvPath is the csv file
+   * @return the data, or null if there is no sidecar or it is out of date
+   */
+  static SpectrumData read(String csvPath) {
+    Path sidecar = Path.of(pathOf(csvPath));
+    if (!Files.isRegularFile(sidecar)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long[] source = sourceStamp(Path.of(csvPath));
+      // The header is read from the start of the file, more of it if the labels run past it
+      int prefix = (int) Math.min(size, COLUMN_CHUNK);
+      while (true) {
+        ByteBuffer buffer = ByteBuffer.allocate(prefix).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, 0);
+        try {
+          return read(channel, buffer, size, source);
+        } catch (BufferUnderflowException e) {
+          if (prefix == size) {
+            return null;
+          }
+          prefix = (int) Math.min(size, (long) prefix * 2);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // A sidecar that cannot be read is treated like a missing one
+      return null;
+    }
+  }
+
+  // Checks the header at the start of the buffer, then reads every column after it
+  private static SpectrumData read(FileChannel channel, ByteBuffer buffer, long size,
+      long[] source) throws IOException {
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      return null;
+    }
+    if (buffer.getLong() != source[0] || buffer.getLong() != source[1]
+        || buffer.getLong() != source[2]) {
+      return null;
+    }
+    String[] labels = new String[buffer.getInt()];
+    for (int col = 0; col < labels.length; col++) {
+      int length = buffer.getInt();
+      if (length >= 0) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        labels[col] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    int rows = buffer.getInt();
+    int runs = buffer.getInt();
+    long position = align(buffer.position());
+    if (runs != labels.length - 1 || size - position != (long) rows * (runs + 1) * Double.BYTES) {
+      return null;
+    }
+    ByteBuffer chunk = ByteBuffer.allocate(COLUMN_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+    double[] wavelengths = new double[rows];
+    position = readColumn(channel, chunk, wavelengths, position);
+    double[][] columns = new double[runs][rows];
+    for (int run = 0; run < runs; run++) {
+      position = readColumn(channel, chunk, columns[run], position);
+    }
+    return new SpectrumData(labels, wavelengths, columns);
+  }
+
+  /**
+   * Writes the sidecar of a csv, replacing the old one all at once so it is never read half
+   * written. Nothing happens if it cannot be written, as the csv can always be parsed instead.
+   *
+   * @param csvPath is the csv file, it must already be written
+   * @param data    is the data parsed from the csv
+   */
+  static void write(String csvPath, SpectrumData data) {
+    Path sidecar = Path.of(pathOf(csvPath));
+    Path temp = null;
+    try {
+      String[] labels = data.getLabels();
+      byte[][] labelBytes = new byte[labels.length][];
+      int headerSize = 4 + 4 + 8 * 3 + 4;
+      for (int col = 0; col < labels.length; col++) {
+        labelBytes[col] =
+            labels[col] == null ? null : labels[col].getBytes(StandardCharsets.UTF_8);
+        headerSize += 4 + (labelBytes[col] == null ? 0 : labelBytes[col].length);
+      }
+      headerSize = align(headerSize + 4 + 4);
+      int rows = data.getRowCount();
+      int runs = data.getRunCount();
+      long size = headerSize + (long) rows * (runs + 1) * Double.BYTES;
+      if (size > Integer.MAX_VALUE) {
+        return;
+      }
+
+      long[] source = sourceStamp(Path.of(csvPath));
+      // Opened like any other file, so it gets the usual permissions and not those of a temp file
+      Path next = sidecar.resolveSibling(sidecar.getFileName() + "."
+          + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+      ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION);
+      header.putLong(source[0]).putLong(source[1]).putLong(source[2]);
+      header.putInt(labels.length);
+      for (byte[] bytes : labelBytes) {
+        header.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+          header.put(bytes);
+        }
+      }
+      header.putInt(rows).putInt(runs);
+      try (FileChannel channel = FileChannel.open(next, StandardOpenOption.WRITE,
+          StandardOpenOption.CREATE_NEW)) {
+        temp = next;
+        writeFully(channel, header.clear());
+        ByteBuffer chunk = ByteBuffer.allocate(COLUMN_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+        writeColumn(channel, chunk, data.getWavelengths());
+        for (int run = 0; run < runs; run++) {
+          writeColumn(channel, chunk, data.getRun(run));
+        }
+        channel.force(false);
+      }
+      Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      // The csv is still there to parse, so a sidecar that fails to write is left out
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+          // Only a leftover temporary file
+        }
+      }
+    }
+  }
+
+  // Writes a column through a reused buffer
+  private static void writeColumn(FileChannel channel, ByteBuffer chunk, double[] column)
+      throws IOException {
+    int perChunk = chunk.capacity() / Double.BYTES;
+    for (int from = 0; from < column.length; from += perChunk) {
+      int count = Math.min(perChunk, column.length - from);
+      chunk.clear();
+      chunk.asDoubleBuffer().put(column, from, count);
+      chunk.limit(count * Double.BYTES);
+      writeFully(channel, chunk);
+    }
+  }
+
+  // Reads a column through a reused buffer, giving where the next column starts
+  private static long readColumn(FileChannel channel, ByteBuffer chunk, double[] column,
+      long position) throws IOException {
+    int perChunk = chunk.capacity() / Double.BYTES;
+    for (int from = 0; from < column.length; from += perChunk) {
+      int count = Math.min(perChunk, column.length - from);
+      chunk.clear().limit(count * Double.BYTES);
+      readFully(channel, chunk, position);
+      chunk.asDoubleBuffer().get(column, from, count);
+      position += count * Double.BYTES;
+    }
+    return position;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("The file ended early");
+      }
+    }
+    buffer.flip();
+  }
+
+  // Size, modification time and a hash of both ends of the csv
+  private static long[] sourceStamp(Path csv) throws IOException {
+    long size = Files.size(csv);
+    long modified = Files.getLastModifiedTime(csv).toMillis();
+    CRC32 hash = new CRC32();
+    try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+      ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, HASHED_BYTES));
+      readFully(channel, head, 0);
+      hash.update(head);
+      if (size > HASHED_BYTES) {
+        ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size - HASHED_BYTES, HASHED_BYTES));
+        readFully(channel, tail, size - tail.capacity());
+        hash.update(tail);
+      }
+    }
+    return new long[]{size, modified, hash.getValue()};
+  }
+
+  // Columns start on a multiple of eight bytes
+  private static int align(int position) {
+    return (position + 7) & ~7;
+  }
+}
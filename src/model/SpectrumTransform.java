@@ -0,0 +1,25 @@
+package model;
+
+/**
+ * A numeric correction of a parsed titration, such as removing a baseline or smoothing every run.
+ * Transforms never change the data they are given, runs they do not touch are shared with the
+ * result.
+ */
+public interface SpectrumTransform {
+
+  /**
+   * Applies the correction.
+   *
+   * @param data is the data to correct
+   * @return the corrected data
+   */
+  SpectrumData apply(SpectrumData data);
+
+  /**
+   * Describes the correction and all of its settings, two transforms with the same key always give
+   * the same result so corrected data can be cached by it.
+   *
+   * @return the key of this transform
+   */
+  String key();
+}
@@ -0,0 +1,374 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * The corrections that can be put in a {@link SpectrumPipeline}. Each one works a whole run at a
+ * time in plain loops over the primitive columns, which the JIT unrolls and vectorizes.
+ */
+public final class SpectrumTransforms {
+
+  private SpectrumTransforms() {
+  }
+
+  /**
+   * Subtracts each run's own absorbance at a reference wavelength, where the sample should not
+   * absorb, from the whole run.
+   *
+   * @param wavelength is the reference wavelength, the closest loaded one is used
+   * @return the transform
+   */
+  public static SpectrumTransform baseline(double wavelength) {
+    return new Baseline(wavelength);
+  }
+
+  /**
+   * Smooths every run with a Savitzky-Golay filter, fitting a polynomial to the points around
+   * each point. The wavelengths are taken to be evenly spaced.
+   *
+   * @param window is how many points each fit uses, odd
+   * @param order  is the order of the polynomial, less than the window
+   * @return the transform
+   * @throws IllegalArgumentException if the window is not odd or the order does not fit in it
+   */
+  public static SpectrumTransform savitzkyGolay(int window, int order)
+      throws IllegalArgumentException {
+    if (window < 3 || window % 2 == 0) {
+      throw new IllegalArgumentException("The smoothing window must be odd and at least 3");
+    }
+    if (order < 0 || order >= window) {
+      throw new IllegalArgumentException("The smoothing order must be less than the window");
+    }
+    return new SavitzkyGolay(window, order);
+  }
+
+  /**
+   * Undoes the dilution from adding metal, each run is multiplied by its total volume over the
+   * starting volume.
+   *
+   * @param factors is the dilution factor of each run, runs past the end are not changed
+   * @return the transform
+   */
+  public static SpectrumTransform dilution(double[] factors) {
+    return new Dilution(factors.clone(), 0);
+  }
+
+  /**
+   * Undoes the dilution when every run adds the same volume and the first run adds none, so run i
+   * is multiplied by 1 + i times the added volume.
+   *
+   * @param volumePerRun is the volume added each run over the starting volume
+   * @return the transform
+   */
+  public static SpectrumTransform dilution(double volumePerRun) {
+    return new Dilution(null, volumePerRun);
+  }
+
+  /**
+   * Subtracts a blank, such as the buffer on its own, from every run. Each wavelength uses the
+   * blank's closest wavelength, wavelengths the blank does not have become empty.
+   *
+   * @param name        is the name of the blank, part of the transform's key
+   * @param wavelengths is the wavelength of every row of the blank
+   * @param absorbances is the absorbance of the blank at each of its wavelengths
+   * @param tolerance   is how far the blank's closest wavelength may be
+   * @return the transform
+   * @throws IllegalArgumentException if the blank's columns are not the same length
+   */
+  public static SpectrumTransform blank(String name, double[] wavelengths, double[] absorbances,
+      double tolerance) throws IllegalArgumentException {
+    if (wavelengths.length != absorbances.length) {
+      throw new IllegalArgumentException("The blank needs an absorbance for each wavelength");
+    }
+    return new Blank(name, wavelengths.clone(), absorbances.clone(), tolerance);
+  }
+
+  // Makes the corrected data set, keeping the labels and wavelengths
+  private static SpectrumData withRuns(SpectrumData data, double[][] runs) {
+    return new SpectrumData(data.getLabels(), data.getWavelengths(), runs, data.getIndex());
+  }
+
+  private static final class Baseline implements SpectrumTransform {
+
+    private final double wavelength;
+
+    private Baseline(double wavelength) {
+      this.wavelength = wavelength;
+    }
+
+    @Override
+    public SpectrumData apply(SpectrumData data) {
+      if (data.getRowCount() == 0) {
+        return data;
+      }
+      int reference = data.getIndex().nearest(this.wavelength, Double.POSITIVE_INFINITY);
+      double[][] runs = new double[data.getRunCount()][];
+      for (int run = 0; run < runs.length; run++) {
+        double[] values = data.getRun(run);
+        double offset = values[reference];
+        double[] corrected = new double[values.length];
+        for (int row = 0; row < values.length; row++) {
+          corrected[row] = values[row] - offset;
+        }
+        runs[run] = corrected;
+      }
+      return withRuns(data, runs);
+    }
+
+    @Override
+    public String key() {
+      return "baseline(" + this.wavelength + ")";
+    }
+  }
+
+  private static final class SavitzkyGolay implements SpectrumTransform {
+
+    private final int window;
+    private final int order;
+    // The weights for each point of the window, row i is used for the point i into the window
+    private final double[][] weights;
+
+    private SavitzkyGolay(int window, int order) {
+      this.window = window;
+      this.order = order;
+      this.weights = weights(window, order);
+    }
+
+    @Override
+    public SpectrumData apply(SpectrumData data) {
+      if (data.getRowCount() < this.window) {
+        return data;
+      }
+      double[][] runs = new double[data.getRunCount()][];
+      for (int run = 0; run < runs.length; run++) {
+        runs[run] = this.smooth(data.getRun(run));
+      }
+      return withRuns(data, runs);
+    }
+
+    @Override
+    public String key() {
+      return "savitzkyGolay(" + this.window + "," + this.order + ")";
+    }
+
+    // The middle weights slide over the run, the ends use the weights for their place
+    private double[] smooth(double[] values) {
+      int half = this.window / 2;
+      int rows = values.length;
+      double[] smoothed = new double[rows];
+      double[] center = this.weights[half];
+      // One weight at a time over the whole run, so the inner loop is a simple vector update
+      for (int point = 0; point < this.window; point++) {
+        double weight = center[point];
+        int shift = point - half;
+        for (int row = half; row < rows - half; row++) {
+          smoothed[row] += weight * values[row + shift];
+        }
+      }
+      for (int row = 0; row < half; row++) {
+        smoothed[row] = dot(this.weights[row], values, 0);
+        smoothed[rows - 1 - row] =
+            dot(this.weights[this.window - 1 - row], values, rows - this.window);
+      }
+      return smoothed;
+    }
+
+    private static double dot(double[] weights, double[] values, int from) {
+      double sum = 0;
+      for (int point = 0; point < weights.length; point++) {
+        sum += weights[point] * values[from + point];
+      }
+      return sum;
+    }
+
+    // Least squares polynomial weights, the hat matrix of the window
+    private static double[][] weights(int window, int order) {
+      int terms = order + 1;
+      int half = window / 2;
+      double[][] powers = new double[window][terms];
+      for (int point = 0; point < window; point++) {
+        double x = point - half;
+        powers[point][0] = 1;
+        for (int term = 1; term < terms; term++) {
+          powers[point][term] = powers[point][term - 1] * x;
+        }
+      }
+      double[][] normal = new double[terms][terms];
+      for (double[] row : powers) {
+        for (int i = 0; i < terms; i++) {
+          for (int j = 0; j < terms; j++) {
+            normal[i][j] += row[i] * row[j];
+          }
+        }
+      }
+      double[][] inverse = invert(normal);
+      double[][] weights = new double[window][window];
+      for (int at = 0; at < window; at++) {
+        for (int point = 0; point < window; point++) {
+          double sum = 0;
+          for (int i = 0; i < terms; i++) {
+            for (int j = 0; j < terms; j++) {
+              sum += powers[at][i] * inverse[i][j] * powers[point][j];
+            }
+          }
+          weights[at][point] = sum;
+        }
+      }
+      return weights;
+    }
+
+    // Gauss-Jordan with partial pivoting, the matrix is small and well conditioned
+    private static double[][] invert(double[][] matrix) {
+      int size = matrix.length;
+      double[][] work = new double[size][2 * size];
+      for (int i = 0; i < size; i++) {
+        System.arraycopy(matrix[i], 0, work[i], 0, size);
+        work[i][size + i] = 1;
+      }
+      for (int col = 0; col < size; col++) {
+        int pivot = col;
+        for (int row = col + 1; row < size; row++) {
+          if (Math.abs(work[row][col]) > Math.abs(work[pivot][col])) {
+            pivot = row;
+          }
+        }
+        double[] swap = work[col];
+        work[col] = work[pivot];
+        work[pivot] = swap;
+        double scale = work[col][col];
+        for (int j = 0; j < 2 * size; j++) {
+          work[col][j] /= scale;
+        }
+        for (int row = 0; row < size; row++) {
+          double factor = work[row][col];
+          if (row != col && factor != 0) {
+            for (int j = 0; j < 2 * size; j++) {
+              work[row][j] -= factor * work[col][j];
+            }
+          }
+        }
+      }
+      double[][] inverse = new double[size][];
+      for (int i = 0; i < size; i++) {
+        inverse[i] = Arrays.copyOfRange(work[i], size, 2 * size);
+      }
+      return inverse;
+    }
+  }
+
+  private static final class Dilution implements SpectrumTransform {
+
+    private final double[] factors;
+    private final double volumePerRun;
+
+    private Dilution(double[] factors, double volumePerRun) {
+      this.factors = factors;
+      this.volumePerRun = volumePerRun;
+    }
+
+    @Override
+    public SpectrumData apply(SpectrumData data) {
+      double[][] runs = new double[data.getRunCount()][];
+      for (int run = 0; run < runs.length; run++) {
+        double[] values = data.getRun(run);
+        double factor = this.factor(run);
+        if (factor == 1) {
+          runs[run] = values;
+          continue;
+        }
+        double[] corrected = new double[values.length];
+        for (int row = 0; row < values.length; row++) {
+          corrected[row] = values[row] * factor;
+        }
+        runs[run] = corrected;
+      }
+      return withRuns(data, runs);
+    }
+
+    @Override
+    public String key() {
+      return this.factors == null ? "dilution(" + this.volumePerRun + ")"
+          : "dilution" + Arrays.toString(this.factors);
+    }
+
+    private double factor(int run) {
+      if (this.factors == null) {
+        return 1 + run * this.volumePerRun;
+      }
+      return run < this.factors.length ? this.factors[run] : 1;
+    }
+  }
+
+  private static final class Blank implements SpectrumTransform {
+
+    private final String name;
+    private final double[] wavelengths;
+    private final double[] absorbances;
+    private final double tolerance;
+    private final String digest;
+
+    private Blank(String name, double[] wavelengths, double[] absorbances, double tolerance) {
+      this.name = name;
+      this.wavelengths = wavelengths;
+      this.absorbances = absorbances;
+      this.tolerance = tolerance;
+      this.digest = digest(wavelengths, absorbances);
+    }
+
+    @Override
+    public SpectrumData apply(SpectrumData data) {
+      double[] blank = this.alignedTo(data.getWavelengths());
+      double[][] runs = new double[data.getRunCount()][];
+      for (int run = 0; run < runs.length; run++) {
+        double[] values = data.getRun(run);
+        double[] corrected = new double[values.length];
+        for (int row = 0; row < values.length; row++) {
+          corrected[row] = values[row] - blank[row];
+        }
+        runs[run] = corrected;
+      }
+      return withRuns(data, runs);
+    }
+
+    @Override
+    public String key() {
+      return "blank(" + this.name + "," + this.digest + "," + this.tolerance + ")";
+    }
+
+    // A SHA-256 of both columns, a hash code can be the same for another blank
+    private static String digest(double[] wavelengths, double[] absorbances) {
+      MessageDigest sha;
+      try {
+        sha = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("Every Java has SHA-256", e);
+      }
+      ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES * 2);
+      for (int row = 0; row < wavelengths.length; row++) {
+        bytes.clear();
+        bytes.putLong(Double.doubleToLongBits(wavelengths[row]));
+        bytes.putLong(Double.doubleToLongBits(absorbances[row]));
+        sha.update(bytes.array());
+      }
+      return HexFormat.of().formatHex(sha.digest());
+    }
+
+    // The blank's absorbance at each of the data's wavelengths, looked up once per apply
+    private double[] alignedTo(double[] target) {
+      if (Arrays.equals(target, this.wavelengths)) {
+        return this.absorbances;
+      }
+      WavelengthIndex index = new WavelengthIndex(this.wavelengths);
+      double[] aligned = new double[target.length];
+      for (int row = 0; row < target.length; row++) {
+        int blankRow = index.nearest(target[row], this.tolerance);
+        aligned[row] = blankRow == -1 ? Double.NaN : this.absorbances[blankRow];
+      }
+      return aligned;
+    }
+  }
+}
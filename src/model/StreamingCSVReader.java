@@ -0,0 +1,544 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the csv files the spectrometer exports through a fixed window of bytes and parses every
+ * number straight from the bytes, so no String is made per cell. The window is refilled with
+ * FileChannel reads as the rows are parsed, so however large the file only the window and the
+ * parsed columns are in memory, and the file is never mapped, as a mapping keeps the file locked
+ * on Windows until it is garbage collected and the spectrometer could not write to it. It only
+ * handles regular files: one row per line and quotes only around a whole cell. Anything else is
+ * reported as irregular so the caller can read the file with OpenCSV instead.
+ */
+final class StreamingCSVReader implements Closeable {
+
+  // Every power of ten that a double holds exactly
+  private static final double[] POWERS_OF_TEN = new double[]{1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6,
+      1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  // Bytes read at once, the window only grows past this for a line longer than it
+  private static final int WINDOW = 1 << 18;
+
+  private final FileChannel channel;
+  // Where the reading started and the end of the file when it was opened
+  private final long start;
+  private final long end;
+  // If a last line without its line break is left out, as it may still be being written
+  private final boolean wholeLines;
+  private byte[] window;
+  // The file offset of the first byte of the window
+  private long windowStart;
+  private int limit;
+  private int position;
+  private boolean finished;
+  private int[] starts;
+  private int[] ends;
+  private int cells;
+
+  private StreamingCSVReader(FileChannel channel, long start, boolean wholeLines)
+      throws IOException {
+    this.channel = channel;
+    this.start = start;
+    this.end = channel.size();
+    this.wholeLines = wholeLines;
+    this.window = new byte[WINDOW];
+    this.windowStart = start;
+    this.limit = 0;
+    this.position = 0;
+    this.finished = start >= this.end;
+    this.starts = new int[64];
+    this.ends = new int[64];
+  }
+
+  /**
+   * Thrown when the file is not regular enough to be read without OpenCSV.
+   */
+  static final class IrregularException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    IrregularException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Reads the whole csv into primitive columns.
+   *
+   * @param filePath is the csv file
+   * @return the parsed data
+   * @throws IOException        if the file cannot be read
+   * @throws IrregularException if the file needs OpenCSV to be read
+   */
+  static SpectrumData read(String filePath) throws IOException, IrregularException {
+    try (StreamingCSVReader reader = open(filePath, 0, false)) {
+      if (!reader.nextRow()) {
+        throw new IrregularException("The CSV is empty");
+      }
+      String[] header = reader.cellsAsStrings();
+      SpectrumData.Builder builder = new SpectrumData.Builder(header, reader.estimateRows());
+      double[] values = new double[Math.max(header.length - 1, 0)];
+      while (reader.nextRow()) {
+        for (int run = 0; run < values.length; run++) {
+          values[run] = run + 1 < reader.cells ? reader.number(run + 1) : Double.NaN;
+        }
+        builder.addRow(reader.wavelength(0), values);
+      }
+      return builder.build();
+    }
+  }
+
+  /**
+   * Reads the csv, writes the edited copy and parses the edited rows in a single pass. The edited
+   * cells are copied as bytes, written the same way CSVWriter would write them.
+   *
+   * @param filePath is the csv file
+   * @param newFile  is where the edited csv is written, null to only parse it
+   * @return the parsed edited data
+   * @throws IOException        if the file cannot be read or written
+   * @throws IrregularException if the file needs OpenCSV to be read
+   */
+  static SpectrumData readAndEdit(String filePath, String newFile)
+      throws IOException, IrregularException {
+    try (StreamingCSVReader reader = open(filePath, 0, false)) {
+      if (!reader.nextRow()) {
+        throw new IrregularException("The CSV is empty");
+      }
+      int maxCol = reader.cells;
+      int[] headerColumns = CSVModelV1.editedColumns(reader.cells, maxCol);
+      String[] header = reader.cellsAsStrings();
+      String[] newHeader = new String[headerColumns.length];
+      for (int newCol = 0; newCol < headerColumns.length; newCol++) {
+        newHeader[newCol] = headerColumns[newCol] == -1 ? null : header[headerColumns[newCol]];
+      }
+      SpectrumData.Builder builder = new SpectrumData.Builder(newHeader, reader.estimateRows());
+      double[] values = new double[Math.max(newHeader.length - 1, 0)];
+      int[] columns = headerColumns;
+      int columnsFor = reader.cells;
+      try (OutputStream out = newFile == null ? null
+          : new BufferedOutputStream(new FileOutputStream(newFile), 1 << 16)) {
+        if (out != null) {
+          reader.writeRow(out, columns);
+        }
+        while (reader.nextRow()) {
+          if (reader.cells != columnsFor) {
+            columns = CSVModelV1.editedColumns(reader.cells, maxCol);
+            columnsFor = reader.cells;
+          }
+          if (out != null) {
+            reader.writeRow(out, columns);
+          }
+          for (int run = 0; run < values.length; run++) {
+            int col = run + 1 < columns.length ? columns[run + 1] : -1;
+            values[run] = col == -1 ? Double.NaN : reader.number(col);
+          }
+          builder.addRow(reader.wavelength(columns[0]), values);
+        }
+      }
+      return builder.build();
+    }
+  }
+
+  /**
+   * The cells read from part of a file that may still be written to.
+   */
+  static final class Chunk {
+
+    // The header cells, only set by readHeader
+    String[] header;
+    // The wavelength of every row read
+    double[] wavelengths;
+    // The absorbances of every run that was asked for, null for the rest
+    double[][] runs;
+    // The byte offset just after the last complete line read
+    long end;
+  }
+
+  /**
+   * Reads the header line of a file that may still be written to.
+   *
+   * @param filePath is the csv file
+   * @return the header and where the rows start, or null if the header line is not complete yet
+   * @throws IOException        if the file cannot be read
+   * @throws IrregularException if the file needs OpenCSV to be read
+   */
+  static Chunk readHeader(String filePath) throws IOException, IrregularException {
+    try (StreamingCSVReader reader = open(filePath, 0, true)) {
+      if (!reader.nextRow()) {
+        return null;
+      }
+      Chunk chunk = new Chunk();
+      chunk.header = reader.cellsAsStrings();
+      chunk.end = reader.offset();
+      return chunk;
+    }
+  }
+
+  /**
+   * Reads the complete rows from a byte offset of a file that may still be written to. A last line
+   * without its line break is left for the next read, so only whole rows are ever parsed.
+   *
+   * @param filePath is the csv file
+   * @param offset   is where the first row to read starts
+   * @param edit     is if the rows are in the instrument's layout and should be edited
+   * @param maxCol   is the number of cells in the header
+   * @param parse    is which runs to parse, one for each run of the (edited) header
+   * @return the rows read and where the next read should start
+   * @throws IOException        if the file cannot be read
+   * @throws IrregularException if the file needs OpenCSV to be read
+   */
+  static Chunk readRows(String filePath, long offset, boolean edit, int maxCol, boolean[] parse)
+      throws IOException, IrregularException {
+    try (StreamingCSVReader reader = open(filePath, offset, true)) {
+      double[] wavelengths = new double[0];
+      double[][] runs = new double[parse.length][];
+      for (int run = 0; run < parse.length; run++) {
+        runs[run] = parse[run] ? new double[0] : null;
+      }
+      int rows = 0;
+      int[] columns = null;
+      int columnsFor = -1;
+      while (reader.nextRow()) {
+        if (reader.cells != columnsFor) {
+          columns = columnsOf(reader.cells, edit, maxCol);
+          columnsFor = reader.cells;
+        }
+        if (rows == wavelengths.length) {
+          // Sized from the first row once it is read, then doubled if the guess was short
+          int grown = rows == 0 ? reader.estimateRows() : rows * 2;
+          wavelengths = Arrays.copyOf(wavelengths, grown);
+          for (int run = 0; run < runs.length; run++) {
+            runs[run] = runs[run] == null ? null : Arrays.copyOf(runs[run], grown);
+          }
+        }
+        wavelengths[rows] = reader.wavelength(columns[0]);
+        for (int run = 0; run < runs.length; run++) {
+          if (runs[run] != null) {
+            int col = run + 1 < columns.length ? columns[run + 1] : -1;
+            runs[run][rows] = col == -1 || col >= reader.cells ? Double.NaN : reader.number(col);
+          }
+        }
+        rows++;
+      }
+      Chunk chunk = new Chunk();
+      chunk.wavelengths = Arrays.copyOf(wavelengths, rows);
+      chunk.runs = new double[runs.length][];
+      for (int run = 0; run < runs.length; run++) {
+        chunk.runs[run] = runs[run] == null ? null : Arrays.copyOf(runs[run], rows);
+      }
+      chunk.end = reader.offset();
+      return chunk;
+    }
+  }
+
+  // Source column of each column, edited like readAndEdit or kept as is
+  private static int[] columnsOf(int cells, boolean edit, int maxCol) {
+    if (edit) {
+      return CSVModelV1.editedColumns(cells, maxCol);
+    }
+    int[] columns = new int[cells];
+    for (int col = 0; col < cells; col++) {
+      columns[col] = col;
+    }
+    return columns;
+  }
+
+  // Reads from the offset up to the end the file has now
+  private static StreamingCSVReader open(String filePath, long offset, boolean wholeLines)
+      throws IOException {
+    FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ);
+    try {
+      return new StreamingCSVReader(channel, offset, wholeLines);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  // The file offset just after the last row read
+  private long offset() {
+    return this.windowStart + this.position;
+  }
+
+  // Makes sure the window holds the whole next line, false if there is no next line. A line
+  // ending in a carriage return also needs the byte after it, which may be its line feed.
+  private boolean fill() throws IOException {
+    int at = this.position;
+    while (true) {
+      while (at < this.limit && this.window[at] != '\n' && this.window[at] != '\r') {
+        at++;
+      }
+      if (at < this.limit && (this.window[at] == '\n' || at + 1 < this.limit)) {
+        return true;
+      }
+      if (this.finished) {
+        if (at < this.limit) {
+          // A carriage return that ends the file may be followed by a line feed later on
+          return !this.wholeLines;
+        }
+        return this.position < this.limit && !this.wholeLines;
+      }
+      at -= this.position;
+      this.refill();
+      at += this.position;
+    }
+  }
+
+  // Moves the unread bytes to the front of the window and reads more after them
+  private void refill() throws IOException {
+    int kept = this.limit - this.position;
+    System.arraycopy(this.window, this.position, this.window, 0, kept);
+    this.windowStart += this.position;
+    this.position = 0;
+    if (kept == this.window.length) {
+      // One line is longer than the window
+      this.window = Arrays.copyOf(this.window, kept * 2);
+    }
+    long from = this.windowStart + kept;
+    int wanted = (int) Math.min(this.window.length - kept, this.end - from);
+    ByteBuffer into = ByteBuffer.wrap(this.window, kept, wanted);
+    while (into.hasRemaining()) {
+      if (this.channel.read(into, from + into.position() - kept) < 0) {
+        // The file was cut short since it was opened
+        this.finished = true;
+        break;
+      }
+    }
+    this.limit = into.position();
+    this.finished |= this.windowStart + this.limit >= this.end;
+  }
+
+  // Finds the cells of the next line, false at the end of the file
+  private boolean nextRow() throws IOException, IrregularException {
+    if (!this.fill()) {
+      return false;
+    }
+    this.cells = 0;
+    int pos = this.position;
+    while (true) {
+      int start = pos;
+      int end;
+      if (pos < this.limit && this.window[pos] == '"') {
+        start = pos + 1;
+        end = start;
+        while (end < this.limit && this.window[end] != '"') {
+          byte b = this.window[end];
+          if (b == '\n' || b == '\r') {
+            throw new IrregularException("Line break inside a quoted cell");
+          }
+          end++;
+        }
+        if (end >= this.limit) {
+          throw new IrregularException("Unclosed quote");
+        }
+        pos = end + 1;
+        if (pos < this.limit && this.window[pos] == '"') {
+          throw new IrregularException("Escaped quote inside a cell");
+        }
+      } else {
+        end = pos;
+        while (end < this.limit) {
+          byte b = this.window[end];
+          if (b == ',' || b == '\n' || b == '\r') {
+            break;
+          }
+          if (b == '"') {
+            throw new IrregularException("Quote inside an unquoted cell");
+          }
+          end++;
+        }
+        pos = end;
+      }
+      this.addCell(start, end);
+      if (pos >= this.limit) {
+        this.position = pos;
+        return true;
+      }
+      byte b = this.window[pos];
+      if (b == ',') {
+        pos++;
+      } else if (b == '\n' || b == '\r') {
+        pos++;
+        if (b == '\r' && pos < this.limit && this.window[pos] == '\n') {
+          pos++;
+        }
+        this.position = pos;
+        if (this.cells == 1 && this.starts[0] == this.ends[0]) {
+          throw new IrregularException("Blank line");
+        }
+        return true;
+      } else {
+        throw new IrregularException("Text after a closing quote");
+      }
+    }
+  }
+
+  private void addCell(int start, int end) {
+    if (this.cells == this.starts.length) {
+      this.starts = Arrays.copyOf(this.starts, this.cells * 2);
+      this.ends = Arrays.copyOf(this.ends, this.cells * 2);
+    }
+    this.starts[this.cells] = start;
+    this.ends[this.cells] = end;
+    this.cells++;
+  }
+
+  // Guesses the number of rows left from the size of the row just read, to size the columns once
+  private int estimateRows() {
+    long rowSize = Math.max(this.offset() - this.start, 1);
+    return (int) Math.min((this.end - this.start) / rowSize + 1, Integer.MAX_VALUE - 8);
+  }
+
+  private String[] cellsAsStrings() {
+    String[] strings = new String[this.cells];
+    for (int cell = 0; cell < this.cells; cell++) {
+      strings[cell] = this.string(cell);
+    }
+    return strings;
+  }
+
+  private String string(int cell) {
+    return new String(this.window, this.starts[cell], this.ends[cell] - this.starts[cell],
+        Charset.defaultCharset());
+  }
+
+  private double wavelength(int cell) throws IrregularException {
+    double wavelength = cell < this.cells ? this.number(cell) : Double.NaN;
+    if (Double.isNaN(wavelength)) {
+      throw new IrregularException("Not a wavelength");
+    }
+    return wavelength;
+  }
+
+  // Writes the chosen cells quoted, and nothing for -1, like CSVWriter does with null cells
+  private void writeRow(OutputStream out, int[] columns) throws IOException {
+    for (int newCol = 0; newCol < columns.length; newCol++) {
+      if (newCol > 0) {
+        out.write(',');
+      }
+      int col = columns[newCol];
+      if (col == -1) {
+        continue;
+      }
+      out.write('"');
+      out.write(this.window, this.starts[col], this.ends[col] - this.starts[col]);
+      out.write('"');
+    }
+    out.write('\n');
+  }
+
+  /**
+   * Parses a cell as a double without making a String. Decimals that fit a long with an exponent
+   * that a double holds exactly are parsed with one multiply or divide, which rounds the same as
+   * Double.parseDouble. Everything else goes through Double.parseDouble.
+   */
+  private double number(int cell) {
+    int start = this.starts[cell];
+    int end = this.ends[cell];
+    while (start < end && isSpace(this.window[start])) {
+      start++;
+    }
+    while (end > start && isSpace(this.window[end - 1])) {
+      end--;
+    }
+    if (start == end) {
+      return Double.NaN;
+    }
+    int i = start;
+    boolean negative = false;
+    byte b = this.window[i];
+    if (b == '-' || b == '+') {
+      negative = b == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean exact = true;
+    boolean anyDigit = false;
+    boolean fraction = false;
+    for (; i < end; i++) {
+      b = this.window[i];
+      if (b >= '0' && b <= '9') {
+        anyDigit = true;
+        int digit = b - '0';
+        if (mantissa == 0 && digit == 0) {
+          if (fraction) {
+            exponent--;
+          }
+        } else if (digits < 18) {
+          mantissa = mantissa * 10 + digit;
+          digits++;
+          if (fraction) {
+            exponent--;
+          }
+        } else {
+          exact = false;
+          if (!fraction) {
+            exponent++;
+          }
+        }
+      } else if (b == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    if (i < end && anyDigit && (b == 'e' || b == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < end && (this.window[i] == '-' || this.window[i] == '+')) {
+        negativeExponent = this.window[i] == '-';
+        i++;
+      }
+      int written = 0;
+      boolean exponentDigit = false;
+      for (; i < end && this.window[i] >= '0' && this.window[i] <= '9'; i++) {
+        written = Math.min(written * 10 + this.window[i] - '0', 10000);
+        exponentDigit = true;
+      }
+      if (!exponentDigit) {
+        return this.slowNumber(start, end);
+      }
+      exponent += negativeExponent ? -written : written;
+    }
+    if (i != end || !anyDigit) {
+      return this.slowNumber(start, end);
+    }
+    if (mantissa == 0) {
+      return negative ? -0.0 : 0.0;
+    }
+    if (!exact || mantissa >= MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+      return this.slowNumber(start, end);
+    }
+    double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+        : mantissa / POWERS_OF_TEN[-exponent];
+    return negative ? -value : value;
+  }
+
+  // Rare cells, like very long decimals or words, are parsed the same way as OpenCSV cells
+  private double slowNumber(int start, int end) {
+    return SpectrumData.parseCell(
+        new String(this.window, start, end - start, Charset.defaultCharset()));
+  }
+
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t';
+  }
+}
@@ -0,0 +1,178 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A lookup from wavelength to row that is built once when a csv is loaded. Spectrometers step by a
+ * fixed amount, so the row is first guessed from the step in constant time, and a binary search over
+ * the sorted wavelengths is used when the guess misses. Rows appended in order, like those of a
+ * csv that is still being written, are added to the end without sorting again.
+ */
+public final class WavelengthIndex {
+
+  // Both have room past size for appended rows, which later indexes share
+  private final double[] sorted;
+  private final int[] rows;
+  private final int size;
+  private final double start;
+  private final double step;
+
+  /**
+   * Builds the index for the given wavelength axis, the axis itself is not changed.
+   *
+   * @param wavelengths is the wavelength of every row
+   */
+  public WavelengthIndex(double[] wavelengths) {
+    this(wavelengths, wavelengths.length);
+  }
+
+  // Indexes the first rows of the axis
+  WavelengthIndex(double[] wavelengths, int size) {
+    Integer[] order = new Integer[size];
+    boolean ascending = true;
+    for (int row = 0; row < size; row++) {
+      order[row] = row;
+      if (row > 0 && wavelengths[row] < wavelengths[row - 1]) {
+        ascending = false;
+      }
+    }
+    if (!ascending) {
+      Arrays.sort(order, (a, b) -> Double.compare(wavelengths[a], wavelengths[b]));
+    }
+    this.sorted = new double[size];
+    this.rows = new int[size];
+    for (int i = 0; i < size; i++) {
+      this.rows[i] = order[i];
+      this.sorted[i] = wavelengths[order[i]];
+    }
+    this.size = size;
+    this.start = size == 0 ? 0 : this.sorted[0];
+    this.step = size < 2 ? 0 : (this.sorted[size - 1] - this.sorted[0]) / (size - 1);
+  }
+
+  private WavelengthIndex(double[] sorted, int[] rows, int size) {
+    this.sorted = sorted;
+    this.rows = rows;
+    this.size = size;
+    this.start = size == 0 ? 0 : sorted[0];
+    this.step = size < 2 ? 0 : (sorted[size - 1] - sorted[0]) / (size - 1);
+  }
+
+  /**
+   * Indexes rows appended after the ones in this index, this index is not changed. Rows that come
+   * after every indexed wavelength and in order are written past the end, so the work is only for
+   * the new rows, any other rows sort the whole axis again. Only the latest index of an axis may
+   * be appended to, as they share the room past the end.
+   *
+   * @param wavelengths is the whole axis, the first rows are the ones in this index
+   * @param to          is the number of rows on the axis now
+   * @return the index of every row
+   */
+  WavelengthIndex append(double[] wavelengths, int to) {
+    boolean inOrder = this.size == 0 || wavelengths[this.size] >= this.sorted[this.size - 1];
+    for (int row = this.size + 1; row < to && inOrder; row++) {
+      inOrder = wavelengths[row] >= wavelengths[row - 1];
+    }
+    if (!inOrder) {
+      return new WavelengthIndex(wavelengths, to);
+    }
+    double[] sorted = this.sorted;
+    int[] rows = this.rows;
+    if (to > sorted.length) {
+      int grown = Math.max(to, sorted.length * 2);
+      sorted = Arrays.copyOf(sorted, grown);
+      rows = Arrays.copyOf(rows, grown);
+    }
+    for (int row = this.size; row < to; row++) {
+      sorted[row] = wavelengths[row];
+      rows[row] = row;
+    }
+    return new WavelengthIndex(sorted, rows, to);
+  }
+
+  /**
+   * Finds the row of the exact wavelength.
+   *
+   * @param wavelength is the wavelength to find
+   * @return the row or -1 if there is no such wavelength
+   */
+  public int indexOf(double wavelength) {
+    int guess = this.guess(wavelength);
+    if (guess != -1 && this.sorted[guess] == wavelength) {
+      return this.rows[guess];
+    }
+    int found = Arrays.binarySearch(this.sorted, 0, this.size, wavelength);
+    return found < 0 ? -1 : this.rows[found];
+  }
+
+  /**
+   * Finds the row of the closest wavelength within the tolerance.
+   *
+   * @param wavelength is the wavelength to find
+   * @param tolerance  is how far away the closest wavelength may be
+   * @return the row or -1 if no wavelength is close enough
+   */
+  public int nearest(double wavelength, double tolerance) {
+    int closest = this.closestSorted(wavelength);
+    if (closest == -1 || Math.abs(this.sorted[closest] - wavelength) > tolerance) {
+      return -1;
+    }
+    return this.rows[closest];
+  }
+
+  /**
+   * Gets the closest wavelength that is in the index.
+   *
+   * @param wavelength is the wavelength to find
+   * @return the closest wavelength
+   * @throws IllegalArgumentException if the index is empty
+   */
+  public double nearestWavelength(double wavelength) throws IllegalArgumentException {
+    int closest = this.closestSorted(wavelength);
+    if (closest == -1) {
+      throw new IllegalArgumentException("No wavelengths loaded");
+    }
+    return this.sorted[closest];
+  }
+
+  /**
+   * Number of wavelengths in the index.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  // Position in the sorted array of the closest wavelength, -1 if empty
+  private int closestSorted(double wavelength) {
+    int size = this.size;
+    if (size == 0 || Double.isNaN(wavelength)) {
+      return -1;
+    }
+    int guess = this.guess(wavelength);
+    if (guess != -1 && this.sorted[guess] == wavelength) {
+      return guess;
+    }
+    int found = Arrays.binarySearch(this.sorted, 0, size, wavelength);
+    if (found >= 0) {
+      return found;
+    }
+    int after = -found - 1;
+    if (after == 0) {
+      return 0;
+    }
+    if (after == size) {
+      return size - 1;
+    }
+    return wavelength - this.sorted[after - 1] <= this.sorted[after] - wavelength
+        ? after - 1 : after;
+  }
+
+  // Position the wavelength would have if the steps were even, -1 if it is outside the axis
+  private int guess(double wavelength) {
+    if (this.step <= 0) {
+      return this.size == 1 ? 0 : -1;
+    }
+    long position = Math.round((wavelength - this.start) / this.step);
+    return position < 0 || position >= this.size ? -1 : (int) position;
+  }
+}
@@ -0,0 +1,50 @@
+package util;
+
+/**
+ * Static utility methods for drawing chart axes without a JavaFX axis node.
+ */
+public class AxisUtil {
+
+  /**
+   * A 1, 2 or 5 step that gives about ten ticks over the range.
+   *
+   * @param range is the upper bound minus the lower bound
+   * @return the distance between ticks
+   */
+  public static double tickStep(double range) {
+    double raw = range / 10;
+    double magnitude = Math.pow(10, Math.floor(Math.log10(raw)));
+    double normal = raw / magnitude;
+    if (normal < 1.5) {
+      return magnitude;
+    } else if (normal < 3) {
+      return 2 * magnitude;
+    } else if (normal < 7) {
+      return 5 * magnitude;
+    }
+    return 10 * magnitude;
+  }
+
+  /**
+   * Tick text with only as many decimals as the step needs.
+   *
+   * @param tick is the value at the tick
+   * @param step is the distance between ticks
+   * @return the text for the tick
+   */
+  public static String tickText(double tick, double step) {
+    int decimals = Math.max(0, (int) -Math.floor(Math.log10(step)));
+    return String.format("%." + decimals + "f", tick);
+  }
+
+  /**
+   * The part of a csv header after the colon, the same as the LineChart axis labels.
+   *
+   * @param header is the csv header like "Latest: Wavelength (nm)"
+   * @return the label like " Wavelength (nm)"
+   */
+  public static String axisLabel(String header) {
+    String[] parts = header.split(":");
+    return parts.length > 1 ? parts[1] : header;
+  }
+}
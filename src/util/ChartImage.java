@@ -0,0 +1,159 @@
+package util;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import model.SpectrumData;
+
+/**
+ * Static utility methods that draw charts into images with AWT only, so they work without a
+ * display or the JavaFX toolkit, such as in batch runs.
+ */
+public class ChartImage {
+
+  private static final int LEFT_GAP = 70;
+  private static final int RIGHT_GAP = 20;
+  private static final int TOP_GAP = 40;
+  private static final int BOTTOM_GAP = 50;
+
+  /**
+   * Draws every run as a line over the wavelengths on a white background, the same layout as the
+   * left graph of the GUI.
+   *
+   * @param data   is the parsed csv
+   * @param title  is the title above the chart
+   * @param width  is the image width in pixels
+   * @param height is the image height in pixels
+   * @return the drawn chart
+   */
+  public static BufferedImage lineChart(SpectrumData data, String title, int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+        RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    g.setColor(Color.WHITE);
+    g.fillRect(0, 0, width, height);
+
+    double[] wavelengths = data.getWavelengths();
+    int runs = data.getRunCount();
+    double xLower = wavelengths.length == 0 ? 0 : wavelengths[0] - 7;
+    double xUpper = wavelengths.length == 0 ? 1 : wavelengths[wavelengths.length - 1] + 7;
+    double[] yBounds = yBounds(data);
+    double yLower = yBounds[0];
+    double yUpper = yBounds[1];
+
+    ChartLegend legend = ChartLegend.layout(runs, width - LEFT_GAP, height - TOP_GAP - BOTTOM_GAP);
+    int plotWidth = width - LEFT_GAP - RIGHT_GAP;
+    int plotHeight = height - TOP_GAP - BOTTOM_GAP - (int) legend.height();
+    if (plotWidth <= 1 || plotHeight <= 1) {
+      g.dispose();
+      return image;
+    }
+
+    // Axes
+    g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 11));
+    FontMetrics metrics = g.getFontMetrics();
+    g.setColor(Color.BLACK);
+    g.drawRect(LEFT_GAP, TOP_GAP, plotWidth, plotHeight);
+    double xStep = AxisUtil.tickStep(xUpper - xLower);
+    for (double tick = Math.ceil(xLower / xStep) * xStep; tick <= xUpper; tick += xStep) {
+      int x = LEFT_GAP + (int) Math.round((tick - xLower) / (xUpper - xLower) * plotWidth);
+      String text = AxisUtil.tickText(tick, xStep);
+      g.drawLine(x, TOP_GAP + plotHeight, x, TOP_GAP + plotHeight + 5);
+      g.drawString(text, x - metrics.stringWidth(text) / 2,
+          TOP_GAP + plotHeight + 7 + metrics.getAscent());
+    }
+    double yStep = AxisUtil.tickStep(yUpper - yLower);
+    for (double tick = Math.ceil(yLower / yStep) * yStep; tick <= yUpper; tick += yStep) {
+      int y = TOP_GAP + plotHeight
+          - (int) Math.round((tick - yLower) / (yUpper - yLower) * plotHeight);
+      String text = AxisUtil.tickText(tick, yStep);
+      g.drawLine(LEFT_GAP - 5, y, LEFT_GAP, y);
+      g.drawString(text, LEFT_GAP - 7 - metrics.stringWidth(text), y + metrics.getAscent() / 2);
+    }
+    String[] labels = data.getLabels();
+    String xLabel = AxisUtil.axisLabel(labels[0]);
+    g.drawString(xLabel, LEFT_GAP + (plotWidth - metrics.stringWidth(xLabel)) / 2,
+        TOP_GAP + plotHeight + 26 + metrics.getAscent());
+    if (labels.length > 1) {
+      String yLabel = AxisUtil.axisLabel(labels[1]);
+      AffineTransform unrotated = g.getTransform();
+      g.translate(14 + metrics.getAscent() / 2, TOP_GAP + plotHeight / 2);
+      g.rotate(-Math.PI / 2);
+      g.drawString(yLabel, -metrics.stringWidth(yLabel) / 2, 0);
+      g.setTransform(unrotated);
+    }
+
+    // Runs, rows that share a pixel column only add their min and max
+    g.setClip(LEFT_GAP, TOP_GAP, plotWidth, plotHeight);
+    g.setStroke(new BasicStroke(1));
+    double xScale = plotWidth / (xUpper - xLower);
+    double yScale = plotHeight / (yUpper - yLower);
+    for (int run = 0; run < runs; run++) {
+      Path2D.Double path = new Path2D.Double();
+      Downsampler.pixelColumns(wavelengths, data.getRun(run), 0, wavelengths.length, LEFT_GAP,
+          xLower, xScale, TOP_GAP + plotHeight, yLower, yScale, (px, py, move) -> {
+            if (move) {
+              path.moveTo(px, py);
+            } else {
+              path.lineTo(px, py);
+            }
+          });
+      g.setColor(new Color(ChartLegend.seriesRgb(run)));
+      g.draw(path);
+    }
+    g.setClip(null);
+
+    // Title and legend
+    g.setColor(Color.BLACK);
+    g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 16));
+    FontMetrics titleMetrics = g.getFontMetrics();
+    g.drawString(title, LEFT_GAP + (plotWidth - titleMetrics.stringWidth(title)) / 2,
+        (TOP_GAP + titleMetrics.getAscent()) / 2);
+    g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 11));
+    int legendTop = TOP_GAP + plotHeight + BOTTOM_GAP;
+    for (ChartLegend.Item item : legend.items()) {
+      int x = LEFT_GAP + (int) item.x();
+      int y = legendTop + (int) item.y();
+      if (item.series() != ChartLegend.MORE) {
+        g.setColor(new Color(ChartLegend.seriesRgb(item.series())));
+        g.fillRect(x, y + 3, 10, 10);
+      }
+      g.setColor(Color.BLACK);
+      g.drawString(ChartLegend.text(item, null), x + 14, y + 12);
+    }
+    g.dispose();
+    return image;
+  }
+
+  /**
+   * The lowest and highest absorbance of every run with 5% padding.
+   *
+   * @param data is the parsed csv
+   * @return the lower and upper bound
+   */
+  public static double[] yBounds(SpectrumData data) {
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int run = 0; run < data.getRunCount(); run++) {
+      for (double value : data.getRun(run)) {
+        if (!Double.isNaN(value)) {
+          min = Math.min(min, value);
+          max = Math.max(max, value);
+        }
+      }
+    }
+    if (min > max) {
+      return new double[]{0, 1};
+    }
+    double pad = max == min ? 1 : (max - min) * 0.05;
+    return new double[]{min - pad, max + pad};
+  }
+}
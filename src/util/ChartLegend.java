@@ -0,0 +1,132 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The colors and legend layout shared by every chart that is drawn by hand, the canvas, the image
+ * and the vector charts. A legend is laid out in rows of items under the plot, but with hundreds
+ * of runs only the first runs, an ellipsis and the last run are listed, and never so many rows
+ * that the plot is squeezed below its smallest height.
+ */
+public class ChartLegend {
+
+  /**
+   * Height of one row of items.
+   */
+  public static final double ROW = 16;
+  /**
+   * Width of one item, the color box and its name.
+   */
+  public static final double ITEM = 110;
+  /**
+   * Where the ellipsis item is in place of a series.
+   */
+  public static final int MORE = -1;
+
+  // Same colors, in order, as the default JavaFX chart series
+  private static final int[] SERIES_RGB = new int[]{
+      0xf3622d, 0xfba71b, 0x57b757, 0x41a9c9, 0x4258c9, 0x9a42c8, 0xc84164, 0x888888};
+  private static final int MAX_ROWS = 3;
+  private static final double MIN_PLOT_HEIGHT = 120;
+
+  /**
+   * One item of a legend.
+   *
+   * @param series is the series it names, starting with 0, or MORE for the ellipsis
+   * @param x      is the left of the item from the left of the legend
+   * @param y      is the top of the item from the top of the legend
+   */
+  public record Item(int series, double x, double y) {
+
+  }
+
+  private final List<Item> items;
+  private final double height;
+
+  private ChartLegend(List<Item> items, double height) {
+    this.items = items;
+    this.height = height;
+  }
+
+  /**
+   * Gives the color of a series, the colors repeat after the eighth.
+   *
+   * @param series is the series, starting with 0
+   * @return the red, green and blue of the color as 0xRRGGBB
+   */
+  public static int seriesRgb(int series) {
+    return SERIES_RGB[series % SERIES_RGB.length];
+  }
+
+  /**
+   * Lays out the legend of some series under a plot.
+   *
+   * @param series is how many series there are
+   * @param width  is the width the legend can use
+   * @param room   is the height left for the plot and the legend together
+   * @return the legend, with no items if there is no room for one
+   */
+  public static ChartLegend layout(int series, double width, double room) {
+    int perRow = Math.max((int) (width / ITEM), 1);
+    int rows = (int) Math.min(MAX_ROWS, Math.floor((room - MIN_PLOT_HEIGHT) / ROW));
+    if (series == 0 || rows <= 0) {
+      return new ChartLegend(List.of(), 0);
+    }
+    int slots = rows * perRow;
+    List<Item> items = new ArrayList<>(Math.min(series, slots));
+    if (series <= slots) {
+      for (int at = 0; at < series; at++) {
+        items.add(item(at, at, perRow));
+      }
+    } else {
+      // The first series fill every slot but the last two, which say more and name the last one
+      int first = slots >= 3 ? slots - 2 : slots - 1;
+      for (int at = 0; at < first; at++) {
+        items.add(item(at, at, perRow));
+      }
+      items.add(item(MORE, first, perRow));
+      if (slots >= 3) {
+        items.add(item(series - 1, slots - 1, perRow));
+      }
+    }
+    int used = (items.size() + perRow - 1) / perRow;
+    return new ChartLegend(items, used * ROW);
+  }
+
+  private static Item item(int series, int slot, int perRow) {
+    return new Item(series, (slot % perRow) * ITEM, (slot / perRow) * ROW);
+  }
+
+  /**
+   * Gets the height the legend takes under the plot.
+   *
+   * @return the height, 0 if there are no items
+   */
+  public double height() {
+    return this.height;
+  }
+
+  /**
+   * Gets every item in the order they are drawn.
+   *
+   * @return the items
+   */
+  public List<Item> items() {
+    return this.items;
+  }
+
+  /**
+   * Gives the text of an item.
+   *
+   * @param item  is the item
+   * @param names is the name of each series, null to number them as runs
+   * @return the series name, or an ellipsis
+   */
+  public static String text(Item item, String[] names) {
+    if (item.series() == MORE) {
+      return "\u2026";
+    }
+    return names == null ? "Run " + (item.series() + 1) : names[item.series()];
+  }
+}
@@ -0,0 +1,91 @@
+package util;
+
+import javafx.collections.ObservableList;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.chart.XYChart.Data;
+
+/**
+ * What can be changed about a chart in the graph info window: its title, both axes and, for the
+ * scatter plot, the x value of every point. Settings are read from a chart and set back on a new
+ * one, so they can be kept in an undo history.
+ *
+ * @param title  is the chart title
+ * @param x      is the x-axis
+ * @param y      is the y-axis
+ * @param pointX is the x value of each point of the first series, or null to leave the points
+ */
+public record ChartSettings(String title, Axis x, Axis y, double[] pointX) {
+
+  /**
+   * The settings of one axis.
+   *
+   * @param label       is the axis title
+   * @param autoRanging is if the bounds follow the data
+   * @param lower       is the lower bound
+   * @param upper       is the upper bound
+   * @param tickUnit    is the distance between ticks
+   */
+  public record Axis(String label, boolean autoRanging, double lower, double upper,
+                     double tickUnit) {
+
+    private static Axis of(NumberAxis axis) {
+      return new Axis(axis.getLabel(), axis.isAutoRanging(), axis.getLowerBound(),
+          axis.getUpperBound(), axis.getTickUnit());
+    }
+
+    private void applyTo(NumberAxis axis) {
+      axis.setLabel(this.label);
+      axis.setAutoRanging(this.autoRanging);
+      axis.setLowerBound(this.lower);
+      axis.setUpperBound(this.upper);
+      axis.setTickUnit(this.tickUnit);
+    }
+  }
+
+  /**
+   * Reads the settings of a chart.
+   *
+   * @param chart  is the chart, null for no chart
+   * @param points is if the x value of every point is kept, only for charts with few points
+   * @return the settings, or null if there is no chart
+   */
+  public static ChartSettings of(XYChart<Number, Number> chart, boolean points) {
+    if (chart == null) {
+      return null;
+    }
+    double[] pointX = null;
+    if (points && !chart.getData().isEmpty()) {
+      ObservableList<Data<Number, Number>> data = chart.getData().get(0).getData();
+      pointX = new double[data.size()];
+      for (int point = 0; point < pointX.length; point++) {
+        pointX[point] = data.get(point).getXValue().doubleValue();
+      }
+    }
+    return new ChartSettings(chart.getTitle(), Axis.of((NumberAxis) chart.getXAxis()),
+        Axis.of((NumberAxis) chart.getYAxis()), pointX);
+  }
+
+  /**
+   * Sets these settings on a chart, points are only set if the chart has as many.
+   *
+   * @param chart is the chart, nothing happens if it is null
+   */
+  public void applyTo(XYChart<Number, Number> chart) {
+    if (chart == null) {
+      return;
+    }
+    chart.setTitle(this.title);
+    this.x.applyTo((NumberAxis) chart.getXAxis());
+    this.y.applyTo((NumberAxis) chart.getYAxis());
+    if (this.pointX != null && !chart.getData().isEmpty()) {
+      ObservableList<Data<Number, Number>> data = chart.getData().get(0).getData();
+      if (data.size() == this.pointX.length) {
+        int point = 0;
+        for (Data<Number, Number> datapoint : data) {
+          datapoint.setXValue(this.pointX[point++]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package util;
+
+/**
+ * Static utility methods that pick which points of a series are worth drawing, so a chart only
+ * holds about as many points as it has pixels.
+ */
+public class Downsampler {
+
+  /**
+   * Picks the points of a series with Largest-Triangle-Three-Buckets. The first and last points
+   * are always kept and every bucket in between keeps the point that makes the largest triangle
+   * with its neighbours, which keeps the peaks and valleys of a spectrum.
+   *
+   * @param x         is the x value of every point, in order
+   * @param y         is the y value of every point
+   * @param from      is the first index to use, inclusive
+   * @param to        is the last index to use, exclusive
+   * @param threshold is the most points wanted
+   * @return the picked indices in order, every index if there are fewer points than the threshold
+   */
+  public static int[] largestTriangleThreeBuckets(double[] x, double[] y, int from, int to,
+      int threshold) {
+    int length = to - from;
+    if (length <= 0) {
+      return new int[0];
+    }
+    if (threshold >= length || threshold < 3) {
+      int[] all = new int[length];
+      for (int i = 0; i < length; i++) {
+        all[i] = from + i;
+      }
+      return all;
+    }
+
+    int[] picked = new int[threshold];
+    int count = 0;
+    double bucketSize = (double) (length - 2) / (threshold - 2);
+    int a = from;
+    picked[count++] = a;
+    for (int bucket = 0; bucket < threshold - 2; bucket++) {
+      // Average of the next bucket is the third point of the triangle
+      int nextStart = from + (int) Math.floor((bucket + 1) * bucketSize) + 1;
+      int nextEnd = Math.min(from + (int) Math.floor((bucket + 2) * bucketSize) + 1, to);
+      double avgX = 0;
+      double avgY = 0;
+      int avgCount = 0;
+      for (int i = nextStart; i < nextEnd; i++) {
+        if (!Double.isNaN(y[i])) {
+          avgX += x[i];
+          avgY += y[i];
+          avgCount++;
+        }
+      }
+      if (avgCount == 0) {
+        avgX = x[to - 1];
+        avgY = Double.isNaN(y[to - 1]) ? 0 : y[to - 1];
+      } else {
+        avgX /= avgCount;
+        avgY /= avgCount;
+      }
+
+      int start = from + (int) Math.floor(bucket * bucketSize) + 1;
+      int end = from + (int) Math.floor((bucket + 1) * bucketSize) + 1;
+      double ax = x[a];
+      double ay = Double.isNaN(y[a]) ? 0 : y[a];
+      double maxArea = -1;
+      int maxIndex = start;
+      for (int i = start; i < end; i++) {
+        if (Double.isNaN(y[i])) {
+          continue;
+        }
+        double area = Math.abs((ax - avgX) * (y[i] - ay) - (ax - x[i]) * (avgY - ay));
+        if (area > maxArea) {
+          maxArea = area;
+          maxIndex = i;
+        }
+      }
+      picked[count++] = maxIndex;
+      a = maxIndex;
+    }
+    picked[count] = to - 1;
+    return picked;
+  }
+
+  /**
+   * Finds the rows of an ascending axis that are inside the bounds, plus one on each side so lines
+   * still reach the edge of the chart.
+   *
+   * @param axis  is the ascending x values
+   * @param lower is the lower bound
+   * @param upper is the upper bound
+   * @return the first row inclusive and the last row exclusive
+   */
+  public static int[] visibleRange(double[] axis, double lower, double upper) {
+    int from = lowerIndex(axis, lower);
+    int to = lowerIndex(axis, upper);
+    while (to < axis.length && axis[to] <= upper) {
+      to++;
+    }
+    return new int[]{Math.max(from - 1, 0), Math.min(to + 1, axis.length)};
+  }
+
+  /**
+   * Checks if an axis never goes down, which the range search needs.
+   *
+   * @param axis is the x values
+   * @return true if every value is at least the one before it
+   */
+  public static boolean isAscending(double[] axis) {
+    for (int i = 1; i < axis.length; i++) {
+      if (axis[i] < axis[i - 1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Where a path is drawn to, such as a canvas or an AWT shape.
+   */
+  public interface PathSink {
+
+    /**
+     * Adds a point to the path.
+     *
+     * @param x    is the pixel x
+     * @param y    is the pixel y
+     * @param move is true for the first point, which starts the path
+     */
+    void point(double x, double y, boolean move);
+  }
+
+  /**
+   * Turns a series into the points of a path where rows that share a pixel column only add their
+   * first, lowest, highest and last point, so the path has about as many points as it is wide.
+   * Missing values are skipped.
+   *
+   * @param x      is the x value of every point, in order
+   * @param y      is the y value of every point
+   * @param from   is the first index to use, inclusive
+   * @param to     is the last index to use, exclusive
+   * @param left   is the pixel x of the lowest x value
+   * @param xLower is the lowest x value
+   * @param xScale is the pixels per x unit
+   * @param bottom is the pixel y of the lowest y value, y goes up the screen
+   * @param yLower is the lowest y value
+   * @param yScale is the pixels per y unit
+   * @param sink   is given the points in order
+   */
+  public static void pixelColumns(double[] x, double[] y, int from, int to, double left,
+      double xLower, double xScale, double bottom, double yLower, double yScale, PathSink sink) {
+    boolean started = false;
+    long column = Long.MIN_VALUE;
+    double first = 0;
+    double last = 0;
+    double min = 0;
+    double max = 0;
+    for (int row = from; row < to; row++) {
+      if (Double.isNaN(y[row])) {
+        continue;
+      }
+      long pixel = (long) Math.floor(left + (x[row] - xLower) * xScale);
+      double py = bottom - (y[row] - yLower) * yScale;
+      if (pixel != column) {
+        if (column != Long.MIN_VALUE) {
+          addColumn(sink, started, column, first, min, max, last);
+          started = true;
+        }
+        column = pixel;
+        first = py;
+        min = py;
+        max = py;
+      } else {
+        min = Math.min(min, py);
+        max = Math.max(max, py);
+      }
+      last = py;
+    }
+    if (column != Long.MIN_VALUE) {
+      addColumn(sink, started, column, first, min, max, last);
+    }
+  }
+
+  // Adds a pixel column to the path
+  private static void addColumn(PathSink sink, boolean started, long column, double first,
+      double min, double max, double last) {
+    sink.point(column, first, !started);
+    if (min != max) {
+      sink.point(column, min, false);
+      sink.point(column, max, false);
+    }
+    sink.point(column, last, false);
+  }
+
+  // First index whose value is at least the given value
+  private static int lowerIndex(double[] axis, double value) {
+    int low = 0;
+    int high = axis.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (axis[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
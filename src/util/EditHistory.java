@@ -0,0 +1,83 @@
+package util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * An undo and redo history of immutable states. Each step keeps the whole state, so states should
+ * share what did not change with the state before them, then hundreds of steps cost little more
+ * than the changes themselves. The oldest steps are dropped past the most steps kept.
+ *
+ * @param <S> is the state that is recorded
+ */
+public class EditHistory<S> {
+
+  private final int maxSteps;
+  private final Deque<S> undone;
+  private final Deque<S> redone;
+  private S current;
+
+  /**
+   * Starts a history with nothing to undo.
+   *
+   * @param initial  is the state before any change
+   * @param maxSteps is how many steps can be undone
+   */
+  public EditHistory(S initial, int maxSteps) {
+    this.maxSteps = maxSteps;
+    this.undone = new ArrayDeque<>();
+    this.redone = new ArrayDeque<>();
+    this.current = initial;
+  }
+
+  /**
+   * Records a change, nothing can be redone after it.
+   *
+   * @param state is the state after the change
+   */
+  public void record(S state) {
+    this.undone.push(this.current);
+    if (this.undone.size() > this.maxSteps) {
+      this.undone.removeLast();
+    }
+    this.redone.clear();
+    this.current = state;
+  }
+
+  /**
+   * Goes back one step.
+   *
+   * @return the state before the last change, or null if there is nothing to undo
+   */
+  public S undo() {
+    if (this.undone.isEmpty()) {
+      return null;
+    }
+    this.redone.push(this.current);
+    this.current = this.undone.pop();
+    return this.current;
+  }
+
+  /**
+   * Goes forward one step that was undone.
+   *
+   * @return the state after the change, or null if there is nothing to redo
+   */
+  public S redo() {
+    if (this.redone.isEmpty()) {
+      return null;
+    }
+    this.undone.push(this.current);
+    this.current = this.redone.pop();
+    return this.current;
+  }
+
+  /**
+   * Gets the state as it is now.
+   *
+   * @return the current state
+   */
+  public S current() {
+    return this.current;
+  }
+}
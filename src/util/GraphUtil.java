@@ -7,7 +7,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import javafx.application.Platform;
+import java.util.function.Consumer;
+import javafx.animation.PauseTransition;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
@@ -15,6 +16,7 @@ import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.chart.Axis.TickMark;
+import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.chart.XYChart.Data;
@@ -34,6 +36,8 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.util.Callback;
+import javafx.util.Duration;
+import model.SpectrumData;
 
 public class GraphUtil {
 
@@ -51,6 +55,11 @@ public class GraphUtil {
 
   public static Insets DEFAULT_INSET = new Insets(5, 5, 5, 5);
 
+  public static double DEFAULT_CHART_WIDTH = 1000;
+
+  // Chart property that holds the data the chart is drawn from
+  private static final String CHART_DATA = "spectrumData";
+
   public static Callback<ListView<String>, ListCell<String>> COMBOBOX_LIST_VIEW_STYLE = new Callback<>() {
     @Override
     public ListCell<String> call(ListView<String> param) {
@@ -73,11 +82,14 @@ public class GraphUtil {
   /**
    * Sets up a window to get all the info in changing a graph. Nodes: ComboBox, change Chart
    * textField, xIncrement textField, xLabel textField, yIncrement textField, yLabel textField.
+   * If onSubmit is not null it is given the new y value of every changed point, once the rest of
+   * the changes are made, and the points are left for it to change.
    *
    * @return a list of all the scene nodes
    */
   public static Stage setGraphInfo(Stage stage, List<XYChart<Number, Number>> graphs,
-      List<String> graphNames, List<Image> images, boolean lightMode) {
+      List<String> graphNames, List<Image> images, boolean lightMode,
+      Consumer<Map<Data<Number, Number>, Double>> onSubmit) {
     Stage askForAxisInfo = Objects.requireNonNullElseGet(stage, Stage::new);
     askForAxisInfo.setTitle("Setting Graph Info");
     askForAxisInfo.getIcons()
@@ -230,8 +242,10 @@ public class GraphUtil {
         for (Entry<Data<Number, Number>, Double> entry : xChange.entrySet()) {
           entry.getKey().setXValue(entry.getValue());
         }
-        for (Entry<Data<Number, Number>, Double> entry : yChange.entrySet()) {
-          entry.getKey().setYValue(entry.getValue());
+        if (onSubmit == null) {
+          for (Entry<Data<Number, Number>, Double> entry : yChange.entrySet()) {
+            entry.getKey().setYValue(entry.getValue());
+          }
         }
 
         XYChart<Number, Number> currChart = chartStorage.get(charts.getValue());
@@ -294,6 +308,9 @@ public class GraphUtil {
           }
         }
         askForAxisInfo.close();
+        if (onSubmit != null) {
+          onSubmit.accept(new HashMap<>(yChange));
+        }
       }
     });
 
@@ -385,33 +402,42 @@ public class GraphUtil {
     return askForAxisInfo;
   }
 
-  public static Thread loadingBar(List<String[]> data, XYChart<Number, Number> chart,
+  /**
+   * Builds the chart points of every run on a background thread while a loading bar is shown. The
+   * points are only handed to the chart once they are all made, a single bulk set per series. Each
+   * series is downsampled to about two points per pixel of the chart, and it is refined whenever
+   * the x-axis bounds or the chart width change.
+   *
+   * @param data      is the parsed csv
+   * @param chart     is the chart with a series for each run already added
+   * @param lightMode is if the loading bar should be in light mode
+   * @return the thread that will build the points once started
+   */
+  public static Thread loadingBar(SpectrumData data, XYChart<Number, Number> chart,
       boolean lightMode) {
-    final String[] labels = data.get(0);
-    final int maxRows = data.size();
-    final int maxCols = labels.length;
-    Task<List<Data<Number, Number>>> createDataPoint = new Task<>() {
+    final int maxRuns = data.getRunCount();
+    final int[] range = visibleRows(data, chart);
+    final int budget = pointBudget(chart);
+    final long total = Math.max(maxRuns, 1);
+    chart.getProperties().put(CHART_DATA, data);
+    Task<List<List<Data<Number, Number>>>> createDataPoint = new Task<>() {
       final DecimalFormat percentage = new DecimalFormat("##.##");
 
       @Override
-      protected List<Data<Number, Number>> call() {
-        ArrayList<Data<Number, Number>> dataPoints = new ArrayList<>();
-        for (int row = 1; row < maxRows; row++) { // not top row
-          String[] rowData = data.get(row);
-          int finalRow = row;
-          Platform.runLater(() -> {
-            updateProgress(finalRow + 1, maxRows);
-            updateMessage("Loading " + percentage.format(getProgress() * 100) + "%");
-            for (int col = 1; col < maxCols; col++) { // not wave length data
-              XYChart.Data<Number, Number> datapoint = new XYChart.Data<>(
-                  Double.valueOf(rowData[0]),
-                  Double.valueOf(rowData[col]));
-              datapoint.setExtraValue(labels[col]);
-              dataPoints.add(datapoint);
-            }
-          });
+      protected List<List<Data<Number, Number>>> call() {
+        List<List<Data<Number, Number>>> seriesPoints = new ArrayList<>(maxRuns);
+        long lastPercent = -1;
+        for (int run = 0; run < maxRuns; run++) {
+          seriesPoints.add(seriesPoints(data, run, range[0], range[1], budget));
+          // Only tells the FX thread about whole percent changes
+          long percent = (run + 1) * 100L / total;
+          if (percent != lastPercent) {
+            lastPercent = percent;
+            updateProgress(run + 1, total);
+            updateMessage("Loading " + percentage.format(percent) + "%");
+          }
         }
-        return dataPoints;
+        return seriesPoints;
       }
     };
 
@@ -442,27 +468,175 @@ public class GraphUtil {
     }
 
     createDataPoint.setOnSucceeded((evt) -> {
-      List<Data<Number, Number>> points = createDataPoint.getValue();
-      for (int i = 0; i < points.size(); i++) {
-        int seriesNumber = i % chart.getData().size();
-        Data<Number, Number> point = points.get(i);
-        chart.getData().get(seriesNumber).getData()
-            .add(point);
-        Node node = point.getNode();
-        node.setVisible(false);
+      List<List<Data<Number, Number>>> seriesPoints = createDataPoint.getValue();
+      SpectrumData current = chartData(chart);
+      if (current != data) { // The data grew while it loaded so the points are made again
+        seriesPoints = new ArrayList<>();
+        for (int run = 0; run < Math.min(current.getRunCount(), chart.getData().size()); run++) {
+          seriesPoints.add(seriesPoints(current, run, range[0],
+              Math.min(range[1], current.getRowCount()), budget));
+        }
       }
-      try {
-        Thread.sleep(50);
-      } catch (InterruptedException e) {
-        renderError(e.getMessage());
+      // Line charts skip making a symbol node per point instead of hiding each one
+      boolean symbols = true;
+      if (chart instanceof LineChart<Number, Number> lineChart) {
+        lineChart.setCreateSymbols(false);
+        symbols = false;
+      }
+      int seriesCount = Math.min(seriesPoints.size(), chart.getData().size());
+      for (int series = 0; series < seriesCount; series++) {
+        List<Data<Number, Number>> points = seriesPoints.get(series);
+        chart.getData().get(series).getData().setAll(points);
+        if (symbols) {
+          for (Data<Number, Number> point : points) {
+            Node node = point.getNode();
+            if (node != null) {
+              node.setVisible(false);
+            }
+          }
+        }
       }
-      Platform.runLater(loadingStage::hide);
+      levelOfDetail(current, chart);
+      loadingStage.hide();
+    });
+    createDataPoint.setOnFailed((evt) -> {
+      loadingStage.hide();
+      renderError("Failed to graph the CSV").show();
     });
     Thread loading = new Thread(createDataPoint);
     loading.setDaemon(true);
     return loading;
   }
 
+  /**
+   * Makes the chart points of one run, downsampled to the given budget.
+   *
+   * @param data   is the parsed csv
+   * @param run    is the run, starting with 0
+   * @param from   is the first row to use, inclusive
+   * @param to     is the last row to use, exclusive
+   * @param budget is the most points wanted
+   * @return the points of that run in wavelength order
+   */
+  public static List<Data<Number, Number>> seriesPoints(SpectrumData data, int run, int from,
+      int to, int budget) {
+    return points(data.getWavelengths(), data.getRun(run), from, to, budget,
+        data.getLabels()[run + 1]);
+  }
+
+  // The downsampled points of a run's values between two rows
+  private static List<Data<Number, Number>> points(double[] wavelengths, double[] absorbances,
+      int from, int to, int budget, String label) {
+    int[] rows = Downsampler.largestTriangleThreeBuckets(wavelengths, absorbances, from, to,
+        budget);
+    List<Data<Number, Number>> points = new ArrayList<>(rows.length);
+    for (int row : rows) {
+      XYChart.Data<Number, Number> datapoint = new XYChart.Data<>(wavelengths[row],
+          absorbances[row]);
+      datapoint.setExtraValue(label);
+      points.add(datapoint);
+    }
+    return points;
+  }
+
+  /**
+   * Keeps the chart's level of detail matched to what is shown. Once the x-axis bounds or chart
+   * width stop changing, every series is rebuilt from the rows in view, so zooming in refines up to
+   * full resolution.
+   *
+   * @param data  is the parsed csv the chart was made from
+   * @param chart is the chart with a series for each run
+   */
+  public static void levelOfDetail(SpectrumData data, XYChart<Number, Number> chart) {
+    chart.getProperties().put(CHART_DATA, data);
+    PauseTransition settle = new PauseTransition(Duration.millis(150));
+    settle.setOnFinished((evt) -> {
+      SpectrumData current = chartData(chart);
+      int[] range = visibleRows(current, chart);
+      int budget = pointBudget(chart);
+      int seriesCount = Math.min(current.getRunCount(), chart.getData().size());
+      for (int run = 0; run < seriesCount; run++) {
+        chart.getData().get(run).getData()
+            .setAll(seriesPoints(current, run, range[0], range[1], budget));
+      }
+    });
+    if (chart.getXAxis() instanceof NumberAxis xAxis) {
+      xAxis.lowerBoundProperty().addListener((obs, oldVal, newVal) -> settle.playFromStart());
+      xAxis.upperBoundProperty().addListener((obs, oldVal, newVal) -> settle.playFromStart());
+    }
+    chart.widthProperty().addListener((obs, oldVal, newVal) -> settle.playFromStart());
+  }
+
+  /**
+   * Brings a chart up to date with data that grew, like a csv that is still being written. Runs
+   * that changed are rebuilt, new runs get a series and the appended rows are added to every
+   * other run, so the work done is about the size of what changed.
+   *
+   * @param data        is all the data as it is now
+   * @param chart       is the chart that was made from the data before it grew
+   * @param fromRow     is the first appended row
+   * @param changedRuns is every run, starting with 0, that is new or whose values all changed
+   */
+  public static void updateChart(SpectrumData data, XYChart<Number, Number> chart, int fromRow,
+      int[] changedRuns) {
+    chart.getProperties().put(CHART_DATA, data);
+    int[] range = visibleRows(data, chart);
+    int budget = pointBudget(chart);
+    for (int run = chart.getData().size(); run < data.getRunCount(); run++) {
+      Series<Number, Number> series = new Series<>();
+      series.setName("Run " + (run + 1));
+      chart.getData().add(series);
+    }
+    boolean[] changed = new boolean[data.getRunCount()];
+    for (int run : changedRuns) {
+      changed[run] = true;
+      chart.getData().get(run).getData()
+          .setAll(seriesPoints(data, run, range[0], range[1], budget));
+    }
+    // The new rows get their share of the point budget
+    int from = Math.max(fromRow, range[0]);
+    if (from >= range[1]) {
+      return;
+    }
+    int share = (int) Math.max(3, (long) budget * (range[1] - from) / (range[1] - range[0]));
+    // Only the new rows are read, not the whole of every run
+    double[] wavelengths = new double[range[1] - from];
+    for (int row = from; row < range[1]; row++) {
+      wavelengths[row - from] = data.getWavelength(row);
+    }
+    double[] absorbances = new double[wavelengths.length];
+    for (int run = 0; run < data.getRunCount(); run++) {
+      if (!changed[run]) {
+        for (int row = from; row < range[1]; row++) {
+          absorbances[row - from] = data.getValue(run, row);
+        }
+        chart.getData().get(run).getData().addAll(points(wavelengths, absorbances, 0,
+            wavelengths.length, share, data.getLabels()[run + 1]));
+      }
+    }
+  }
+
+  // The data the chart was last drawn from
+  private static SpectrumData chartData(XYChart<Number, Number> chart) {
+    return (SpectrumData) chart.getProperties().get(CHART_DATA);
+  }
+
+  // About two points per horizontal pixel, the screen width is used before the chart is laid out
+  private static int pointBudget(XYChart<Number, Number> chart) {
+    double width = chart.getWidth() > 0 ? chart.getWidth() : DEFAULT_CHART_WIDTH;
+    return (int) Math.ceil(width * 2);
+  }
+
+  // Rows between the x-axis bounds, every row if the axis is auto ranged or not in order
+  private static int[] visibleRows(SpectrumData data, XYChart<Number, Number> chart) {
+    double[] wavelengths = data.getWavelengths();
+    if (Downsampler.isAscending(wavelengths) && chart.getXAxis() instanceof NumberAxis xAxis
+        && !xAxis.isAutoRanging()) {
+      return Downsampler.visibleRange(wavelengths, xAxis.getLowerBound(), xAxis.getUpperBound());
+    }
+    return new int[]{0, wavelengths.length};
+  }
+
   public static XYChart<Number, Number> getChart(ComboBox<String> chartBox,
       Map<String, XYChart<Number, Number>> storage) {
     String name = chartSelected(chartBox);
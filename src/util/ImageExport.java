@@ -0,0 +1,203 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.DoubleConsumer;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.transform.Transform;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Static utility methods that save charts as images in two halves. Only taking the snapshot has to
+ * happen on the JavaFX thread, reading its pixels and encoding the file can then happen on any
+ * thread so the window does not freeze while large images are saved.
+ */
+public class ImageExport {
+
+  // JavaFX draws at 96 pixels per inch
+  private static final double SCREEN_DPI = 96;
+  private static final double METERS_PER_INCH = 0.0254;
+  private static final String PNG_FORMAT = "javax_imageio_png_1.0";
+  private static final String JPEG_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+  /**
+   * A snapshot of a chart that is ready to be saved.
+   *
+   * @param name  is what was captured, like "Left Graph"
+   * @param image is the snapshot, it is not changed once taken
+   * @param dpi   is the resolution it was taken at
+   */
+  public record Capture(String name, WritableImage image, int dpi) {
+
+  }
+
+  /**
+   * Takes a snapshot of a node at a resolution, this must be called on the JavaFX thread.
+   *
+   * @param node is the chart or pane to capture
+   * @param name is what is captured, like "Left Graph"
+   * @param dpi  is the resolution, 96 is the size it is on screen
+   * @return the snapshot
+   */
+  public static Capture capture(Node node, String name, int dpi) {
+    SnapshotParameters parameters = new SnapshotParameters();
+    double scale = dpi / SCREEN_DPI;
+    if (scale != 1) {
+      parameters.setTransform(Transform.scale(scale, scale));
+    }
+    return new Capture(name, node.snapshot(parameters, null), dpi);
+  }
+
+  /**
+   * Copies the pixels of a snapshot straight into the buffer of a new image, this may be called
+   * from any thread.
+   *
+   * @param capture is the snapshot
+   * @param alpha   is if the image keeps transparency, jpg and bmp cannot
+   * @return the image
+   */
+  public static BufferedImage toBufferedImage(Capture capture, boolean alpha) {
+    WritableImage snapshot = capture.image();
+    int width = (int) Math.round(snapshot.getWidth());
+    int height = (int) Math.round(snapshot.getHeight());
+    BufferedImage image = new BufferedImage(width, height,
+        alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    // Both image types keep one int per pixel in the same order as JavaFX's ARGB format
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    snapshot.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+        pixels, 0, width);
+    return image;
+  }
+
+  /**
+   * Writes a snapshot to a file with its resolution, this may be called from any thread.
+   *
+   * @param capture  is the snapshot
+   * @param fileType is the image format, like "png"
+   * @param file     is where it is saved
+   * @param progress is told how far along the encoding is, from 0 to 1
+   * @throws IOException if there is no writer for the format or the file cannot be written
+   */
+  public static void write(Capture capture, String fileType, File file, DoubleConsumer progress)
+      throws IOException {
+    BufferedImage image = toBufferedImage(capture, fileType.equalsIgnoreCase("png"));
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(fileType);
+    if (!writers.hasNext()) {
+      throw new IOException("Cannot save images as " + fileType);
+    }
+    ImageWriter writer = writers.next();
+    writer.addIIOWriteProgressListener(new Progress(progress));
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+      if (output == null) {
+        throw new IOException("Cannot write to " + file);
+      }
+      writer.setOutput(output);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      IIOMetadata metadata = withDpi(writer, image, param, capture.dpi());
+      writer.write(null, new IIOImage(image, null, metadata), param);
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  // The format's default metadata, with the resolution set for png and jpg
+  private static IIOMetadata withDpi(ImageWriter writer, BufferedImage image,
+      ImageWriteParam param, int dpi) {
+    IIOMetadata metadata = writer.getDefaultImageMetadata(
+        ImageTypeSpecifier.createFromRenderedImage(image), param);
+    if (metadata == null || metadata.isReadOnly()) {
+      return metadata;
+    }
+    // The standard Dimension node is read differently by each writer, so each format's own is set
+    String format = metadata.getNativeMetadataFormatName();
+    try {
+      if (PNG_FORMAT.equals(format)) {
+        IIOMetadataNode physical = new IIOMetadataNode("pHYs");
+        String perMeter = Long.toString(Math.round(dpi / METERS_PER_INCH));
+        physical.setAttribute("pixelsPerUnitXAxis", perMeter);
+        physical.setAttribute("pixelsPerUnitYAxis", perMeter);
+        physical.setAttribute("unitSpecifier", "meter");
+        IIOMetadataNode root = new IIOMetadataNode(PNG_FORMAT);
+        root.appendChild(physical);
+        metadata.mergeTree(PNG_FORMAT, root);
+      } else if (JPEG_FORMAT.equals(format)) {
+        org.w3c.dom.Node root = metadata.getAsTree(JPEG_FORMAT);
+        NodeList jfif = ((Element) root).getElementsByTagName("app0JFIF");
+        if (jfif.getLength() > 0) {
+          Element density = (Element) jfif.item(0);
+          density.setAttribute("resUnits", "1");
+          density.setAttribute("Xdensity", Integer.toString(dpi));
+          density.setAttribute("Ydensity", Integer.toString(dpi));
+          metadata.setFromTree(JPEG_FORMAT, root);
+        }
+      }
+    } catch (IIOInvalidTreeException | RuntimeException e) {
+      // The image is still saved, only without its resolution
+    }
+    return metadata;
+  }
+
+  // Passes the writer's percentage on as a fraction, at most once per percent
+  private static final class Progress implements IIOWriteProgressListener {
+
+    private final DoubleConsumer progress;
+    private float reported;
+
+    private Progress(DoubleConsumer progress) {
+      this.progress = progress;
+    }
+
+    @Override
+    public void imageStarted(ImageWriter source, int imageIndex) {
+      this.reported = 0;
+      this.progress.accept(0);
+    }
+
+    @Override
+    public void imageProgress(ImageWriter source, float percentageDone) {
+      // Some writers report every row, which would flood the progress window
+      if (percentageDone - this.reported >= 1) {
+        this.reported = percentageDone;
+        this.progress.accept(percentageDone / 100);
+      }
+    }
+
+    @Override
+    public void imageComplete(ImageWriter source) {
+      this.progress.accept(1);
+    }
+
+    @Override
+    public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) {
+    }
+
+    @Override
+    public void thumbnailProgress(ImageWriter source, float percentageDone) {
+    }
+
+    @Override
+    public void thumbnailComplete(ImageWriter source) {
+    }
+
+    @Override
+    public void writeAborted(ImageWriter source) {
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes synthetic titration csv files in the same layout the spectrometer exports, so the parser,
+ * graphs and exporters can be tested at any size. Each run is a metal addition: the peptide's
+ * peaks shrink and the metal-bound peaks grow by a 1:1 binding isotherm, which gives isosbestic
+ * points like real data. The same seed always gives the same file.
+ */
+public class TitrationGenerator {
+
+  /**
+   * The line shape of a peak.
+   */
+  public enum Shape {
+    GAUSSIAN, LORENTZIAN
+  }
+
+  /**
+   * The column layout of the written csv.
+   */
+  public enum Layout {
+    /**
+     * As exported: the latest run, then a wavelength and absorbance column for every other run.
+     */
+    RAW,
+    /**
+     * As written by loadAndEditCSV: one wavelength column, then every run with the latest last.
+     */
+    EDITED
+  }
+
+  private final List<double[]> peaks;
+  private Shape shape;
+  private int wavelengths;
+  private int runs;
+  private double start;
+  private double step;
+  private double noise;
+  private double baseline;
+  private double equivalents;
+  private double kd;
+  private long seed;
+
+  /**
+   * Makes a generator for a 790 wavelength, 16 run titration like the sample files, with one free
+   * and one bound peak.
+   */
+  public TitrationGenerator() {
+    this.peaks = new ArrayList<>();
+    this.shape = Shape.GAUSSIAN;
+    this.wavelengths = 790;
+    this.runs = 16;
+    this.start = 380.6;
+    this.step = 0.7;
+    this.noise = 0.002;
+    this.baseline = 0;
+    this.equivalents = 2;
+    this.kd = 0.05;
+    this.seed = 23;
+  }
+
+  /**
+   * Sets how many wavelengths (rows) there are.
+   */
+  public TitrationGenerator wavelengths(int wavelengths) {
+    if (wavelengths < 1) {
+      throw new IllegalArgumentException("There must be at least one wavelength");
+    }
+    this.wavelengths = wavelengths;
+    return this;
+  }
+
+  /**
+   * Sets how many runs there are, the latest run included.
+   */
+  public TitrationGenerator runs(int runs) {
+    if (runs < 1) {
+      throw new IllegalArgumentException("There must be at least one run");
+    }
+    this.runs = runs;
+    return this;
+  }
+
+  /**
+   * Sets the first wavelength and the step between wavelengths in nm.
+   */
+  public TitrationGenerator axis(double start, double step) {
+    if (step <= 0) {
+      throw new IllegalArgumentException("The wavelength step must be positive");
+    }
+    this.start = start;
+    this.step = step;
+    return this;
+  }
+
+  /**
+   * Sets the standard deviation of the gaussian noise added to every absorbance.
+   */
+  public TitrationGenerator noise(double noise) {
+    this.noise = noise;
+    return this;
+  }
+
+  /**
+   * Sets the absorbance added to every wavelength.
+   */
+  public TitrationGenerator baseline(double baseline) {
+    this.baseline = baseline;
+    return this;
+  }
+
+  /**
+   * Sets the line shape of every peak.
+   */
+  public TitrationGenerator shape(Shape shape) {
+    this.shape = shape;
+    return this;
+  }
+
+  /**
+   * Sets the binding, the last run has the given metal equivalents and the dissociation constant
+   * is relative to the peptide concentration.
+   */
+  public TitrationGenerator binding(double equivalents, double kd) {
+    this.equivalents = equivalents;
+    this.kd = kd;
+    return this;
+  }
+
+  /**
+   * Sets the seed of the noise.
+   */
+  public TitrationGenerator seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Adds a peak, if no peaks are added one free peak at 450nm and one bound peak at 600nm are used.
+   *
+   * @param center         is the wavelength of the peak
+   * @param width          is the half width at half maximum in nm
+   * @param freeAbsorbance is the peak absorbance of the peptide without metal
+   * @param boundAbsorbance is the peak absorbance once all the peptide is bound
+   * @return this generator
+   */
+  public TitrationGenerator peak(double center, double width, double freeAbsorbance,
+      double boundAbsorbance) {
+    this.peaks.add(new double[]{center, width, freeAbsorbance, boundAbsorbance});
+    return this;
+  }
+
+  /**
+   * Fraction of peptide bound at the given run, from a 1:1 binding isotherm.
+   *
+   * @param run is the run starting with 0
+   * @return the bound fraction from 0 to 1
+   */
+  public double boundFraction(int run) {
+    double metal = this.runs == 1 ? 0 : this.equivalents * run / (this.runs - 1);
+    double b = 1 + metal + this.kd;
+    return (b - Math.sqrt(b * b - 4 * metal)) / 2;
+  }
+
+  /**
+   * Writes the titration to a csv file.
+   *
+   * @param filePath is where the csv is written
+   * @param layout   is if the csv is raw or already edited
+   * @throws IOException if the file cannot be written
+   */
+  public void write(String filePath, Layout layout) throws IOException {
+    List<double[]> usedPeaks = this.peaks.isEmpty()
+        ? List.of(new double[]{450, 40, 0.6, 0.1}, new double[]{600, 60, 0.05, 0.5})
+        : this.peaks;
+    double[] bound = new double[this.runs];
+    for (int run = 0; run < this.runs; run++) {
+      bound[run] = this.boundFraction(run);
+    }
+    Random random = new Random(this.seed);
+    double[] row = new double[this.runs];
+    try (BufferedWriter out = Files.newBufferedWriter(Path.of(filePath))) {
+      out.write(this.header(layout));
+      StringBuilder line = new StringBuilder();
+      for (int r = 0; r < this.wavelengths; r++) {
+        double wavelength = this.start + r * this.step;
+        for (int run = 0; run < this.runs; run++) {
+          double absorbance = this.baseline + random.nextGaussian() * this.noise;
+          for (double[] peak : usedPeaks) {
+            double height = peak[2] + (peak[3] - peak[2]) * bound[run];
+            absorbance += height * this.lineShape((wavelength - peak[0]) / peak[1]);
+          }
+          row[run] = absorbance;
+        }
+        line.setLength(0);
+        String cell = quote(Double.toString(Math.round(wavelength * 1e6) / 1e6));
+        int latest = this.runs - 1;
+        if (layout == Layout.RAW) {
+          line.append(cell).append(',').append(quote(Double.toString(row[latest])));
+          for (int run = 0; run < latest; run++) {
+            line.append(',').append(cell).append(',').append(quote(Double.toString(row[run])));
+          }
+        } else {
+          line.append(cell);
+          for (int run = 0; run < this.runs; run++) {
+            line.append(',').append(quote(Double.toString(row[run])));
+          }
+        }
+        out.write(line.append('\n').toString());
+      }
+    }
+  }
+
+  // Header cells in the instrument's wording, the last run is always the latest
+  private String header(Layout layout) {
+    StringBuilder header = new StringBuilder(quote("Latest: Wavelength (nm)"));
+    if (layout == Layout.RAW) {
+      header.append(',').append(quote("Latest: Absorbance"));
+      for (int run = 1; run < this.runs; run++) {
+        header.append(',').append(quote("Run " + run + ": Wavelength (nm)")).append(',')
+            .append(quote("Run " + run + ": Absorbance"));
+      }
+    } else {
+      for (int run = 1; run < this.runs; run++) {
+        header.append(',').append(quote("Run " + run + ": Absorbance"));
+      }
+      header.append(',').append(quote("Latest: Absorbance"));
+    }
+    return header.append('\n').toString();
+  }
+
+  // Peak height of 1 at x = 0, x is in half widths
+  private double lineShape(double x) {
+    if (this.shape == Shape.LORENTZIAN) {
+      return 1 / (1 + x * x);
+    }
+    return Math.exp(-Math.log(2) * x * x);
+  }
+
+  private static String quote(String cell) {
+    return "\"" + cell + "\"";
+  }
+}
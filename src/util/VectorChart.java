@@ -0,0 +1,765 @@
+package util;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import model.SpectrumData;
+
+/**
+ * Static utility methods that write charts as SVG or PDF straight from their numbers, without
+ * drawing the JavaFX scene, so they stay sharp at any size. Each line is simplified to the points
+ * that can be told apart at the size it is drawn, which keeps files of large CSVs small.
+ */
+public class VectorChart {
+
+  private static final int LEFT_GAP = 70;
+  private static final int RIGHT_GAP = 20;
+  private static final int TOP_GAP = 40;
+  private static final int BOTTOM_GAP = 50;
+  private static final double TICK_FONT = 11;
+  private static final double TITLE_FONT = 16;
+  private static final double MARKER_RADIUS = 4;
+  // Points of a line closer than this to the simplified line are dropped
+  private static final double TOLERANCE = 0.1;
+
+  /**
+   * One chart of an export, a list of charts is drawn side by side.
+   *
+   * @param title  is the title above the chart
+   * @param xLabel is the x-axis title
+   * @param yLabel is the y-axis title
+   * @param bounds is the x lower, x upper, x tick unit, y lower, y upper and y tick unit
+   * @param xs     is the x values of each series
+   * @param ys     is the y values of each series, NaN leaves a gap
+   * @param lines  is if each series is a line, otherwise every point gets a marker
+   * @param names  is the legend name of each series, null for no legend
+   */
+  public record Chart(String title, String xLabel, String yLabel, double[] bounds,
+                      double[][] xs, double[][] ys, boolean lines, String[] names) {
+
+  }
+
+  /**
+   * Checks if a file type is written by this class.
+   *
+   * @param fileType is the file type, like ".svg"
+   * @return true for svg and pdf
+   */
+  public static boolean isVector(String fileType) {
+    return fileType.equalsIgnoreCase(".svg") || fileType.equalsIgnoreCase(".pdf");
+  }
+
+  /**
+   * Makes the chart of every run as a line over the wavelengths, the same as the left graph.
+   *
+   * @param data     is the parsed csv
+   * @param title    is the title used if there are no settings
+   * @param settings is the title and axes of the graph, null to fit the data
+   * @return the chart
+   */
+  public static Chart lines(SpectrumData data, String title, ChartSettings settings) {
+    double[] wavelengths = data.getWavelengths();
+    double[][] xs = new double[data.getRunCount()][];
+    double[][] ys = new double[data.getRunCount()][];
+    String[] names = new String[data.getRunCount()];
+    for (int run = 0; run < xs.length; run++) {
+      xs[run] = wavelengths;
+      ys[run] = data.getRun(run);
+      names[run] = "Run " + (run + 1);
+    }
+    double[] yBounds = ChartImage.yBounds(data);
+    double[] xRange = range(wavelengths);
+    double[] fit = {xRange[0] - 7, xRange[1] + 7, yBounds[0], yBounds[1]};
+    String[] labels = data.getLabels();
+    String yLabel = labels.length > 1 ? AxisUtil.axisLabel(labels[1]) : "";
+    return chart(title, AxisUtil.axisLabel(labels[0]), yLabel, fit, settings, xs, ys, true,
+        names);
+  }
+
+  /**
+   * Makes the chart of every run's absorbance at the selected wavelength, the same as the right
+   * graph.
+   *
+   * @param x        is the x value of each run
+   * @param y        is the absorbance of each run
+   * @param title    is the title used if there are no settings
+   * @param settings is the title and axes of the graph, null to fit the data
+   * @return the chart
+   */
+  public static Chart points(double[] x, double[] y, String title, ChartSettings settings) {
+    double[] xRange = range(x);
+    double[] yRange = range(y);
+    double xPad = xRange[0] == xRange[1] ? 1 : (xRange[1] - xRange[0]) * 0.05;
+    double yPad = yRange[0] == yRange[1] ? 1 : (yRange[1] - yRange[0]) * 0.05;
+    double[] fit = {xRange[0] - xPad, xRange[1] + xPad, yRange[0] - yPad, yRange[1] + yPad};
+    return chart(title, "", "", fit, settings, new double[][]{x}, new double[][]{y}, false,
+        null);
+  }
+
+  /**
+   * Writes the charts side by side, streaming the svg or deflating the pdf's drawing as it goes.
+   *
+   * @param charts   is every chart, left to right
+   * @param width    is the width of each chart
+   * @param height   is the height of the charts
+   * @param fileType is ".svg" or ".pdf"
+   * @param out      is where the file is written, it is not closed
+   * @throws IOException              if the file cannot be written
+   * @throws IllegalArgumentException if the file type is not svg or pdf
+   */
+  public static void write(List<Chart> charts, double width, double height, String fileType,
+      OutputStream out) throws IOException, IllegalArgumentException {
+    Sink sink;
+    double pageWidth = width * charts.size();
+    if (fileType.equalsIgnoreCase(".svg")) {
+      sink = new SvgSink(out, pageWidth, height);
+    } else if (fileType.equalsIgnoreCase(".pdf")) {
+      sink = new PdfSink(out, pageWidth, height);
+    } else {
+      throw new IllegalArgumentException("Cannot save charts as " + fileType);
+    }
+    for (int chart = 0; chart < charts.size(); chart++) {
+      draw(sink, charts.get(chart), chart * width, width, height);
+    }
+    sink.finish();
+  }
+
+  // The settings' title and bounds where they were set, otherwise the given ones
+  private static Chart chart(String title, String xLabel, String yLabel, double[] fit,
+      ChartSettings settings, double[][] xs, double[][] ys, boolean lines, String[] names) {
+    double[] bounds = {fit[0], fit[1], AxisUtil.tickStep(fit[1] - fit[0]), fit[2], fit[3],
+        AxisUtil.tickStep(fit[3] - fit[2])};
+    if (settings == null) {
+      return new Chart(title, xLabel, yLabel, bounds, xs, ys, lines, names);
+    }
+    setBounds(bounds, 0, settings.x());
+    setBounds(bounds, 3, settings.y());
+    return new Chart(settings.title() == null ? title : settings.title(),
+        labelOr(settings.x().label(), xLabel), labelOr(settings.y().label(), yLabel), bounds, xs,
+        ys, lines, names);
+  }
+
+  private static void setBounds(double[] bounds, int from, ChartSettings.Axis axis) {
+    if (!axis.autoRanging() && axis.upper() > axis.lower() && axis.tickUnit() > 0) {
+      bounds[from] = axis.lower();
+      bounds[from + 1] = axis.upper();
+      bounds[from + 2] = axis.tickUnit();
+    }
+  }
+
+  private static String labelOr(String label, String fallback) {
+    return label == null || label.isEmpty() ? fallback : label;
+  }
+
+  // Lowest and highest value that is not NaN, 0 and 1 if there is none
+  private static double[] range(double[] values) {
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (double value : values) {
+      if (!Double.isNaN(value)) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+    }
+    return min > max ? new double[]{0, 1} : new double[]{min, max};
+  }
+
+  // Draws one chart in the column of the page starting at left, the same layout as ChartImage
+  private static void draw(Sink sink, Chart chart, double left, double width, double height)
+      throws IOException {
+    int series = chart.xs().length;
+    ChartLegend legend = ChartLegend.layout(chart.names() == null ? 0 : series,
+        width - LEFT_GAP, height - TOP_GAP - BOTTOM_GAP);
+    double plotLeft = left + LEFT_GAP;
+    double plotWidth = width - LEFT_GAP - RIGHT_GAP;
+    double plotHeight = height - TOP_GAP - BOTTOM_GAP - legend.height();
+    if (plotWidth <= 1 || plotHeight <= 1) {
+      return;
+    }
+    double[] bounds = chart.bounds();
+    double xLower = bounds[0];
+    double xScale = plotWidth / (bounds[1] - xLower);
+    double yLower = bounds[3];
+    double yScale = plotHeight / (bounds[4] - yLower);
+    double plotBottom = TOP_GAP + plotHeight;
+
+    // Axes
+    sink.rect(plotLeft, TOP_GAP, plotWidth, plotHeight, Color.BLACK, false);
+    double xStep = bounds[2];
+    for (double tick = Math.ceil(xLower / xStep) * xStep; tick <= bounds[1] + xStep * 1e-9;
+        tick += xStep) {
+      double x = plotLeft + (tick - xLower) * xScale;
+      sink.line(x, plotBottom, x, plotBottom + 5);
+      sink.text(AxisUtil.tickText(tick, xStep), x, plotBottom + 7 + TICK_FONT, TICK_FONT, 0.5,
+          false);
+    }
+    double yStep = bounds[5];
+    for (double tick = Math.ceil(yLower / yStep) * yStep; tick <= bounds[4] + yStep * 1e-9;
+        tick += yStep) {
+      double y = plotBottom - (tick - yLower) * yScale;
+      sink.line(plotLeft - 5, y, plotLeft, y);
+      sink.text(AxisUtil.tickText(tick, yStep), plotLeft - 7, y + TICK_FONT / 3, TICK_FONT, 1,
+          false);
+    }
+    sink.text(chart.xLabel(), plotLeft + plotWidth / 2, plotBottom + 26 + TICK_FONT, TICK_FONT,
+        0.5, false);
+    sink.text(chart.yLabel(), left + 14 + TICK_FONT / 2, TOP_GAP + plotHeight / 2, TICK_FONT, 0.5,
+        true);
+    sink.text(chart.title(), plotLeft + plotWidth / 2, (TOP_GAP + TITLE_FONT) / 2, TITLE_FONT,
+        0.5, false);
+
+    // Series, clipped to the plot in case the axes were narrowed
+    sink.clip(plotLeft, TOP_GAP, plotWidth, plotHeight);
+    double[] px = new double[0];
+    double[] py = new double[0];
+    int[] kept = new int[0];
+    for (int line = 0; line < series; line++) {
+      double[] xs = chart.xs()[line];
+      double[] ys = chart.ys()[line];
+      int count = Math.min(xs.length, ys.length);
+      if (px.length < count) {
+        px = new double[count];
+        py = new double[count];
+        kept = new int[count];
+      }
+      for (int point = 0; point < count; point++) {
+        px[point] = plotLeft + (xs[point] - xLower) * xScale;
+        py[point] = plotBottom - (ys[point] - yLower) * yScale;
+      }
+      Color color = new Color(ChartLegend.seriesRgb(line));
+      if (!chart.lines()) {
+        for (int point = 0; point < count; point++) {
+          if (!Double.isNaN(py[point]) && !Double.isNaN(px[point])) {
+            sink.marker(px[point], py[point], MARKER_RADIUS, color);
+          }
+        }
+        continue;
+      }
+      // Every stretch without NaN is its own line
+      int start = 0;
+      while (start < count) {
+        while (start < count && (Double.isNaN(py[start]) || Double.isNaN(px[start]))) {
+          start++;
+        }
+        int end = start;
+        while (end < count && !Double.isNaN(py[end]) && !Double.isNaN(px[end])) {
+          end++;
+        }
+        if (end - start > 1) {
+          int size = simplify(px, py, start, end, kept);
+          sink.polyline(px, py, kept, size, color);
+        }
+        start = end;
+      }
+    }
+    sink.unclip();
+
+    // Legend
+    double legendTop = plotBottom + BOTTOM_GAP;
+    for (ChartLegend.Item item : legend.items()) {
+      double x = plotLeft + item.x();
+      double y = legendTop + item.y();
+      if (item.series() != ChartLegend.MORE) {
+        sink.rect(x, y + 3, 10, 10, new Color(ChartLegend.seriesRgb(item.series())), true);
+      }
+      sink.text(ChartLegend.text(item, chart.names()), x + 14, y + 12, TICK_FONT, 0, false);
+    }
+  }
+
+  /*
+   * Ramer-Douglas-Peucker, keeps the point furthest from the line between the points kept on either
+   * side of it until every dropped point is within the tolerance. Puts the kept indices, in order,
+   * in kept and returns how many there are.
+   */
+  private static int simplify(double[] x, double[] y, int from, int to, int[] kept) {
+    int last = to - 1;
+    boolean[] keep = new boolean[to - from];
+    keep[0] = true;
+    keep[last - from] = true;
+    // Pairs of first and last index still to check, used as a stack
+    int[] stack = new int[2 * Math.max(to - from, 2)];
+    int top = 0;
+    stack[top++] = from;
+    stack[top++] = last;
+    double squaredTolerance = TOLERANCE * TOLERANCE;
+    while (top > 0) {
+      int end = stack[--top];
+      int begin = stack[--top];
+      double dx = x[end] - x[begin];
+      double dy = y[end] - y[begin];
+      double squaredLength = dx * dx + dy * dy;
+      double furthest = squaredTolerance;
+      int split = -1;
+      for (int point = begin + 1; point < end; point++) {
+        double px = x[point] - x[begin];
+        double py = y[point] - y[begin];
+        double distance;
+        if (squaredLength == 0) {
+          distance = px * px + py * py;
+        } else {
+          double cross = px * dy - py * dx;
+          distance = cross * cross / squaredLength;
+        }
+        if (distance > furthest) {
+          furthest = distance;
+          split = point;
+        }
+      }
+      if (split != -1) {
+        keep[split - from] = true;
+        stack[top++] = begin;
+        stack[top++] = split;
+        stack[top++] = split;
+        stack[top++] = end;
+      }
+    }
+    int size = 0;
+    for (int point = 0; point < keep.length; point++) {
+      if (keep[point]) {
+        kept[size++] = from + point;
+      }
+    }
+    return size;
+  }
+
+  // Two decimals are far finer than can be seen, without a trailing .00 or String.format
+  private static void appendNumber(StringBuilder out, double value) {
+    long hundredths = Math.round(value * 100);
+    if (hundredths < 0) {
+      out.append('-');
+      hundredths = -hundredths;
+    }
+    out.append(hundredths / 100);
+    long fraction = hundredths % 100;
+    if (fraction != 0) {
+      out.append('.').append(fraction / 10);
+      if (fraction % 10 != 0) {
+        out.append(fraction % 10);
+      }
+    }
+  }
+
+  /**
+   * What a chart is drawn with, coordinates start at the top left like the screen.
+   */
+  private interface Sink {
+
+    void line(double x1, double y1, double x2, double y2) throws IOException;
+
+    void rect(double x, double y, double width, double height, Color color, boolean fill)
+        throws IOException;
+
+    // Anchor is 0 to start, 0.5 to center and 1 to end the text at x
+    void text(String text, double x, double y, double size, double anchor, boolean vertical)
+        throws IOException;
+
+    void polyline(double[] x, double[] y, int[] points, int count, Color color)
+        throws IOException;
+
+    void marker(double x, double y, double radius, Color color) throws IOException;
+
+    void clip(double x, double y, double width, double height) throws IOException;
+
+    void unclip() throws IOException;
+
+    void finish() throws IOException;
+  }
+
+  private static final class SvgSink implements Sink {
+
+    private final Writer out;
+    private final StringBuilder buffer;
+    private int clips;
+
+    private SvgSink(OutputStream out, double width, double height) throws IOException {
+      this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      this.buffer = new StringBuilder();
+      this.buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+          .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+      appendNumber(this.buffer, width);
+      this.buffer.append("\" height=\"");
+      appendNumber(this.buffer, height);
+      this.buffer.append("\" viewBox=\"0 0 ");
+      appendNumber(this.buffer, width);
+      this.buffer.append(' ');
+      appendNumber(this.buffer, height);
+      this.buffer.append("\" font-family=\"sans-serif\">\n")
+          .append("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+      this.flush();
+    }
+
+    @Override
+    public void line(double x1, double y1, double x2, double y2) throws IOException {
+      this.buffer.append("<path stroke=\"black\" d=\"M");
+      this.point(x1, y1);
+      this.buffer.append('L');
+      this.point(x2, y2);
+      this.buffer.append("\"/>\n");
+      this.flush();
+    }
+
+    @Override
+    public void rect(double x, double y, double width, double height, Color color, boolean fill)
+        throws IOException {
+      this.buffer.append("<rect x=\"");
+      appendNumber(this.buffer, x);
+      this.buffer.append("\" y=\"");
+      appendNumber(this.buffer, y);
+      this.buffer.append("\" width=\"");
+      appendNumber(this.buffer, width);
+      this.buffer.append("\" height=\"");
+      appendNumber(this.buffer, height);
+      this.buffer.append(fill ? "\" fill=\"" : "\" fill=\"none\" stroke=\"")
+          .append(hex(color)).append("\"/>\n");
+      this.flush();
+    }
+
+    @Override
+    public void text(String text, double x, double y, double size, double anchor,
+        boolean vertical) throws IOException {
+      if (text == null || text.isEmpty()) {
+        return;
+      }
+      this.buffer.append("<text x=\"");
+      appendNumber(this.buffer, vertical ? 0 : x);
+      this.buffer.append("\" y=\"");
+      appendNumber(this.buffer, vertical ? 0 : y);
+      this.buffer.append("\" font-size=\"");
+      appendNumber(this.buffer, size);
+      this.buffer.append('"');
+      if (anchor != 0) {
+        this.buffer.append(" text-anchor=\"").append(anchor == 1 ? "end" : "middle").append('"');
+      }
+      if (vertical) {
+        this.buffer.append(" transform=\"translate(");
+        this.point(x, y);
+        this.buffer.append(") rotate(-90)\"");
+      }
+      this.buffer.append('>');
+      for (int at = 0; at < text.length(); at++) {
+        char c = text.charAt(at);
+        switch (c) {
+          case '&' -> this.buffer.append("&amp;");
+          case '<' -> this.buffer.append("&lt;");
+          case '>' -> this.buffer.append("&gt;");
+          default -> this.buffer.append(c);
+        }
+      }
+      this.buffer.append("</text>\n");
+      this.flush();
+    }
+
+    @Override
+    public void polyline(double[] x, double[] y, int[] points, int count, Color color)
+        throws IOException {
+      this.buffer.append("<path fill=\"none\" stroke=\"").append(hex(color)).append("\" d=\"M");
+      for (int point = 0; point < count; point++) {
+        if (point == 1) {
+          this.buffer.append('L');
+        } else if (point > 1) {
+          this.buffer.append(' ');
+        }
+        this.point(x[points[point]], y[points[point]]);
+        // Keeps the buffer small for lines with many points
+        if (this.buffer.length() > 8192) {
+          this.flush();
+        }
+      }
+      this.buffer.append("\"/>\n");
+      this.flush();
+    }
+
+    @Override
+    public void marker(double x, double y, double radius, Color color) throws IOException {
+      this.buffer.append("<circle cx=\"");
+      appendNumber(this.buffer, x);
+      this.buffer.append("\" cy=\"");
+      appendNumber(this.buffer, y);
+      this.buffer.append("\" r=\"");
+      appendNumber(this.buffer, radius);
+      this.buffer.append("\" fill=\"").append(hex(color)).append("\"/>\n");
+      this.flush();
+    }
+
+    @Override
+    public void clip(double x, double y, double width, double height) throws IOException {
+      int id = this.clips++;
+      this.buffer.append("<clipPath id=\"plot").append(id).append("\">");
+      this.buffer.append("<rect x=\"");
+      appendNumber(this.buffer, x);
+      this.buffer.append("\" y=\"");
+      appendNumber(this.buffer, y);
+      this.buffer.append("\" width=\"");
+      appendNumber(this.buffer, width);
+      this.buffer.append("\" height=\"");
+      appendNumber(this.buffer, height);
+      this.buffer.append("\"/></clipPath>\n<g clip-path=\"url(#plot").append(id).append(")\">\n");
+      this.flush();
+    }
+
+    @Override
+    public void unclip() throws IOException {
+      this.buffer.append("</g>\n");
+      this.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+      this.buffer.append("</svg>\n");
+      this.flush();
+      this.out.flush();
+    }
+
+    private void point(double x, double y) {
+      appendNumber(this.buffer, x);
+      this.buffer.append(' ');
+      appendNumber(this.buffer, y);
+    }
+
+    private void flush() throws IOException {
+      this.out.append(this.buffer);
+      this.buffer.setLength(0);
+    }
+
+    private static String hex(Color color) {
+      return String.format("#%06x", color.getRGB() & 0xffffff);
+    }
+  }
+
+  /*
+   * A single page pdf. The drawing is deflated as it is made, then the few objects around it are
+   * written with their byte offsets. Text uses the built in Helvetica, measured with AWT's sans
+   * serif font to line it up.
+   */
+  private static final class PdfSink implements Sink {
+
+    // Control points of a quarter circle drawn with a cubic curve
+    private static final double KAPPA = 0.5523;
+    private static final FontRenderContext FONT_CONTEXT =
+        new FontRenderContext(null, true, true);
+
+    private final OutputStream out;
+    private final double width;
+    private final double height;
+    private final ByteArrayOutputStream deflated;
+    private final Writer content;
+    private final StringBuilder buffer;
+
+    private PdfSink(OutputStream out, double width, double height) throws IOException {
+      this.out = out;
+      this.width = width;
+      this.height = height;
+      this.deflated = new ByteArrayOutputStream();
+      this.content = new BufferedWriter(new OutputStreamWriter(
+          new DeflaterOutputStream(this.deflated, new Deflater(Deflater.BEST_SPEED)),
+          StandardCharsets.ISO_8859_1));
+      this.buffer = new StringBuilder();
+      // Flips the page so y goes down like the screen
+      this.buffer.append("1 0 0 -1 0 ");
+      appendNumber(this.buffer, height);
+      this.buffer.append(" cm 1 w 1 1 1 rg 0 0 ");
+      this.point(width, height);
+      this.buffer.append(" re f 0 0 0 rg 0 0 0 RG\n");
+      this.flush();
+    }
+
+    @Override
+    public void line(double x1, double y1, double x2, double y2) throws IOException {
+      this.point(x1, y1);
+      this.buffer.append(" m ");
+      this.point(x2, y2);
+      this.buffer.append(" l S\n");
+      this.flush();
+    }
+
+    @Override
+    public void rect(double x, double y, double width, double height, Color color, boolean fill)
+        throws IOException {
+      this.color(color, fill);
+      this.point(x, y);
+      this.buffer.append(' ');
+      this.point(width, height);
+      this.buffer.append(fill ? " re f\n" : " re S\n");
+      this.color(Color.BLACK, fill);
+      this.flush();
+    }
+
+    @Override
+    public void text(String text, double x, double y, double size, double anchor,
+        boolean vertical) throws IOException {
+      if (text == null || text.isEmpty()) {
+        return;
+      }
+      Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 1).deriveFont((float) size);
+      double shift = anchor * font.getStringBounds(text, FONT_CONTEXT).getWidth();
+      // The text matrix flips the text back up, and turns it for the y-axis title
+      this.buffer.append("BT /F1 ");
+      appendNumber(this.buffer, size);
+      this.buffer.append(vertical ? " Tf 0 -1 -1 0 " : " Tf 1 0 0 -1 ");
+      this.point(vertical ? x : x - shift, vertical ? y + shift : y);
+      this.buffer.append(" Tm (");
+      for (int at = 0; at < text.length(); at++) {
+        char c = text.charAt(at);
+        if (c == '(' || c == ')' || c == '\\') {
+          this.buffer.append('\\').append(c);
+        } else if (c == '\u2026') {
+          // The ellipsis of a shortened legend, where WinAnsiEncoding has it
+          this.buffer.append((char) 0x85);
+        } else {
+          this.buffer.append(c < 256 ? c : '?');
+        }
+      }
+      this.buffer.append(") Tj ET\n");
+      this.flush();
+    }
+
+    @Override
+    public void polyline(double[] x, double[] y, int[] points, int count, Color color)
+        throws IOException {
+      this.color(color, false);
+      for (int point = 0; point < count; point++) {
+        this.point(x[points[point]], y[points[point]]);
+        this.buffer.append(point == 0 ? " m\n" : " l\n");
+        if (this.buffer.length() > 8192) {
+          this.flush();
+        }
+      }
+      this.buffer.append("S\n");
+      this.color(Color.BLACK, false);
+      this.flush();
+    }
+
+    @Override
+    public void marker(double x, double y, double radius, Color color) throws IOException {
+      double k = radius * KAPPA;
+      this.color(color, true);
+      this.point(x + radius, y);
+      this.buffer.append(" m ");
+      this.curve(x + radius, y + k, x + k, y + radius, x, y + radius);
+      this.curve(x - k, y + radius, x - radius, y + k, x - radius, y);
+      this.curve(x - radius, y - k, x - k, y - radius, x, y - radius);
+      this.curve(x + k, y - radius, x + radius, y - k, x + radius, y);
+      this.buffer.append("f\n");
+      this.color(Color.BLACK, true);
+      this.flush();
+    }
+
+    @Override
+    public void clip(double x, double y, double width, double height) throws IOException {
+      this.buffer.append("q ");
+      this.point(x, y);
+      this.buffer.append(' ');
+      this.point(width, height);
+      this.buffer.append(" re W n\n");
+      this.flush();
+    }
+
+    @Override
+    public void unclip() throws IOException {
+      this.buffer.append("Q\n");
+      this.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+      this.content.close();
+      byte[] stream = this.deflated.toByteArray();
+      List<Integer> offsets = new ArrayList<>();
+      ByteCounter counter = new ByteCounter(this.out);
+      counter.write("%PDF-1.4\n");
+      StringBuilder page = new StringBuilder("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 ");
+      appendNumber(page, this.width);
+      page.append(' ');
+      appendNumber(page, this.height);
+      page.append("] /Resources << /Font << /F1 5 0 R >> >> /Contents 4 0 R >>");
+      String[] objects = {
+          "<< /Type /Catalog /Pages 2 0 R >>",
+          "<< /Type /Pages /Kids [3 0 R] /Count 1 >>",
+          page.toString(),
+          null,
+          "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>"};
+      for (int object = 0; object < objects.length; object++) {
+        offsets.add(counter.count);
+        counter.write((object + 1) + " 0 obj\n");
+        if (objects[object] == null) {
+          counter.write("<< /Length " + stream.length + " /Filter /FlateDecode >>\nstream\n");
+          counter.write(stream);
+          counter.write("\nendstream");
+        } else {
+          counter.write(objects[object]);
+        }
+        counter.write("\nendobj\n");
+      }
+      int xref = counter.count;
+      StringBuilder table = new StringBuilder("xref\n0 " + (objects.length + 1)
+          + "\n0000000000 65535 f \n");
+      for (int offset : offsets) {
+        table.append(String.format("%010d 00000 n \n", offset));
+      }
+      table.append("trailer\n<< /Size ").append(objects.length + 1)
+          .append(" /Root 1 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+      counter.write(table.toString());
+      this.out.flush();
+    }
+
+    private void curve(double x1, double y1, double x2, double y2, double x3, double y3) {
+      this.point(x1, y1);
+      this.buffer.append(' ');
+      this.point(x2, y2);
+      this.buffer.append(' ');
+      this.point(x3, y3);
+      this.buffer.append(" c ");
+    }
+
+    private void color(Color color, boolean fill) {
+      appendNumber(this.buffer, color.getRed() / 255.0);
+      this.buffer.append(' ');
+      appendNumber(this.buffer, color.getGreen() / 255.0);
+      this.buffer.append(' ');
+      appendNumber(this.buffer, color.getBlue() / 255.0);
+      this.buffer.append(fill ? " rg " : " RG ");
+    }
+
+    private void point(double x, double y) {
+      appendNumber(this.buffer, x);
+      this.buffer.append(' ');
+      appendNumber(this.buffer, y);
+    }
+
+    private void flush() throws IOException {
+      this.content.append(this.buffer);
+      this.buffer.setLength(0);
+    }
+  }
+
+  // Counts the bytes written so the pdf's cross-reference table knows where each object starts
+  private static final class ByteCounter {
+
+    private final OutputStream out;
+    private int count;
+
+    private ByteCounter(OutputStream out) {
+      this.out = out;
+    }
+
+    private void write(String text) throws IOException {
+      this.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void write(byte[] bytes) throws IOException {
+      this.out.write(bytes);
+      this.count += bytes.length;
+    }
+  }
+}
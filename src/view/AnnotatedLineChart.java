@@ -0,0 +1,103 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.List;
+import javafx.scene.Node;
+import javafx.scene.chart.Axis;
+import javafx.scene.chart.LineChart;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Line;
+import javafx.scene.text.Text;
+
+/**
+ * A line chart that marks points on top of its runs, like the peaks and isosbestic points of a
+ * titration. The marks are laid out with the plot, so they follow the axes when they change.
+ */
+public class AnnotatedLineChart extends LineChart<Number, Number> {
+
+  static final Color MARK_COLOR = Color.web("#c84164");
+
+  /**
+   * A marked point.
+   *
+   * @param x     is the wavelength
+   * @param y     is the absorbance, NaN for a line across the whole chart
+   * @param label is written next to the mark, null or empty for none
+   */
+  public record Mark(double x, double y, String label) {
+
+  }
+
+  private final List<Mark> marks;
+  private final List<Node> markNodes;
+
+  /**
+   * Makes an empty chart with no marks.
+   *
+   * @param xAxis is the wavelength axis
+   * @param yAxis is the absorbance axis
+   */
+  public AnnotatedLineChart(Axis<Number> xAxis, Axis<Number> yAxis) {
+    super(xAxis, yAxis);
+    this.marks = new ArrayList<>();
+    this.markNodes = new ArrayList<>();
+  }
+
+  /**
+   * Replaces the marks.
+   *
+   * @param marks is every mark, empty for none
+   */
+  public void setMarks(List<Mark> marks) {
+    this.getPlotChildren().removeAll(this.markNodes);
+    this.markNodes.clear();
+    this.marks.clear();
+    this.marks.addAll(marks);
+    for (Mark mark : marks) {
+      Node shape;
+      if (Double.isNaN(mark.y())) {
+        Line line = new Line();
+        line.getStrokeDashArray().addAll(6.0, 4.0);
+        line.setStroke(MARK_COLOR);
+        shape = line;
+      } else {
+        shape = new Circle(4, MARK_COLOR);
+      }
+      Text label = new Text(mark.label() == null ? "" : mark.label());
+      label.setFill(MARK_COLOR);
+      this.markNodes.add(shape);
+      this.markNodes.add(label);
+    }
+    this.getPlotChildren().addAll(this.markNodes);
+    this.requestChartLayout();
+  }
+
+  @Override
+  protected void layoutPlotChildren() {
+    super.layoutPlotChildren();
+    double height = this.getYAxis().getHeight();
+    for (int at = 0; at < this.marks.size(); at++) {
+      Mark mark = this.marks.get(at);
+      Node shape = this.markNodes.get(2 * at);
+      Text label = (Text) this.markNodes.get(2 * at + 1);
+      double x = this.getXAxis().getDisplayPosition(mark.x());
+      if (shape instanceof Line line) {
+        line.setStartX(x);
+        line.setEndX(x);
+        line.setStartY(0);
+        line.setEndY(height);
+        label.setX(x + 4);
+        label.setY(14);
+      } else {
+        double y = this.getYAxis().getDisplayPosition(mark.y());
+        ((Circle) shape).setCenterX(x);
+        ((Circle) shape).setCenterY(y);
+        label.setX(x + 6);
+        label.setY(y - 6);
+      }
+      shape.toFront();
+      label.toFront();
+    }
+  }
+}
@@ -1,10 +1,13 @@
 package view;
 
-import com.opencsv.CSVReader;
 import controller.Features;
 import java.util.List;
 import javafx.scene.Parent;
 import javafx.scene.control.TextField;
+import model.PeakFinder;
+import model.SpectrumData;
+import model.SpectrumDecomposition;
+import util.ChartSettings;
 
 /**
  * GUI that shows two charts with a line chart and a scatter plot.
@@ -18,20 +21,79 @@ public interface CSVGUIView extends CSVView {
    */
   void addCSVName(String fileName);
 
+  /**
+   * Shows how far along a file is in loading. This may be called from any thread.
+   *
+   * @param filePath is the file being loaded
+   * @param progress is from 0 to 1, or -1 if it is loading but how far is unknown
+   * @param status   is a short message about the file, like "Loading"
+   */
+  void renderFileProgress(String filePath, double progress, String status);
+
   /**
    * Highlights the given wavelength/Y-Axis value.
    *
-   * @param values is the value that we want to highlight.
+   * @param wavelength is the wavelength that we want to highlight
+   * @param values     is the absorbance of each run at that wavelength
+   */
+  void highlightColumn(double wavelength, double[] values);
+
+  /**
+   * Shows the absorbance of every run at several wavelengths together on one scatter plot.
+   *
+   * @param wavelengths is each wavelength, empty to stop showing the overlay
+   * @param values      is the absorbance of each run at each of the wavelengths
+   */
+  void overlayColumns(double[] wavelengths, double[][] values);
+
+  /**
+   * Shows a decomposition of the loaded csv: its singular values, the spectrum of each of the
+   * first components and how much of each component every run has.
+   *
+   * @param result is the decomposition
+   */
+  void renderDecomposition(SpectrumDecomposition.Result result);
+
+  /**
+   * Marks the peaks and isosbestic points of the loaded csv on its graph and lists them, choosing
+   * one selects its wavelength.
+   *
+   * @param result is the peaks of every run and where every run crosses
    */
-  void highlightColumn(String[] values);
+  void renderPeaks(PeakFinder.Result result);
 
   /**
    * renders the given csv to the current view.
    *
-   * @param file     is the csv itself
+   * @param file     is the parsed csv itself
    * @param fileName is the name of the csv
    */
-  void renderCSV(CSVReader file, String fileName);
+  void renderCSV(SpectrumData file, String fileName);
+
+  /**
+   * Updates the graphs of a csv that grew, like one the spectrometer is still writing. Only what
+   * changed is redrawn, nothing happens if another csv is graphed.
+   *
+   * @param file        is the parsed csv as it is now
+   * @param fileName    is the name of the csv
+   * @param fromRow     is the first row that was appended to every run
+   * @param changedRuns is every run, starting with 0, that is new or whose values all changed
+   */
+  void updateCSV(SpectrumData file, String fileName, int fromRow, int[] changedRuns);
+
+  /**
+   * Gets the title, axes and scatter points of each chart so they can be set back later.
+   *
+   * @return the line chart's then the scatter plot's settings, null where there is no chart
+   */
+  List<ChartSettings> getChartSettings();
+
+  /**
+   * Sets the title, axes and scatter points of each chart back to earlier settings.
+   *
+   * @param settings is the settings from getChartSettings
+   */
+  void setChartSettings(List<ChartSettings> settings);
 
   /**
    * Ends the view.
@@ -46,9 +108,10 @@ public interface CSVGUIView extends CSVView {
   void addFeatures(Features feature);
 
   /**
-   * Sets the xValues to the combo box of the GUI if it exists.
+   * Lists the xValues in the wavelength picker of the GUI if it exists, in place of what it
+   * listed before.
    *
-   * @param xValues is all the X-Values of the CSV
+   * @param xValues is the header then all the X-Values of the CSV
    */
   void setXValueLabel(List<String> xValues);
 
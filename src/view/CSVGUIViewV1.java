@@ -1,19 +1,24 @@
 package view;
 
-import com.opencsv.CSVReader;
 import controller.Features;
-import java.awt.image.BufferedImage;
+import controller.commands.AverageReplicates;
+import controller.commands.CSVCommand;
+import controller.commands.CropWavelengths;
+import controller.commands.Normalize;
+import controller.commands.SubtractRun;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.ScatterChart;
@@ -22,37 +27,92 @@ import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import model.PeakFinder;
+import model.SpectrumData;
+import model.SpectrumDecomposition;
+import model.WavelengthIndex;
+import util.ChartSettings;
+import util.FileUtil;
 import util.GraphUtil;
+import util.ImageExport;
+import util.ImageExport.Capture;
 import util.ImageUtil;
+import util.VectorChart;
 
 public class CSVGUIViewV1 implements CSVGUIView {
 
+  private static final KeyCombination UNDO_KEYS =
+      new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN);
+  private static final KeyCombination REDO_KEYS =
+      new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN);
+  // Points kept of each component's spectrum
+  private static final int COMPONENT_POINTS = 1000;
+
   private final BorderPane mainPanel;
   private final HBox centerPanel;
   private final Button importEditButton;
   private final Button importButton;
+  private final Button watchButton;
   private final Button saveToButton;
   private final Button quickSaveButton;
   private final Button quickSaveImage;
   private final Button saveImageButton;
+  private final Button fitButton;
+  private final Button decomposeButton;
+  private final Button peaksButton;
+  private final Button correctButton;
+  private final Button commandButton;
+  private final Button overlayButton;
+  private final Button graphChange;
+  private final Button undoButton;
+  private final Button redoButton;
   private final TextField saveName;
-  private final ComboBox<String> wavelengths;
+  private final WavelengthPicker wavelengths;
+  private final ComboBox<String> loadedFiles;
+  private final Map<String, ProgressBar> fileBars;
+  private final Map<String, Label> fileStatuses;
+  private final VBox fileRows;
+  private Stage fileLoading;
+  private Stage corrections;
+  private Stage commandQueue;
+  private Stage overlayWindow;
+  private Stage components;
+  private Stage peaks;
   private final ComboBox<String> fileTypes;
   private final ComboBox<String> selectGraph;
-  private LineChart<Number, Number> initGraph;
+  private final ComboBox<String> imageDpi;
+  private AnnotatedLineChart initGraph;
+  private SpectrumCanvas canvasGraph;
   private ScatterChart<Number, Number> selectedGraph;
+  private final ScatterChart<Number, Number> scatter;
+  private double[] scatterX;
+  private double[] xOverrides;
+  private final ScatterChart<Number, Number> overlay;
+  private SpectrumHeatmap heatmap;
+  private boolean heatmapMode;
+  private SpectrumData loadedFile;
+  private String loadedName;
+  private String xLabel;
   private boolean animated;
+  private boolean canvasMode;
   private boolean lightMode;
   private final String css;
 
@@ -82,6 +142,10 @@ public class CSVGUIViewV1 implements CSVGUIView {
     // Import Button with no edits
     this.importButton = new Button("Import CSV (no Edits)");
     importPanel.getChildren().add(this.importButton);
+
+    // Watch Button for a csv that is still being written
+    this.watchButton = new Button("Watch CSV");
+    importPanel.getChildren().add(this.watchButton);
     topPane.getChildren().add(importPanel);
     topPane.spacingProperty()
         .bind(this.mainPanel.widthProperty().divide(2).subtract(importPanel.widthProperty()));
@@ -101,7 +165,7 @@ public class CSVGUIViewV1 implements CSVGUIView {
     // Save Option Button
     Button saveCSVOptions = new Button("Save CSV Options");
     saveCSVOptions.setOnMouseClicked((evt) -> {
-      if (this.initGraph != null) {
+      if (this.lineGraph() != null) {
         this.saveWindow("Saving CSV", this.saveToButton, this.quickSaveButton, this.lightMode);
       } else {
         this.renderError("There is CSV/Graph loaded");
@@ -109,7 +173,7 @@ public class CSVGUIViewV1 implements CSVGUIView {
     });
     Button saveImageOptions = new Button("Save Image Options");
     saveImageOptions.setOnMouseClicked((evt) -> {
-      if (this.initGraph != null) {
+      if (this.lineGraph() != null) {
         this.saveWindow("Saving Graph Images", this.saveImageButton,
             this.quickSaveImage, this.lightMode);
       } else {
@@ -141,21 +205,54 @@ public class CSVGUIViewV1 implements CSVGUIView {
     CheckBox animateGraph = new CheckBox("Animate Graph");
     animateGraph.setOnAction((evt) -> this.animated = animateGraph.isSelected());
     CheckBox lightMode = new CheckBox("Light Mode");
-    checkPane.getChildren().addAll(animateGraph, lightMode);
+    CheckBox canvasGraph = new CheckBox("Fast Canvas Graph");
+    canvasGraph.setOnAction((evt) -> {
+      this.canvasMode = canvasGraph.isSelected();
+      if (this.loadedFile != null) { // Redraws the loaded csv in the new mode
+        this.renderCSV(this.loadedFile, this.loadedName);
+      }
+    });
+    CheckBox heatmapGraph = new CheckBox("Heatmap");
+    heatmapGraph.setOnAction((evt) -> {
+      this.heatmapMode = heatmapGraph.isSelected();
+      this.showHeatmap();
+    });
+    checkPane.getChildren().addAll(animateGraph, lightMode, canvasGraph, heatmapGraph);
     bottomPane.getChildren().add(checkPane);
 
     // Graph Pane
     HBox graphPane = new HBox(5);
     graphPane.getStyleClass().add("roundBorder");
+    // ComboBox for loaded csv files
+    this.loadedFiles = new ComboBox<>();
+    this.loadedFiles.setPromptText("Loaded CSVs");
     // ComboBox for wavelengths
-    this.wavelengths = new ComboBox<>();
+    this.wavelengths = new WavelengthPicker(this.css);
 
     // Change Graph Button
-    Button graphChange = new Button("Change Graph Info");
-    graphChange.setOnAction((evt) -> this.setGraph());
-    graphPane.getChildren().addAll(this.wavelengths, graphChange);
+    this.graphChange = new Button("Change Graph Info");
+    // Binding Fit Button
+    this.fitButton = new Button("Fit Binding");
+    // Corrections Button
+    this.correctButton = new Button("Corrections");
+    // Commands Button
+    this.commandButton = new Button("Commands");
+    // Overlay Button
+    this.overlayButton = new Button("Overlay");
+    // Decompose Button
+    this.decomposeButton = new Button("Components");
+    // Peaks Button
+    this.peaksButton = new Button("Peaks");
+    graphPane.getChildren().addAll(this.loadedFiles, this.wavelengths, this.graphChange,
+        this.correctButton, this.commandButton, this.overlayButton, this.fitButton,
+        this.decomposeButton, this.peaksButton);
     bottomPane.getChildren().add(graphPane);
 
+    // Undo and Redo Buttons
+    this.undoButton = new Button("Undo");
+    this.redoButton = new Button("Redo");
+    bottomPane.getChildren().addAll(this.undoButton, this.redoButton);
+
     // Information/Help Button
     Button infoButton = new Button("Info/Help");
     infoButton.setOnAction((evt) -> this.info());
@@ -163,16 +260,47 @@ public class CSVGUIViewV1 implements CSVGUIView {
     this.mainPanel.setBottom(bottomPane);
 
     this.fileTypes = new ComboBox<>();
-    this.fileTypes.getItems().addAll(".png", ".jpg", ".jpeg", ".bmp");
+    this.fileTypes.getItems().addAll(".png", ".jpg", ".jpeg", ".bmp", ".svg", ".pdf");
     this.fileTypes.setValue(this.fileTypes.getItems().get(0));
     this.selectGraph = new ComboBox<>();
-    this.selectGraph.getItems().addAll("Left Graph", "Right Graph", "Both Graphs");
+    this.selectGraph.getItems().addAll("Left Graph", "Right Graph", "Both Graphs", "All Graphs");
     this.selectGraph.setValue(this.selectGraph.getItems().get(0));
+    this.imageDpi = new ComboBox<>();
+    this.imageDpi.getItems().addAll("96 DPI", "150 DPI", "300 DPI", "600 DPI");
+    this.imageDpi.setValue(this.imageDpi.getItems().get(0));
 
     this.animated = false;
 
+    // The right graph is made once, its points are moved to each wavelength that is chosen
+    this.scatter = new ScatterChart<>(new NumberAxis(), new NumberAxis());
+    this.scatter.setLegendVisible(false);
+    this.scatter.setAnimated(false);
+    this.scatter.getData().add(new XYChart.Series<>());
+    this.scatter.prefHeightProperty().bind(this.centerPanel.heightProperty().divide(2));
+    this.scatter.prefWidthProperty().bind(this.centerPanel.widthProperty().divide(2));
+    this.scatterX = new double[0];
+    this.xOverrides = new double[0];
+    // Several wavelengths on one plot, also made once and shown while there are any
+    this.overlay = new ScatterChart<>(new NumberAxis(), new NumberAxis());
+    this.overlay.setTitle("Overlay");
+    this.overlay.setAnimated(false);
+    this.overlay.prefHeightProperty().bind(this.centerPanel.heightProperty().divide(2));
+    this.overlay.prefWidthProperty().bind(this.centerPanel.widthProperty().divide(2));
+
+    // Per file progress of loading many csv files
+    this.fileBars = new HashMap<>();
+    this.fileStatuses = new HashMap<>();
+    this.fileRows = new VBox(5);
+    this.fileRows.setPadding(GraphUtil.DEFAULT_INSET);
+
     lightMode.setOnAction((evt) -> {
       this.lightMode = lightMode.isSelected();
+      if (this.canvasGraph != null) {
+        this.canvasGraph.setLightMode(this.lightMode);
+      }
+      if (this.heatmap != null) {
+        this.heatmap.setLightMode(this.lightMode);
+      }
       if (this.lightMode) {
         this.mainPanel.getStylesheets().remove(css);
         this.centerPanel.getStyleClass().remove("insetPane");
@@ -194,118 +322,291 @@ public class CSVGUIViewV1 implements CSVGUIView {
 
   @Override
   public void addCSVName(String fileName) {
-    // Does not work since it will not be supported
+    if (!this.loadedFiles.getItems().contains(fileName)) {
+      this.loadedFiles.getItems().add(fileName);
+    }
+  }
+
+  @Override
+  public void renderFileProgress(String filePath, double progress, String status) {
+    if (!Platform.isFxApplicationThread()) {
+      Platform.runLater(() -> this.renderFileProgress(filePath, progress, status));
+      return;
+    }
+    if (this.fileLoading == null) {
+      this.fileLoading = new Stage();
+      this.fileLoading.setTitle("Loading CSVs...");
+      this.fileLoading.getIcons().add(ImageUtil.LOADING_ICON);
+      this.fileRows.getChildren().clear();
+      this.fileLoading.setScene(new Scene(this.fileRows));
+      if (!this.lightMode) {
+        this.fileRows.setStyle(GraphUtil.DARK_MODE_PANE);
+      } else {
+        this.fileRows.setStyle(null);
+      }
+      this.fileLoading.show();
+    }
+    ProgressBar bar = this.fileBars.get(filePath);
+    Label statusLabel = this.fileStatuses.get(filePath);
+    if (bar == null) {
+      bar = new ProgressBar();
+      statusLabel = new Label();
+      Label name = new Label(FileUtil.shortenPath(new File(filePath).getName()));
+      if (!this.lightMode) {
+        bar.setStyle(GraphUtil.DARK_MODE_PROGRESS_BAR);
+        name.setStyle(GraphUtil.DARK_MODE_PROGRESS_LABEL);
+        statusLabel.setStyle(GraphUtil.DARK_MODE_PROGRESS_LABEL);
+      }
+      HBox row = GraphUtil.hBoxCentered();
+      row.getChildren().addAll(name, bar, statusLabel);
+      this.fileRows.getChildren().add(row);
+      this.fileBars.put(filePath, bar);
+      this.fileStatuses.put(filePath, statusLabel);
+      this.fileLoading.sizeToScene();
+    }
+    bar.setProgress(progress < 0 ? ProgressBar.INDETERMINATE_PROGRESS : progress);
+    statusLabel.setText(status);
+
+    // Closes once every file is finished
+    for (ProgressBar fileBar : this.fileBars.values()) {
+      if (fileBar.getProgress() < 1) {
+        return;
+      }
+    }
+    this.fileLoading.hide();
+    this.fileLoading = null;
+    this.fileBars.clear();
+    this.fileStatuses.clear();
   }
 
   @Override
-  public void highlightColumn(String[] values) {
-    XYChart.Series<Number, Number> pastSeries = null;
-    if (this.selectedGraph != null) { // Gets rid of the past graph, makes a new one in its place
-      this.centerPanel.getChildren().remove(1);
-      pastSeries = this.selectedGraph.getData().get(0);
-    }
-
-    NumberAxis x = new NumberAxis();
-    NumberAxis y = new NumberAxis();
-    this.selectedGraph = new ScatterChart<>(x, y);
-    XYChart.Series<Number, Number> series = new XYChart.Series<>();
-
-    this.selectedGraph.setPrefHeight(this.centerPanel.getHeight());
-    this.selectedGraph.setPrefWidth(this.centerPanel.getWidth() / 2);
-    this.selectedGraph.setLegendVisible(false);
-    this.selectedGraph.setTitle(this.wavelengths.getValue() + this.initGraph.getXAxis().getLabel());
-
-    this.selectedGraph.getData().add(series);
-    for (int row = 1; row < values.length; row++) {
-      XYChart.Data<Number, Number> datapoint = new XYChart.Data<>(Double.valueOf(values[0]),
-          Double.valueOf(values[row]));
-      series.getData()
-          .add(datapoint);
-      datapoint.setExtraValue("Run " + row);
-    }
-    this.centerPanel.getChildren().add(this.selectedGraph);
-    this.selectedGraph.prefHeightProperty().bind(this.centerPanel.heightProperty().divide(2));
-    this.selectedGraph.prefWidthProperty().bind(this.centerPanel.widthProperty().divide(2));
-    if (pastSeries != null) {
-      for (XYChart.Data<Number, Number> newData : series.getData()) {
-        for (XYChart.Data<Number, Number> oldData : pastSeries.getData()) {
-          if (newData.getExtraValue().equals(oldData.getExtraValue())) {
-            newData.setXValue(oldData.getXValue());
-          }
+  public void highlightColumn(double wavelength, double[] values) {
+    boolean shown = this.selectedGraph != null;
+    if (!shown) {
+      this.selectedGraph = this.scatter;
+      this.centerPanel.getChildren().add(this.selectedGraph);
+    }
+    this.selectedGraph.setTitle(SpectrumData.formatCell(wavelength) + this.xLabel);
+    this.selectedGraph.getXAxis().setAutoRanging(true);
+    this.selectedGraph.getYAxis().setAutoRanging(true);
+    List<XYChart.Data<Number, Number>> points = this.selectedGraph.getData().get(0).getData();
+    if (!shown || this.scatterX.length != values.length) {
+      this.scatterX = new double[values.length];
+      this.xOverrides = new double[values.length];
+      Arrays.fill(this.xOverrides, Double.NaN);
+    }
+    // A point whose x is not what was last set had it changed, so it keeps that x from now on
+    boolean inPlace = points.size() == values.length;
+    for (int run = 0; run < values.length; run++) {
+      if (inPlace && shown) {
+        double x = points.get(run).getXValue().doubleValue();
+        if (x != this.scatterX[run]) {
+          this.xOverrides[run] = x;
         }
       }
+      this.scatterX[run] = Double.isNaN(this.xOverrides[run]) ? wavelength : this.xOverrides[run];
+    }
+
+    if (inPlace) {
+      for (int run = 0; run < values.length; run++) {
+        XYChart.Data<Number, Number> point = points.get(run);
+        point.setXValue(this.scatterX[run]);
+        point.setYValue(values[run]);
+      }
+    } else { // A different number of runs swaps every point at once
+      List<XYChart.Data<Number, Number>> fresh = new ArrayList<>(values.length);
+      for (int run = 0; run < values.length; run++) {
+        XYChart.Data<Number, Number> point =
+            new XYChart.Data<>(this.scatterX[run], values[run]);
+        point.setExtraValue("Run " + (run + 1));
+        fresh.add(point);
+      }
+      this.selectedGraph.getData().get(0).getData().setAll(fresh);
+    }
+    if (this.canvasGraph != null) {
+      this.canvasGraph.setHighlight(wavelength);
+    }
+    if (this.heatmap != null) {
+      this.heatmap.setHighlight(wavelength);
     }
   }
 
   @Override
-  public void renderCSV(CSVReader file, String fileName) {
-    int spot = 0;
-    if (this.initGraph != null) { // Gets rid of the past graph, makes a new one in its place
-      spot = this.centerPanel.getChildren().indexOf(this.initGraph);
-      this.selectedGraph = null; // resets the selected graph
+  public void overlayColumns(double[] wavelengths, double[][] values) {
+    if (wavelengths.length == 0) {
+      this.centerPanel.getChildren().remove(this.overlay);
+      return;
+    }
+    // Runs are placed by number unless their x was changed on the right graph
+    boolean changed = false;
+    List<XYChart.Series<Number, Number>> series = new ArrayList<>(wavelengths.length);
+    for (int at = 0; at < wavelengths.length; at++) {
+      List<XYChart.Data<Number, Number>> points = new ArrayList<>(values[at].length);
+      for (int run = 0; run < values[at].length; run++) {
+        double x = run + 1;
+        if (run < this.xOverrides.length && !Double.isNaN(this.xOverrides[run])) {
+          x = this.xOverrides[run];
+          changed = true;
+        }
+        XYChart.Data<Number, Number> point = new XYChart.Data<>(x, values[at][run]);
+        point.setExtraValue("Run " + (run + 1));
+        points.add(point);
+      }
+      XYChart.Series<Number, Number> line = new XYChart.Series<>();
+      line.setName(SpectrumData.formatCell(wavelengths[at]) + this.xLabel);
+      line.getData().setAll(points);
+      series.add(line);
     }
+    this.overlay.getXAxis().setLabel(changed ? "" : "Run");
+    this.overlay.getData().setAll(series);
+    if (!this.centerPanel.getChildren().contains(this.overlay)) {
+      this.centerPanel.getChildren().add(this.overlay);
+    }
+  }
 
-    // Retries the data
-    List<String[]> data;
-    try {
-      data = file.readAll();
-    } catch (Exception e) {
+  @Override
+  public void renderCSV(SpectrumData file, String fileName) {
+    int spot = 0;
+    String previousName = this.loadedName;
+    Region pastGraph = this.lineGraph();
+    if (pastGraph != null) { // Gets rid of the past graph, makes a new one in its place
+      spot = this.centerPanel.getChildren().indexOf(pastGraph);
+      this.centerPanel.getChildren().remove(pastGraph);
+      this.centerPanel.getChildren().remove(this.selectedGraph);
+      this.centerPanel.getChildren().remove(this.overlay);
+      this.selectedGraph = null; // hides the selected graph, it is shown again on a selection
+      this.initGraph = null;
+      this.canvasGraph = null;
+    }
+    if (file.getRowCount() == 0) {
       this.renderError("Cannot read file");
       return;
     }
-
-    // Creates the axes
-    NumberAxis xAxisLine = new NumberAxis();
-    NumberAxis yAxisLine = new NumberAxis();
+    this.loadedFile = file;
+    this.loadedName = fileName;
+    this.addCSVName(fileName);
+    this.loadedFiles.setValue(fileName);
 
     // All the labels / Categories
-    String[] labels = data.get(0);
+    String[] labels = file.getLabels();
+    double[] wavelengths = file.getWavelengths();
+    this.xLabel = labels[0].split(":")[1];
 
-    // General already know settings for x-axis
-    xAxisLine.setLabel(labels[0].split(":")[1]);
-    yAxisLine.setLabel(labels[1].split(":")[1]);
-    xAxisLine.setAutoRanging(false);
-    xAxisLine.setLowerBound(Double.parseDouble(data.get(1)[0]) - 7);
-    xAxisLine.setUpperBound(Double.parseDouble(data.get(data.size() - 1)[0] + 7));
+    Region graph;
+    if (this.canvasMode) {
+      // Draws straight from the parsed columns so there is nothing to load
+      this.canvasGraph = new SpectrumCanvas(file, this.lightMode);
+      this.canvasGraph.setXBounds(wavelengths[0] - 7, wavelengths[wavelengths.length - 1] + 7);
+      graph = this.canvasGraph;
+    } else {
+      // Creates the axes
+      NumberAxis xAxisLine = new NumberAxis();
+      NumberAxis yAxisLine = new NumberAxis();
 
-    this.initGraph = new LineChart<>(xAxisLine, yAxisLine);
-    this.initGraph.setAnimated(animated);
-    this.initGraph.setAlternativeColumnFillVisible(true);
+      // General already know settings for x-axis
+      xAxisLine.setLabel(this.xLabel);
+      yAxisLine.setLabel(labels[1].split(":")[1]);
+      xAxisLine.setAutoRanging(false);
+      xAxisLine.setLowerBound(wavelengths[0] - 7);
+      xAxisLine.setUpperBound(wavelengths[wavelengths.length - 1] + 7);
 
-    // Sets the Labels / Connects the columns as a single line.
-    for (int row = 1; row < labels.length; row++) {
-      XYChart.Series<Number, Number> series = new XYChart.Series<>();
-      series.setName("Run " + row);
-      this.initGraph.getData().add(series);
-    }
+      this.initGraph = new AnnotatedLineChart(xAxisLine, yAxisLine);
+      this.initGraph.setAnimated(animated);
+      this.initGraph.setAlternativeColumnFillVisible(true);
 
-    // Asks for a loading bar and updating the code
-    GraphUtil.loadingBar(data, this.initGraph, this.lightMode).start();
+      // Sets the Labels / Connects the columns as a single line.
+      for (int row = 1; row < labels.length; row++) {
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.setName("Run " + row);
+        this.initGraph.getData().add(series);
+      }
 
-    this.wavelengths.setValue("No" + labels[0].split(":")[1] + " Selected");
-    this.wavelengths.getItems().add("No" + labels[0].split(":")[1] + " Selected");
+      // Asks for a loading bar and updating the code
+      GraphUtil.loadingBar(file, this.initGraph, this.lightMode).start();
+      graph = this.initGraph;
+    }
+
+    // The same csv graphed again, such as after a correction, keeps its wavelength
+    this.wavelengths.setWavelengths(file, "No" + this.xLabel + " Selected",
+        fileName.equals(previousName));
 
     // Puts the line chart on the central pane to see an "animation" of the data being put on it
-    this.centerPanel.getChildren().add(spot, this.initGraph);
-    this.initGraph.prefHeightProperty().bind(this.centerPanel.heightProperty().divide(2));
-    this.initGraph.prefWidthProperty().bind(this.centerPanel.widthProperty().divide(2));
-    Platform.runLater(() -> {
-    });
+    this.centerPanel.getChildren().add(spot, graph);
+    graph.prefHeightProperty().bind(this.centerPanel.heightProperty().divide(2));
+    graph.prefWidthProperty().bind(this.centerPanel.widthProperty().divide(2));
+    if (this.heatmap != null) {
+      this.heatmap.setData(file);
+      this.heatmap.setHighlight(Double.NaN);
+    }
+    this.showHeatmap();
+  }
+
+  @Override
+  public void updateCSV(SpectrumData file, String fileName, int fromRow, int[] changedRuns) {
+    if (!fileName.equals(this.loadedName) || this.lineGraph() == null) {
+      return;
+    }
+    double[] oldWavelengths = this.loadedFile.getWavelengths();
+    double[] wavelengths = file.getWavelengths();
+    this.loadedFile = file;
+    // The x-axis follows new rows unless it was moved off the last wavelength
+    boolean follow = fromRow < wavelengths.length && oldWavelengths.length > 0;
+    double oldUpper = follow ? oldWavelengths[oldWavelengths.length - 1] + 7 : 0;
+    double upper = follow ? wavelengths[wavelengths.length - 1] + 7 : 0;
+    if (this.canvasGraph != null) {
+      this.canvasGraph.setData(file);
+      if (follow) {
+        this.canvasGraph.setXBounds(wavelengths[0] - 7, upper);
+      }
+    } else {
+      NumberAxis xAxis = (NumberAxis) this.initGraph.getXAxis();
+      if (follow && xAxis.getUpperBound() == oldUpper) {
+        xAxis.setUpperBound(upper);
+      }
+      GraphUtil.updateChart(file, this.initGraph, fromRow, changedRuns);
+    }
+    this.wavelengths.setWavelengths(file, "No" + this.xLabel + " Selected", true);
+    if (this.heatmap != null) {
+      this.heatmap.update(file, fromRow, changedRuns);
+    }
   }
 
   @Override
   public void addFeatures(Features features) {
     importEditButton.setOnAction((evt) -> {
-      File selected = this.askForFile(new FileChooser.ExtensionFilter("cvs files", "*.csv"));
+      List<File> selected = this.askForFiles(
+          new FileChooser.ExtensionFilter("cvs files", "*.csv"));
       if (selected != null) {
-        features.loadAndEditCSV(selected.getPath());
+        features.loadCSVs(selected.stream().map(File::getPath).toList(), true);
       }
     });
 
     importButton.setOnAction((evt) -> {
-      File selected = this.askForFile(new FileChooser.ExtensionFilter("cvs files", "*.csv"));
+      List<File> selected = this.askForFiles(
+          new FileChooser.ExtensionFilter("cvs files", "*.csv"));
       if (selected != null) {
-        features.loadCSV(selected.getPath());
+        features.loadCSVs(selected.stream().map(File::getPath).toList(), false);
+      }
+    });
+
+    watchButton.setOnAction((evt) -> {
+      if (this.watchButton.getText().equals("Stop Watching")) {
+        features.stopWatching();
+        this.watchButton.setText("Watch CSV");
+        return;
+      }
+      List<File> selected = this.askForFiles(
+          new FileChooser.ExtensionFilter("cvs files", "*.csv"));
+      if (selected != null && !selected.isEmpty()) {
+        features.watchCSV(selected.get(0).getPath(), true);
+        this.watchButton.setText("Stop Watching");
+      }
+    });
+
+    loadedFiles.setOnAction((evt) -> {
+      String selected = this.loadedFiles.getValue();
+      if (selected != null && this.loadedFile != null && !selected.equals(this.loadedName)) {
+        features.graphCSV(selected);
       }
     });
 
@@ -317,57 +618,95 @@ public class CSVGUIViewV1 implements CSVGUIView {
     });
 
     saveImageButton.setOnAction((evt) -> {
-      BufferedImage img;
-      try {
-        img = this.getImage();
-      } catch (IllegalArgumentException e) {
-        this.renderError(e.getMessage());
+      if (this.lineGraph() == null) {
+        this.renderError("No Graph Selected");
         return;
       }
       File selected = askForDirectory();
-      if (selected != null && img != null) {
-        String name = this.getTextFromField(this.saveName);
-        if (name.equals("")) {
-          features.saveImage(selected.getAbsolutePath() + "\\",
-              this.selectGraph.getValue() + this.fileTypes.getValue(),
-              img);
-        } else {
-          features.saveImage(selected.getAbsolutePath() + "\\",
-              name + this.fileTypes.getValue(),
-              img);
-        }
+      if (selected != null) {
+        this.saveImages(features, selected.getAbsolutePath() + "\\",
+            this.getTextFromField(this.saveName));
       }
     });
 
     quickSaveButton.setOnAction(
         (evt) -> features.saveCSV("", this.getTextFromField(this.saveName)));
 
-    quickSaveImage.setOnAction((evt) -> {
-      BufferedImage img;
-      try {
-        img = this.getImage();
-      } catch (IllegalArgumentException e) {
-        this.renderError(e.getMessage());
-        return;
+    quickSaveImage.setOnAction((evt) -> this.saveImages(features, "", ""));
+
+    graphChange.setOnAction((evt) -> this.setGraph(features));
+
+    undoButton.setOnAction((evt) -> features.undo());
+    redoButton.setOnAction((evt) -> features.redo());
+    // Ctrl+Z and Ctrl+Y, or Cmd on a Mac, anywhere in the window
+    this.mainPanel.addEventHandler(KeyEvent.KEY_PRESSED, (evt) -> {
+      if (UNDO_KEYS.match(evt)) {
+        features.undo();
+        evt.consume();
+      } else if (REDO_KEYS.match(evt)) {
+        features.redo();
+        evt.consume();
       }
-      if (img != null) {
-        features.saveImage("", this.selectGraph.getValue() + this.fileTypes.getValue(), img);
+    });
+
+    correctButton.setOnAction((evt) -> this.correctionsWindow(features));
+
+    commandButton.setOnAction((evt) -> this.commandWindow(features));
+
+    overlayButton.setOnAction((evt) -> this.overlayWindow(features));
+
+    fitButton.setOnAction((evt) -> {
+      if (this.loadedFile != null) {
+        this.fitWindow(features);
+      } else {
+        this.renderError("There is no CSV loaded to fit");
       }
     });
 
-    wavelengths.setOnAction((evt) -> {
-      int itemIndex = this.wavelengths.getItems().indexOf(this.wavelengths.getValue());
-      if (itemIndex > 0) {
-        features.selectColumn(this.wavelengths.getValue());
+    decomposeButton.setOnAction((evt) -> {
+      if (this.loadedFile != null) {
+        this.decomposeWindow(features);
+      } else {
+        this.renderError("There is no CSV loaded to decompose");
       }
     });
+
+    peaksButton.setOnAction((evt) -> {
+      if (this.loadedFile != null) {
+        this.peaksWindow(features);
+      } else {
+        this.renderError("There is no CSV loaded to find peaks in");
+      }
+    });
+
+    wavelengths.setOnSelect(features::selectColumn);
+  }
+
+  @Override
+  public List<ChartSettings> getChartSettings() {
+    return Arrays.asList(ChartSettings.of(this.initGraph, false),
+        ChartSettings.of(this.selectedGraph, true));
+  }
+
+  @Override
+  public void setChartSettings(List<ChartSettings> settings) {
+    if (settings.get(0) != null) {
+      settings.get(0).applyTo(this.initGraph);
+    }
+    if (settings.get(1) != null) {
+      settings.get(1).applyTo(this.selectedGraph);
+    }
   }
 
   @Override
   public void setXValueLabel(List<String> xValues) {
-    String removeThis = xValues.get(0);
-    this.wavelengths.getItems().addAll(xValues);
-    this.wavelengths.getItems().remove(removeThis);
+    // The first value is the column's header
+    double[] values = new double[Math.max(xValues.size() - 1, 0)];
+    for (int row = 0; row < values.length; row++) {
+      values[row] = SpectrumData.parseCell(xValues.get(row + 1));
+    }
+    this.wavelengths.setWavelengths(values, new WavelengthIndex(values),
+        "No" + this.xLabel + " Selected", false);
   }
 
   @Override
@@ -406,19 +745,38 @@ public class CSVGUIViewV1 implements CSVGUIView {
    * Changes the selected graph Nodes: ComboBox, change Chart textField, xIncrement textField,
    * xLabel textField, yIncrement textField, yLabel textField.
    */
-  private void setGraph() {
+  private void setGraph(Features features) {
     ArrayList<XYChart<Number, Number>> graphs = new ArrayList<>(
         Arrays.asList(this.initGraph, this.selectedGraph));
     ArrayList<String> graphNames = new ArrayList<>(
         Arrays.asList("Line Chart (Left)", "Scatter Plot (Right)"));
     ArrayList<Image> images = new ArrayList<>(
         Arrays.asList(ImageUtil.LINE_CHART_ICON, ImageUtil.SCATTER_CHART_ICON));
-    if (this.initGraph != null) {
-      Stage graphSetter = GraphUtil.setGraphInfo(null, graphs, graphNames, images, lightMode);
+    if (this.initGraph == null && this.selectedGraph == null) {
+      this.renderWarning(this.canvasGraph == null ? "No CSV file loaded, No graph to change"
+          : "The canvas graph cannot be changed, select a wavelength to change the scatter plot");
+    } else {
+      // Changed points are edits of the csv, so they go through the controller to be undone
+      Stage graphSetter = GraphUtil.setGraphInfo(null, graphs, graphNames, images, lightMode,
+          (changed) -> {
+            List<Integer> runs = new ArrayList<>();
+            List<Double> values = new ArrayList<>();
+            if (this.selectedGraph != null) {
+              List<XYChart.Data<Number, Number>> points =
+                  this.selectedGraph.getData().get(0).getData();
+              for (Map.Entry<XYChart.Data<Number, Number>, Double> point : changed.entrySet()) {
+                int run = points.indexOf(point.getKey());
+                if (run != -1) {
+                  runs.add(run);
+                  values.add(point.getValue());
+                }
+              }
+            }
+            features.graphChanged(runs.stream().mapToInt(Integer::intValue).toArray(),
+                values.stream().mapToDouble(Double::doubleValue).toArray());
+          });
       graphSetter.initModality(Modality.APPLICATION_MODAL);
       graphSetter.show();
-    } else {
-      this.renderWarning("No CSV file loaded, No graph to change");
     }
   }
 
@@ -432,9 +790,10 @@ public class CSVGUIViewV1 implements CSVGUIView {
     saveImageWindow.setTitle(title);
     saveImageWindow.getIcons().add(ImageUtil.SAVING);
     if (this.selectedGraph == null) {
-      this.selectGraph.getItems().removeAll("Right Graph", "Both Graphs");
+      this.selectGraph.getItems().removeAll("Right Graph", "Both Graphs", "All Graphs");
+      this.selectGraph.setValue(this.selectGraph.getItems().get(0));
     } else if (this.selectGraph.getItems().size() == 1) {
-      this.selectGraph.getItems().addAll("Right Graph", "Both Graphs");
+      this.selectGraph.getItems().addAll("Right Graph", "Both Graphs", "All Graphs");
     }
     // Middle pane for all the
     VBox pane = new VBox(5);
@@ -457,7 +816,7 @@ public class CSVGUIViewV1 implements CSVGUIView {
     }
     if (title.equals("Saving Graph Images")) {
       this.saveName.setPromptText("Image Name");
-      saveNameInfo.getChildren().addAll(this.fileTypes, this.selectGraph);
+      saveNameInfo.getChildren().addAll(this.fileTypes, this.selectGraph, this.imageDpi);
     }
     saveButtonPane.getChildren().addAll(saveTo, quickSave);
     pane.getChildren().addAll(saveNameInfo, saveButtonPane);
@@ -473,6 +832,561 @@ public class CSVGUIViewV1 implements CSVGUIView {
     saveImageWindow.show();
   }
 
+  /**
+   * Window that asks how to fit a binding isotherm: 1:1 or 1:2, the selected wavelength or all of
+   * them, the peptide concentration and how much metal each run adds.
+   */
+  private void fitWindow(Features features) {
+    Stage fitStage = new Stage();
+    fitStage.setTitle("Fit Binding");
+    fitStage.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    VBox pane = new VBox(5);
+    Label info = new Label("Every run adds the same metal, the first run has none. "
+        + "Concentrations can be in any unit, Kd is in the same unit.");
+    info.setPadding(GraphUtil.DEFAULT_INSET);
+
+    ComboBox<String> isotherm = new ComboBox<>();
+    isotherm.getItems().addAll("1:1", "1:2");
+    isotherm.setValue("1:1");
+    ComboBox<String> scope = new ComboBox<>();
+    scope.getItems().addAll("Selected Wavelength", "All Wavelengths");
+    scope.setValue(
+        this.wavelengths.getSelected() != null ? "Selected Wavelength" : "All Wavelengths");
+    HBox choices = GraphUtil.hBoxCentered();
+    choices.setPadding(GraphUtil.DEFAULT_INSET);
+    choices.getChildren().addAll(isotherm, scope);
+
+    TextField peptide = GraphUtil.textField("Peptide Concentration", this.lightMode);
+    TextField metalPerRun = GraphUtil.textField("Metal Added Per Run", this.lightMode);
+    HBox amounts = GraphUtil.hBoxCentered();
+    amounts.setPadding(GraphUtil.DEFAULT_INSET);
+    amounts.getChildren().addAll(peptide, metalPerRun);
+
+    Button fit = new Button("Fit");
+    fit.setOnAction((evt) -> {
+      double peptideValue = GraphUtil.textFieldAsDouble(peptide);
+      double metalValue = GraphUtil.textFieldAsDouble(metalPerRun);
+      if (peptideValue == Double.MAX_VALUE || metalValue == Double.MAX_VALUE) {
+        this.renderWarning("Enter the peptide concentration and the metal added per run");
+        return;
+      }
+      boolean one = scope.getValue().equals("Selected Wavelength");
+      if (one && this.wavelengths.getSelected() == null) {
+        this.renderWarning("Select a wavelength first, or fit all wavelengths");
+        return;
+      }
+      fitStage.close();
+      features.fitBinding(isotherm.getValue(), one ? this.wavelengths.getSelected() : null,
+          peptideValue, metalValue);
+    });
+    HBox buttons = GraphUtil.hBoxCentered();
+    buttons.setPadding(GraphUtil.DEFAULT_INSET);
+    buttons.getChildren().add(fit);
+    pane.getChildren().addAll(info, choices, amounts, buttons);
+
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    fitStage.setScene(new Scene(pane));
+    fitStage.initModality(Modality.APPLICATION_MODAL);
+    fitStage.setResizable(false);
+    fitStage.show();
+  }
+
+  /**
+   * Window that asks how many components to find and if the mean spectrum is taken away first,
+   * which makes it principal component analysis.
+   */
+  private void decomposeWindow(Features features) {
+    Stage decomposeStage = new Stage();
+    decomposeStage.setTitle("Components");
+    decomposeStage.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    VBox pane = new VBox(5);
+    Label info = new Label("Each absorbing species adds a singular value above the noise.");
+    info.setPadding(GraphUtil.DEFAULT_INSET);
+
+    ComboBox<Integer> count = new ComboBox<>();
+    for (int components = 1; components <= 10; components++) {
+      count.getItems().add(components);
+    }
+    count.setValue(3);
+    CheckBox centered = new CheckBox("Take Away Mean (PCA)");
+    HBox choices = GraphUtil.hBoxCentered();
+    choices.setPadding(GraphUtil.DEFAULT_INSET);
+    choices.getChildren().addAll(new Label("Components"), count, centered);
+
+    Button decompose = new Button("Decompose");
+    decompose.setOnAction((evt) -> {
+      decomposeStage.close();
+      features.decompose(count.getValue(), centered.isSelected());
+    });
+    HBox buttons = GraphUtil.hBoxCentered();
+    buttons.setPadding(GraphUtil.DEFAULT_INSET);
+    buttons.getChildren().add(decompose);
+    pane.getChildren().addAll(info, choices, buttons);
+
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    decomposeStage.setScene(new Scene(pane));
+    decomposeStage.initModality(Modality.APPLICATION_MODAL);
+    decomposeStage.setResizable(false);
+    decomposeStage.show();
+  }
+
+  @Override
+  public void renderDecomposition(SpectrumDecomposition.Result result) {
+    double[] singularValues = result.singularValues();
+    double[] explained = result.explained();
+    int kept = result.components().length;
+
+    // Singular values on a log scale, the noise is a flat tail after the species
+    ScatterChart<Number, Number> scree = new ScatterChart<>(new NumberAxis(), new NumberAxis());
+    scree.setTitle("Singular Values");
+    scree.setAnimated(false);
+    scree.setLegendVisible(false);
+    scree.getXAxis().setLabel("Component");
+    scree.getYAxis().setLabel("log10 Singular Value");
+    XYChart.Series<Number, Number> values = new XYChart.Series<>();
+    List<XYChart.Data<Number, Number>> points = new ArrayList<>(singularValues.length);
+    for (int at = 0; at < singularValues.length; at++) {
+      if (singularValues[at] > 0) {
+        points.add(new XYChart.Data<>(at + 1, Math.log10(singularValues[at])));
+      }
+    }
+    values.getData().setAll(points);
+    scree.getData().add(values);
+
+    // The spectra and profiles are graphed like runs of a csv
+    String[] labels = new String[kept + 1];
+    double[] runNumbers = new double[result.profiles().length == 0 ? 0
+        : result.profiles()[0].length];
+    for (int run = 0; run < runNumbers.length; run++) {
+      runNumbers[run] = run + 1;
+    }
+    for (int at = 0; at < kept; at++) {
+      labels[at + 1] = "Component " + (at + 1) + " ("
+          + SpectrumData.formatCell(Math.round(explained[at] * 1000) / 10.0) + "%)";
+    }
+    labels[0] = this.xLabel;
+    SpectrumData spectra = new SpectrumData(labels.clone(), result.wavelengths(),
+        result.components());
+    labels[0] = "Run";
+    SpectrumData profiles = new SpectrumData(labels, runNumbers, result.profiles());
+    LineChart<Number, Number> spectraChart = this.componentChart(
+        result.centered() ? "Principal Components" : "Components", this.xLabel, spectra,
+        COMPONENT_POINTS);
+    LineChart<Number, Number> profileChart = this.componentChart("Run Profiles", "Run",
+        profiles, runNumbers.length);
+    profileChart.setCreateSymbols(true);
+
+    VBox pane = new VBox(5);
+    pane.setPadding(GraphUtil.DEFAULT_INSET);
+    HBox top = GraphUtil.hBoxCentered();
+    top.getChildren().addAll(scree, spectraChart);
+    HBox.setHgrow(spectraChart, Priority.ALWAYS);
+    pane.getChildren().addAll(top, profileChart);
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    if (this.components == null) {
+      this.components = new Stage();
+      this.components.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    }
+    this.components.setTitle(result.centered() ? "Principal Component Analysis"
+        : "Singular Value Decomposition");
+    this.components.setScene(new Scene(pane));
+    this.components.show();
+    this.components.toFront();
+  }
+
+  /**
+   * Window that asks how prominent a peak must be and how close the runs must be where they
+   * cross.
+   */
+  private void peaksWindow(Features features) {
+    Stage peaksStage = new Stage();
+    peaksStage.setTitle("Peaks");
+    peaksStage.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    VBox pane = new VBox(5);
+    Label info = new Label("Prominence is a percent of each run's range, the tolerance is in "
+        + "absorbance.");
+    info.setPadding(GraphUtil.DEFAULT_INSET);
+
+    TextField prominence = GraphUtil.textField("Prominence (%)", this.lightMode);
+    prominence.setText("5");
+    TextField tolerance = GraphUtil.textField("Isosbestic Tolerance", this.lightMode);
+    tolerance.setText("0.01");
+    HBox amounts = GraphUtil.hBoxCentered();
+    amounts.setPadding(GraphUtil.DEFAULT_INSET);
+    amounts.getChildren().addAll(prominence, tolerance);
+
+    Button find = new Button("Find");
+    find.setOnAction((evt) -> {
+      double prominenceValue = GraphUtil.textFieldAsDouble(prominence);
+      double toleranceValue = GraphUtil.textFieldAsDouble(tolerance);
+      if (prominenceValue == Double.MAX_VALUE || toleranceValue == Double.MAX_VALUE) {
+        this.renderWarning("Enter the prominence and the isosbestic tolerance");
+        return;
+      }
+      peaksStage.close();
+      features.findPeaks(prominenceValue / 100, toleranceValue);
+    });
+    HBox buttons = GraphUtil.hBoxCentered();
+    buttons.setPadding(GraphUtil.DEFAULT_INSET);
+    buttons.getChildren().add(find);
+    pane.getChildren().addAll(info, amounts, buttons);
+
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    peaksStage.setScene(new Scene(pane));
+    peaksStage.initModality(Modality.APPLICATION_MODAL);
+    peaksStage.setResizable(false);
+    peaksStage.show();
+  }
+
+  @Override
+  public void renderPeaks(PeakFinder.Result result) {
+    // The isosbestic points are lines across, each run's highest peak is a dot, labelled once
+    List<AnnotatedLineChart.Mark> marks = new ArrayList<>();
+    List<String> entries = new ArrayList<>();
+    List<Double> jumps = new ArrayList<>();
+    for (int at = 0; at < result.isosbestic().length; at++) {
+      String wavelength = SpectrumData.formatCell(result.isosbestic()[at]);
+      marks.add(new AnnotatedLineChart.Mark(result.isosbestic()[at], Double.NaN,
+          "Isosbestic " + wavelength));
+      entries.add("Isosbestic at " + wavelength + ", runs within "
+          + SpectrumData.formatCell(result.spread()[at]));
+      jumps.add(result.isosbestic()[at]);
+    }
+    List<String> labelled = new ArrayList<>();
+    for (int run = 0; run < result.peaks().length; run++) {
+      PeakFinder.Peak highest = result.highest(run);
+      if (highest != null) {
+        String wavelength = SpectrumData.formatCell(highest.wavelength());
+        boolean first = !labelled.contains(wavelength);
+        if (first) {
+          labelled.add(wavelength);
+        }
+        marks.add(new AnnotatedLineChart.Mark(highest.wavelength(), highest.absorbance(),
+            first ? "\u03bbmax " + wavelength : null));
+      }
+      for (PeakFinder.Peak peak : result.peaks()[run]) {
+        entries.add("Run " + (run + 1) + (peak == highest ? " \u03bbmax at " : " peak at ")
+            + SpectrumData.formatCell(peak.wavelength()) + ", absorbance "
+            + SpectrumData.formatCell(peak.absorbance()) + ", prominence "
+            + SpectrumData.formatCell(peak.prominence()));
+        jumps.add(peak.wavelength());
+      }
+    }
+    if (this.initGraph != null) {
+      this.initGraph.setMarks(marks);
+    }
+    if (this.canvasGraph != null) {
+      this.canvasGraph.setMarks(marks);
+    }
+
+    // Choosing an entry jumps the wavelength picker to it
+    ListView<String> list = new ListView<>();
+    list.getItems().setAll(entries);
+    list.setPrefSize(460, 360);
+    list.getSelectionModel().selectedIndexProperty().addListener((obs, old, index) -> {
+      if (index.intValue() >= 0) {
+        this.wavelengths.select(SpectrumData.formatCell(jumps.get(index.intValue())));
+      }
+    });
+    Label summary = new Label(result.isosbestic().length + " isosbestic points, "
+        + (entries.size() - result.isosbestic().length) + " peaks. Choose one to select it.");
+    VBox pane = new VBox(5);
+    pane.setPadding(GraphUtil.DEFAULT_INSET);
+    pane.getChildren().addAll(summary, list);
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    if (this.peaks == null) {
+      this.peaks = new Stage();
+      this.peaks.setTitle("Peaks and Isosbestic Points");
+      this.peaks.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    }
+    this.peaks.setScene(new Scene(pane));
+    this.peaks.show();
+    this.peaks.toFront();
+  }
+
+  // A line chart with a series for each component, downsampled to the given number of points
+  private LineChart<Number, Number> componentChart(String title, String xAxisLabel,
+      SpectrumData data, int budget) {
+    LineChart<Number, Number> chart = new LineChart<>(new NumberAxis(), new NumberAxis());
+    chart.setTitle(title);
+    chart.setAnimated(false);
+    chart.setCreateSymbols(false);
+    chart.getXAxis().setLabel(xAxisLabel);
+    ((NumberAxis) chart.getXAxis()).setForceZeroInRange(false);
+    for (int run = 0; run < data.getRunCount(); run++) {
+      XYChart.Series<Number, Number> series = new XYChart.Series<>();
+      series.setName(data.getLabels()[run + 1]);
+      series.getData().setAll(GraphUtil.seriesPoints(data, run, 0, data.getRowCount(), budget));
+      chart.getData().add(series);
+    }
+    return chart;
+  }
+
+  /**
+   * Window with a check box for each correction: subtracting a blank CSV, smoothing, zeroing every
+   * run at a wavelength and undoing the dilution of each addition. Checking or changing one graphs
+   * the corrected CSV right away, the window stays open and keeps its settings.
+   */
+  private void correctionsWindow(Features features) {
+    if (this.corrections != null) {
+      this.corrections.show();
+      this.corrections.toFront();
+      return;
+    }
+    this.corrections = new Stage();
+    this.corrections.setTitle("Corrections");
+    this.corrections.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    VBox pane = new VBox(5);
+    pane.setPadding(GraphUtil.DEFAULT_INSET);
+
+    CheckBox blank = new CheckBox("Subtract Blank");
+    ComboBox<String> blankFile = new ComboBox<>(this.loadedFiles.getItems());
+    blankFile.setPromptText("Blank CSV");
+    CheckBox smooth = new CheckBox("Smooth");
+    ComboBox<Integer> window = new ComboBox<>();
+    window.getItems().addAll(5, 7, 9, 11, 15, 21, 25);
+    window.setValue(9);
+    CheckBox baseline = new CheckBox("Zero At Wavelength");
+    TextField baselineAt = GraphUtil.textField("Wavelength", this.lightMode);
+    CheckBox dilution = new CheckBox("Correct Dilution");
+    TextField perRun = GraphUtil.textField("Added Volume / Start Volume", this.lightMode);
+
+    Runnable apply = () -> {
+      if (blank.isSelected() && blankFile.getValue() == null) {
+        blank.setSelected(false);
+        this.renderWarning("Choose the CSV of the blank first");
+      }
+      double reference = GraphUtil.textFieldAsDouble(baselineAt);
+      if (baseline.isSelected() && reference == Double.MAX_VALUE) {
+        baseline.setSelected(false);
+        this.renderWarning("Enter the wavelength to zero every run at");
+      }
+      double volume = GraphUtil.textFieldAsDouble(perRun);
+      if (dilution.isSelected() && volume == Double.MAX_VALUE) {
+        dilution.setSelected(false);
+        this.renderWarning("Enter the volume added each run over the starting volume");
+      }
+      features.correctSpectra(blank.isSelected() ? blankFile.getValue() : null,
+          smooth.isSelected() ? window.getValue() : 0,
+          baseline.isSelected() ? baselineAt.getText() : null,
+          dilution.isSelected() ? volume : 0);
+    };
+    for (CheckBox box : List.of(blank, smooth, baseline, dilution)) {
+      box.setOnAction((evt) -> apply.run());
+    }
+    // Changing a setting only redraws if its correction is on
+    blankFile.setOnAction((evt) -> {
+      if (blank.isSelected()) {
+        apply.run();
+      }
+    });
+    window.setOnAction((evt) -> {
+      if (smooth.isSelected()) {
+        apply.run();
+      }
+    });
+    baselineAt.setOnAction((evt) -> {
+      if (baseline.isSelected()) {
+        apply.run();
+      }
+    });
+    perRun.setOnAction((evt) -> {
+      if (dilution.isSelected()) {
+        apply.run();
+      }
+    });
+
+    HBox blankRow = GraphUtil.hBoxCentered();
+    blankRow.getChildren().addAll(blank, blankFile);
+    HBox smoothRow = GraphUtil.hBoxCentered();
+    smoothRow.getChildren().addAll(smooth, window);
+    HBox baselineRow = GraphUtil.hBoxCentered();
+    baselineRow.getChildren().addAll(baseline, baselineAt);
+    HBox dilutionRow = GraphUtil.hBoxCentered();
+    dilutionRow.getChildren().addAll(dilution, perRun);
+    for (HBox row : List.of(blankRow, smoothRow, baselineRow, dilutionRow)) {
+      row.setPadding(GraphUtil.DEFAULT_INSET);
+    }
+    pane.getChildren().addAll(blankRow, smoothRow, baselineRow, dilutionRow);
+
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    this.corrections.setScene(new Scene(pane));
+    this.corrections.setResizable(false);
+    this.corrections.show();
+  }
+
+  /**
+   * Window that overlays several wavelengths on one scatter plot, typed as a list like
+   * "400, 450, 500". Clear stops showing the overlay.
+   */
+  private void overlayWindow(Features features) {
+    if (this.overlayWindow != null) {
+      this.overlayWindow.show();
+      this.overlayWindow.toFront();
+      return;
+    }
+    this.overlayWindow = new Stage();
+    this.overlayWindow.setTitle("Overlay Wavelengths");
+    this.overlayWindow.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    VBox pane = new VBox(5);
+    pane.setPadding(GraphUtil.DEFAULT_INSET);
+
+    TextField chosen = GraphUtil.textField("Wavelengths, like 400, 450, 500", this.lightMode);
+    chosen.setPrefColumnCount(24);
+    Button show = new Button("Overlay");
+    Button clear = new Button("Clear");
+    Runnable overlay = () -> {
+      List<String> wavelengths = new ArrayList<>();
+      for (String wavelength : chosen.getText().split("[,;\\s]+")) {
+        if (!wavelength.isBlank()) {
+          wavelengths.add(wavelength);
+        }
+      }
+      if (wavelengths.isEmpty()) {
+        this.renderWarning("Enter the wavelengths to overlay");
+        return;
+      }
+      features.overlayColumns(wavelengths);
+    };
+    show.setOnAction((evt) -> overlay.run());
+    chosen.setOnAction((evt) -> overlay.run());
+    clear.setOnAction((evt) -> features.overlayColumns(List.of()));
+
+    HBox buttons = GraphUtil.hBoxCentered();
+    buttons.setPadding(GraphUtil.DEFAULT_INSET);
+    buttons.getChildren().addAll(show, clear);
+    pane.getChildren().addAll(chosen, buttons);
+
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    this.overlayWindow.setScene(new Scene(pane));
+    this.overlayWindow.setResizable(false);
+    this.overlayWindow.show();
+  }
+
+  /**
+   * Window that queues commands for the loaded CSV: cropping the wavelengths, normalizing each run,
+   * averaging replicate runs and subtracting a run. Process runs the whole queue at once and graphs
+   * the result as a new CSV.
+   */
+  private void commandWindow(Features features) {
+    if (this.commandQueue != null) {
+      this.commandQueue.show();
+      this.commandQueue.toFront();
+      return;
+    }
+    this.commandQueue = new Stage();
+    this.commandQueue.setTitle("Commands");
+    this.commandQueue.getIcons().add(ImageUtil.LINE_CHART_ICON);
+    VBox pane = new VBox(5);
+    pane.setPadding(GraphUtil.DEFAULT_INSET);
+    Label queued = new Label("Nothing queued");
+    queued.setWrapText(true);
+    queued.setMaxWidth(500);
+    queued.setPadding(GraphUtil.DEFAULT_INSET);
+    List<String> descriptions = new ArrayList<>();
+    // Queues a command, a null command was not entered right and is not queued
+    Consumer<CSVCommand> queue = (command) -> {
+      if (command == null) {
+        return;
+      }
+      features.queueCommand(command);
+      descriptions.add(command.describe());
+      queued.setText(String.join(System.lineSeparator(), descriptions));
+    };
+
+    TextField cropFrom = GraphUtil.textField("From Wavelength", this.lightMode);
+    TextField cropTo = GraphUtil.textField("To Wavelength", this.lightMode);
+    Button crop = new Button("Queue Crop");
+    crop.setOnAction((evt) -> {
+      double from = GraphUtil.textFieldAsDouble(cropFrom);
+      double to = GraphUtil.textFieldAsDouble(cropTo);
+      if (from == Double.MAX_VALUE || to == Double.MAX_VALUE) {
+        this.renderWarning("Enter the wavelengths to crop to");
+        return;
+      }
+      queue.accept(new CropWavelengths(from, to));
+    });
+    Button normalize = new Button("Queue Normalize");
+    normalize.setOnAction((evt) -> queue.accept(new Normalize()));
+    TextField replicates = GraphUtil.textField("Replicates", this.lightMode);
+    Button average = new Button("Queue Average");
+    average.setOnAction((evt) -> {
+      double count = GraphUtil.textFieldAsDouble(replicates);
+      if (count == Double.MAX_VALUE || count < 1 || count != Math.rint(count)) {
+        this.renderWarning("Enter how many times each run was measured");
+        return;
+      }
+      queue.accept(new AverageReplicates((int) count));
+    });
+    TextField subtracted = GraphUtil.textField("Run Number", this.lightMode);
+    Button subtract = new Button("Queue Subtract");
+    subtract.setOnAction((evt) -> {
+      double run = GraphUtil.textFieldAsDouble(subtracted);
+      if (run == Double.MAX_VALUE || run < 1 || run != Math.rint(run)) {
+        this.renderWarning("Enter the run to subtract, starting with 1");
+        return;
+      }
+      queue.accept(new SubtractRun((int) run - 1));
+    });
+
+    Button process = new Button("Process");
+    process.setOnAction((evt) -> {
+      features.process();
+      descriptions.clear();
+      queued.setText("Nothing queued");
+    });
+    Button clear = new Button("Clear");
+    clear.setOnAction((evt) -> {
+      features.clearCommands();
+      descriptions.clear();
+      queued.setText("Nothing queued");
+    });
+
+    HBox cropRow = GraphUtil.hBoxCentered();
+    cropRow.getChildren().addAll(cropFrom, cropTo, crop);
+    HBox normalizeRow = GraphUtil.hBoxCentered();
+    normalizeRow.getChildren().add(normalize);
+    HBox averageRow = GraphUtil.hBoxCentered();
+    averageRow.getChildren().addAll(replicates, average);
+    HBox subtractRow = GraphUtil.hBoxCentered();
+    subtractRow.getChildren().addAll(subtracted, subtract);
+    HBox buttons = GraphUtil.hBoxCentered();
+    buttons.getChildren().addAll(process, clear);
+    for (HBox row : List.of(cropRow, normalizeRow, averageRow, subtractRow, buttons)) {
+      row.setPadding(GraphUtil.DEFAULT_INSET);
+    }
+    pane.getChildren().addAll(cropRow, normalizeRow, averageRow, subtractRow, queued, buttons);
+
+    if (!this.lightMode) {
+      pane.getStylesheets().add(this.css);
+      pane.getStyleClass().add("insetPane");
+    }
+    this.commandQueue.setScene(new Scene(pane));
+    this.commandQueue.setResizable(false);
+    this.commandQueue.show();
+  }
+
   private File askForDirectory() {
     final DirectoryChooser dirChooser = new DirectoryChooser();
     dirChooser.setInitialDirectory(new File(System.getProperty("user.dir")));
@@ -482,28 +1396,64 @@ public class CSVGUIViewV1 implements CSVGUIView {
     return dirChooser.showDialog(newWindow);
   }
 
-  private File askForFile(ExtensionFilter filter) {
+  private List<File> askForFiles(ExtensionFilter filter) {
     final FileChooser fChooser = new FileChooser();
     fChooser.setInitialDirectory(new File(System.getProperty("user.dir")));
     fChooser.getExtensionFilters().add(filter);
     Stage newWindow = new Stage();
-    newWindow.setTitle("Choose a File");
-    fChooser.setTitle("Choose a File");
-    return fChooser.showOpenDialog(newWindow);
+    newWindow.setTitle("Choose Files");
+    fChooser.setTitle("Choose Files");
+    return fChooser.showOpenMultipleDialog(newWindow);
   }
 
-  private BufferedImage getImage() throws IllegalArgumentException {
-    WritableImage snapshot;
-    switch (this.selectGraph.getValue().split(" ")[0]) {
-      case "Left" -> snapshot = this.initGraph.snapshot(new SnapshotParameters(), null);
-      case "Right" -> snapshot = this.selectedGraph.snapshot(new SnapshotParameters(), null);
-      case "Both" -> snapshot = this.centerPanel.snapshot(new SnapshotParameters(), null);
-      default -> throw new IllegalArgumentException("No Graph Selected");
+  // Saves the chosen graphs, svg and pdf are drawn from the data and the rest from snapshots
+  private void saveImages(Features features, String filePath, String imageName) {
+    String fileType = this.fileTypes.getValue();
+    if (!VectorChart.isVector(fileType)) {
+      try {
+        features.saveImages(filePath, imageName, fileType, this.getCaptures());
+      } catch (IllegalArgumentException e) {
+        this.renderError(e.getMessage());
+      }
+      return;
     }
+    Region graph = this.lineGraph();
+    if (graph == null) {
+      this.renderError("No Graph Selected");
+      return;
+    }
+    List<String> graphs = new ArrayList<>();
+    if (this.selectGraph.getValue().startsWith("All")) {
+      graphs.add("Left Graph");
+      if (this.selectedGraph != null) {
+        graphs.addAll(List.of("Right Graph", "Both Graphs"));
+      }
+    } else {
+      graphs.add(this.selectGraph.getValue());
+    }
+    features.saveVectorImages(filePath, imageName, fileType, graphs, graph.getWidth(),
+        graph.getHeight());
+  }
 
-    return javafx.embed.swing.SwingFXUtils.fromFXImage(snapshot, new BufferedImage(
-        (int) Math.round(snapshot.getWidth()), (int) Math.round(snapshot.getHeight()),
-        BufferedImage.TYPE_INT_ARGB));
+  // Snapshots of the chosen graphs, taken here so the saving can happen off the JavaFX thread
+  private List<Capture> getCaptures() throws IllegalArgumentException {
+    String graph = this.selectGraph.getValue().split(" ")[0];
+    int dpi = Integer.parseInt(this.imageDpi.getValue().split(" ")[0]);
+    boolean all = graph.equals("All");
+    List<Capture> captures = new ArrayList<>();
+    if ((all || graph.equals("Left")) && this.lineGraph() != null) {
+      captures.add(ImageExport.capture(this.lineGraph(), "Left Graph", dpi));
+    }
+    if ((all || graph.equals("Right")) && this.selectedGraph != null) {
+      captures.add(ImageExport.capture(this.selectedGraph, "Right Graph", dpi));
+    }
+    if ((all || graph.equals("Both")) && this.selectedGraph != null) {
+      captures.add(ImageExport.capture(this.centerPanel, "Both Graphs", dpi));
+    }
+    if (captures.isEmpty()) {
+      throw new IllegalArgumentException("No Graph Selected");
+    }
+    return captures;
   }
 
   private void info() {
@@ -516,6 +1466,66 @@ public class CSVGUIViewV1 implements CSVGUIView {
         + "with the output data on every other column."
         + System.lineSeparator()
         + "When you set the x value for the scatter plot, it will keep the x"
-        + "value for the next wavelengths you choose.");
+        + "value for the next wavelengths you choose."
+        + System.lineSeparator()
+        + "The fast canvas graph draws large CSVs quickly, but its axes cannot be changed."
+        + System.lineSeparator()
+        + "Watch CSV follows a CSV the spectrometer is still writing and edits it like Import & "
+        + "Edit, use Quick Save CSV to save what was read."
+        + System.lineSeparator()
+        + "Corrections subtracts a blank, smooths, zeroes each run at a wavelength and undoes the "
+        + "dilution of each run, graphs, fits and saved CSVs all use the corrected values."
+        + System.lineSeparator()
+        + "Commands queues crops, normalizing, averaging replicates and subtracting a run, "
+        + "Process applies the whole queue at once and loads the result as a new CSV."
+        + System.lineSeparator()
+        + "Undo and Redo, or Ctrl+Z and Ctrl+Y, step through changed points, graph info and "
+        + "corrections of the loaded CSV."
+        + System.lineSeparator()
+        + "Fit Binding fits a 1:1 or 1:2 metal binding isotherm to the selected wavelength, or to "
+        + "every wavelength with shared dissociation constants."
+        + System.lineSeparator()
+        + "Components decomposes every wavelength of every run, its singular values count the "
+        + "absorbing species and each component's spectrum and run profile are graphed."
+        + System.lineSeparator()
+        + "Peaks marks each run's highest peak and where every run crosses on the left graph, "
+        + "choosing one in its list selects that wavelength."
+        + System.lineSeparator()
+        + "Images are saved in the background at the chosen DPI, All Graphs saves the left, right "
+        + "and both graphs at once."
+        + System.lineSeparator()
+        + "SVG and PDF images are drawn from the CSV's values, so they stay sharp at any size and "
+        + "the DPI is not needed."
+        + System.lineSeparator()
+        + "Type a wavelength to jump to the closest one, or drag the slider or use the arrow keys "
+        + "to scrub through them, the right graph follows once you stop."
+        + System.lineSeparator()
+        + "Heatmap shows every wavelength of every run colored by absorbance, click it to choose "
+        + "a wavelength. Overlay shows several wavelengths together on one scatter plot.");
+  }
+
+  // Adds the heatmap next to the left graph while it is checked, and takes it away when not
+  private void showHeatmap() {
+    if (!this.heatmapMode || this.loadedFile == null) {
+      if (this.heatmap != null) {
+        this.centerPanel.getChildren().remove(this.heatmap);
+        this.heatmap = null;
+      }
+      return;
+    }
+    if (this.heatmap == null) {
+      this.heatmap = new SpectrumHeatmap(this.loadedFile, this.lightMode);
+      // Clicking a column chooses its wavelength as if it were picked
+      this.heatmap.setOnPick(this.wavelengths::select);
+      this.heatmap.prefHeightProperty().bind(this.centerPanel.heightProperty().divide(2));
+      this.heatmap.prefWidthProperty().bind(this.centerPanel.widthProperty().divide(2));
+      int left = this.centerPanel.getChildren().indexOf(this.lineGraph());
+      this.centerPanel.getChildren().add(left + 1, this.heatmap);
+    }
+  }
+
+  // The line chart or canvas graph that is on the left, null if no csv is graphed
+  private Region lineGraph() {
+    return this.initGraph != null ? this.initGraph : this.canvasGraph;
   }
 }
@@ -0,0 +1,302 @@
+package view;
+
+import java.util.List;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import model.SpectrumData;
+import util.AxisUtil;
+import util.ChartImage;
+import util.ChartLegend;
+import util.Downsampler;
+
+/**
+ * A line chart of every run that is drawn straight onto a canvas from the parsed columns. There is
+ * no node per data point, each pixel column of a run is drawn as its min and max, so hundreds of
+ * runs with thousands of wavelengths redraw quickly. It is a normal node so it can be snapshot.
+ */
+public class SpectrumCanvas extends Pane {
+
+  private static final double LEFT_GAP = 70;
+  private static final double RIGHT_GAP = 20;
+  private static final double TOP_GAP = 40;
+  private static final double BOTTOM_GAP = 50;
+
+  private final Canvas canvas;
+  private SpectrumData data;
+  private final String xLabel;
+  private final String yLabel;
+  private String title;
+  private double xLower;
+  private double xUpper;
+  private double yLower;
+  private double yUpper;
+  private double highlight;
+  private List<AnnotatedLineChart.Mark> marks;
+  private boolean lightMode;
+
+  /**
+   * Makes the canvas chart for the given data, the x-axis is fit to the wavelengths and the y-axis
+   * to the absorbances.
+   *
+   * @param data      is the parsed csv
+   * @param lightMode is if the text and axes should be dark on a light background
+   */
+  public SpectrumCanvas(SpectrumData data, boolean lightMode) {
+    this.data = data;
+    this.lightMode = lightMode;
+    this.canvas = new Canvas();
+    this.getChildren().add(this.canvas);
+    String[] labels = data.getLabels();
+    this.xLabel = AxisUtil.axisLabel(labels[0]);
+    this.yLabel = labels.length > 1 ? AxisUtil.axisLabel(labels[1]) : "";
+    this.title = "";
+    this.highlight = Double.NaN;
+    this.marks = List.of();
+
+    double[] wavelengths = data.getWavelengths();
+    this.xLower = wavelengths.length == 0 ? 0 : wavelengths[0];
+    this.xUpper = wavelengths.length == 0 ? 1 : wavelengths[wavelengths.length - 1];
+    double[] yBounds = ChartImage.yBounds(data);
+    this.yLower = yBounds[0];
+    this.yUpper = yBounds[1];
+
+    this.widthProperty().addListener((obs, oldVal, newVal) -> this.draw());
+    this.heightProperty().addListener((obs, oldVal, newVal) -> this.draw());
+  }
+
+  /**
+   * Gets the label of the x-axis.
+   *
+   * @return the x-axis label
+   */
+  public String getXLabel() {
+    return this.xLabel;
+  }
+
+  /**
+   * Sets the title above the chart.
+   *
+   * @param title is the new title
+   */
+  public void setTitle(String title) {
+    this.title = title;
+    this.draw();
+  }
+
+  /**
+   * Sets the bounds of the x-axis, only the rows inside are drawn.
+   *
+   * @param lower is the lowest wavelength shown
+   * @param upper is the highest wavelength shown
+   * @throws IllegalArgumentException if the lower bound is not below the upper bound
+   */
+  public void setXBounds(double lower, double upper) throws IllegalArgumentException {
+    if (!(lower < upper)) {
+      throw new IllegalArgumentException("The lower bound must be less than the upper bound");
+    }
+    this.xLower = lower;
+    this.xUpper = upper;
+    this.draw();
+  }
+
+  /**
+   * Draws newer data of the same csv, like one that is still being written. The y-axis is fit to
+   * the new absorbances and the x-axis is kept.
+   *
+   * @param data is the parsed csv as it is now
+   */
+  public void setData(SpectrumData data) {
+    this.data = data;
+    double[] yBounds = ChartImage.yBounds(data);
+    this.yLower = yBounds[0];
+    this.yUpper = yBounds[1];
+    this.draw();
+  }
+
+  /**
+   * Marks a wavelength with a line across the chart.
+   *
+   * @param wavelength is the wavelength to mark, NaN to remove the mark
+   */
+  public void setHighlight(double wavelength) {
+    this.highlight = wavelength;
+    this.draw();
+  }
+
+  /**
+   * Marks points on top of the runs, like their peaks.
+   *
+   * @param marks is every mark, empty for none
+   */
+  public void setMarks(List<AnnotatedLineChart.Mark> marks) {
+    this.marks = List.copyOf(marks);
+    this.draw();
+  }
+
+  /**
+   * Sets if the text and axes should be dark on a light background.
+   *
+   * @param lightMode is true for light mode
+   */
+  public void setLightMode(boolean lightMode) {
+    this.lightMode = lightMode;
+    this.draw();
+  }
+
+  @Override
+  protected void layoutChildren() {
+    this.canvas.setWidth(this.getWidth());
+    this.canvas.setHeight(this.getHeight());
+  }
+
+  /**
+   * Redraws the whole chart to the current size.
+   */
+  public void draw() {
+    double width = this.getWidth();
+    double height = this.getHeight();
+    this.canvas.setWidth(width);
+    this.canvas.setHeight(height);
+    GraphicsContext gc = this.canvas.getGraphicsContext2D();
+    gc.clearRect(0, 0, width, height);
+    Color ink = this.lightMode ? Color.BLACK : Color.web("#C8C8C8");
+
+    int runs = this.data.getRunCount();
+    ChartLegend legend = ChartLegend.layout(runs, width - LEFT_GAP, height - TOP_GAP - BOTTOM_GAP);
+    double plotLeft = LEFT_GAP;
+    double plotTop = TOP_GAP;
+    double plotWidth = width - LEFT_GAP - RIGHT_GAP;
+    double plotHeight = height - TOP_GAP - BOTTOM_GAP - legend.height();
+    if (plotWidth <= 1 || plotHeight <= 1) {
+      return;
+    }
+
+    this.drawAxes(gc, ink, plotLeft, plotTop, plotWidth, plotHeight);
+
+    gc.save();
+    gc.beginPath();
+    gc.rect(plotLeft, plotTop, plotWidth, plotHeight);
+    gc.clip();
+    gc.setLineWidth(1);
+    double[] wavelengths = this.data.getWavelengths();
+    int[] range = new int[]{0, wavelengths.length};
+    if (Downsampler.isAscending(wavelengths)) {
+      range = Downsampler.visibleRange(wavelengths, this.xLower, this.xUpper);
+    }
+    for (int run = 0; run < runs; run++) {
+      gc.setStroke(seriesColor(run));
+      this.drawRun(gc, wavelengths, this.data.getRun(run), range[0], range[1], plotLeft,
+          plotTop, plotWidth, plotHeight);
+    }
+    if (!Double.isNaN(this.highlight)) {
+      double x = plotLeft + (this.highlight - this.xLower) / (this.xUpper - this.xLower)
+          * plotWidth;
+      gc.setStroke(ink);
+      gc.setLineDashes(6, 4);
+      gc.strokeLine(x, plotTop, x, plotTop + plotHeight);
+      gc.setLineDashes();
+    }
+    gc.setStroke(AnnotatedLineChart.MARK_COLOR);
+    gc.setFill(AnnotatedLineChart.MARK_COLOR);
+    gc.setFont(Font.font(11));
+    for (AnnotatedLineChart.Mark mark : this.marks) {
+      double x = plotLeft + (mark.x() - this.xLower) / (this.xUpper - this.xLower) * plotWidth;
+      String label = mark.label() == null ? "" : mark.label();
+      if (Double.isNaN(mark.y())) {
+        gc.setLineDashes(6, 4);
+        gc.strokeLine(x, plotTop, x, plotTop + plotHeight);
+        gc.setLineDashes();
+        gc.fillText(label, x + 4, plotTop + 14);
+      } else {
+        double y = plotTop + (this.yUpper - mark.y()) / (this.yUpper - this.yLower) * plotHeight;
+        gc.fillOval(x - 4, y - 4, 8, 8);
+        gc.fillText(label, x + 6, y - 6);
+      }
+    }
+    gc.restore();
+
+    // Title and legend
+    gc.setFill(ink);
+    gc.setTextAlign(TextAlignment.CENTER);
+    gc.setTextBaseline(VPos.CENTER);
+    gc.setFont(Font.font(16));
+    gc.fillText(this.title, plotLeft + plotWidth / 2, TOP_GAP / 2);
+    gc.setFont(Font.font(11));
+    gc.setTextAlign(TextAlignment.LEFT);
+    double legendTop = plotTop + plotHeight + BOTTOM_GAP;
+    for (ChartLegend.Item item : legend.items()) {
+      double x = LEFT_GAP + item.x();
+      double y = legendTop + item.y();
+      if (item.series() != ChartLegend.MORE) {
+        gc.setFill(seriesColor(item.series()));
+        gc.fillRect(x, y + 3, 10, 10);
+      }
+      gc.setFill(ink);
+      gc.fillText(ChartLegend.text(item, null), x + 14, y + 8);
+    }
+  }
+
+  // The shared series color as a JavaFX color
+  private static Color seriesColor(int run) {
+    int rgb = ChartLegend.seriesRgb(run);
+    return Color.rgb((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+  }
+
+  // Draws the frame, ticks and labels of both axes
+  private void drawAxes(GraphicsContext gc, Color ink, double left, double top, double width,
+      double height) {
+    gc.setFont(Font.font(11));
+    gc.setStroke(ink);
+    gc.setFill(ink);
+    gc.setLineWidth(1);
+    gc.strokeRect(left, top, width, height);
+
+    gc.setTextAlign(TextAlignment.CENTER);
+    gc.setTextBaseline(VPos.TOP);
+    double xStep = AxisUtil.tickStep(this.xUpper - this.xLower);
+    for (double tick = Math.ceil(this.xLower / xStep) * xStep; tick <= this.xUpper;
+        tick += xStep) {
+      double x = left + (tick - this.xLower) / (this.xUpper - this.xLower) * width;
+      gc.strokeLine(x, top + height, x, top + height + 5);
+      gc.fillText(AxisUtil.tickText(tick, xStep), x, top + height + 7);
+    }
+    gc.fillText(this.xLabel, left + width / 2, top + height + 26);
+
+    gc.setTextAlign(TextAlignment.RIGHT);
+    gc.setTextBaseline(VPos.CENTER);
+    double yStep = AxisUtil.tickStep(this.yUpper - this.yLower);
+    for (double tick = Math.ceil(this.yLower / yStep) * yStep; tick <= this.yUpper;
+        tick += yStep) {
+      double y = top + height - (tick - this.yLower) / (this.yUpper - this.yLower) * height;
+      gc.strokeLine(left - 5, y, left, y);
+      gc.fillText(AxisUtil.tickText(tick, yStep), left - 7, y);
+    }
+    gc.save();
+    gc.translate(14, top + height / 2);
+    gc.rotate(-90);
+    gc.setTextAlign(TextAlignment.CENTER);
+    gc.fillText(this.yLabel, 0, 0);
+    gc.restore();
+  }
+
+  // Draws one run as a path, rows that share a pixel column only add their min and max
+  private void drawRun(GraphicsContext gc, double[] x, double[] y, int from, int to, double left,
+      double top, double width, double height) {
+    gc.beginPath();
+    Downsampler.pixelColumns(x, y, from, to, left, this.xLower,
+        width / (this.xUpper - this.xLower), top + height, this.yLower,
+        height / (this.yUpper - this.yLower), (px, py, move) -> {
+          if (move) {
+            gc.moveTo(px, py);
+          } else {
+            gc.lineTo(px, py);
+          }
+        });
+    gc.stroke();
+  }
+}
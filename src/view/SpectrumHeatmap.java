@@ -0,0 +1,403 @@
+package view;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import model.SpectrumData;
+import util.AxisUtil;
+
+/**
+ * The whole titration as an image, wavelengths across and runs down, colored by absorbance. The
+ * pixels are computed straight from the parsed columns in parallel strips of runs and written to
+ * the image at once. When a csv grows only the new wavelengths and changed runs are computed.
+ */
+public class SpectrumHeatmap extends Pane {
+
+  private static final double LEFT_GAP = 60;
+  private static final double RIGHT_GAP = 80;
+  private static final double TOP_GAP = 40;
+  private static final double BOTTOM_GAP = 50;
+  private static final double BAR_WIDTH = 14;
+  // Wider than this and neighbouring wavelengths are averaged into one column
+  private static final int MAX_COLUMNS = 4096;
+  private static final int MISSING = 0xFF808080;
+  // Viridis, from low to high absorbance
+  private static final int[] STOPS = {0x440154, 0x3B528B, 0x21918C, 0x5EC962, 0xFDE725};
+  private static final int[] LUT = lut(256);
+
+  private final Canvas canvas;
+  private final ImageView view;
+  private SpectrumData data;
+  private WritableImage image;
+  private int[] pixels;
+  private int columns;
+  // How many wavelengths are averaged into a column, kept as the csv grows
+  private int stride;
+  // The lowest and highest absorbance of each run, so a growing csv only measures what changed
+  private double[] runLows;
+  private double[] runHighs;
+  private double lower;
+  private double upper;
+  private double highlight;
+  private boolean lightMode;
+  private Consumer<String> onPick;
+
+  /**
+   * Makes the heatmap of the given data.
+   *
+   * @param data      is the parsed csv
+   * @param lightMode is if the text and axes should be dark on a light background
+   */
+  public SpectrumHeatmap(SpectrumData data, boolean lightMode) {
+    this.canvas = new Canvas();
+    this.view = new ImageView();
+    this.view.setSmooth(false);
+    this.view.setPreserveRatio(false);
+    this.getChildren().addAll(this.view, this.canvas);
+    this.canvas.setMouseTransparent(true);
+    this.lightMode = lightMode;
+    this.highlight = Double.NaN;
+    this.onPick = (wavelength) -> {
+    };
+    this.view.setOnMouseClicked((evt) -> {
+      int row = (int) (evt.getX() / this.view.getFitWidth() * this.columns) * this.stride;
+      double[] wavelengths = this.data.getWavelengths();
+      if (row >= 0 && row < wavelengths.length) {
+        this.onPick.accept(SpectrumData.formatCell(wavelengths[row]));
+      }
+    });
+    this.setData(data);
+  }
+
+  /**
+   * Computes every pixel again, such as for another csv or after a correction.
+   *
+   * @param data is the parsed csv
+   */
+  public void setData(SpectrumData data) {
+    this.data = data;
+    this.runLows = new double[data.getRunCount()];
+    this.runHighs = new double[data.getRunCount()];
+    for (int run = 0; run < data.getRunCount(); run++) {
+      this.measure(run, 0);
+    }
+    this.redraw();
+  }
+
+  /**
+   * Brings the heatmap up to date with data that grew, like a csv that is still being written.
+   * Only the columns of the appended rows and the changed runs are computed, unless the new
+   * absorbances are outside the colors' range, which changes every pixel. The range is found from
+   * the appended rows and the changed runs alone.
+   *
+   * @param data        is all the data as it is now
+   * @param fromRow     is the first appended row
+   * @param changedRuns is every run, starting with 0, that is new or whose values all changed
+   */
+  public void update(SpectrumData data, int fromRow, int[] changedRuns) {
+    int oldRuns = this.data.getRunCount();
+    double oldLower = this.lower;
+    double oldUpper = this.upper;
+    this.data = data;
+    boolean[] changed = new boolean[data.getRunCount()];
+    for (int run : changedRuns) {
+      if (run < changed.length) {
+        changed[run] = true;
+      }
+    }
+    this.runLows = Arrays.copyOf(this.runLows, changed.length);
+    this.runHighs = Arrays.copyOf(this.runHighs, changed.length);
+    for (int run = 0; run < changed.length; run++) {
+      this.measure(run, changed[run] || run >= oldRuns ? 0 : fromRow);
+    }
+    this.rescale();
+    if (this.lower != oldLower || this.upper != oldUpper
+        || (data.getRowCount() + this.stride - 1) / this.stride > MAX_COLUMNS) {
+      this.redraw();
+      return;
+    }
+    int oldColumns = this.columns;
+    if (data.getRunCount() != oldRuns || this.newColumns() != oldColumns) {
+      this.resize();
+    }
+    // The column holding the first new row may only have been partly filled
+    int fromColumn = Math.min(fromRow / this.stride, oldColumns);
+    if (fromColumn < this.columns) {
+      this.fill(fromColumn, this.columns, null);
+    }
+    if (fromColumn > 0 && changedRuns.length > 0) {
+      this.fill(0, fromColumn, changedRuns);
+    }
+  }
+
+  /**
+   * Marks a wavelength with a line down the heatmap.
+   *
+   * @param wavelength is the wavelength to mark, NaN to remove the mark
+   */
+  public void setHighlight(double wavelength) {
+    this.highlight = wavelength;
+    this.draw();
+  }
+
+  /**
+   * Sets what happens when a column of the heatmap is clicked.
+   *
+   * @param onPick is given the clicked wavelength as it is shown
+   */
+  public void setOnPick(Consumer<String> onPick) {
+    this.onPick = onPick;
+  }
+
+  /**
+   * Sets if the text and axes should be dark on a light background.
+   *
+   * @param lightMode is true for light mode
+   */
+  public void setLightMode(boolean lightMode) {
+    this.lightMode = lightMode;
+    this.draw();
+  }
+
+  @Override
+  protected void layoutChildren() {
+    this.draw();
+  }
+
+  // Every pixel again with the extremes already measured
+  private void redraw() {
+    int rows = this.data.getRowCount();
+    this.stride = Math.max((rows + MAX_COLUMNS - 1) / MAX_COLUMNS, 1);
+    this.rescale();
+    this.resize();
+    this.fill(0, this.columns, null);
+  }
+
+  private int newColumns() {
+    return Math.max((this.data.getRowCount() + this.stride - 1) / this.stride, 1);
+  }
+
+  // Extends a run's extremes with its rows from the given one on, from scratch if that is 0
+  private void measure(int run, int fromRow) {
+    double min = fromRow == 0 ? Double.POSITIVE_INFINITY : this.runLows[run];
+    double max = fromRow == 0 ? Double.NEGATIVE_INFINITY : this.runHighs[run];
+    for (int row = fromRow; row < this.data.getRowCount(); row++) {
+      double value = this.data.getValue(run, row);
+      if (!Double.isNaN(value)) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+    }
+    this.runLows[run] = min;
+    this.runHighs[run] = max;
+  }
+
+  // The colors span the lowest to the highest absorbance
+  private void rescale() {
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int run = 0; run < this.runLows.length; run++) {
+      min = Math.min(min, this.runLows[run]);
+      max = Math.max(max, this.runHighs[run]);
+    }
+    if (min > max) {
+      min = 0;
+      max = 1;
+    } else if (min == max) {
+      max = min + 1;
+    }
+    this.lower = min;
+    this.upper = max;
+  }
+
+  // A new image for a different size, the pixels that are still the same are copied over
+  private void resize() {
+    int oldColumns = this.columns;
+    int[] old = this.pixels;
+    this.columns = this.newColumns();
+    int runs = Math.max(this.data.getRunCount(), 1);
+    this.pixels = new int[this.columns * runs];
+    if (old != null) {
+      int oldRuns = old.length / oldColumns;
+      int copy = Math.min(oldColumns, this.columns);
+      for (int run = 0; run < Math.min(oldRuns, runs); run++) {
+        System.arraycopy(old, run * oldColumns, this.pixels, run * this.columns, copy);
+      }
+    }
+    this.image = new WritableImage(this.columns, runs);
+    this.image.getPixelWriter().setPixels(0, 0, this.columns, runs,
+        PixelFormat.getIntArgbInstance(), this.pixels, 0, this.columns);
+    this.view.setImage(this.image);
+  }
+
+  /*
+   * Computes the columns from inclusive to exclusive for the given runs, or every run if null, in
+   * parallel strips of runs, then writes the region to the image in one call.
+   */
+  private void fill(int from, int to, int[] runs) {
+    int count = runs == null ? this.data.getRunCount() : runs.length;
+    if (count == 0 || from >= to) {
+      return;
+    }
+    int strips = Math.min(count, Runtime.getRuntime().availableProcessors() * 2);
+    IntStream.range(0, strips).parallel().forEach((strip) -> {
+      for (int at = strip * count / strips; at < (strip + 1) * count / strips; at++) {
+        int run = runs == null ? at : runs[at];
+        if (run < this.data.getRunCount()) {
+          this.fillRun(run, from, to);
+        }
+      }
+    });
+    if (runs == null) {
+      this.image.getPixelWriter().setPixels(from, 0, to - from, count,
+          PixelFormat.getIntArgbInstance(), this.pixels, from, this.columns);
+    } else {
+      for (int run : runs) {
+        if (run < this.data.getRunCount()) {
+          this.image.getPixelWriter().setPixels(from, run, to - from, 1,
+              PixelFormat.getIntArgbInstance(), this.pixels, run * this.columns + from,
+              this.columns);
+        }
+      }
+    }
+  }
+
+  private void fillRun(int run, int from, int to) {
+    double[] values = this.data.getRun(run);
+    double scale = (LUT.length - 1) / (this.upper - this.lower);
+    int offset = run * this.columns;
+    for (int column = from; column < to; column++) {
+      int first = column * this.stride;
+      int last = Math.min(first + this.stride, values.length);
+      double sum = 0;
+      int found = 0;
+      for (int row = first; row < last; row++) {
+        if (!Double.isNaN(values[row])) {
+          sum += values[row];
+          found++;
+        }
+      }
+      if (found == 0) {
+        this.pixels[offset + column] = MISSING;
+      } else {
+        int shade = (int) ((sum / found - this.lower) * scale);
+        this.pixels[offset + column] = LUT[Math.max(0, Math.min(shade, LUT.length - 1))];
+      }
+    }
+  }
+
+  // Places the image in the plot and draws the axes, color bar and mark around it
+  private void draw() {
+    double width = this.getWidth();
+    double height = this.getHeight();
+    this.canvas.setWidth(width);
+    this.canvas.setHeight(height);
+    GraphicsContext gc = this.canvas.getGraphicsContext2D();
+    gc.clearRect(0, 0, width, height);
+    double plotWidth = width - LEFT_GAP - RIGHT_GAP;
+    double plotHeight = height - TOP_GAP - BOTTOM_GAP;
+    if (plotWidth <= 1 || plotHeight <= 1) {
+      this.view.setVisible(false);
+      return;
+    }
+    this.view.setVisible(true);
+    this.view.relocate(LEFT_GAP, TOP_GAP);
+    this.view.setFitWidth(plotWidth);
+    this.view.setFitHeight(plotHeight);
+
+    Color ink = this.lightMode ? Color.BLACK : Color.web("#C8C8C8");
+    gc.setStroke(ink);
+    gc.setFill(ink);
+    gc.setLineWidth(1);
+    gc.setFont(Font.font(11));
+    gc.strokeRect(LEFT_GAP, TOP_GAP, plotWidth, plotHeight);
+    double[] wavelengths = this.data.getWavelengths();
+    String[] labels = this.data.getLabels();
+
+    // Wavelength ticks at evenly spaced columns
+    gc.setTextAlign(TextAlignment.CENTER);
+    gc.setTextBaseline(VPos.TOP);
+    if (wavelengths.length > 0) {
+      double range = Math.abs(wavelengths[wavelengths.length - 1] - wavelengths[0]);
+      double step = AxisUtil.tickStep(range == 0 ? 1 : range);
+      int ticks = 5;
+      for (int tick = 0; tick <= ticks; tick++) {
+        int row = (int) Math.round((double) tick / ticks * (wavelengths.length - 1));
+        double x = LEFT_GAP + (row + 0.5) / wavelengths.length * plotWidth;
+        gc.strokeLine(x, TOP_GAP + plotHeight, x, TOP_GAP + plotHeight + 5);
+        gc.fillText(AxisUtil.tickText(wavelengths[row], step), x, TOP_GAP + plotHeight + 7);
+      }
+    }
+    gc.fillText(AxisUtil.axisLabel(labels[0]), LEFT_GAP + plotWidth / 2,
+        TOP_GAP + plotHeight + 26);
+
+    // First and last run
+    int runs = this.data.getRunCount();
+    gc.setTextAlign(TextAlignment.RIGHT);
+    gc.setTextBaseline(VPos.CENTER);
+    if (runs > 0) {
+      double rowHeight = plotHeight / runs;
+      gc.fillText("Run 1", LEFT_GAP - 5, TOP_GAP + rowHeight / 2);
+      gc.fillText("Run " + runs, LEFT_GAP - 5, TOP_GAP + plotHeight - rowHeight / 2);
+    }
+
+    // Color bar with the absorbance range
+    double barLeft = LEFT_GAP + plotWidth + 12;
+    for (int shade = 0; shade < LUT.length; shade++) {
+      double y = TOP_GAP + plotHeight - (shade + 1.0) / LUT.length * plotHeight;
+      gc.setFill(Color.rgb((LUT[shade] >> 16) & 0xFF, (LUT[shade] >> 8) & 0xFF,
+          LUT[shade] & 0xFF));
+      gc.fillRect(barLeft, y, BAR_WIDTH, plotHeight / LUT.length + 1);
+    }
+    gc.strokeRect(barLeft, TOP_GAP, BAR_WIDTH, plotHeight);
+    gc.setFill(ink);
+    gc.setTextAlign(TextAlignment.LEFT);
+    double step = AxisUtil.tickStep(this.upper - this.lower);
+    gc.fillText(AxisUtil.tickText(this.upper, step), barLeft + BAR_WIDTH + 4, TOP_GAP);
+    gc.fillText(AxisUtil.tickText(this.lower, step), barLeft + BAR_WIDTH + 4,
+        TOP_GAP + plotHeight);
+
+    if (!Double.isNaN(this.highlight)) {
+      int row = this.data.getIndex().nearest(this.highlight, Double.POSITIVE_INFINITY);
+      if (row != -1) {
+        double x = LEFT_GAP + (row + 0.5) / wavelengths.length * plotWidth;
+        gc.setStroke(Color.WHITE);
+        gc.setLineDashes(6, 4);
+        gc.strokeLine(x, TOP_GAP, x, TOP_GAP + plotHeight);
+        gc.setLineDashes();
+      }
+    }
+
+    gc.setTextAlign(TextAlignment.CENTER);
+    gc.setFont(Font.font(16));
+    gc.fillText("Absorbance", LEFT_GAP + plotWidth / 2, TOP_GAP / 2);
+  }
+
+  // Colors between the stops, blended linearly
+  private static int[] lut(int size) {
+    int[] lut = new int[size];
+    for (int shade = 0; shade < size; shade++) {
+      double at = (double) shade / (size - 1) * (STOPS.length - 1);
+      int stop = Math.min((int) at, STOPS.length - 2);
+      double blend = at - stop;
+      int color = 0xFF000000;
+      for (int shift = 0; shift <= 16; shift += 8) {
+        int from = (STOPS[stop] >> shift) & 0xFF;
+        int to = (STOPS[stop + 1] >> shift) & 0xFF;
+        color |= (int) Math.round(from + (to - from) * blend) << shift;
+      }
+      lut[shade] = color;
+    }
+    return lut;
+  }
+}
@@ -0,0 +1,277 @@
+package view;
+
+import java.util.function.Consumer;
+import javafx.animation.PauseTransition;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Bounds;
+import javafx.geometry.Pos;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.stage.Popup;
+import javafx.util.Duration;
+import model.SpectrumData;
+import model.WavelengthIndex;
+
+/**
+ * Picks a wavelength of the loaded csv without a node or string per wavelength. The list only
+ * formats the rows that are scrolled into view, typing a number jumps to the closest wavelength,
+ * and the slider or arrow keys scrub through the wavelengths, choosing one once they stop.
+ */
+public class WavelengthPicker extends HBox {
+
+  private static final Duration SCRUB_DELAY = Duration.millis(150);
+  private static final double CELL_HEIGHT = 24;
+  private static final int VISIBLE_ROWS = 12;
+  private static final int PAGE_ROWS = 10;
+
+  private final TextField field;
+  private final Slider slider;
+  private final ListView<String> list;
+  private final Popup popup;
+  private final PauseTransition scrubbing;
+  private double[] wavelengths;
+  private WavelengthIndex index;
+  private int selectedRow;
+  private int pendingRow;
+  private boolean updating;
+  private Consumer<String> onSelect;
+
+  /**
+   * Makes an empty picker, it lists nothing until wavelengths are set.
+   *
+   * @param css is the style sheet for the drop down list, which is in its own window
+   */
+  public WavelengthPicker(String css) {
+    super(5);
+    this.setAlignment(Pos.CENTER);
+    this.wavelengths = new double[0];
+    this.index = new WavelengthIndex(this.wavelengths);
+    this.selectedRow = -1;
+    this.pendingRow = -1;
+    this.onSelect = (wavelength) -> {
+    };
+
+    this.field = new TextField();
+    this.field.setPrefColumnCount(12);
+    this.slider = new Slider(0, 0, 0);
+    this.slider.setPrefWidth(150);
+    this.slider.setBlockIncrement(1);
+    this.slider.setDisable(true);
+    this.list = new ListView<>();
+    // Every cell is the same height, so the list does not measure any rows it does not show
+    this.list.setFixedCellSize(CELL_HEIGHT);
+    this.list.setPrefHeight(CELL_HEIGHT * VISIBLE_ROWS + 2);
+    this.list.getStylesheets().add(css);
+    this.popup = new Popup();
+    this.popup.setAutoHide(true);
+    this.popup.getContent().add(this.list);
+    this.scrubbing = new PauseTransition(SCRUB_DELAY);
+    this.scrubbing.setOnFinished((evt) -> this.choose(this.pendingRow));
+    this.getChildren().addAll(this.field, this.slider);
+
+    this.field.textProperty().addListener((obs, old, text) -> {
+      if (!this.updating) {
+        this.typed(text);
+      }
+    });
+    this.field.setOnMouseClicked((evt) -> this.showList());
+    this.field.addEventFilter(KeyEvent.KEY_PRESSED, (evt) -> {
+      int from = this.pendingRow == -1 ? this.selectedRow : this.pendingRow;
+      switch (evt.getCode()) {
+        case UP -> this.scrubTo(from - 1);
+        case DOWN -> this.scrubTo(from + 1);
+        case PAGE_UP -> this.scrubTo(from - PAGE_ROWS);
+        case PAGE_DOWN -> this.scrubTo(from + PAGE_ROWS);
+        case ENTER -> this.choose(this.closestTo(this.field.getText()));
+        case ESCAPE -> this.popup.hide();
+        default -> {
+          return;
+        }
+      }
+      evt.consume();
+    });
+    this.slider.valueProperty().addListener((obs, old, value) -> {
+      if (!this.updating) {
+        this.scrubTo((int) Math.round(value.doubleValue()));
+      }
+    });
+    this.list.setOnMouseClicked((evt) -> {
+      if (evt.getButton() == MouseButton.PRIMARY) {
+        this.choose(this.list.getSelectionModel().getSelectedIndex());
+      }
+    });
+    this.list.setOnKeyPressed((evt) -> {
+      switch (evt.getCode()) {
+        case ENTER -> this.choose(this.list.getSelectionModel().getSelectedIndex());
+        case ESCAPE -> this.popup.hide();
+        default -> {
+        }
+      }
+    });
+  }
+
+  /**
+   * Lists the wavelengths of a csv.
+   *
+   * @param data   is the parsed csv
+   * @param prompt is shown when no wavelength is selected
+   * @param keep   is if the selection is kept when that wavelength is still there, such as when
+   *               rows are added to a watched csv
+   */
+  public void setWavelengths(SpectrumData data, String prompt, boolean keep) {
+    this.setWavelengths(data.getWavelengths(), data.getIndex(), prompt, keep);
+  }
+
+  /**
+   * Lists the given values in place of the wavelengths.
+   *
+   * @param wavelengths is the value of every row, shared so do not modify them
+   * @param index       is the lookup of the values
+   * @param prompt      is shown when no value is selected
+   * @param keep        is if the selection is kept when that value is still there
+   */
+  public void setWavelengths(double[] wavelengths, WavelengthIndex index, String prompt,
+      boolean keep) {
+    String selected = keep ? this.getSelected() : null;
+    this.wavelengths = wavelengths;
+    this.index = index;
+    this.list.setItems(new Wavelengths(wavelengths));
+    this.field.setPromptText(prompt);
+    this.scrubbing.stop();
+    this.pendingRow = -1;
+    int row = selected == null ? -1 : index.indexOf(SpectrumData.parseCell(selected));
+    this.updating = true;
+    this.slider.setMax(Math.max(wavelengths.length - 1, 0));
+    this.slider.setDisable(wavelengths.length < 2);
+    this.updating = false;
+    this.show(row);
+    this.selectedRow = row;
+  }
+
+  /**
+   * Sets what happens once a wavelength is chosen, by clicking it, pressing enter or when the
+   * slider or arrow keys stop on it.
+   *
+   * @param onSelect is given the chosen wavelength as it is shown
+   */
+  public void setOnSelect(Consumer<String> onSelect) {
+    this.onSelect = onSelect;
+  }
+
+  /**
+   * Chooses the wavelength closest to the given one, as if it were clicked.
+   *
+   * @param wavelength is the wavelength as text
+   */
+  public void select(String wavelength) {
+    this.choose(this.closestTo(wavelength));
+  }
+
+  /**
+   * Gets the chosen wavelength.
+   *
+   * @return the wavelength as it is shown, or null if none is chosen
+   */
+  public String getSelected() {
+    if (this.selectedRow < 0 || this.selectedRow >= this.wavelengths.length) {
+      return null;
+    }
+    return SpectrumData.formatCell(this.wavelengths[this.selectedRow]);
+  }
+
+  // Jumps the list to the wavelength closest to what is typed, without choosing it
+  private void typed(String text) {
+    int row = this.closestTo(text);
+    if (row == -1) {
+      return;
+    }
+    this.showList();
+    this.list.getSelectionModel().select(row);
+    this.list.scrollTo(Math.max(row - VISIBLE_ROWS / 2, 0));
+  }
+
+  // The row closest to what is typed, -1 if it is not a number
+  private int closestTo(String text) {
+    double wavelength = SpectrumData.parseCell(text);
+    if (Double.isNaN(wavelength)) {
+      return -1;
+    }
+    return this.index.nearest(wavelength, Double.POSITIVE_INFINITY);
+  }
+
+  // Shows a row right away and chooses it once the scrubbing stops
+  private void scrubTo(int row) {
+    if (this.wavelengths.length == 0) {
+      return;
+    }
+    int clamped = Math.max(0, Math.min(row, this.wavelengths.length - 1));
+    this.show(clamped);
+    this.pendingRow = clamped;
+    this.scrubbing.playFromStart();
+  }
+
+  private void choose(int row) {
+    this.scrubbing.stop();
+    this.pendingRow = -1;
+    this.popup.hide();
+    if (row < 0 || row >= this.wavelengths.length) {
+      return;
+    }
+    this.show(row);
+    if (row != this.selectedRow) {
+      this.selectedRow = row;
+      this.onSelect.accept(SpectrumData.formatCell(this.wavelengths[row]));
+    }
+  }
+
+  // Puts a row in the text field, slider and list without anything listening to them reacting
+  private void show(int row) {
+    this.updating = true;
+    if (row == -1) {
+      this.field.clear();
+      this.slider.setValue(0);
+      this.list.getSelectionModel().clearSelection();
+    } else {
+      this.field.setText(SpectrumData.formatCell(this.wavelengths[row]));
+      this.field.positionCaret(this.field.getLength());
+      this.slider.setValue(row);
+      this.list.getSelectionModel().select(row);
+    }
+    this.updating = false;
+  }
+
+  private void showList() {
+    if (this.popup.isShowing() || this.wavelengths.length == 0 || this.getScene() == null) {
+      return;
+    }
+    Bounds bounds = this.field.localToScreen(this.field.getBoundsInLocal());
+    this.list.setPrefWidth(Math.max(bounds.getWidth(), 120));
+    this.popup.show(this.field, bounds.getMinX(), bounds.getMaxY());
+    int row = Math.max(this.list.getSelectionModel().getSelectedIndex(), 0);
+    this.list.scrollTo(Math.max(row - VISIBLE_ROWS / 2, 0));
+  }
+
+  // Formats a wavelength only when its row is shown, so no list of strings is ever built
+  private static final class Wavelengths extends ObservableListBase<String> {
+
+    private final double[] wavelengths;
+
+    private Wavelengths(double[] wavelengths) {
+      this.wavelengths = wavelengths;
+    }
+
+    @Override
+    public String get(int row) {
+      return SpectrumData.formatCell(this.wavelengths[row]);
+    }
+
+    @Override
+    public int size() {
+      return this.wavelengths.length;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package controller.commands;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import model.SpectrumData;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests applying queued commands to a titration at once.
+ */
+public class CommandBatchTest {
+
+  private static SpectrumData titration() {
+    double[] wavelengths = {300, 310, 320, 330, 340};
+    double[][] runs = {
+        {1, 2, 3, 4, 5},
+        {3, 4, 5, 6, 7},
+        {2, 2, 2, 2, 2},
+        {4, 0, 4, 0, 4}};
+    return new SpectrumData(new String[]{"nm", "A", "B", "C", "D"}, wavelengths, runs);
+  }
+
+  @Test
+  public void testQueueMatchesEachCommand() {
+    FileControl queue = new FileControl();
+    queue.add(new CropWavelengths(335, 305));
+    queue.add(new AverageReplicates(2));
+    queue.add(new SubtractRun(0));
+    queue.add(new Normalize());
+    SpectrumData result = queue.apply(titration());
+
+    assertArrayEquals(new double[]{310, 320, 330}, result.getWavelengths());
+    assertEquals(3, result.getRowCount());
+    assertEquals(2, result.getRunCount());
+    // Averages are {3, 4, 5} and {1, 3, 1}, less the first gives {0, 0, 0} and {-2, -1, -4}
+    assertArrayEquals(new double[]{0, 0, 0}, result.getRun(0), 1e-12);
+    assertArrayEquals(new double[]{-0.5, -0.25, -1}, result.getRun(1), 1e-12);
+  }
+
+  @Test
+  public void testSourceIsUnchanged() {
+    SpectrumData source = titration();
+    FileControl queue = new FileControl();
+    queue.add(new SubtractRun(0));
+    queue.add(new Normalize());
+    queue.apply(source);
+    assertArrayEquals(new double[]{1, 2, 3, 4, 5}, source.getRun(0));
+    assertArrayEquals(new double[]{4, 0, 4, 0, 4}, source.getRun(3));
+  }
+
+  @Test
+  public void testEmptyCellsStayEmpty() {
+    SpectrumData source = new SpectrumData(new String[3], new double[]{1, 2},
+        new double[][]{{1, Double.NaN}, {3, 4}});
+    FileControl queue = new FileControl();
+    queue.add(new SubtractRun(1));
+    SpectrumData result = queue.apply(source);
+    assertEquals(-2, result.getRun(0)[0], 1e-12);
+    assertEquals(true, Double.isNaN(result.getRun(0)[1]));
+  }
+
+  @Test
+  public void testBadCommands() {
+    CommandBatch batch = new CommandBatch(titration());
+    assertThrows(IllegalArgumentException.class, () -> batch.keepWavelengths(500, 600));
+    assertThrows(IllegalArgumentException.class,
+        () -> batch.combine(new double[][]{{1, 0}}, new String[]{"A"}));
+  }
+}
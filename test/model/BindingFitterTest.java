@@ -0,0 +1,99 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests fitting binding isotherms to made up titrations.
+ */
+public class BindingFitterTest {
+
+  private static final double PEPTIDE = 10e-6;
+  private static final double[] METAL = {0, 1e-6, 2e-6, 4e-6, 8e-6, 16e-6, 32e-6};
+
+  // The absorbance of a 1:1 titration, going from free to bound absorbance as metal binds
+  private static double[] oneToOne(double kd, double free, double bound) {
+    double[] absorbances = new double[METAL.length];
+    for (int run = 0; run < METAL.length; run++) {
+      double b = PEPTIDE + METAL[run] + kd;
+      double complex = (b - Math.sqrt(b * b - 4 * PEPTIDE * METAL[run])) / 2;
+      absorbances[run] = free + (bound - free) * complex / PEPTIDE;
+    }
+    return absorbances;
+  }
+
+  private static BindingFitter fitter() {
+    return new BindingFitter(BindingFitter.Isotherm.ONE_TO_ONE, PEPTIDE, METAL);
+  }
+
+  @Test
+  public void testFitFindsConstant() {
+    double[] absorbances = oneToOne(3e-6, 0.1, 0.6);
+    for (int run = 0; run < absorbances.length; run++) {
+      absorbances[run] += 1e-4 * Math.sin(run);
+    }
+    BindingFitter.Fit fit = fitter().fit(500, absorbances);
+    assertTrue(fit.converged());
+    assertEquals(3e-6, fit.kd()[0], 1e-7);
+    assertTrue(fit.kdLower()[0] < fit.kd()[0] && fit.kd()[0] < fit.kdUpper()[0]);
+    assertEquals(0.1, fit.absorbances()[0], 1e-3);
+    assertEquals(0.6, fit.absorbances()[1], 1e-3);
+    assertEquals(METAL.length, fit.points());
+  }
+
+  @Test
+  public void testFlatDataFails() {
+    double[] absorbances = new double[METAL.length];
+    Arrays.fill(absorbances, 0.5);
+    BindingFitter.Fit fit = fitter().fit(500, absorbances);
+    assertFalse(fit.converged());
+    assertTrue(Double.isNaN(fit.kdLower()[0]));
+    assertTrue(Double.isNaN(fit.kdUpper()[0]));
+  }
+
+  @Test
+  public void testConstantAtBoundIsNotConverged() {
+    // Every metal binds until the peptide runs out, so the constant is as small as it can be
+    double[] absorbances = new double[METAL.length];
+    for (int run = 0; run < METAL.length; run++) {
+      absorbances[run] = 0.1 + 0.5 * Math.min(METAL[run], PEPTIDE) / PEPTIDE;
+    }
+    BindingFitter.Fit fit = fitter().fit(500, absorbances);
+    assertFalse(fit.converged());
+    assertTrue(Double.isNaN(fit.kdLower()[0]));
+  }
+
+  @Test
+  public void testFitEachAndGlobal() {
+    double[] wavelengths = {400, 450, 500};
+    double[][] runs = new double[METAL.length][wavelengths.length];
+    for (int row = 0; row < wavelengths.length; row++) {
+      double[] absorbances = oneToOne(2e-6, 0.1 * row, 0.2 + 0.3 * row);
+      for (int run = 0; run < METAL.length; run++) {
+        runs[run][row] = absorbances[run];
+      }
+    }
+    SpectrumData data = new SpectrumData(new String[METAL.length + 1], wavelengths, runs);
+    BindingFitter.Fit[] fits = fitter().fitEach(data);
+    assertEquals(wavelengths.length, fits.length);
+    for (int row = 0; row < fits.length; row++) {
+      assertEquals(wavelengths[row], fits[row].wavelength());
+      assertEquals(2e-6, fits[row].kd()[0], 1e-8);
+    }
+    BindingFitter.Fit global = fitter().fitGlobal(data);
+    assertTrue(Double.isNaN(global.wavelength()));
+    assertEquals(2e-6, global.kd()[0], 1e-8);
+  }
+
+  @Test
+  public void testWrongRunCount() {
+    assertThrows(IllegalArgumentException.class, () -> fitter().fit(500, new double[3]));
+    assertThrows(IllegalArgumentException.class,
+        () -> new BindingFitter(BindingFitter.Isotherm.ONE_TO_ONE, 0, METAL));
+  }
+}
@@ -0,0 +1,62 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests saving a CSV and loading it back.
+ */
+public class CSVModelV1Test {
+
+  @TempDir
+  Path folder;
+
+  // A model that only reads and writes the csv text, never a sidecar or edited copy
+  private static CSVModel textOnly() {
+    return new CSVModelV1(Long.MAX_VALUE, false, false);
+  }
+
+  @Test
+  public void testSaveRoundTrip() throws IOException {
+    Path csv = this.folder.resolve("titration.csv");
+    Files.writeString(csv, "nm,Run 1,Run 2\n300,0.5,1\n301,0.0000001,\n302,123456789,-2.25\n");
+    CSVModel model = textOnly();
+    model.loadCSV(csv.toString());
+    model.saveCSV(this.folder + "/", "saved");
+
+    String saved = Files.readString(this.folder.resolve("saved.csv"));
+    assertFalse(saved.contains("E"), saved);
+    CSVModel reloaded = textOnly();
+    reloaded.loadCSV(this.folder.resolve("saved.csv").toString());
+    SpectrumData before = model.getCSV(model.loadedCSV());
+    SpectrumData after = reloaded.getCSV(reloaded.loadedCSV());
+    assertArrayEquals(before.getLabels(), after.getLabels());
+    assertArrayEquals(new double[]{300, 301, 302}, after.getWavelengths());
+    assertArrayEquals(before.getRun(0), after.getRun(0));
+    assertArrayEquals(before.getRun(1), after.getRun(1));
+    assertEquals(1e-7, after.getRun(0)[1]);
+    assertTrue(Double.isNaN(after.getRun(1)[1]));
+  }
+
+  @Test
+  public void testFormatCell() {
+    assertEquals("", SpectrumData.formatCell(Double.NaN));
+    assertEquals("0.0000001", SpectrumData.formatCell(1e-7));
+    assertEquals("123456789.0", SpectrumData.formatCell(123456789));
+    assertEquals("Infinity", SpectrumData.formatCell(Double.POSITIVE_INFINITY));
+  }
+
+  @Test
+  public void testSaveWithNothingLoaded() {
+    assertThrows(IllegalArgumentException.class, () -> textOnly().saveCSV("", ""));
+  }
+}
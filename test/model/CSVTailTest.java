@@ -0,0 +1,90 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests following a csv while the spectrometer writes it.
+ */
+public class CSVTailTest {
+
+  @TempDir
+  Path folder;
+
+  private static void append(Path file, String text) throws IOException {
+    Files.writeString(file, text, StandardOpenOption.APPEND);
+  }
+
+  @Test
+  public void testAppendedRows() throws IOException {
+    Path file = this.folder.resolve("live.csv");
+    Files.writeString(file, "nm,A,B\n300,1,2\n301,3,4\n302,5");
+    CSVTail tail = new CSVTail(file.toString(), false);
+
+    CSVTail.Update first = tail.poll();
+    assertEquals(2, first.data().getRowCount());
+    assertArrayEquals(new int[]{0, 1}, first.changedRuns());
+    assertNull(tail.poll());
+
+    append(file, ",6\n");
+    CSVTail.Update second = tail.poll();
+    assertEquals(2, second.fromRow());
+    assertEquals(0, second.changedRuns().length);
+    assertArrayEquals(new double[]{300, 301, 302}, second.data().getWavelengths());
+    assertArrayEquals(new double[]{2, 4, 6}, second.data().getRun(1));
+    assertEquals(2, second.data().getIndex().nearest(302, 0));
+    // The room kept for the rows to come is never handed out
+    assertEquals(6, second.data().getValue(1, 2));
+    assertThrows(IllegalArgumentException.class, () -> second.data().getValue(1, 3));
+    // The data from before is not changed by the rows after it
+    assertEquals(2, first.data().getRowCount());
+    assertArrayEquals(new double[]{300, 301}, first.data().getWavelengths());
+
+    StringBuilder rows = new StringBuilder();
+    for (int row = 3; row < 1000; row++) {
+      rows.append(300 + row).append(',').append(row).append(",0\n");
+    }
+    append(file, rows.toString());
+    CSVTail.Update third = tail.poll();
+    assertEquals(3, third.fromRow());
+    assertEquals(1000, third.data().getRowCount());
+    assertEquals(999, third.data().getRun(0)[999]);
+    assertEquals(3, second.data().getRowCount());
+  }
+
+  @Test
+  public void testNewRunRereads() throws IOException {
+    Path file = this.folder.resolve("runs.csv");
+    Files.writeString(file, "nm,A\n300,1\n301,2\n");
+    CSVTail tail = new CSVTail(file.toString(), false);
+    double[] kept = tail.poll().data().getRun(0);
+
+    Files.writeString(file, "nm,A,B\n300,1,5\n301,2,6\n");
+    CSVTail.Update update = tail.poll();
+    assertArrayEquals(new int[]{1}, update.changedRuns());
+    assertEquals(2, update.data().getRunCount());
+    assertArrayEquals(kept, update.data().getRun(0));
+    assertArrayEquals(new double[]{5, 6}, update.data().getRun(1));
+
+    // Different wavelengths, so no run can be kept
+    Files.writeString(file, "nm,A,B,C\n310,1,5,7\n");
+    update = tail.poll();
+    assertArrayEquals(new int[]{0, 1, 2}, update.changedRuns());
+    assertArrayEquals(new double[]{310}, update.data().getWavelengths());
+  }
+
+  @Test
+  public void testMissingFile() {
+    CSVTail tail = new CSVTail(this.folder.resolve("none.csv").toString(), false);
+    assertThrows(IllegalArgumentException.class, tail::poll);
+  }
+}
@@ -0,0 +1,107 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests finding peaks and isosbestic points in made up titrations.
+ */
+public class PeakFinderTest {
+
+  private static final double[] WAVELENGTHS = wavelengths(250, 450);
+
+  private static double[] wavelengths(int from, int to) {
+    double[] wavelengths = new double[to - from + 1];
+    for (int row = 0; row < wavelengths.length; row++) {
+      wavelengths[row] = from + row;
+    }
+    return wavelengths;
+  }
+
+  private static double gaussian(double wavelength, double center, double width, double height) {
+    double at = (wavelength - center) / width;
+    return height * Math.exp(-at * at / 2);
+  }
+
+  private static SpectrumData data(double[]... runs) {
+    String[] labels = new String[runs.length + 1];
+    labels[0] = "Wavelength (nm)";
+    for (int run = 0; run < runs.length; run++) {
+      labels[run + 1] = "Run " + (run + 1);
+    }
+    return new SpectrumData(labels, WAVELENGTHS, runs);
+  }
+
+  @Test
+  public void testPeaks() {
+    double[] run = new double[WAVELENGTHS.length];
+    for (int row = 0; row < run.length; row++) {
+      double wavelength = WAVELENGTHS[row];
+      // Two bands and a ripple too small to count
+      run[row] = gaussian(wavelength, 300, 10, 1) + gaussian(wavelength, 400, 15, 0.5)
+          + gaussian(wavelength, 350, 2, 0.01);
+    }
+    PeakFinder.Result result = new PeakFinder(0.05, 0.01, new ForkJoinPool(2)).find(data(run));
+    PeakFinder.Peak[] peaks = result.peaks()[0];
+    assertEquals(2, peaks.length);
+    assertEquals(300, peaks[0].wavelength());
+    assertEquals(400, peaks[1].wavelength());
+    assertEquals(1, peaks[0].absorbance(), 1e-9);
+    assertEquals(0.5, peaks[1].prominence(), 0.01);
+    assertEquals(300, result.highest(0).wavelength());
+
+    // Without the prominence cut the ripple is a peak of its own
+    assertEquals(3, new PeakFinder(0, 0.01).find(data(run)).peaks()[0].length);
+  }
+
+  @Test
+  public void testFlatTopAndGaps() {
+    double[] run = new double[WAVELENGTHS.length];
+    for (int row = 0; row < run.length; row++) {
+      run[row] = Math.max(0, 1 - Math.abs(WAVELENGTHS[row] - 350) / 50);
+    }
+    // A flat top from 345 to 355, and missing values on the slopes
+    for (int row = 95; row <= 105; row++) {
+      run[row] = 1;
+    }
+    run[60] = Double.NaN;
+    run[140] = Double.NaN;
+    double[] flat = new double[WAVELENGTHS.length];
+    PeakFinder.Result result = new PeakFinder(0.1, 0.01).find(data(run, flat));
+    assertEquals(1, result.peaks()[0].length);
+    assertEquals(350, result.peaks()[0][0].wavelength());
+    assertEquals(0, result.peaks()[1].length);
+    assertNull(result.highest(1));
+  }
+
+  @Test
+  public void testIsosbestic() {
+    // Every run crosses at 350, and all of them are flat at 0 below 260 where none cross
+    double[][] runs = new double[4][WAVELENGTHS.length];
+    for (int run = 0; run < runs.length; run++) {
+      for (int row = 0; row < WAVELENGTHS.length; row++) {
+        double wavelength = WAVELENGTHS[row];
+        runs[run][row] = wavelength < 260 ? 0 : (run + 1) * (wavelength - 350) / 50;
+      }
+    }
+    PeakFinder.Result result = new PeakFinder(0.1, 0.01).find(data(runs));
+    assertArrayEquals(new double[]{350}, result.isosbestic());
+    assertArrayEquals(new double[]{0}, result.spread(), 1e-12);
+
+    // One run has nothing to cross
+    assertEquals(0, new PeakFinder(0.1, 0.01).find(data(runs[0])).isosbestic().length);
+  }
+
+  @Test
+  public void testBadSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new PeakFinder(-0.1, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> new PeakFinder(1.5, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> new PeakFinder(Double.NaN, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> new PeakFinder(0.1, -1));
+  }
+}
@@ -0,0 +1,71 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests decomposing titrations into components.
+ */
+public class SpectrumDecompositionTest {
+
+  private static double length(double[] vector) {
+    double sum = 0;
+    for (double value : vector) {
+      sum += value * value;
+    }
+    return Math.sqrt(sum);
+  }
+
+  @Test
+  public void testRankOne() {
+    // Every run is the same spectrum scaled, so there is only one component
+    double[] spectrum = {1, 2, 3, 2, 1};
+    double[] scales = {1, 2, 3, 4};
+    double[][] runs = new double[scales.length][spectrum.length];
+    for (int run = 0; run < scales.length; run++) {
+      for (int row = 0; row < spectrum.length; row++) {
+        runs[run][row] = scales[run] * spectrum[row];
+      }
+    }
+    SpectrumData data =
+        new SpectrumData(new String[scales.length + 1], new double[]{1, 2, 3, 4, 5}, runs);
+    SpectrumDecomposition.Result result = new SpectrumDecomposition(2, false).decompose(data);
+
+    double largest = length(spectrum) * length(scales);
+    assertEquals(largest, result.singularValues()[0], 1e-9);
+    // The values come from the squares of the data, so the rest are only zero to about the root
+    // of the machine epsilon
+    assertEquals(0, result.singularValues()[1], 1e-7 * largest);
+    assertEquals(1, result.explained()[0], 1e-12);
+    assertEquals(1, length(result.components()[0]), 1e-12);
+    assertEquals(1, length(result.profiles()[0]), 1e-12);
+    for (int row = 0; row < spectrum.length; row++) {
+      assertEquals(spectrum[row] / length(spectrum), result.components()[0][row], 1e-9);
+    }
+  }
+
+  @Test
+  public void testSkipsEmptyCells() {
+    double[] wavelengths = {1, 2, 3, 4};
+    double[][] runs = {{1, Double.NaN, 3, 4}, {2, 4, 6, 8}, {1, 1, 2, 2}};
+    SpectrumDecomposition.Result result =
+        new SpectrumDecomposition(2, false).decompose(new SpectrumData(new String[4],
+            wavelengths, runs));
+    assertArrayEquals(new double[]{1, 3, 4}, result.wavelengths());
+    assertEquals(3, result.components()[0].length);
+    for (double value : result.singularValues()) {
+      assertEquals(false, Double.isNaN(value));
+    }
+  }
+
+  @Test
+  public void testNoCompleteRows() {
+    SpectrumData data = new SpectrumData(new String[3], new double[]{1, 2},
+        new double[][]{{Double.NaN, 1}, {1, Double.NaN}});
+    assertThrows(IllegalArgumentException.class,
+        () -> new SpectrumDecomposition(1, false).decompose(data));
+  }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the binary copy kept next to a csv.
+ */
+public class SpectrumSidecarTest {
+
+  @TempDir
+  Path folder;
+
+  private static void assertSame(SpectrumData expected, SpectrumData actual) {
+    assertArrayEquals(expected.getLabels(), actual.getLabels());
+    assertArrayEquals(expected.getWavelengths(), actual.getWavelengths());
+    assertEquals(expected.getRunCount(), actual.getRunCount());
+    for (int run = 0; run < expected.getRunCount(); run++) {
+      assertArrayEquals(expected.getRun(run), actual.getRun(run));
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Path csv = this.folder.resolve("a.csv");
+    Files.writeString(csv, "nm,A,B\n300,1,\n301,2,3\n");
+    // More rows than one chunk of the file holds
+    int rows = 20000;
+    double[] wavelengths = new double[rows];
+    double[][] runs = new double[2][rows];
+    for (int row = 0; row < rows; row++) {
+      wavelengths[row] = 200 + row * 0.1;
+      runs[0][row] = Math.sin(row);
+      runs[1][row] = row % 7 == 0 ? Double.NaN : -row;
+    }
+    SpectrumData data = new SpectrumData(new String[]{"nm", null, "B"}, wavelengths, runs);
+    SpectrumSidecar.write(csv.toString(), data);
+    assertSame(data, SpectrumSidecar.read(csv.toString()));
+  }
+
+  @Test
+  public void testLongHeader() throws IOException {
+    // The labels alone are larger than the first read of the file
+    Path csv = this.folder.resolve("wide.csv");
+    Files.writeString(csv, "wide");
+    int runs = 8000;
+    String[] labels = new String[runs + 1];
+    labels[0] = "Wavelength (nm)";
+    double[][] columns = new double[runs][];
+    for (int run = 0; run < runs; run++) {
+      labels[run + 1] = "Run " + run + ": Absorbance at a long label";
+      columns[run] = new double[]{run, run + 0.5};
+    }
+    SpectrumData data = new SpectrumData(labels, new double[]{400, 401}, columns);
+    SpectrumSidecar.write(csv.toString(), data);
+    assertSame(data, SpectrumSidecar.read(csv.toString()));
+  }
+
+  @Test
+  public void testStaleOrBroken() throws IOException {
+    Path csv = this.folder.resolve("b.csv");
+    Files.writeString(csv, "nm,A\n300,1\n");
+    SpectrumData data = new SpectrumData(new String[]{"nm", "A"}, new double[]{300},
+        new double[][]{{1}});
+    assertNull(SpectrumSidecar.read(csv.toString()));
+    SpectrumSidecar.write(csv.toString(), data);
+    Files.writeString(csv, "301,2\n", StandardOpenOption.APPEND);
+    assertNull(SpectrumSidecar.read(csv.toString()));
+
+    SpectrumSidecar.write(csv.toString(), data);
+    Path sidecar = Path.of(SpectrumSidecar.pathOf(csv.toString()));
+    byte[] bytes = Files.readAllBytes(sidecar);
+    Files.write(sidecar, Arrays.copyOf(bytes, bytes.length - 3));
+    assertNull(SpectrumSidecar.read(csv.toString()));
+    Files.write(sidecar, new byte[]{1, 2});
+    assertNull(SpectrumSidecar.read(csv.toString()));
+  }
+
+  @Test
+  public void testReplacesOpenSidecar() throws IOException {
+    // Reading leaves nothing open, so a newer sidecar can always replace the old one
+    Path csv = this.folder.resolve("c.csv");
+    Files.writeString(csv, "nm,A\n300,1\n");
+    SpectrumData first = new SpectrumData(new String[]{"nm", "A"}, new double[]{300},
+        new double[][]{{1}});
+    SpectrumSidecar.write(csv.toString(), first);
+    SpectrumSidecar.read(csv.toString());
+    SpectrumData second = new SpectrumData(new String[]{"nm", "A"}, new double[]{300},
+        new double[][]{{2}});
+    SpectrumSidecar.write(csv.toString(), second);
+    assertSame(second, SpectrumSidecar.read(csv.toString()));
+    try (Stream<Path> files = Files.list(this.folder)) {
+      assertEquals(2, files.count());
+    }
+  }
+}
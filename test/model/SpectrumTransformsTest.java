@@ -0,0 +1,28 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the keys corrected data is cached by.
+ */
+public class SpectrumTransformsTest {
+
+  @Test
+  public void testBlankKey() {
+    double[] wavelengths = {300, 301};
+    // Columns with the same hash code but other values
+    double[] first = {Double.longBitsToDouble(1), Double.longBitsToDouble(32)};
+    double[] second = {Double.longBitsToDouble(2), Double.longBitsToDouble(1)};
+    assertEquals(Arrays.hashCode(first), Arrays.hashCode(second));
+    assertNotEquals(SpectrumTransforms.blank("buffer", wavelengths, first, 1).key(),
+        SpectrumTransforms.blank("buffer", wavelengths, second, 1).key());
+    assertEquals(SpectrumTransforms.blank("buffer", wavelengths, first, 1).key(),
+        SpectrumTransforms.blank("buffer", wavelengths.clone(), first.clone(), 1).key());
+    assertNotEquals(SpectrumTransforms.blank("buffer", wavelengths, first, 1).key(),
+        SpectrumTransforms.blank("buffer", wavelengths, first, 2).key());
+  }
+}
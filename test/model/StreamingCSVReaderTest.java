@@ -0,0 +1,160 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests parsing csvs straight from their bytes, whole and while they are still written.
+ */
+public class StreamingCSVReaderTest {
+
+  @TempDir
+  Path folder;
+
+  private String write(String name, String text) throws IOException {
+    Path file = this.folder.resolve(name);
+    Files.writeString(file, text);
+    return file.toString();
+  }
+
+  @Test
+  public void testReadsCells() throws Exception {
+    String file = write("cells.csv", "nm,\"Run 1\",Run 2\r\n"
+        + "300,0.5,-1.25e-3\r\n"
+        + "\"301\",,\" 7 \"\r\n"
+        + "302,12345678901234567890,0.1");
+    SpectrumData data = StreamingCSVReader.read(file);
+    assertArrayEquals(new String[]{"nm", "Run 1", "Run 2"}, data.getLabels());
+    assertArrayEquals(new double[]{300, 301, 302}, data.getWavelengths());
+    assertArrayEquals(new double[]{0.5, Double.NaN, 12345678901234567890.0}, data.getRun(0));
+    assertArrayEquals(new double[]{-1.25e-3, 7, 0.1}, data.getRun(1));
+  }
+
+  @Test
+  public void testMatchesParseDouble() throws Exception {
+    // Far more bytes than one window, so the window is refilled many times mid row
+    Random random = new Random(7);
+    int rows = 20000;
+    int runs = 12;
+    StringBuilder text = new StringBuilder("nm");
+    for (int run = 0; run < runs; run++) {
+      text.append(",Run ").append(run + 1);
+    }
+    double[][] expected = new double[runs][rows];
+    for (int row = 0; row < rows; row++) {
+      text.append('\n').append(200 + row * 0.05);
+      for (int run = 0; run < runs; run++) {
+        expected[run][row] = random.nextGaussian() * Math.pow(10, random.nextInt(9) - 4);
+        text.append(',').append(expected[run][row]);
+      }
+    }
+    SpectrumData data = StreamingCSVReader.read(write("many.csv", text.toString()));
+    assertEquals(rows, data.getRowCount());
+    for (int run = 0; run < runs; run++) {
+      assertArrayEquals(expected[run], data.getRun(run));
+    }
+  }
+
+  @Test
+  public void testRowLongerThanWindow() throws Exception {
+    int runs = 50000;
+    StringBuilder text = new StringBuilder("nm");
+    for (int run = 0; run < runs; run++) {
+      text.append(",R").append(run);
+    }
+    for (int row = 0; row < 3; row++) {
+      text.append('\n').append(400 + row);
+      for (int run = 0; run < runs; run++) {
+        text.append(',').append(run * 0.001 + row);
+      }
+    }
+    SpectrumData data = StreamingCSVReader.read(write("wide.csv", text.toString()));
+    assertEquals(3, data.getRowCount());
+    assertEquals(runs, data.getRunCount());
+    assertEquals("R49999", data.getLabels()[runs]);
+    assertEquals(49.999 + 2, data.getRun(runs - 1)[2], 1e-9);
+  }
+
+  @Test
+  public void testIrregularFiles() throws IOException {
+    assertThrows(StreamingCSVReader.IrregularException.class,
+        () -> StreamingCSVReader.read(write("escaped.csv", "nm,A\n300,\"a\"\"b\"\n")));
+    assertThrows(StreamingCSVReader.IrregularException.class,
+        () -> StreamingCSVReader.read(write("broken.csv", "nm,A\n300,\"1\n2\"\n")));
+    assertThrows(StreamingCSVReader.IrregularException.class,
+        () -> StreamingCSVReader.read(write("blank.csv", "nm,A\n300,1\n\n301,2\n")));
+    assertThrows(StreamingCSVReader.IrregularException.class,
+        () -> StreamingCSVReader.read(write("empty.csv", "")));
+  }
+
+  @Test
+  public void testEditedCopyMatchesParsed() throws Exception {
+    // The instrument's layout, a wavelength column before every run and the latest run first
+    String file = write("raw.csv", "Latest,,Run 1,,Run 2,\n"
+        + "300,0.5,300,0.1,300,0.2\n301,0.6,301,0.3,301,0.4\n");
+    String copy = this.folder.resolve("edited.csv").toString();
+    SpectrumData edited = StreamingCSVReader.readAndEdit(file, copy);
+    SpectrumData reread = StreamingCSVReader.read(copy);
+    assertArrayEquals(edited.getLabels(), reread.getLabels());
+    assertArrayEquals(edited.getWavelengths(), reread.getWavelengths());
+    for (int run = 0; run < edited.getRunCount(); run++) {
+      assertArrayEquals(edited.getRun(run), reread.getRun(run));
+    }
+    SpectrumData parsedOnly = StreamingCSVReader.readAndEdit(file, null);
+    assertArrayEquals(edited.getWavelengths(), parsedOnly.getWavelengths());
+  }
+
+  @Test
+  public void testTailLeavesPartialLine() throws Exception {
+    Path file = this.folder.resolve("tail.csv");
+    Files.writeString(file, "nm,A,B\n300,1,2\r\n301,3,4\n302,5");
+    StreamingCSVReader.Chunk head = StreamingCSVReader.readHeader(file.toString());
+    assertArrayEquals(new String[]{"nm", "A", "B"}, head.header);
+    boolean[] parse = {true, false};
+    StreamingCSVReader.Chunk rows =
+        StreamingCSVReader.readRows(file.toString(), head.end, false, 3, parse);
+    assertArrayEquals(new double[]{300, 301}, rows.wavelengths);
+    assertArrayEquals(new double[]{1, 3}, rows.runs[0]);
+    assertNull(rows.runs[1]);
+    assertEquals(Files.size(file) - "302,5".length(), rows.end);
+
+    Files.writeString(file, ",6\n303,7,8\r", StandardOpenOption.APPEND);
+    rows = StreamingCSVReader.readRows(file.toString(), rows.end, false, 3, parse);
+    // The carriage return could still get its line feed, so the last row waits
+    assertArrayEquals(new double[]{302}, rows.wavelengths);
+    Files.writeString(file, "\n", StandardOpenOption.APPEND);
+    rows = StreamingCSVReader.readRows(file.toString(), rows.end, false, 3, parse);
+    assertArrayEquals(new double[]{303}, rows.wavelengths);
+    assertEquals(Files.size(file), rows.end);
+    rows = StreamingCSVReader.readRows(file.toString(), rows.end, false, 3, parse);
+    assertEquals(0, rows.wavelengths.length);
+  }
+
+  @Test
+  public void testTailOfLargeFile() throws Exception {
+    // The columns are sized from a row, not the byte count, so a long tail fits a small heap
+    StringBuilder text = new StringBuilder("nm,A,B\n");
+    int rows = 100000;
+    for (int row = 0; row < rows; row++) {
+      text.append(row).append(",0.").append(row).append(",1\n");
+    }
+    String file = write("long.csv", text.toString());
+    StreamingCSVReader.Chunk head = StreamingCSVReader.readHeader(file);
+    StreamingCSVReader.Chunk chunk =
+        StreamingCSVReader.readRows(file, head.end, false, 3, new boolean[]{true, true});
+    assertEquals(rows, chunk.wavelengths.length);
+    assertEquals(rows - 1, chunk.wavelengths[rows - 1]);
+    assertTrue(chunk.runs[1][rows - 1] == 1);
+  }
+}
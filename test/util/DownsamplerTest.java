@@ -0,0 +1,37 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the points picked for drawing a series.
+ */
+public class DownsamplerTest {
+
+  @Test
+  public void testPixelColumns() {
+    // Two points per pixel column, one missing value
+    double[] x = {0, 0.5, 1, 1.5, 2, 2.5};
+    double[] y = {1, 3, 2, Double.NaN, 0, 4};
+    List<double[]> points = new ArrayList<>();
+    Downsampler.pixelColumns(x, y, 0, x.length, 10, 0, 1, 100, 0, 10,
+        (px, py, move) -> points.add(new double[]{px, py, move ? 1 : 0}));
+    assertArrayEquals(new double[][]{
+        {10, 90, 1}, {10, 70, 0}, {10, 90, 0}, {10, 70, 0},
+        {11, 80, 0}, {11, 80, 0},
+        {12, 100, 0}, {12, 60, 0}, {12, 100, 0}, {12, 60, 0}}, points.toArray(new double[0][]));
+  }
+
+  @Test
+  public void testPixelColumnsRange() {
+    double[] x = {0, 1, 2, 3};
+    double[] y = {Double.NaN, 1, 2, 3};
+    List<double[]> points = new ArrayList<>();
+    Downsampler.pixelColumns(x, y, 0, 2, 0, 0, 1, 10, 0, 1,
+        (px, py, move) -> points.add(new double[]{px, py, move ? 1 : 0}));
+    assertArrayEquals(new double[][]{{1, 9, 1}, {1, 9, 0}}, points.toArray(new double[0][]));
+  }
+}
@@ -0,0 +1,52 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the undo and redo history.
+ */
+public class EditHistoryTest {
+
+  @Test
+  public void testUndoRedo() {
+    EditHistory<String> history = new EditHistory<>("a", 10);
+    assertNull(history.undo());
+    assertNull(history.redo());
+    history.record("b");
+    history.record("c");
+    assertEquals("b", history.undo());
+    assertEquals("a", history.undo());
+    assertNull(history.undo());
+    assertEquals("a", history.current());
+    assertEquals("b", history.redo());
+    assertEquals("c", history.redo());
+    assertNull(history.redo());
+    assertEquals("c", history.current());
+  }
+
+  @Test
+  public void testRecordClearsRedo() {
+    EditHistory<String> history = new EditHistory<>("a", 10);
+    history.record("b");
+    history.undo();
+    history.record("c");
+    assertNull(history.redo());
+    assertEquals("a", history.undo());
+  }
+
+  @Test
+  public void testMaxSteps() {
+    EditHistory<Integer> history = new EditHistory<>(0, 3);
+    for (int step = 1; step <= 5; step++) {
+      history.record(step);
+    }
+    assertEquals(4, history.undo());
+    assertEquals(3, history.undo());
+    assertEquals(2, history.undo());
+    assertNull(history.undo());
+    assertEquals(2, history.current());
+  }
+}